@@ -0,0 +1,67 @@
+package org.springframework.async;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.async.io.Buffer;
+import org.springframework.async.io.CompositeBuffer;
+
+/**
+ * Cost of filling a {@link Buffer} by repeated appends, growing as it goes, presized or as a {@link CompositeBuffer}.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BufferBenchmark {
+
+	@Param({"16", "1024", "16384"})
+	public int pieceSize;
+
+	@Param({"65536", "524288"})
+	public int total;
+
+	private byte[] piece;
+
+	@Setup public void setUp() {
+		piece = new byte[pieceSize];
+		Arrays.fill(piece, (byte) 'x');
+	}
+
+	@Benchmark public void dynamic(Blackhole blackhole) {
+		fill(new Buffer(), blackhole);
+	}
+
+	@Benchmark public void presized(Blackhole blackhole) {
+		fill(new Buffer(total, false), blackhole);
+	}
+
+	@Benchmark public void composite(Blackhole blackhole) {
+		fill(new CompositeBuffer(), blackhole);
+	}
+
+	private void fill(Buffer buffer, Blackhole blackhole) {
+		for (int written = 0; written < total; written += pieceSize) {
+			buffer.append(piece);
+		}
+		blackhole.consume(buffer.flip().remaining());
+		buffer.release();
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.springframework.async;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of completing a {@link Promise} with handlers registered before and after completion.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PromiseBenchmark {
+
+	@Param({"0", "1", "8"})
+	public int handlers;
+
+	private CountingHandler[] handlerArray;
+
+	@Setup public void setUp() {
+		handlerArray = new CountingHandler[handlers];
+		for (int i = 0; i < handlers; i++) {
+			handlerArray[i] = new CountingHandler();
+		}
+	}
+
+	@Benchmark public Promise<String, Object> completeAfterHandlers() {
+		Promise<String, Object> promise = new Promise<>();
+		promise.setCompletionHandler(handlerArray);
+		promise.setResult("result");
+		return promise;
+	}
+
+	@Benchmark public Promise<String, Object> handlersAfterComplete() {
+		Promise<String, Object> promise = new Promise<>();
+		promise.setResult("result");
+		promise.setCompletionHandler(handlerArray);
+		return promise;
+	}
+
+	private static class CountingHandler implements CompletionHandler<String, Object> {
+		private int completed;
+		private int failed;
+
+		@Override public void completed(String result, Object attachment) {
+			completed++;
+		}
+
+		@Override public void failed(Throwable t, Object attachment) {
+			failed++;
+		}
+	}
+
+}
@@ -1,19 +1,26 @@
 package org.springframework.async;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
+ * A result that will be set at some point in the future, and the handlers to notify once it is.
+ * <p>Registering handlers and completing the promise are lock-free. Until the promise completes, its state is a stack
+ * of pending handlers; completing it swaps the stack for the outcome in a single compare-and-set, so exactly one caller
+ * wins and every handler is notified exactly once, in the order it was registered. A handler registered after
+ * completion is notified straight away.
+ *
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
 public class Promise<T, A> {
 
-	private final String handlersMutex = "handlers";
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Promise, Object> STATE = AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
 
-	private T result = null;
-	private AtomicReference<A> attachment = new AtomicReference<>();
-	private List<CompletionHandler<T, A>> handlers = new ArrayList<>();
+	private final AtomicReference<A> attachment = new AtomicReference<>();
+	// Either null, a HandlerNode stack of pending handlers or, once completed, an Outcome.
+	private volatile Object state;
 
 	public Promise() {
 	}
@@ -31,55 +38,106 @@ public class Promise<T, A> {
 		return this;
 	}
 
+	/**
+	 * Replace any handlers that are still pending with the given ones, or notify them straight away if this promise has
+	 * already completed.
+	 */
+	@SuppressWarnings({"unchecked"})
 	public Promise<T, A> setCompletionHandlers(List<CompletionHandler<T, A>> handlers) {
-		synchronized (handlersMutex) {
-			handlers.clear();
-			for (CompletionHandler<T, A> handler : handlers) {
-				if (null == result) {
-					this.handlers.add(handler);
-				} else {
-					handler.completed(result, attachment.get());
+		for (; ; ) {
+			Object s = state;
+			if (s instanceof Outcome) {
+				for (CompletionHandler<T, A> handler : handlers) {
+					notify(handler, (Outcome<T>) s);
 				}
+				return this;
+			}
+			HandlerNode<T, A> stack = null;
+			for (CompletionHandler<T, A> handler : handlers) {
+				stack = new HandlerNode<>(handler, stack);
+			}
+			if (STATE.compareAndSet(this, s, stack)) {
+				return this;
 			}
 		}
-		return this;
 	}
 
 	@SuppressWarnings({"unchecked"})
 	public Promise<T, A> setCompletionHandler(CompletionHandler<T, A>... handlers) {
 		for (CompletionHandler<T, A> handler : handlers) {
-			if (null == result) {
-				synchronized (handlersMutex) {
-					this.handlers.add(handler);
+			for (; ; ) {
+				Object s = state;
+				if (s instanceof Outcome) {
+					notify(handler, (Outcome<T>) s);
+					break;
+				}
+				if (STATE.compareAndSet(this, s, new HandlerNode<>(handler, (HandlerNode<T, A>) s))) {
+					break;
 				}
-			} else {
-				handler.completed(result, attachment.get());
 			}
 		}
 		return this;
 	}
 
+	/**
+	 * @return true if this call completed the promise, false if it had already been completed
+	 */
 	public boolean setResult(T result) {
-		if (null == this.result) {
-			this.result = result;
-			synchronized (handlersMutex) {
-				for (CompletionHandler<T, A> handler : handlers) {
-					handler.completed(result, attachment.get());
-				}
+		return complete(new Outcome<>(result, null));
+	}
+
+	public Promise<T, A> setFailure(Throwable t) {
+		complete(new Outcome<T>(null, t));
+		return this;
+	}
+
+	@SuppressWarnings({"unchecked"})
+	private boolean complete(Outcome<T> outcome) {
+		Object s;
+		do {
+			s = state;
+			if (s instanceof Outcome) {
+				return false;
 			}
-			return true;
+		} while (!STATE.compareAndSet(this, s, outcome));
+
+		// The stack holds the most recently registered handler first.
+		HandlerNode<T, A> reversed = null;
+		for (HandlerNode<T, A> node = (HandlerNode<T, A>) s; null != node; node = node.next) {
+			reversed = new HandlerNode<>(node.handler, reversed);
+		}
+		for (HandlerNode<T, A> node = reversed; null != node; node = node.next) {
+			notify(node.handler, outcome);
+		}
+		return true;
+	}
+
+	private void notify(CompletionHandler<T, A> handler, Outcome<T> outcome) {
+		if (null == outcome.failure) {
+			handler.completed(outcome.result, attachment.get());
 		} else {
-			return false;
+			handler.failed(outcome.failure, attachment.get());
 		}
 	}
 
-	public Promise<T, A> setFailure(Throwable t) {
-		for (CompletionHandler<T, A> handler : handlers) {
-			synchronized (handlersMutex) {
-				handler.failed(t, attachment.get());
-			}
+	private static final class HandlerNode<T, A> {
+		private final CompletionHandler<T, A> handler;
+		private final HandlerNode<T, A> next;
+
+		private HandlerNode(CompletionHandler<T, A> handler, HandlerNode<T, A> next) {
+			this.handler = handler;
+			this.next = next;
+		}
+	}
+
+	private static final class Outcome<T> {
+		private final T result;
+		private final Throwable failure;
+
+		private Outcome(T result, Throwable failure) {
+			this.result = result;
+			this.failure = failure;
 		}
-		return this;
 	}
 
 }
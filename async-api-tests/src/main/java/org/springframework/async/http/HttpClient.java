@@ -5,12 +5,14 @@ import java.net.URI;
 import java.util.concurrent.Executors;
 
 import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
@@ -24,6 +26,9 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.async.io.Buffer;
+import org.springframework.async.io.CompositeBuffer;
+import org.springframework.async.io.FileBuffer;
 
 /**
  * @author Jon Brisbin <jon@jbrisbin.com>
@@ -60,12 +65,60 @@ public class HttpClient {
 	}
 
 	public void get() {
+		execute(HttpMethod.GET, null);
+	}
+
+	/**
+	 * PUT the given body, which should already be flipped for reading. The body is released once it has been written.
+	 */
+	public void put(Buffer body) {
+		execute(HttpMethod.PUT, body);
+	}
+
+	/**
+	 * POST the given body, which should already be flipped for reading. The body is released once it has been written.
+	 */
+	public void post(Buffer body) {
+		execute(HttpMethod.POST, body);
+	}
+
+	private void execute(final HttpMethod method, final Buffer body) {
 		future.addListener(new ChannelFutureListener() {
 			@Override public void operationComplete(ChannelFuture future) throws Exception {
-				HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri.getPath());
+				HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri.getPath());
 				request.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
 				request.setHeader(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
+				if (null == body) {
+					future.getChannel().write(request);
+					return;
+				}
+
+				Object content;
+				long contentLength;
+				if (body instanceof FileBuffer) {
+					// Let the socket pull the data straight from the file with FileChannel.transferTo().
+					FileBuffer fileBuffer = (FileBuffer) body;
+					content = new DefaultFileRegion(fileBuffer.getFileChannel(), fileBuffer.getFilePosition(), fileBuffer.getRemainingBytes()) {
+						@Override public void releaseExternalResources() {
+							// The channel belongs to the FileBuffer.
+						}
+					};
+					contentLength = fileBuffer.getRemainingBytes();
+				} else if (body instanceof CompositeBuffer) {
+					content = ChannelBuffers.wrappedBuffer(((CompositeBuffer) body).getByteBuffers());
+					contentLength = body.remaining();
+				} else {
+					content = ChannelBuffers.wrappedBuffer(body.getByteBuffer());
+					contentLength = body.remaining();
+				}
+				request.setHeader(HttpHeaders.Names.CONTENT_LENGTH, contentLength);
+
 				future.getChannel().write(request);
+				future.getChannel().write(content).addListener(new ChannelFutureListener() {
+					@Override public void operationComplete(ChannelFuture future) throws Exception {
+						body.release();
+					}
+				});
 			}
 		});
 
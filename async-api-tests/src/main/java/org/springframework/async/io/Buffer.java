@@ -4,9 +4,18 @@ import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
+ * A growable view over direct memory drawn from a {@link BufferPool}.
+ * <p>Buffers are reference counted: a new buffer has a count of 1, {@link #retain()} increments it and {@link
+ * #release()} decrements it. Once the count drops to 0 the memory goes back to the pool and the buffer must not be used
+ * anymore. A buffer created from another buffer shares its memory and holds a reference to it until it is released
+ * itself.
+ *
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
 public class Buffer implements Comparable<Buffer> {
@@ -14,17 +23,40 @@ public class Buffer implements Comparable<Buffer> {
 	public static int SMALL_BUFFER_SIZE = 1024 * 16;
 	public static int MAX_BUFFER_SIZE = 1024 * 1000;
 
-	private ByteBuffer buffer;
+	private static final AtomicIntegerFieldUpdater<Buffer> REF_COUNT = AtomicIntegerFieldUpdater.newUpdater(Buffer.class, "refCount");
+
+	private final BufferPool pool;
+	private final Buffer parent;
 	private final boolean dynamic;
+	private ByteBuffer buffer;
+	private ByteBuffer memory;
+	// Memory outgrown while other references were held, recycled once the last of them is released.
+	private List<ByteBuffer> retired;
+	private Object leakTracker;
+	private volatile int refCount = 1;
 
 	public Buffer() {
-		dynamic = true;
+		this(BufferPool.getDefault());
+	}
+
+	public Buffer(BufferPool pool) {
+		this.pool = pool;
+		this.parent = null;
+		this.dynamic = true;
 	}
 
 	public Buffer(int atLeast, boolean fixed) {
+		this(atLeast, fixed, BufferPool.getDefault());
+	}
+
+	public Buffer(int atLeast, boolean fixed, BufferPool pool) {
+		this.pool = pool;
+		this.parent = null;
 		if (fixed) {
 			if (atLeast <= MAX_BUFFER_SIZE) {
-				buffer = ByteBuffer.allocateDirect(atLeast);
+				memory = pool.allocate(atLeast);
+				buffer = ((ByteBuffer) memory.duplicate().limit(atLeast)).slice();
+				leakTracker = pool.track(this);
 			} else {
 				throw new IllegalArgumentException("Requested buffer size exceeds maximum allowed (" + MAX_BUFFER_SIZE + ")");
 			}
@@ -34,16 +66,100 @@ public class Buffer implements Comparable<Buffer> {
 		dynamic = !fixed;
 	}
 
+	/**
+	 * Create a buffer that shares the memory of the given one, with its own position and limit.
+	 *
+	 * @throws IllegalArgumentException if the given buffer is a {@link CompositeBuffer} or {@link FileBuffer}, whose
+	 *                                  contents are not held in a single region of memory that could be shared
+	 */
 	public Buffer(Buffer bufferToCopy) {
+		if (bufferToCopy instanceof CompositeBuffer || bufferToCopy instanceof FileBuffer) {
+			throw new IllegalArgumentException(bufferToCopy.getClass().getSimpleName() + " cannot be copied");
+		}
+		this.pool = bufferToCopy.pool;
+		this.parent = bufferToCopy.retain();
 		this.dynamic = bufferToCopy.dynamic;
-		this.buffer = bufferToCopy.buffer.duplicate();
+		// A dynamic buffer that has not been written to has no memory to share yet.
+		this.buffer = (null != bufferToCopy.buffer ? bufferToCopy.buffer.duplicate() : null);
 	}
 
 	public Buffer(ByteBuffer bufferToStartWith) {
+		this.pool = BufferPool.getDefault();
+		this.parent = null;
 		this.dynamic = true;
 		this.buffer = bufferToStartWith;
 	}
 
+	/**
+	 * Increment the reference count of this buffer.
+	 *
+	 * @return this buffer
+	 */
+	public Buffer retain() {
+		for (; ; ) {
+			int count = refCount;
+			if (count <= 0) {
+				throw new IllegalStateException("Buffer has already been released");
+			}
+			if (REF_COUNT.compareAndSet(this, count, count + 1)) {
+				return this;
+			}
+		}
+	}
+
+	/**
+	 * Decrement the reference count of this buffer, giving its memory back to the pool once it drops to 0.
+	 *
+	 * @return true if this call released the buffer
+	 */
+	public boolean release() {
+		int count = REF_COUNT.decrementAndGet(this);
+		if (count > 0) {
+			return false;
+		}
+		if (count < 0) {
+			throw new IllegalStateException("Buffer has already been released");
+		}
+		deallocate();
+		return true;
+	}
+
+	public int refCount() {
+		return refCount;
+	}
+
+	/**
+	 * Called once the reference count has dropped to 0 to give this buffer's memory back to the pool.
+	 */
+	protected void deallocate() {
+		pool.untrack(leakTracker);
+		if (null != memory) {
+			pool.recycle(memory);
+		}
+		if (null != retired) {
+			for (ByteBuffer outgrown : retired) {
+				pool.recycle(outgrown);
+			}
+		}
+		if (null != parent) {
+			parent.release();
+		}
+		leakTracker = null;
+		retired = null;
+		memory = null;
+		buffer = null;
+	}
+
+	protected BufferPool getPool() {
+		return pool;
+	}
+
+	protected void ensureAccessible() {
+		if (refCount <= 0) {
+			throw new IllegalStateException("Buffer has already been released");
+		}
+	}
+
 	public int position() {
 		return (null == buffer ? 0 : buffer.position());
 	}
@@ -56,8 +172,11 @@ public class Buffer implements Comparable<Buffer> {
 		return (null == buffer ? SMALL_BUFFER_SIZE : buffer.remaining());
 	}
 
+	/**
+	 * Reset this buffer so it can be filled again. Pooled memory is kept and reused.
+	 */
 	public Buffer clear() {
-		if (null != buffer) buffer = null;
+		if (null != buffer) buffer.clear();
 		return this;
 	}
 
@@ -72,7 +191,7 @@ public class Buffer implements Comparable<Buffer> {
 	}
 
 	public byte get() {
-		if (null != buffer) buffer.get();
+		if (null != buffer) return buffer.get();
 		throw new BufferUnderflowException();
 	}
 
@@ -93,8 +212,9 @@ public class Buffer implements Comparable<Buffer> {
 
 	public Buffer append(String s) {
 		Objects.requireNonNull(s, "Cannot add null values to a buffer");
-		ensureCapacity(s.length());
-		buffer.put(s.getBytes());
+		byte[] b = s.getBytes();
+		ensureCapacity(b.length);
+		buffer.put(b);
 		return this;
 	}
 
@@ -136,16 +256,35 @@ public class Buffer implements Comparable<Buffer> {
 	}
 
 	private void ensureCapacity(int atLeast) {
+		ensureAccessible();
 		if (null == buffer) {
-			buffer = ByteBuffer.allocateDirect(SMALL_BUFFER_SIZE);
+			memory = pool.allocate(Math.max(SMALL_BUFFER_SIZE, atLeast));
+			buffer = memory;
+			leakTracker = pool.track(this);
 			return;
 		}
 		if (dynamic && buffer.remaining() < atLeast) {
-			if (buffer.capacity() + SMALL_BUFFER_SIZE <= MAX_BUFFER_SIZE) {
-				ByteBuffer newBuff = ByteBuffer.allocateDirect(buffer.limit() + SMALL_BUFFER_SIZE);
+			int required = buffer.position() + atLeast;
+			if (required <= MAX_BUFFER_SIZE) {
+				ByteBuffer newMemory = pool.allocate(required);
 				buffer.flip();
-				newBuff.put(buffer);
-				buffer = newBuff;
+				newMemory.put(buffer);
+				if (null != memory) {
+					if (refCount == 1) {
+						pool.recycle(memory);
+					} else {
+						// A copy or another holder may still be reading the old memory.
+						if (null == retired) {
+							retired = new ArrayList<>(2);
+						}
+						retired.add(memory);
+					}
+				}
+				memory = newMemory;
+				buffer = newMemory;
+				if (null == leakTracker) {
+					leakTracker = pool.track(this);
+				}
 			} else {
 				throw new IllegalStateException("Requested buffer size exceeds maximum allowed (" + MAX_BUFFER_SIZE + ")");
 			}
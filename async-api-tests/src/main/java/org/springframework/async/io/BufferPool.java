@@ -0,0 +1,256 @@
+package org.springframework.async.io;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of direct memory handed out in power-of-2 size classes between {@link #MIN_SIZE_CLASS} and {@link
+ * #MAX_SIZE_CLASS}. Memory for each size class is carved out of {@link #SLAB_SIZE} slabs of direct memory that are
+ * never given back to the JVM, so direct allocation (and the GC pressure of reclaiming it) only happens while the pool
+ * is warming up. Freed memory goes to a small per-thread cache first and to a shared free list once that is full.
+ * Requests larger than {@link #MAX_SIZE_CLASS} are allocated directly and are not pooled.
+ * <p>Leak detection can be turned on with {@link #setLeakDetectionEnabled(boolean)} or the {@code
+ * org.springframework.async.io.leakDetection} system property. A {@link Buffer} that is garbage collected without
+ * having been {@link Buffer#release() released} is then logged along with the place it was allocated, by a daemon
+ * thread shared by all pools, so leaks are reported even while a pool is idle. The leaked memory is not returned to
+ * the pool: views obtained from {@link Buffer#getByteBuffer()} can outlive the buffer and may still be in use.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class BufferPool {
+
+	public static final int MIN_SIZE_CLASS = 1 << 12;
+	public static final int MAX_SIZE_CLASS = 1 << 20;
+	public static final int SLAB_SIZE = 1 << 20;
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 16;
+
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE_CLASS);
+	private static final BufferPool DEFAULT = new BufferPool();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final SizeClass[] sizeClasses;
+	private final int threadCacheSize;
+	private final ThreadLocal<ThreadCache> threadCaches = new ThreadLocal<>();
+
+	private final AtomicLong slabBytes = new AtomicLong();
+	private final AtomicLong leaks = new AtomicLong();
+	private final Set<LeakTracker> trackers = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+	private volatile boolean leakDetectionEnabled = Boolean.getBoolean("org.springframework.async.io.leakDetection");
+
+	public BufferPool() {
+		this(DEFAULT_THREAD_CACHE_SIZE);
+	}
+
+	/**
+	 * @param threadCacheSize the number of freed buffers of each size class to keep per thread, or 0 to share all
+	 *                        freed memory between threads
+	 */
+	public BufferPool(int threadCacheSize) {
+		if (threadCacheSize < 0) {
+			throw new IllegalArgumentException("Thread cache size cannot be negative");
+		}
+		this.threadCacheSize = threadCacheSize;
+		this.sizeClasses = new SizeClass[Integer.numberOfTrailingZeros(MAX_SIZE_CLASS) - MIN_SHIFT + 1];
+		for (int i = 0; i < sizeClasses.length; i++) {
+			sizeClasses[i] = new SizeClass(MIN_SIZE_CLASS << i);
+		}
+	}
+
+	/**
+	 * The pool used by {@link Buffer}s that aren't given one explicitly.
+	 */
+	public static BufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	public boolean isLeakDetectionEnabled() {
+		return leakDetectionEnabled;
+	}
+
+	public void setLeakDetectionEnabled(boolean leakDetectionEnabled) {
+		this.leakDetectionEnabled = leakDetectionEnabled;
+	}
+
+	/**
+	 * @return the number of buffers that were garbage collected without having been released
+	 */
+	public long getLeakCount() {
+		return leaks.get();
+	}
+
+	/**
+	 * @return the amount of direct memory, in bytes, that has been reserved for pooled buffers
+	 */
+	public long getSlabBytes() {
+		return slabBytes.get();
+	}
+
+	/**
+	 * Allocate a cleared direct buffer of at least the given size. Its capacity is the size class the request falls
+	 * into.
+	 */
+	public ByteBuffer allocate(int atLeast) {
+		int idx = sizeClassIndex(atLeast);
+		if (idx < 0) {
+			return ByteBuffer.allocateDirect(atLeast);
+		}
+
+		ThreadCache cache = threadCaches.get();
+		if (null != cache && cache.counts[idx] > 0) {
+			int n = --cache.counts[idx];
+			ByteBuffer buffer = cache.buffers[idx][n];
+			cache.buffers[idx][n] = null;
+			return buffer;
+		}
+		return sizeClasses[idx].allocate();
+	}
+
+	/**
+	 * Give memory obtained from {@link #allocate(int)} back to the pool. The buffer must not be used afterwards.
+	 */
+	public void recycle(ByteBuffer buffer) {
+		int idx = sizeClassIndex(buffer.capacity());
+		if (idx < 0 || sizeClasses[idx].size != buffer.capacity() || !buffer.isDirect()) {
+			// Not pooled memory, leave it to the GC.
+			return;
+		}
+		buffer.clear();
+
+		if (threadCacheSize > 0) {
+			ThreadCache cache = threadCaches.get();
+			if (null == cache) {
+				cache = new ThreadCache(sizeClasses.length, threadCacheSize);
+				threadCaches.set(cache);
+			}
+			if (cache.counts[idx] < threadCacheSize) {
+				cache.buffers[idx][cache.counts[idx]++] = buffer;
+				return;
+			}
+		}
+		sizeClasses[idx].free.offer(buffer);
+	}
+
+	/**
+	 * Start tracking the given owner of pooled memory, if leak detection is enabled.
+	 *
+	 * @return a handle to pass to {@link #untrack(Object)} once the memory has been released, or {@literal null}
+	 */
+	Object track(Object owner) {
+		if (!leakDetectionEnabled) {
+			return null;
+		}
+		LeakTracker tracker = new LeakTracker(owner, this, LeakDetector.QUEUE);
+		trackers.add(tracker);
+		return tracker;
+	}
+
+	void untrack(Object tracker) {
+		if (null != tracker) {
+			trackers.remove(tracker);
+			((LeakTracker) tracker).clear();
+		}
+	}
+
+	private void reportLeak(LeakTracker tracker) {
+		if (trackers.remove(tracker)) {
+			leaks.incrementAndGet();
+			log.error("Buffer was garbage collected without being released; allocated at:", tracker.allocationSite);
+		}
+	}
+
+	private static int sizeClassIndex(int size) {
+		if (size > MAX_SIZE_CLASS) {
+			return -1;
+		}
+		if (size <= MIN_SIZE_CLASS) {
+			return 0;
+		}
+		return (32 - Integer.numberOfLeadingZeros(size - 1)) - MIN_SHIFT;
+	}
+
+	private class SizeClass {
+		private final int size;
+		private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+		private SizeClass(int size) {
+			this.size = size;
+		}
+
+		private ByteBuffer allocate() {
+			ByteBuffer buffer = free.poll();
+			if (null != buffer) {
+				return buffer;
+			}
+			synchronized (this) {
+				// Another thread may have carved a slab while we were waiting.
+				buffer = free.poll();
+				if (null != buffer) {
+					return buffer;
+				}
+				ByteBuffer slab = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, size));
+				slabBytes.addAndGet(slab.capacity());
+				for (int offset = size; offset < slab.capacity(); offset += size) {
+					slab.limit(offset + size).position(offset);
+					free.offer(slab.slice());
+				}
+				slab.limit(size).position(0);
+				return slab.slice();
+			}
+		}
+	}
+
+	private static class ThreadCache {
+		private final ByteBuffer[][] buffers;
+		private final int[] counts;
+
+		private ThreadCache(int sizeClasses, int threadCacheSize) {
+			this.buffers = new ByteBuffer[sizeClasses][threadCacheSize];
+			this.counts = new int[sizeClasses];
+		}
+	}
+
+	private static class LeakTracker extends WeakReference<Object> {
+		private final Throwable allocationSite = new Throwable("Buffer allocation");
+		private final BufferPool pool;
+
+		private LeakTracker(Object owner, BufferPool pool, ReferenceQueue<Object> queue) {
+			super(owner, queue);
+			this.pool = pool;
+		}
+	}
+
+	/**
+	 * Reports trackers as their owners are collected. Started the first time a buffer is tracked.
+	 */
+	private static class LeakDetector {
+		private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+		static {
+			Thread thread = new Thread(new Runnable() {
+				@Override public void run() {
+					for (; ; ) {
+						try {
+							LeakTracker tracker = (LeakTracker) QUEUE.remove();
+							tracker.pool.reportLeak(tracker);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}, "buffer-leak-detector");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+}
@@ -0,0 +1,288 @@
+package org.springframework.async.io;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link Buffer} made of a chain of fixed-size segments drawn from a {@link BufferPool}. Growing adds a segment
+ * instead of copying everything into a bigger buffer, so appending is O(1) amortized and the size is not limited by
+ * {@link Buffer#MAX_BUFFER_SIZE}.
+ * <p>The segments can be handed to a {@link GatheringByteChannel} or {@link ScatteringByteChannel} as they are, and
+ * position, limit, {@link #flip()}, {@link #rewind()} and {@link #clear()} behave as if the segments were one
+ * contiguous buffer.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class CompositeBuffer extends Buffer {
+
+	private final int segmentSize;
+	private ByteBuffer[] segments = new ByteBuffer[4];
+	private int count;
+	private int readIndex;
+	private int writeIndex;
+	private boolean flipped;
+	private Object leakTracker;
+
+	public CompositeBuffer() {
+		this(SMALL_BUFFER_SIZE, BufferPool.getDefault());
+	}
+
+	/**
+	 * @param segmentSize the minimum size of each segment; the actual size is the pool's size class for it
+	 * @param pool        the pool to draw segments from
+	 */
+	public CompositeBuffer(int segmentSize, BufferPool pool) {
+		super(pool);
+		if (segmentSize <= 0 || segmentSize > BufferPool.MAX_SIZE_CLASS) {
+			throw new IllegalArgumentException("Segment size must be between 1 and " + BufferPool.MAX_SIZE_CLASS);
+		}
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * @return the segments holding this buffer's data, in order. Each segment keeps its own position and limit, which
+	 *         move as the array is read from or written to a channel.
+	 */
+	public ByteBuffer[] getByteBuffers() {
+		return Arrays.copyOf(segments, count);
+	}
+
+	public int segmentCount() {
+		return count;
+	}
+
+	/**
+	 * Read as many bytes as the channel has available into this buffer, adding a segment first if the last one is
+	 * full.
+	 *
+	 * @return the number of bytes read, or -1 at end-of-stream
+	 */
+	public long readFrom(ScatteringByteChannel channel) throws IOException {
+		writable();
+		return channel.read(segments, writeIndex, count - writeIndex);
+	}
+
+	@Override public int position() {
+		int position = 0;
+		for (int i = 0; i < count; i++) {
+			position += segments[i].position();
+		}
+		return position;
+	}
+
+	@Override public int capacity() {
+		int capacity = 0;
+		for (int i = 0; i < count; i++) {
+			capacity += segments[i].capacity();
+		}
+		return capacity;
+	}
+
+	@Override public int remaining() {
+		int remaining = 0;
+		for (int i = readIndex; i < count; i++) {
+			remaining += segments[i].remaining();
+		}
+		return remaining;
+	}
+
+	@Override public Buffer clear() {
+		for (int i = 0; i < count; i++) {
+			segments[i].clear();
+		}
+		readIndex = 0;
+		writeIndex = 0;
+		flipped = false;
+		return this;
+	}
+
+	@Override public Buffer flip() {
+		for (int i = 0; i < count; i++) {
+			segments[i].flip();
+		}
+		readIndex = 0;
+		flipped = true;
+		return this;
+	}
+
+	@Override public Buffer rewind() {
+		for (int i = 0; i < count; i++) {
+			segments[i].rewind();
+		}
+		readIndex = 0;
+		return this;
+	}
+
+	@Override public byte get() {
+		ByteBuffer segment = readable();
+		if (null == segment) {
+			throw new BufferUnderflowException();
+		}
+		return segment.get();
+	}
+
+	@Override public Buffer get(byte[] b) {
+		if (b.length > remaining()) {
+			throw new BufferUnderflowException();
+		}
+		int offset = 0;
+		while (offset < b.length) {
+			ByteBuffer segment = readable();
+			int len = Math.min(segment.remaining(), b.length - offset);
+			segment.get(b, offset, len);
+			offset += len;
+		}
+		return this;
+	}
+
+	@Override public String getAsString() {
+		if (count == 0) {
+			return null;
+		}
+		byte[] b = new byte[remaining()];
+		get(b);
+		return new String(b);
+	}
+
+	@Override public Buffer append(String s) {
+		Objects.requireNonNull(s, "Cannot add null values to a buffer");
+		return append(s.getBytes());
+	}
+
+	@Override public Buffer append(ByteBuffer b) {
+		Objects.requireNonNull(b, "Cannot add null values to a buffer");
+		while (b.hasRemaining()) {
+			ByteBuffer segment = writable();
+			if (b.remaining() <= segment.remaining()) {
+				segment.put(b);
+			} else {
+				ByteBuffer chunk = b.duplicate();
+				chunk.limit(chunk.position() + segment.remaining());
+				segment.put(chunk);
+				b.position(chunk.position());
+			}
+		}
+		return this;
+	}
+
+	@Override public Buffer append(byte b) {
+		writable().put(b);
+		return this;
+	}
+
+	@Override public Buffer append(byte[] b) {
+		Objects.requireNonNull(b, "Cannot add null values to a buffer");
+		int offset = 0;
+		while (offset < b.length) {
+			ByteBuffer segment = writable();
+			int len = Math.min(segment.remaining(), b.length - offset);
+			segment.put(b, offset, len);
+			offset += len;
+		}
+		return this;
+	}
+
+	/**
+	 * Write the remaining data of all segments to the channel, with a single gathering write if the channel supports
+	 * it.
+	 */
+	@Override public int transferTo(WritableByteChannel channel) throws IOException {
+		long written = 0;
+		if (channel instanceof GatheringByteChannel) {
+			if (null != readable()) {
+				written = ((GatheringByteChannel) channel).write(segments, readIndex, count - readIndex);
+			}
+		} else {
+			ByteBuffer segment;
+			while (null != (segment = readable())) {
+				int n = channel.write(segment);
+				if (n == 0) {
+					break;
+				}
+				written += n;
+			}
+		}
+		return (int) Math.min(written, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the single segment if there is only one, otherwise a copy of the data in all segments. Use {@link
+	 *         #getByteBuffers()} to avoid copying.
+	 */
+	@Override public ByteBuffer getByteBuffer() {
+		if (count <= 1) {
+			return (count == 0 ? null : segments[0]);
+		}
+		ByteBuffer copy = ByteBuffer.allocate(flipped ? remaining() : position());
+		for (int i = (flipped ? readIndex : 0); i < count; i++) {
+			ByteBuffer segment = segments[i].duplicate();
+			if (!flipped) {
+				segment.flip();
+			}
+			copy.put(segment);
+		}
+		if (flipped) {
+			copy.flip();
+		}
+		return copy;
+	}
+
+	@Override public String toString() {
+		return "CompositeBuffer[segments=" + count + ", position=" + position() + ", remaining=" + remaining() + "]";
+	}
+
+	@Override public int compareTo(Buffer buffer) {
+		return (null != buffer ? getByteBuffer().compareTo(buffer.getByteBuffer()) : -1);
+	}
+
+	@Override protected void deallocate() {
+		getPool().untrack(leakTracker);
+		for (int i = 0; i < count; i++) {
+			getPool().recycle(segments[i]);
+			segments[i] = null;
+		}
+		leakTracker = null;
+		count = 0;
+		readIndex = 0;
+		writeIndex = 0;
+	}
+
+	private ByteBuffer readable() {
+		while (readIndex < count) {
+			ByteBuffer segment = segments[readIndex];
+			if (segment.hasRemaining()) {
+				return segment;
+			}
+			readIndex++;
+		}
+		return null;
+	}
+
+	private ByteBuffer writable() {
+		ensureAccessible();
+		while (writeIndex < count) {
+			ByteBuffer segment = segments[writeIndex];
+			if (segment.hasRemaining()) {
+				return segment;
+			}
+			writeIndex++;
+		}
+		if (count == segments.length) {
+			// Only the array of references is copied, never the data.
+			segments = Arrays.copyOf(segments, count * 2);
+		}
+		ByteBuffer segment = getPool().allocate(segmentSize);
+		segments[count++] = segment;
+		if (null == leakTracker) {
+			leakTracker = getPool().track(this);
+		}
+		return segment;
+	}
+
+}
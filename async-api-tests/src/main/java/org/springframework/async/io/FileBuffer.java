@@ -0,0 +1,224 @@
+package org.springframework.async.io;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only {@link Buffer} over a region of a file. The data never passes through the heap or the {@link
+ * BufferPool}: {@link #transferTo(WritableByteChannel)} hands the region to {@link FileChannel#transferTo(long, long,
+ * WritableByteChannel)}, which lets the OS copy straight from the page cache to a socket, and reads go through a
+ * {@link MappedByteBuffer} window that is mapped only when the data is actually read.
+ * <p>The region is already readable, so there is no need to {@link #flip()} it. Regions larger than 2GB are supported,
+ * but {@link #position()}, {@link #remaining()} and {@link #capacity()} saturate at {@link Integer#MAX_VALUE}; use
+ * the {@code long} accessors for those.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class FileBuffer extends Buffer {
+
+	public static int MAP_WINDOW_SIZE = 1024 * 1024 * 64;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final FileChannel channel;
+	private final boolean ownsChannel;
+	private final long offset;
+	private final long length;
+	private long pos;
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	/**
+	 * Create a buffer over the whole of the given file. The file is closed once the buffer is released.
+	 */
+	public FileBuffer(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ), true);
+	}
+
+	/**
+	 * Create a buffer over a region of the given channel. The channel is left open when the buffer is released.
+	 */
+	public FileBuffer(FileChannel channel, long offset, long length) {
+		this(channel, offset, length, false);
+	}
+
+	private FileBuffer(FileChannel channel, boolean ownsChannel) throws IOException {
+		this(channel, 0, channel.size(), ownsChannel);
+	}
+
+	private FileBuffer(FileChannel channel, long offset, long length, boolean ownsChannel) {
+		super(BufferPool.getDefault());
+		if (offset < 0 || length < 0) {
+			throw new IllegalArgumentException("Offset and length cannot be negative");
+		}
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	public FileChannel getFileChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return the position in the file of the next byte to be read or transferred
+	 */
+	public long getFilePosition() {
+		return offset + pos;
+	}
+
+	/**
+	 * @return the number of bytes left to be read or transferred
+	 */
+	public long getRemainingBytes() {
+		return length - pos;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	@Override public int position() {
+		return saturate(pos);
+	}
+
+	@Override public int capacity() {
+		return saturate(length);
+	}
+
+	@Override public int remaining() {
+		return saturate(length - pos);
+	}
+
+	@Override public Buffer clear() {
+		pos = 0;
+		return this;
+	}
+
+	@Override public Buffer flip() {
+		return this;
+	}
+
+	@Override public Buffer rewind() {
+		pos = 0;
+		return this;
+	}
+
+	@Override public byte get() {
+		if (pos >= length) {
+			throw new BufferUnderflowException();
+		}
+		byte b = window().get();
+		pos++;
+		return b;
+	}
+
+	@Override public Buffer get(byte[] b) {
+		if (b.length > length - pos) {
+			throw new BufferUnderflowException();
+		}
+		int read = 0;
+		while (read < b.length) {
+			ByteBuffer window = window();
+			int len = Math.min(window.remaining(), b.length - read);
+			window.get(b, read, len);
+			read += len;
+			pos += len;
+		}
+		return this;
+	}
+
+	@Override public String getAsString() {
+		if (length - pos > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Region is too large to be read into a String");
+		}
+		byte[] b = new byte[(int) (length - pos)];
+		get(b);
+		return new String(b);
+	}
+
+	@Override public Buffer append(String s) {
+		throw new ReadOnlyBufferException();
+	}
+
+	@Override public Buffer append(ByteBuffer b) {
+		throw new ReadOnlyBufferException();
+	}
+
+	@Override public Buffer append(byte b) {
+		throw new ReadOnlyBufferException();
+	}
+
+	@Override public Buffer append(byte[] b) {
+		throw new ReadOnlyBufferException();
+	}
+
+	/**
+	 * Transfer as much of the remaining region as the target accepts, without copying it through user space if the OS
+	 * supports it.
+	 */
+	@Override public int transferTo(WritableByteChannel target) throws IOException {
+		ensureAccessible();
+		long n = channel.transferTo(offset + pos, length - pos, target);
+		pos += n;
+		return saturate(n);
+	}
+
+	/**
+	 * @return a read-only mapping of the file starting at the current position and covering at most {@link
+	 *         #MAP_WINDOW_SIZE} bytes of the region
+	 */
+	@Override public ByteBuffer getByteBuffer() {
+		return (pos < length ? window().slice() : ByteBuffer.allocate(0));
+	}
+
+	@Override public String toString() {
+		return "FileBuffer[offset=" + offset + ", length=" + length + ", position=" + pos + "]";
+	}
+
+	@Override public int compareTo(Buffer buffer) {
+		return (null != buffer ? getByteBuffer().compareTo(buffer.getByteBuffer()) : -1);
+	}
+
+	@Override protected void deallocate() {
+		window = null;
+		if (ownsChannel) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	private ByteBuffer window() {
+		ensureAccessible();
+		if (null == window || pos < windowStart || pos >= windowStart + window.limit()) {
+			long size = Math.min(length - pos, MAP_WINDOW_SIZE);
+			try {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, offset + pos, size);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not map " + this + ": " + e.getMessage(), e);
+			}
+			windowStart = pos;
+		}
+		window.position((int) (pos - windowStart));
+		return window;
+	}
+
+	private static int saturate(long value) {
+		return (int) Math.min(value, Integer.MAX_VALUE);
+	}
+
+}
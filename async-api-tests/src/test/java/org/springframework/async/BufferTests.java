@@ -2,11 +2,23 @@ package org.springframework.async;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
 
 import org.junit.Test;
 import org.springframework.async.io.Buffer;
+import org.springframework.async.io.BufferPool;
+import org.springframework.async.io.CompositeBuffer;
+import org.springframework.async.io.FileBuffer;
 
 /**
  * @author Jon Brisbin <jon@jbrisbin.com>
@@ -41,4 +53,199 @@ public class BufferTests {
 		new Buffer(10, true).append(HELLO_WORLD);
 	}
 
+	@Test
+	public void testReleasedMemoryIsReused() {
+		BufferPool pool = new BufferPool();
+		Buffer buffer = new Buffer(pool).append(HELLO_WORLD);
+		ByteBuffer memory = buffer.getByteBuffer();
+		assertTrue(buffer.release());
+
+		Buffer next = new Buffer(pool).append(HELLO_WORLD);
+		assertSame(memory, next.getByteBuffer());
+		assertEquals(BufferPool.SLAB_SIZE, pool.getSlabBytes());
+	}
+
+	@Test
+	public void testCopyRetainsOriginal() {
+		Buffer buffer = new Buffer().append(HELLO_WORLD);
+		Buffer copy = new Buffer(buffer);
+		assertEquals(2, buffer.refCount());
+
+		assertFalse(buffer.release());
+		assertEquals(HELLO_WORLD, copy.flip().getAsString());
+		assertTrue(copy.release());
+		assertEquals(0, buffer.refCount());
+	}
+
+	@Test
+	public void testCopyOfEmptyBuffer() {
+		Buffer buffer = new Buffer();
+		Buffer copy = new Buffer(buffer);
+		assertEquals(0, copy.position());
+		assertTrue(copy.release());
+		assertEquals(1, buffer.refCount());
+		assertTrue(buffer.release());
+	}
+
+	@Test
+	public void testCopyOfCompositeOrFileBufferIsRejected() throws IOException {
+		CompositeBuffer composite = new CompositeBuffer();
+		composite.append(HELLO_WORLD);
+		try {
+			new Buffer(composite);
+			fail("CompositeBuffer should not be copied");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(1, composite.refCount());
+		composite.release();
+
+		Path path = Files.createTempFile("file-buffer", ".txt");
+		path.toFile().deleteOnExit();
+		Files.write(path, HELLO_WORLD.getBytes());
+		try (FileChannel channel = FileChannel.open(path)) {
+			FileBuffer file = new FileBuffer(channel, 0, HELLO_WORLD.length());
+			try {
+				new Buffer(file);
+				fail("FileBuffer should not be copied");
+			} catch (IllegalArgumentException expected) {
+			}
+			assertEquals(1, file.refCount());
+			file.release();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDoubleRelease() {
+		Buffer buffer = new Buffer().append(HELLO_WORLD);
+		buffer.release();
+		buffer.release();
+	}
+
+	@Test
+	public void testLeakDetection() throws InterruptedException {
+		BufferPool pool = new BufferPool();
+		pool.setLeakDetectionEnabled(true);
+		new Buffer(pool).append(HELLO_WORLD);
+
+		// Nothing is allocated from the pool while waiting, so the leak has to be reported in the background.
+		for (int i = 0; i < 50 && pool.getLeakCount() == 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(1, pool.getLeakCount());
+	}
+
+	@Test
+	public void testOutgrownMemoryRecycledOnLastRelease() {
+		BufferPool pool = new BufferPool();
+		Buffer buffer = new Buffer(pool).append(HELLO_WORLD);
+		ByteBuffer memory = buffer.getByteBuffer();
+		Buffer copy = new Buffer(buffer);
+
+		buffer.append(new byte[Buffer.SMALL_BUFFER_SIZE]);
+		Buffer other = new Buffer(pool).append(HELLO_WORLD);
+		assertNotSame(memory, other.getByteBuffer());
+		assertEquals(HELLO_WORLD, copy.flip().getAsString());
+		other.release();
+
+		assertTrue(copy.release());
+		assertTrue(buffer.release());
+		assertSame(memory, new Buffer(pool).append(HELLO_WORLD).getByteBuffer());
+	}
+
+	@Test
+	public void testCompositeBufferSpansSegments() {
+		CompositeBuffer buffer = new CompositeBuffer(BufferPool.MIN_SIZE_CLASS, BufferPool.getDefault());
+		byte[] b = new byte[BufferPool.MIN_SIZE_CLASS * 3 + 100];
+		new Random().nextBytes(b);
+		buffer.append(b);
+		assertEquals(4, buffer.segmentCount());
+		assertEquals(b.length, buffer.position());
+
+		byte[] read = new byte[b.length];
+		buffer.flip().get(read);
+		assertArrayEquals(b, read);
+		buffer.release();
+	}
+
+	@Test
+	public void testCompositeBufferGrowsPastMaximum() {
+		CompositeBuffer buffer = new CompositeBuffer();
+		byte[] b = new byte[Buffer.MAX_BUFFER_SIZE / 4];
+		for (int i = 0; i < 8; i++) {
+			buffer.append(b);
+		}
+
+		assertEquals(b.length * 8, buffer.position());
+		buffer.release();
+	}
+
+	@Test
+	public void testCompositeBufferTransferTo() throws IOException {
+		byte[] b = new byte[BufferPool.MIN_SIZE_CLASS * 2 + 10];
+		new Random().nextBytes(b);
+
+		CompositeBuffer buffer = new CompositeBuffer(BufferPool.MIN_SIZE_CLASS, BufferPool.getDefault());
+		buffer.append(b).flip();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		while (buffer.remaining() > 0) {
+			buffer.transferTo(Channels.newChannel(out));
+		}
+		assertArrayEquals(b, out.toByteArray());
+
+		File file = File.createTempFile("composite", ".bin");
+		file.deleteOnExit();
+		try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+			buffer.rewind();
+			while (buffer.remaining() > 0) {
+				buffer.transferTo(channel);
+			}
+			assertEquals(b.length, channel.size());
+
+			CompositeBuffer read = new CompositeBuffer(BufferPool.MIN_SIZE_CLASS, BufferPool.getDefault());
+			channel.position(0);
+			while (read.readFrom(channel) > 0) {
+			}
+			byte[] copy = new byte[b.length];
+			read.flip().get(copy);
+			assertArrayEquals(b, copy);
+			read.release();
+		}
+		buffer.release();
+	}
+
+	@Test
+	public void testFileBufferReadsMappedRegion() throws IOException {
+		Path path = Files.createTempFile("file-buffer", ".txt");
+		path.toFile().deleteOnExit();
+		Files.write(path, ("xxx" + HELLO_WORLD).getBytes());
+
+		try (FileChannel channel = FileChannel.open(path)) {
+			FileBuffer buffer = new FileBuffer(channel, 3, HELLO_WORLD.length());
+			assertEquals('H', buffer.get());
+			assertEquals(HELLO_WORLD.substring(1), buffer.getAsString());
+			assertEquals(0, buffer.getRemainingBytes());
+			buffer.release();
+			assertTrue(channel.isOpen());
+		}
+	}
+
+	@Test
+	public void testFileBufferTransferTo() throws IOException {
+		byte[] b = new byte[BufferPool.MIN_SIZE_CLASS * 2 + 10];
+		new Random().nextBytes(b);
+		Path path = Files.createTempFile("file-buffer", ".bin");
+		path.toFile().deleteOnExit();
+		Files.write(path, b);
+
+		FileBuffer buffer = new FileBuffer(path);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		while (buffer.getRemainingBytes() > 0) {
+			buffer.transferTo(Channels.newChannel(out));
+		}
+		assertArrayEquals(b, out.toByteArray());
+		assertTrue(buffer.release());
+		assertFalse(buffer.getFileChannel().isOpen());
+	}
+
 }
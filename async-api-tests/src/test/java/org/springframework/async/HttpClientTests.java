@@ -1,20 +1,63 @@
 package org.springframework.async;
 
+import static org.junit.Assert.*;
+
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.springframework.async.http.HttpClient;
+import org.springframework.async.io.Buffer;
 
 /**
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
 public class HttpClientTests {
 
+	private final String HELLO_WORLD = "Hello World!";
+
+	private StubServer server;
+	private int port;
+
+	@Before
+	public void setup() {
+		server = new StubServer(64, 0, 0);
+		port = server.start();
+	}
+
+	@After
+	public void cleanup() {
+		server.stop();
+	}
+
 	@Test
 	public void testHttpClient() throws URISyntaxException {
-		HttpClient client = new HttpClient(new URI("http://localhost:8098/riak/status"));
+		HttpClient client = new HttpClient(new URI("http://127.0.0.1:" + port + "/riak/status"));
+		client.get();
+
+		assertEquals(1, server.getRequests());
+		assertEquals("GET", server.getLastMethod());
+	}
+
+	@Test
+	public void testChunkedResponse() throws URISyntaxException {
+		HttpClient client = new HttpClient(new URI("http://127.0.0.1:" + port + "/riak/status?chunk=16"));
 		client.get();
+
+		assertEquals(1, server.getRequests());
 	}
-	
+
+	@Test
+	public void testPostBody() throws URISyntaxException {
+		Buffer body = new Buffer().append(HELLO_WORLD).flip();
+		HttpClient client = new HttpClient(new URI("http://127.0.0.1:" + port + "/riak/status"));
+		client.post(body);
+
+		assertEquals("POST", server.getLastMethod());
+		assertEquals(HELLO_WORLD.length(), server.getBodyBytes());
+		assertEquals(0, body.refCount());
+	}
+
 }
@@ -1,6 +1,12 @@
 package org.springframework.async;
 
+import static org.junit.Assert.*;
+
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -77,4 +83,47 @@ public class PromiseTests {
 		latch.await();
 	}
 
+	@Test
+	public void testHandlerAddedAfterCompletion() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		Promise<String, CountDownLatch> promise = new Promise<>(latch);
+		assertTrue(promise.setResult("Hello World!"));
+		assertFalse(promise.setResult("Goodbye World!"));
+
+		promise.setCompletionHandler(StringHandler.INSTANCE);
+		assertEquals(0, latch.getCount());
+	}
+
+	@Test
+	public void testConcurrentHandlersNotifiedOnce() throws InterruptedException {
+		final int handlers = 1000;
+		final CountDownLatch latch = new CountDownLatch(handlers);
+		final AtomicInteger notifications = new AtomicInteger();
+		final Promise<String, CountDownLatch> promise = new Promise<>(latch);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < handlers; i++) {
+			pool.execute(new Runnable() {
+				@Override public void run() {
+					promise.setCompletionHandler(new CompletionHandler<String, CountDownLatch>() {
+						@Override public void completed(String result, CountDownLatch latch) {
+							notifications.incrementAndGet();
+							latch.countDown();
+						}
+
+						@Override public void failed(Throwable t, CountDownLatch latch) {
+						}
+					});
+				}
+			});
+			if (i == handlers / 2) {
+				promise.setResult("Hello World!");
+			}
+		}
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		pool.shutdown();
+		assertEquals(handlers, notifications.get());
+	}
+
 }
@@ -0,0 +1,219 @@
+package org.springframework.async;
+
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * HTTP server on the loopback interface that answers every request with a body of 'x's, so tests can drive a client
+ * without a real backend. The same stub as the one the async-http-client benchmarks use, which this module cannot see.
+ * <p>The payload size in bytes, the delay in milliseconds before responding and the size of the chunks to send it in
+ * (0 for a single Content-Length response) default to what the server was created with, and can be overridden per
+ * request with the {@code size}, {@code delay} and {@code chunk} query parameters. It also counts the requests and
+ * request body bytes it has received.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class StubServer {
+
+	private final int size;
+	private final int delay;
+	private final int chunkSize;
+	private final ChannelGroup channels = new DefaultChannelGroup("stub-server");
+	private final Timer timer;
+	private final ServerBootstrap bootstrap;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicLong bodyBytes = new AtomicLong();
+	private volatile String lastMethod;
+	private volatile byte[] payload;
+	private Channel serverChannel;
+
+	/**
+	 * @param size      default payload size in bytes
+	 * @param delay     default delay in milliseconds before responding
+	 * @param chunkSize default chunk size in bytes, or 0 to send the payload with a Content-Length
+	 */
+	public StubServer(int size, int delay, int chunkSize) {
+		if (size < 0 || delay < 0 || chunkSize < 0) {
+			throw new IllegalArgumentException("'size', 'delay' and 'chunkSize' must not be negative");
+		}
+		this.size = size;
+		this.delay = delay;
+		this.chunkSize = chunkSize;
+		this.payload = filledWithX(size);
+
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "stub-server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		timer = new HashedWheelTimer(threadFactory, 1, TimeUnit.MILLISECONDS);
+		Executor bossExecutor = Executors.newCachedThreadPool(threadFactory);
+		Executor workerExecutor = Executors.newCachedThreadPool(threadFactory);
+		bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(bossExecutor, workerExecutor));
+		bootstrap.setOption("reuseAddress", true);
+		bootstrap.setOption("child.tcpNoDelay", true);
+		final ChannelHandler handler = new RequestHandler();
+		bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override public ChannelPipeline getPipeline() throws Exception {
+				return Channels.pipeline(new HttpRequestDecoder(), new HttpResponseEncoder(), handler);
+			}
+		});
+	}
+
+	/**
+	 * Start listening on an ephemeral port.
+	 *
+	 * @return the port
+	 */
+	public int start() {
+		serverChannel = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+		channels.add(serverChannel);
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	public void stop() {
+		channels.close().awaitUninterruptibly();
+		timer.stop();
+		bootstrap.releaseExternalResources();
+	}
+
+	public int getRequests() {
+		return requests.get();
+	}
+
+	public long getBodyBytes() {
+		return bodyBytes.get();
+	}
+
+	public String getLastMethod() {
+		return lastMethod;
+	}
+
+	private void respond(Channel channel, boolean keepAlive, int size, int chunkSize) {
+		byte[] payload = this.payload;
+		if (payload.length < size) {
+			payload = filledWithX(size);
+			this.payload = payload;
+		}
+
+		HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+		response.setHeader(CONTENT_TYPE, "text/plain;charset=US-ASCII");
+		if (!keepAlive) {
+			response.setHeader(CONNECTION, HttpHeaders.Values.CLOSE);
+		}
+		ChannelFuture written;
+		if (chunkSize > 0) {
+			response.setHeader(TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+			response.setChunked(true);
+			channel.write(response);
+			for (int offset = 0; offset < size; offset += chunkSize) {
+				channel.write(new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(payload, offset, Math.min(chunkSize, size - offset))));
+			}
+			written = channel.write(HttpChunk.LAST_CHUNK);
+		} else {
+			response.setHeader(CONTENT_LENGTH, size);
+			response.setContent(ChannelBuffers.wrappedBuffer(payload, 0, size));
+			written = channel.write(response);
+		}
+		if (!keepAlive) {
+			written.addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+
+	private static byte[] filledWithX(int size) {
+		byte[] bytes = new byte[size];
+		Arrays.fill(bytes, (byte) 'x');
+		return bytes;
+	}
+
+	private static int intParameter(Map<String, List<String>> parameters, String name, int defaultValue) {
+		List<String> values = parameters.get(name);
+		return (null != values && !values.isEmpty() ? Integer.parseInt(values.get(0)) : defaultValue);
+	}
+
+	@ChannelHandler.Sharable
+	private class RequestHandler extends SimpleChannelUpstreamHandler {
+		@Override public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) {
+			channels.add(e.getChannel());
+		}
+
+		@Override public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+			if (e.getMessage() instanceof HttpChunk) {
+				// A chunk of a body larger than the decoder passes on in one piece.
+				bodyBytes.addAndGet(((HttpChunk) e.getMessage()).getContent().readableBytes());
+				return;
+			}
+			HttpRequest request = (HttpRequest) e.getMessage();
+			requests.incrementAndGet();
+			lastMethod = request.getMethod().getName();
+			bodyBytes.addAndGet(request.getContent().readableBytes());
+
+			Map<String, List<String>> parameters = new QueryStringDecoder(request.getUri()).getParameters();
+			final Channel channel = e.getChannel();
+			final boolean keepAlive = HttpHeaders.isKeepAlive(request);
+			final int size = intParameter(parameters, "size", StubServer.this.size);
+			final int chunkSize = intParameter(parameters, "chunk", StubServer.this.chunkSize);
+			int delay = intParameter(parameters, "delay", StubServer.this.delay);
+
+			if (delay > 0) {
+				timer.newTimeout(new TimerTask() {
+					@Override public void run(Timeout timeout) {
+						respond(channel, keepAlive, size, chunkSize);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} else {
+				respond(channel, keepAlive, size, chunkSize);
+			}
+		}
+
+		@Override public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+			e.getChannel().close();
+		}
+	}
+
+}
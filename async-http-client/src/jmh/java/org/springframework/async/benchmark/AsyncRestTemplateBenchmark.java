@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.async.http.client.ClientHttpRequestFactory;
+import org.springframework.async.web.client.AsyncRestTemplate;
+
+/**
+ * End-to-end cost of {@link AsyncRestTemplate#getForObject(String, Class, Object...)} for each transport, against a
+ * server in the same JVM on the loopback interface.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AsyncRestTemplateBenchmark {
+
+	@Param({"grizzly", "netty", "nio"})
+	public String transport;
+
+	// Size of the response body in bytes.
+	@Param({"64", "65536"})
+	public int payload;
+
+	private StubServer server;
+	private ClientHttpRequestFactory requestFactory;
+	private AsyncRestTemplate restTemplate;
+	private String url;
+
+	@Setup(Level.Trial) public void setUp() throws IOException {
+		server = new StubServer(payload, 0, 0);
+		url = "http://127.0.0.1:" + server.start() + "/payload";
+
+		requestFactory = Transports.createRequestFactory(transport, Transports.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		restTemplate = new AsyncRestTemplate(requestFactory);
+	}
+
+	@TearDown(Level.Trial) public void tearDown() throws Exception {
+		Transports.destroy(requestFactory);
+		server.stop();
+	}
+
+	@Benchmark public String getForObject() throws Exception {
+		return restTemplate.getForObject(url, String.class).get();
+	}
+
+}
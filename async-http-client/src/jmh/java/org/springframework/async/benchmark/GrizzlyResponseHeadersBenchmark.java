@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.async.web.client.grizzly.GrizzlyClientHttpResponse;
+import org.springframework.http.MediaType;
+
+/**
+ * Cost of {@link GrizzlyClientHttpResponse#addContent(HttpContent)} turning Grizzly's parsed status line and headers
+ * into Spring's {@link org.springframework.http.HttpHeaders} for the first content of a response.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GrizzlyResponseHeadersBenchmark {
+
+	@Param({"4", "16"})
+	public int headerCount;
+
+	private HttpContent content;
+
+	@Setup public void setUp() {
+		HttpRequestPacket request = HttpRequestPacket.builder().method("GET").uri("/").protocol(Protocol.HTTP_1_1).build();
+		HttpResponsePacket.Builder builder = HttpResponsePacket.builder(request)
+				.status(200)
+				.reasonPhrase("OK")
+				.protocol(Protocol.HTTP_1_1)
+				.contentLength(2);
+		for (int i = 1; i < headerCount; i++) {
+			builder.header("X-Header-" + i, "value-" + i);
+		}
+		HttpResponsePacket response = builder.build();
+		// The builder keeps a Content-Type in a field; a parsed response has it among the headers.
+		response.getHeaders().addValue("Content-Type").setString("text/plain;charset=UTF-8");
+		content = HttpContent.builder(response)
+				.content(new HeapMemoryManager().wrap("ok".getBytes()))
+				.last(true)
+				.build();
+	}
+
+	@Benchmark public GrizzlyClientHttpResponse addContent() {
+		GrizzlyClientHttpResponse response = new GrizzlyClientHttpResponse();
+		content.getContent().rewind();
+		response.addContent(content);
+		return response;
+	}
+
+	// What most callers do with the headers: find out how to read the body.
+	@Benchmark public MediaType addContentAndGetContentType() throws Exception {
+		GrizzlyClientHttpResponse response = new GrizzlyClientHttpResponse();
+		content.getContent().rewind();
+		response.addContent(content);
+		return response.getHeaders().get().getContentType();
+	}
+
+}
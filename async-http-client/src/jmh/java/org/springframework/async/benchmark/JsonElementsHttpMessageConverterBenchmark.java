@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.converter.JsonElementsHttpMessageConverter;
+import org.springframework.async.json.JsonElementHandler;
+import org.springframework.async.json.JsonElements;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Cost of reading a JSON array element by element with {@link JsonElementsHttpMessageConverter}, delivered in 8K
+ * chunks as a transport would deliver it.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonElementsHttpMessageConverterBenchmark {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	// Number of elements in the array.
+	@Param({"10", "1000", "100000"})
+	public int elements;
+
+	private final JsonElementsHttpMessageConverter converter = new JsonElementsHttpMessageConverter();
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private HttpHeaders headers;
+
+	@Setup public void setUp() {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < elements; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":").append(i)
+					.append(",\"name\":\"item-").append(i).append("\",\"price\":").append(i * 0.25)
+					.append(",\"tags\":[\"a\",\"b\\u00e9\"],\"active\":").append(i % 2 == 0)
+					.append(",\"parent\":null}");
+		}
+		json.append(']');
+		ByteBuffer body = Charset.forName("UTF-8").encode(json.toString());
+		while (body.hasRemaining()) {
+			ByteBuffer chunk = body.slice();
+			chunk.limit(Math.min(CHUNK_SIZE, chunk.remaining()));
+			body.position(body.position() + chunk.remaining());
+			chunks.add(chunk);
+		}
+
+		headers = new HttpHeaders();
+		headers.setContentType(new MediaType("application", "json"));
+	}
+
+	@Benchmark public int read() throws Exception {
+		Promise<JsonElements> promise = PromiseFactory.createPromise();
+		converter.read(JsonElements.class, new ChunkedInputMessage(), promise);
+		final int[] count = new int[1];
+		promise.get().setElementHandler(new JsonElementHandler() {
+			@Override public boolean element(Object element) {
+				count[0]++;
+				return true;
+			}
+
+			@Override public void completed() {
+			}
+
+			@Override public void failed(Throwable throwable) {
+				throw new IllegalStateException(throwable);
+			}
+		});
+		return count[0];
+	}
+
+	private class ChunkedInputMessage implements HttpInputMessage {
+		@Override public Promise<HttpHeaders> getHeaders() {
+			Promise<HttpHeaders> promise = PromiseFactory.createPromise();
+			promise.result(headers);
+			return promise;
+		}
+
+		@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
+			for (ByteBuffer chunk : chunks) {
+				completionHandler.chunk(chunk.duplicate());
+			}
+			completionHandler.completed(null);
+		}
+
+		@Override public void resume() {
+		}
+	}
+
+}
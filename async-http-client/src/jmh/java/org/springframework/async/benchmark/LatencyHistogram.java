@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import org.springframework.async.http.client.metrics.StripedHistogram;
+
+/**
+ * Histogram of latencies in nanoseconds, safe to record into from any number of threads.
+ * <p>Every power of two is split into 128 buckets, so a value is never reported more than 1% higher than it was
+ * recorded.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class LatencyHistogram extends StripedHistogram {
+
+	public LatencyHistogram() {
+		super(7);
+	}
+
+	/**
+	 * Record a value and correct for coordinated omission: if the value is longer than the interval at which values
+	 * were expected to arrive, the samples that could not be taken while waiting are recorded too, at the latencies they
+	 * would have seen.
+	 *
+	 * @param expectedInterval interval in nanoseconds between samples, or 0 to record the value alone
+	 */
+	public void recordWithExpectedInterval(long value, long expectedInterval) {
+		record(value);
+		if (expectedInterval <= 0) {
+			return;
+		}
+		for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+			record(missing);
+		}
+	}
+
+}
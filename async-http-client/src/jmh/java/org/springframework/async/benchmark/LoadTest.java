@@ -0,0 +1,254 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.ClientHttpRequestFactory;
+import org.springframework.async.web.client.AsyncRestTemplate;
+
+/**
+ * Drives {@link AsyncRestTemplate#getForObject(String, Class, Object...)} against an embedded {@link StubServer} (or
+ * any URL) and reports throughput and latency percentiles, to size connection pools without a real backend.
+ * <p>Configured with system properties, all optional:
+ * <ul>
+ * <li>{@code loadtest.transport}: grizzly, netty or nio (default nio)</li>
+ * <li>{@code loadtest.mode}: {@code open} to send at a fixed rate whether or not earlier requests have completed, or
+ * {@code closed} to have a fixed number of callers each wait for its response before sending the next (default
+ * closed)</li>
+ * <li>{@code loadtest.rate}: requests per second in open mode (default 1000)</li>
+ * <li>{@code loadtest.concurrency}: number of callers in closed mode (default 16)</li>
+ * <li>{@code loadtest.connections}: maximum connections per route (default 16)</li>
+ * <li>{@code loadtest.warmup} and {@code loadtest.duration}: seconds to run before and while measuring (default 5
+ * and 30)</li>
+ * <li>{@code loadtest.drain}: seconds to wait after sending stops for requests still in flight, which are then
+ * reported as outstanding (default 10)</li>
+ * <li>{@code loadtest.size}, {@code loadtest.delay} and {@code loadtest.chunk}: payload bytes, server delay in
+ * milliseconds and chunk size in bytes for the stub server (default 1024, 0 and 0)</li>
+ * <li>{@code loadtest.url}: send requests here instead of starting the stub server</li>
+ * </ul>
+ * <p>Latencies are corrected for coordinated omission. In open mode each request is timed from when it was due to be
+ * sent rather than when it actually was, so a stall in the client counts against every request it held up. In closed
+ * mode a stalled caller sends nothing, so every slow response is also recorded for the requests that would have been
+ * sent in the meantime, using the mean latency seen during warm-up as the expected interval.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class LoadTest {
+
+	private final AsyncRestTemplate restTemplate;
+	private final String url;
+
+	public LoadTest(AsyncRestTemplate restTemplate, String url) {
+		this.restTemplate = restTemplate;
+		this.url = url;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String transport = System.getProperty("loadtest.transport", "nio");
+		String mode = System.getProperty("loadtest.mode", "closed");
+		int rate = Integer.getInteger("loadtest.rate", 1000);
+		int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+		int connections = Integer.getInteger("loadtest.connections", Transports.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		long warmup = TimeUnit.SECONDS.toNanos(Integer.getInteger("loadtest.warmup", 5));
+		long duration = TimeUnit.SECONDS.toNanos(Integer.getInteger("loadtest.duration", 30));
+		long drain = TimeUnit.SECONDS.toNanos(Integer.getInteger("loadtest.drain", 10));
+		String url = System.getProperty("loadtest.url");
+
+		StubServer server = null;
+		if (null == url) {
+			int size = Integer.getInteger("loadtest.size", 1024);
+			int delay = Integer.getInteger("loadtest.delay", 0);
+			int chunk = Integer.getInteger("loadtest.chunk", 0);
+			server = new StubServer(size, delay, chunk);
+			url = "http://127.0.0.1:" + server.start() + "/";
+		}
+		ClientHttpRequestFactory requestFactory = Transports.createRequestFactory(transport, connections);
+		try {
+			LoadTest loadTest = new LoadTest(new AsyncRestTemplate(requestFactory), url);
+			Result result;
+			if ("open".equals(mode)) {
+				loadTest.runOpenLoop(rate, warmup, drain);
+				result = loadTest.runOpenLoop(rate, duration, drain);
+			} else if ("closed".equals(mode)) {
+				Result warmupResult = loadTest.runClosedLoop(concurrency, warmup, drain, 0);
+				result = loadTest.runClosedLoop(concurrency, duration, drain, (long) warmupResult.getLatencies().getMean());
+			} else {
+				throw new IllegalArgumentException("Unknown mode " + mode + ", expected open or closed");
+			}
+
+			String load = ("open".equals(mode) ? rate + " requests/s" : concurrency + " callers");
+			System.out.println(String.format("%s, %s loop, %s, %d connections per route", transport, mode, load, connections));
+			System.out.println(result);
+		} finally {
+			Transports.destroy(requestFactory);
+			if (null != server) {
+				server.stop();
+			}
+		}
+	}
+
+	/**
+	 * Send requests at a fixed rate for the given time, then wait for the outstanding ones to complete.
+	 *
+	 * @param rate     requests per second
+	 * @param duration nanoseconds to send requests for
+	 * @param drain    nanoseconds to wait for outstanding requests once sending has stopped
+	 */
+	public Result runOpenLoop(int rate, long duration, long drain) throws InterruptedException {
+		final Result result = new Result();
+		final AtomicLong outstanding = new AtomicLong();
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		long start = System.nanoTime();
+		long end = start + duration;
+		for (long due = start; due < end; due += interval) {
+			long now;
+			while ((now = System.nanoTime()) < due) {
+				LockSupport.parkNanos(due - now);
+			}
+			final long sendAt = due;
+			outstanding.incrementAndGet();
+			try {
+				restTemplate.getForObject(url, String.class).addCompletionHandler(new EmptyCompletionHandler<String>() {
+					@Override public void completed(String body) {
+						result.succeeded(System.nanoTime() - sendAt, 0);
+						outstanding.decrementAndGet();
+					}
+
+					@Override public void failed(Throwable throwable) {
+						result.failed();
+						outstanding.decrementAndGet();
+					}
+				});
+			} catch (RuntimeException e) {
+				result.failed();
+				outstanding.decrementAndGet();
+			}
+		}
+		long deadline = end + drain;
+		while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		result.elapsed = System.nanoTime() - start;
+		result.outstanding.set(outstanding.get());
+		return result;
+	}
+
+	/**
+	 * Have the given number of callers each send a request and wait for its response, over and over, for the given
+	 * time.
+	 *
+	 * @param duration         nanoseconds to send requests for
+	 * @param drain            nanoseconds a caller waits past the end for its last response before giving up on it
+	 * @param expectedInterval nanoseconds a caller is expected to take per request, or 0 not to correct for stalls
+	 */
+	public Result runClosedLoop(int concurrency, long duration, long drain, final long expectedInterval) throws InterruptedException {
+		final Result result = new Result();
+		long start = System.nanoTime();
+		final long end = start + duration;
+		final long deadline = end + drain;
+		Thread[] callers = new Thread[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			callers[i] = new Thread(new Runnable() {
+				@Override public void run() {
+					while (System.nanoTime() < end) {
+						long sentAt = System.nanoTime();
+						try {
+							restTemplate.getForObject(url, String.class).get(deadline - sentAt, TimeUnit.NANOSECONDS);
+							result.succeeded(System.nanoTime() - sentAt, expectedInterval);
+						} catch (TimeoutException e) {
+							result.outstanding.incrementAndGet();
+							return;
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						} catch (ExecutionException e) {
+							result.failed();
+						} catch (RuntimeException e) {
+							result.failed();
+						}
+					}
+				}
+			}, "load-test-caller-" + i);
+			callers[i].start();
+		}
+		for (Thread caller : callers) {
+			caller.join();
+		}
+		result.elapsed = System.nanoTime() - start;
+		return result;
+	}
+
+	public static class Result {
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final AtomicLong succeeded = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong outstanding = new AtomicLong();
+		private volatile long elapsed;
+
+		public LatencyHistogram getLatencies() {
+			return latencies;
+		}
+
+		public long getSucceeded() {
+			return succeeded.get();
+		}
+
+		public long getFailed() {
+			return failed.get();
+		}
+
+		/**
+		 * @return requests that had not completed by the deadline
+		 */
+		public long getOutstanding() {
+			return outstanding.get();
+		}
+
+		/**
+		 * @return successful requests per second
+		 */
+		public double getThroughput() {
+			return (elapsed > 0 ? succeeded.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0);
+		}
+
+		@Override public String toString() {
+			return String.format("%d succeeded, %d failed, %d still outstanding in %.1fs, %.1f requests/s%n"
+					+ "latency (ms): p50 %.3f, p99 %.3f, p99.9 %.3f, max %.3f",
+					succeeded.get(), failed.get(), outstanding.get(), elapsed / 1e9, getThroughput(),
+					latencies.getValueAtPercentile(50) / 1e6,
+					latencies.getValueAtPercentile(99) / 1e6,
+					latencies.getValueAtPercentile(99.9) / 1e6,
+					latencies.getMaxValue() / 1e6);
+		}
+
+		private void succeeded(long latency, long expectedInterval) {
+			latencies.recordWithExpectedInterval(latency, expectedInterval);
+			succeeded.incrementAndGet();
+		}
+
+		private void failed() {
+			failed.incrementAndGet();
+		}
+	}
+
+}
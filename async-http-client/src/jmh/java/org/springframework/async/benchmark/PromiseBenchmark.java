@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+
+/**
+ * Cost of creating and completing a {@link Promise} with handlers registered before and after completion.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PromiseBenchmark {
+
+	@Param({"0", "1", "8"})
+	public int handlers;
+
+	private final CountingHandler handler = new CountingHandler();
+
+	@Benchmark public Promise<String> completeAfterHandlers() {
+		Promise<String> promise = PromiseFactory.createPromise();
+		for (int i = 0; i < handlers; i++) {
+			promise.addCompletionHandler(handler);
+		}
+		promise.result("result");
+		return promise;
+	}
+
+	@Benchmark public Promise<String> handlersAfterComplete() {
+		Promise<String> promise = PromiseFactory.createPromise();
+		promise.result("result");
+		for (int i = 0; i < handlers; i++) {
+			promise.addCompletionHandler(handler);
+		}
+		return promise;
+	}
+
+	private static class CountingHandler extends EmptyCompletionHandler<String> {
+		private int completed;
+
+		@Override public void completed(String obj) {
+			completed++;
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.converter.StringHttpMessageConverter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Cost of decoding a response body with {@link StringHttpMessageConverter}, delivered in 8K chunks as a transport
+ * would deliver it.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StringHttpMessageConverterBenchmark {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	@Param({"US-ASCII", "ISO-8859-1", "UTF-8", "UTF-16"})
+	public String charset;
+
+	// Number of characters in the body.
+	@Param({"128", "16384", "1048576"})
+	public int size;
+
+	private final StringHttpMessageConverter converter = new StringHttpMessageConverter();
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private HttpHeaders headers;
+
+	@Setup public void setUp() {
+		// Mostly ASCII with some accented and CJK characters, as text on the wire tends to be.
+		String sample = "The quick brown fox jumps over the lazy dog. Gr\u00f6\u00dfe, \u00c4rger, na\u00efve caf\u00e9. \u65e5\u672c\u8a9e. ";
+		StringBuilder text = new StringBuilder(size);
+		while (text.length() < size) {
+			text.append(sample);
+		}
+		Charset cs = Charset.forName(charset);
+		ByteBuffer body = cs.encode(text.substring(0, size));
+		while (body.hasRemaining()) {
+			ByteBuffer chunk = body.slice();
+			chunk.limit(Math.min(CHUNK_SIZE, chunk.remaining()));
+			body.position(body.position() + chunk.remaining());
+			chunks.add(chunk);
+		}
+
+		headers = new HttpHeaders();
+		headers.setContentType(new MediaType("text", "plain", cs));
+	}
+
+	@Benchmark public String read() throws Exception {
+		Promise<String> promise = PromiseFactory.createPromise();
+		converter.read(String.class, new ChunkedInputMessage(), promise);
+		return promise.get();
+	}
+
+	private class ChunkedInputMessage implements HttpInputMessage {
+		@Override public Promise<HttpHeaders> getHeaders() {
+			Promise<HttpHeaders> promise = PromiseFactory.createPromise();
+			promise.result(headers);
+			return promise;
+		}
+
+		@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
+			for (ByteBuffer chunk : chunks) {
+				completionHandler.chunk(chunk.duplicate());
+			}
+			completionHandler.completed(null);
+		}
+
+		@Override public void resume() {
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.springframework.util.Assert;
+
+/**
+ * HTTP server on the loopback interface that answers every request with a body of 'x's, for driving the client
+ * without a real backend.
+ * <p>The payload size in bytes, the delay in milliseconds before responding and the size of the chunks to send it in
+ * (0 for a single Content-Length response) default to what the server was created with, and can be overridden per
+ * request with the {@code size}, {@code delay} and {@code chunk} query parameters. Delays are timer-driven, so a slow
+ * response does not hold up a server thread.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class StubServer {
+
+	private final int size;
+	private final int delay;
+	private final int chunkSize;
+	private final ChannelGroup channels = new DefaultChannelGroup("stub-server");
+	private final Timer timer;
+	private final ServerBootstrap bootstrap;
+	private volatile byte[] payload;
+	private Channel serverChannel;
+
+	/**
+	 * @param size      default payload size in bytes
+	 * @param delay     default delay in milliseconds before responding
+	 * @param chunkSize default chunk size in bytes, or 0 to send the payload with a Content-Length
+	 */
+	public StubServer(int size, int delay, int chunkSize) {
+		Assert.isTrue(size >= 0, "'size' must not be negative");
+		Assert.isTrue(delay >= 0, "'delay' must not be negative");
+		Assert.isTrue(chunkSize >= 0, "'chunkSize' must not be negative");
+		this.size = size;
+		this.delay = delay;
+		this.chunkSize = chunkSize;
+		this.payload = filledWithX(size);
+
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "stub-server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		timer = new HashedWheelTimer(threadFactory, 1, TimeUnit.MILLISECONDS);
+		Executor bossExecutor = Executors.newCachedThreadPool(threadFactory);
+		Executor workerExecutor = Executors.newCachedThreadPool(threadFactory);
+		bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(bossExecutor, workerExecutor));
+		bootstrap.setOption("reuseAddress", true);
+		bootstrap.setOption("child.tcpNoDelay", true);
+		final ChannelHandler handler = new RequestHandler();
+		bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override public ChannelPipeline getPipeline() throws Exception {
+				return Channels.pipeline(new HttpRequestDecoder(), new HttpResponseEncoder(), handler);
+			}
+		});
+	}
+
+	/**
+	 * Start listening on an ephemeral port.
+	 *
+	 * @return the port
+	 */
+	public int start() {
+		serverChannel = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+		channels.add(serverChannel);
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	public void stop() {
+		channels.close().awaitUninterruptibly();
+		timer.stop();
+		bootstrap.releaseExternalResources();
+	}
+
+	private void respond(Channel channel, boolean keepAlive, int size, int chunkSize) {
+		byte[] payload = this.payload;
+		if (payload.length < size) {
+			payload = filledWithX(size);
+			this.payload = payload;
+		}
+
+		HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+		response.setHeader(CONTENT_TYPE, "text/plain;charset=US-ASCII");
+		if (!keepAlive) {
+			response.setHeader(CONNECTION, HttpHeaders.Values.CLOSE);
+		}
+		ChannelFuture written;
+		if (chunkSize > 0) {
+			response.setHeader(TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+			response.setChunked(true);
+			channel.write(response);
+			for (int offset = 0; offset < size; offset += chunkSize) {
+				channel.write(new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(payload, offset, Math.min(chunkSize, size - offset))));
+			}
+			written = channel.write(HttpChunk.LAST_CHUNK);
+		} else {
+			response.setHeader(CONTENT_LENGTH, size);
+			response.setContent(ChannelBuffers.wrappedBuffer(payload, 0, size));
+			written = channel.write(response);
+		}
+		if (!keepAlive) {
+			written.addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+
+	private static byte[] filledWithX(int size) {
+		byte[] bytes = new byte[size];
+		Arrays.fill(bytes, (byte) 'x');
+		return bytes;
+	}
+
+	private static int intParameter(Map<String, List<String>> parameters, String name, int defaultValue) {
+		List<String> values = parameters.get(name);
+		return (null != values && !values.isEmpty() ? Integer.parseInt(values.get(0)) : defaultValue);
+	}
+
+	@ChannelHandler.Sharable
+	private class RequestHandler extends SimpleChannelUpstreamHandler {
+		@Override public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) {
+			channels.add(e.getChannel());
+		}
+
+		@Override public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+			if (!(e.getMessage() instanceof HttpRequest)) {
+				// Chunks of a request body, which the stub has no use for.
+				return;
+			}
+			HttpRequest request = (HttpRequest) e.getMessage();
+			Map<String, List<String>> parameters = new QueryStringDecoder(request.getUri()).getParameters();
+			final Channel channel = e.getChannel();
+			final boolean keepAlive = HttpHeaders.isKeepAlive(request);
+			final int size = intParameter(parameters, "size", StubServer.this.size);
+			final int chunkSize = intParameter(parameters, "chunk", StubServer.this.chunkSize);
+			int delay = intParameter(parameters, "delay", StubServer.this.delay);
+
+			if (delay > 0) {
+				timer.newTimeout(new TimerTask() {
+					@Override public void run(Timeout timeout) {
+						respond(channel, keepAlive, size, chunkSize);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} else {
+				respond(channel, keepAlive, size, chunkSize);
+			}
+		}
+
+		@Override public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+			e.getChannel().close();
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.benchmark;
+
+import java.io.IOException;
+
+import org.springframework.async.http.client.ClientHttpRequestFactory;
+import org.springframework.async.web.client.grizzly.GrizzlyClientHttpRequestFactory;
+import org.springframework.async.web.client.netty.NettyClientHttpRequestFactory;
+import org.springframework.async.web.client.nio.NioClientHttpRequestFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Creates the request factory for a transport by name, so benchmarks and the load test can be pointed at any of them.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+final class Transports {
+
+	// The same default all the request factories use.
+	static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 16;
+
+	private Transports() {
+	}
+
+	/**
+	 * @param transport one of "grizzly", "netty" or "nio"
+	 */
+	static ClientHttpRequestFactory createRequestFactory(String transport, int maxConnectionsPerRoute) throws IOException {
+		if ("grizzly".equals(transport)) {
+			GrizzlyClientHttpRequestFactory requestFactory = new GrizzlyClientHttpRequestFactory();
+			requestFactory.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+			return requestFactory;
+		} else if ("netty".equals(transport)) {
+			NettyClientHttpRequestFactory requestFactory = new NettyClientHttpRequestFactory();
+			requestFactory.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+			return requestFactory;
+		} else if ("nio".equals(transport)) {
+			NioClientHttpRequestFactory requestFactory = new NioClientHttpRequestFactory();
+			requestFactory.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+			return requestFactory;
+		}
+		throw new IllegalArgumentException("Unknown transport " + transport + ", expected grizzly, netty or nio");
+	}
+
+	static void destroy(ClientHttpRequestFactory requestFactory) throws Exception {
+		if (requestFactory instanceof DisposableBean) {
+			((DisposableBean) requestFactory).destroy();
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async;
+
+/**
+ * Combines two values into a single value. Used by {@link Promise#zip(Promise, BiFunction)}.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface BiFunction<T, U, R> {
+
+	/**
+	 * Apply this function to the given values.
+	 *
+	 * @param first
+	 * @param second
+	 * @return the combined value
+	 * @throws Exception which will fail the resulting {@link Promise}
+	 */
+	R apply(T first, U second) throws Exception;
+
+}
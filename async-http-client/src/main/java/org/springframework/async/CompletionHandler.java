@@ -18,7 +18,8 @@ public interface CompletionHandler<V> {
 	 * Process a chunk of data.
 	 *
 	 * @param buffer
-	 * @return true to call the completed method when finished, false to simply let this method handle the data
+	 * @return true if ready for the next chunk, false to pause delivery until the source is resumed (see {@link
+	 *         org.springframework.async.http.HttpInputMessage#resume()})
 	 */
 	boolean chunk(ByteBuffer buffer);
 
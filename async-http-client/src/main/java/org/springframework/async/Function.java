@@ -0,0 +1,35 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async;
+
+/**
+ * Transforms a value into another value. Used by the {@link Promise} composition operators.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface Function<T, R> {
+
+	/**
+	 * Apply this function to the given value.
+	 *
+	 * @param obj
+	 * @return the transformed value
+	 * @throws Exception which will fail the resulting {@link Promise}
+	 */
+	R apply(T obj) throws Exception;
+
+}
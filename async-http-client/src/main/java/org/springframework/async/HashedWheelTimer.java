@@ -0,0 +1,254 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A timer for large numbers of short-lived deadlines, most of which are cancelled before they expire. Deadlines are
+ * hashed into a wheel of buckets that a single worker thread advances once per tick, so expiry is accurate to one
+ * tick duration.
+ * <p>Scheduling pushes the {@link Timeout} onto a lock-free stack that the worker drains on its next tick, and
+ * cancelling is a single CAS; cancelled timeouts are unlinked when the worker next visits their bucket. The timer
+ * itself allocates one {@link Timeout} per scheduled task. Once no timeout is pending the worker stops ticking and
+ * parks until the next task is scheduled.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class HashedWheelTimer {
+
+	public static final long DEFAULT_TICK_DURATION = 10;
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final long tickNanos;
+	private final Timeout[] wheel;
+	private final int mask;
+	private final AtomicReference<Timeout> pending = new AtomicReference<Timeout>();
+	// Timeouts that have been scheduled and have neither expired nor been cancelled.
+	private final AtomicInteger live = new AtomicInteger();
+	private final long startTime = System.nanoTime();
+	private final Thread worker;
+
+	private volatile boolean running = true;
+	private volatile boolean idle;
+	private long tick;
+
+	public HashedWheelTimer(String name) {
+		this(name, DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+	}
+
+	/**
+	 * @param name          the name of the worker thread
+	 * @param tickDuration  the time between ticks
+	 * @param unit          the unit of {@code tickDuration}
+	 * @param ticksPerWheel the number of buckets, rounded up to a power of 2
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		Assert.isTrue(tickDuration > 0, "'tickDuration' must be greater than 0");
+		Assert.isTrue(ticksPerWheel > 0 && ticksPerWheel <= (1 << 30), "'ticksPerWheel' must be between 1 and 2^30");
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Timeout[size];
+		this.mask = size - 1;
+
+		worker = new Thread(new Runnable() {
+			@Override public void run() {
+				while (running) {
+					if (live.get() == 0) {
+						awaitWork();
+						continue;
+					}
+					waitForNextTick();
+					transferPending();
+					expire((int) (tick & mask));
+					tick++;
+				}
+			}
+		}, name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Run the given task once the given delay has elapsed, unless the returned {@link Timeout} is cancelled first. The
+	 * task runs on the timer thread and should hand off anything that may block.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		Assert.notNull(task, "Task cannot be null.");
+		Assert.state(running, "Timer has been stopped.");
+		Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0)));
+		live.incrementAndGet();
+		for (; ; ) {
+			Timeout head = pending.get();
+			timeout.next = head;
+			if (pending.compareAndSet(head, timeout)) {
+				break;
+			}
+		}
+		if (idle) {
+			LockSupport.unpark(worker);
+		}
+		return timeout;
+	}
+
+	/**
+	 * Stop the worker thread. Timeouts that have not expired yet will never run.
+	 */
+	public void stop() {
+		running = false;
+		LockSupport.unpark(worker);
+	}
+
+	/**
+	 * Park until a task is scheduled. Anything left in the wheel has been cancelled, so it is dropped rather than
+	 * swept bucket by bucket, and the tick count catches up with the clock on wake-up.
+	 */
+	private void awaitWork() {
+		Arrays.fill(wheel, null);
+		idle = true;
+		while (running && live.get() == 0) {
+			LockSupport.park(this);
+		}
+		idle = false;
+		tick = (System.nanoTime() - startTime) / tickNanos;
+	}
+
+	private void waitForNextTick() {
+		long deadline = tickNanos * (tick + 1);
+		for (; ; ) {
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos <= 0 || !running) {
+				return;
+			}
+			LockSupport.parkNanos(this, sleepNanos);
+		}
+	}
+
+	private void transferPending() {
+		Timeout timeout = pending.getAndSet(null);
+		while (null != timeout) {
+			Timeout next = timeout.next;
+			if (!timeout.isCancelled()) {
+				long expiryTick = Math.max(timeout.deadline / tickNanos, tick);
+				timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+				int idx = (int) (expiryTick & mask);
+				timeout.next = wheel[idx];
+				wheel[idx] = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	private void expire(int idx) {
+		Timeout prev = null;
+		Timeout timeout = wheel[idx];
+		while (null != timeout) {
+			Timeout next = timeout.next;
+			boolean unlink = timeout.isCancelled();
+			if (!unlink && timeout.remainingRounds <= 0) {
+				unlink = true;
+				if (timeout.markExpired()) {
+					try {
+						timeout.task.run();
+					} catch (Throwable t) {
+						log.error("Exception thrown from timer task " + timeout.task + ": " + t.getMessage(), t);
+					}
+				}
+			} else {
+				timeout.remainingRounds--;
+			}
+			if (unlink) {
+				if (null == prev) {
+					wheel[idx] = next;
+				} else {
+					prev.next = next;
+				}
+				timeout.next = null;
+			} else {
+				prev = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Handle to a scheduled task.
+	 */
+	public static final class Timeout {
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final HashedWheelTimer timer;
+		private final Runnable task;
+		private final long deadline;
+		private volatile int state = PENDING;
+		private long remainingRounds;
+		private Timeout next;
+
+		private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel this timeout so its task will never run.
+		 *
+		 * @return false if the task has already run or this timeout was already cancelled
+		 */
+		public boolean cancel() {
+			if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+				timer.live.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state == EXPIRED;
+		}
+
+		private boolean markExpired() {
+			if (STATE.compareAndSet(this, PENDING, EXPIRED)) {
+				timer.live.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+}
@@ -1,107 +1,463 @@
 package org.springframework.async;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
 
 /**
+ * A {@link Future} that notifies {@link CompletionHandler}s when it is completed.
+ * <p>All state lives in a single atomic reference which is either empty, a single handler, a stack of handlers or
+ * the immutable outcome. Registering the first handler allocates nothing and completing the promise allocates only
+ * its outcome; handlers are pushed and the whole stack is swapped for the outcome with one CAS, so a handler can never
+ * be lost between registration and completion and a losing completion can never overwrite the winning one.
+ *
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
-public abstract class Promise<V> implements Future<V> {
+public class Promise<V> implements Future<V> {
 
-	private final String handlerMutex = "handlers";
+	private static final Logger log = LoggerFactory.getLogger(Promise.class);
 
-	protected LinkedBlockingDeque<CompletionHandler<V>> completionHandlers = new LinkedBlockingDeque<CompletionHandler<V>>();
-	protected AtomicReference<Throwable> error = new AtomicReference<Throwable>();
-	protected AtomicLong timeout = new AtomicLong(30000L);
-	protected V obj;
+	@SuppressWarnings({"rawtypes"})
+	private static final AtomicReferenceFieldUpdater<Promise, Object> STATE = AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
 
-	public LinkedBlockingDeque<CompletionHandler<V>> getCompletionHandlers() {
-		return completionHandlers;
-	}
+	private static final Outcome CANCELLED = new Outcome(null, null, false);
 
-	public void setTimeout(long timeout) {
-		this.timeout.set(timeout);
-	}
+	private volatile Object state;
 
 	public Promise<V> addCompletionHandler(CompletionHandler<V> completionHandler) {
-		Future<V> future = getFuture();
-		if (future.isDone()) {
-			try {
-				completionHandler.completed(null != obj ? obj : future.get(timeout.get(), TimeUnit.MILLISECONDS));
-			} catch (InterruptedException e) {
-				completionHandler.failed(e);
-			} catch (ExecutionException e) {
-				completionHandler.failed(e);
-			} catch (TimeoutException e) {
-				completionHandler.failed(e);
+		for (; ; ) {
+			Object s = state;
+			if (s instanceof Outcome) {
+				notify((Outcome) s, completionHandler, false);
+				return this;
+			}
+			Object next;
+			if (null == s) {
+				next = completionHandler;
+			} else if (s instanceof HandlerNode) {
+				next = new HandlerNode(completionHandler, (HandlerNode) s);
+			} else {
+				next = new HandlerNode(completionHandler, new HandlerNode(s, null));
+			}
+			if (STATE.compareAndSet(this, s, next)) {
+				return this;
 			}
-		} else if (future.isCancelled()) {
-			completionHandler.cancelled(true);
-		} else if (null != error.get()) {
-			completionHandler.failed(error.get());
-		} else {
-			this.completionHandlers.add(completionHandler);
 		}
-		return this;
 	}
 
 	public void result(V obj) {
-		if (!completionHandlers.isEmpty()) {
-			List<CompletionHandler<V>> handlers = new ArrayList<CompletionHandler<V>>(completionHandlers.size());
-			completionHandlers.drainTo(handlers);
-			for (CompletionHandler<V> handler : handlers) {
+		complete(new Outcome(obj, null, false), false);
+	}
+
+	public void failure(Throwable throwable) {
+		complete(new Outcome(null, throwable, true), false);
+	}
+
+	@Override public boolean cancel(boolean mayInterruptIfRunning) {
+		return complete(CANCELLED, mayInterruptIfRunning);
+	}
+
+	@Override public boolean isCancelled() {
+		return state == CANCELLED;
+	}
+
+	@Override public boolean isDone() {
+		return state instanceof Outcome;
+	}
+
+	@Override public V get() throws InterruptedException, ExecutionException {
+		if (!isDone()) {
+			awaitLatch().await();
+		}
+		return report();
+	}
+
+	@Override public V get(long l, TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!isDone() && !awaitLatch().await(l, timeUnit)) {
+			throw new TimeoutException();
+		}
+		return report();
+	}
+
+	/**
+	 * Create a promise that is completed with the result of applying the given function to the result of this promise.
+	 * The function runs on the thread that completes this promise.
+	 */
+	public <R> Promise<R> map(Function<? super V, ? extends R> fn) {
+		return map(fn, null);
+	}
+
+	/**
+	 * Create a promise that is completed with the result of applying the given function to the result of this promise.
+	 * The function runs on the given {@link Executor}, or inline if it is {@literal null}.
+	 */
+	public <R> Promise<R> map(final Function<? super V, ? extends R> fn, Executor executor) {
+		Assert.notNull(fn, "Function cannot be null.");
+		return chain(new Stage<V, R>(executor) {
+			@Override protected void onResult(V obj) throws Exception {
+				result(fn.apply(obj));
+			}
+		});
+	}
+
+	/**
+	 * Create a promise that is completed by the promise the given function returns for the result of this promise.
+	 */
+	public <R> Promise<R> flatMap(Function<? super V, Promise<R>> fn) {
+		return flatMap(fn, null);
+	}
+
+	/**
+	 * Create a promise that is completed by the promise the given function returns for the result of this promise. The
+	 * function runs on the given {@link Executor}, or inline if it is {@literal null}.
+	 */
+	public <R> Promise<R> flatMap(Function<? super V, Promise<R>> fn, Executor executor) {
+		Assert.notNull(fn, "Function cannot be null.");
+		return chain(new FlatMapStage<V, R>(fn, executor));
+	}
+
+	/**
+	 * Create a promise that is completed with the result of this promise or, if this promise fails, with the value the
+	 * given function returns for the error.
+	 */
+	public Promise<V> recover(Function<Throwable, ? extends V> fn) {
+		return recover(fn, null);
+	}
+
+	/**
+	 * Create a promise that is completed with the result of this promise or, if this promise fails, with the value the
+	 * given function returns for the error. The function runs on the given {@link Executor}, or inline if it is
+	 * {@literal null}.
+	 */
+	public Promise<V> recover(final Function<Throwable, ? extends V> fn, Executor executor) {
+		Assert.notNull(fn, "Function cannot be null.");
+		return chain(new Stage<V, V>(executor) {
+			@Override protected void onResult(V obj) {
+				result(obj);
+			}
+
+			@Override protected void onFailure(Throwable throwable) throws Exception {
+				result(fn.apply(throwable));
+			}
+		});
+	}
+
+	/**
+	 * Create a promise that is completed with the result of combining the results of this promise and the given
+	 * promise. The resulting promise fails as soon as either of them fails.
+	 */
+	public <U, R> Promise<R> zip(Promise<U> other, BiFunction<? super V, ? super U, ? extends R> fn) {
+		return zip(other, fn, null);
+	}
+
+	/**
+	 * Create a promise that is completed with the result of combining the results of this promise and the given
+	 * promise. The function runs on the given {@link Executor}, or inline if it is {@literal null}.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public <U, R> Promise<R> zip(Promise<U> other, BiFunction<? super V, ? super U, ? extends R> fn, Executor executor) {
+		Assert.notNull(other, "Promise cannot be null.");
+		Assert.notNull(fn, "Function cannot be null.");
+		ZipStage<V, U, R> stage = new ZipStage<V, U, R>(this, other, fn, executor);
+		addCompletionHandler((CompletionHandler) stage);
+		other.addCompletionHandler((CompletionHandler) stage);
+		return stage;
+	}
+
+	/**
+	 * Create a promise that is completed with the same outcome as this promise once the given handler has been
+	 * notified of it. If the handler throws while handling a result, the resulting promise fails instead.
+	 */
+	public Promise<V> whenComplete(CompletionHandler<V> handler) {
+		return whenComplete(handler, null);
+	}
+
+	/**
+	 * Create a promise that is completed with the same outcome as this promise once the given handler has been
+	 * notified of it. The handler runs on the given {@link Executor}, or inline if it is {@literal null}.
+	 */
+	public Promise<V> whenComplete(final CompletionHandler<V> handler, Executor executor) {
+		Assert.notNull(handler, "CompletionHandler cannot be null.");
+		return chain(new Stage<V, V>(executor) {
+			@Override protected void onResult(V obj) {
 				handler.completed(obj);
+				result(obj);
 			}
-		} else {
-			this.obj = obj;
-			handleResult(obj);
-		}
+
+			@Override protected void onFailure(Throwable throwable) {
+				try {
+					handler.failed(throwable);
+				} finally {
+					failure(throwable);
+				}
+			}
+
+			@Override public void cancelled(boolean force) {
+				try {
+					handler.cancelled(force);
+				} finally {
+					super.cancelled(force);
+				}
+			}
+		});
 	}
 
-	protected abstract Future<V> getFuture();
+	private <R> Promise<R> chain(Stage<V, R> stage) {
+		addCompletionHandler(stage);
+		return stage;
+	}
 
-	protected abstract void handleResult(V obj);
+	/**
+	 * Swap the pending handlers for the given outcome and notify them. Only the first completion wins; later calls
+	 * are ignored.
+	 */
+	private boolean complete(Outcome outcome, boolean force) {
+		for (; ; ) {
+			Object s = state;
+			if (s instanceof Outcome) {
+				return false;
+			}
+			if (STATE.compareAndSet(this, s, outcome)) {
+				if (s instanceof HandlerNode) {
+					// Handlers were pushed LIFO; reverse so they are notified in registration order.
+					HandlerNode node = ((HandlerNode) s).reverse();
+					for (; null != node; node = node.next) {
+						notify(outcome, node.handler, force);
+					}
+				} else if (null != s) {
+					notify(outcome, s, force);
+				}
+				return true;
+			}
+		}
+	}
 
-	public void failure(Throwable throwable) {
-		if (!completionHandlers.isEmpty()) {
-			List<CompletionHandler<V>> handlers = new ArrayList<CompletionHandler<V>>(completionHandlers.size());
-			completionHandlers.drainTo(handlers);
-			for (CompletionHandler<V> handler : handlers) {
-				handler.failed(throwable);
+	@SuppressWarnings({"unchecked"})
+	private void notify(Outcome outcome, Object handler, boolean force) {
+		CompletionHandler<V> completionHandler = (CompletionHandler<V>) handler;
+		try {
+			if (outcome == CANCELLED) {
+				completionHandler.cancelled(force);
+			} else if (outcome.failed) {
+				completionHandler.failed(outcome.error);
+			} else {
+				completionHandler.completed((V) outcome.value);
 			}
-		} else {
-			this.error.set(throwable);
-			handleFailure(throwable);
+		} catch (Throwable t) {
+			log.error("Exception thrown from completion handler " + completionHandler + ": " + t.getMessage(), t);
+		}
+	}
+
+	@SuppressWarnings({"unchecked"})
+	private V report() throws ExecutionException {
+		Outcome outcome = (Outcome) state;
+		if (outcome == CANCELLED) {
+			throw new CancellationException();
+		} else if (outcome.failed) {
+			throw new ExecutionException(outcome.error);
 		}
+		return (V) outcome.value;
+	}
+
+	@SuppressWarnings({"unchecked"})
+	private V value() {
+		return (V) ((Outcome) state).value;
 	}
 
-	protected abstract void handleFailure(Throwable throwable);
+	private CountDownLatch awaitLatch() {
+		final CountDownLatch latch = new CountDownLatch(1);
+		addCompletionHandler(new CompletionHandler<V>() {
+			@Override public void cancelled(boolean force) {
+				latch.countDown();
+			}
+
+			@Override public boolean chunk(ByteBuffer buffer) {
+				return true;
+			}
+
+			@Override public void completed(V obj) {
+				latch.countDown();
+			}
 
-	@Override public boolean cancel(boolean b) {
-		return getFuture().cancel(b);
+			@Override public void failed(Throwable throwable) {
+				latch.countDown();
+			}
+		});
+		return latch;
 	}
 
-	@Override public boolean isCancelled() {
-		return getFuture().isCancelled();
+	private static final class Outcome {
+		private final Object value;
+		private final Throwable error;
+		private final boolean failed;
+
+		private Outcome(Object value, Throwable error, boolean failed) {
+			this.value = value;
+			this.error = error;
+			this.failed = failed;
+		}
 	}
 
-	@Override public boolean isDone() {
-		return getFuture().isDone();
+	private static final class HandlerNode {
+		private final Object handler;
+		private HandlerNode next;
+
+		private HandlerNode(Object handler, HandlerNode next) {
+			this.handler = handler;
+			this.next = next;
+		}
+
+		private HandlerNode reverse() {
+			HandlerNode prev = null;
+			HandlerNode node = this;
+			while (null != node) {
+				HandlerNode next = node.next;
+				node.next = prev;
+				prev = node;
+				node = next;
+			}
+			return prev;
+		}
 	}
 
-	@Override public V get() throws InterruptedException, ExecutionException {
-		return getFuture().get();
+	/**
+	 * A derived promise that is also the handler of its source, so each stage costs one allocation. Without an
+	 * {@link Executor} the stage runs on the thread that completes the source; otherwise the stage submits itself.
+	 */
+	private abstract static class Stage<T, R> extends Promise<R> implements CompletionHandler<T>, Runnable {
+		private final Executor executor;
+		private T input;
+		private Throwable inputError;
+
+		private Stage(Executor executor) {
+			this.executor = executor;
+		}
+
+		@Override public void cancelled(boolean force) {
+			cancel(force);
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			return true;
+		}
+
+		@Override public void completed(T obj) {
+			this.input = obj;
+			dispatch();
+		}
+
+		@Override public void failed(Throwable throwable) {
+			this.inputError = throwable;
+			dispatch();
+		}
+
+		@Override public void run() {
+			try {
+				if (null != inputError) {
+					onFailure(inputError);
+				} else {
+					onResult(input);
+				}
+			} catch (Throwable t) {
+				failure(t);
+			}
+		}
+
+		protected abstract void onResult(T obj) throws Exception;
+
+		protected void onFailure(Throwable throwable) throws Exception {
+			failure(throwable);
+		}
+
+		private void dispatch() {
+			if (null == executor) {
+				run();
+				return;
+			}
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				failure(e);
+			}
+		}
 	}
 
-	@Override public V get(long l, TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
-		return getFuture().get(l, timeUnit);
+	/**
+	 * Registers itself on the promise returned by the function as well, so flattening needs no extra handler.
+	 */
+	private static class FlatMapStage<T, R> extends Stage<T, R> {
+		private final Function<? super T, Promise<R>> fn;
+		private volatile boolean flattened;
+
+		private FlatMapStage(Function<? super T, Promise<R>> fn, Executor executor) {
+			super(executor);
+			this.fn = fn;
+		}
+
+		@SuppressWarnings({"unchecked"})
+		@Override public void completed(T obj) {
+			if (flattened) {
+				result((R) obj);
+			} else {
+				super.completed(obj);
+			}
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		@Override protected void onResult(T obj) throws Exception {
+			Promise<R> next = fn.apply(obj);
+			Assert.notNull(next, "Function returned a null Promise.");
+			flattened = true;
+			next.addCompletionHandler((CompletionHandler) this);
+		}
+	}
+
+	/**
+	 * Registered on both sources; a countdown decides which completion runs the combining function.
+	 */
+	private static class ZipStage<T, U, R> extends Stage<Object, R> {
+		@SuppressWarnings({"rawtypes"})
+		private static final AtomicIntegerFieldUpdater<ZipStage> REMAINING = AtomicIntegerFieldUpdater.newUpdater(ZipStage.class, "remaining");
+
+		private final Promise<T> first;
+		private final Promise<U> second;
+		private final BiFunction<? super T, ? super U, ? extends R> fn;
+		private volatile int remaining = 2;
+
+		private ZipStage(Promise<T> first, Promise<U> second, BiFunction<? super T, ? super U, ? extends R> fn, Executor executor) {
+			super(executor);
+			this.first = first;
+			this.second = second;
+			this.fn = fn;
+		}
+
+		@Override public void completed(Object obj) {
+			if (REMAINING.decrementAndGet(this) == 0) {
+				super.completed(null);
+			}
+		}
+
+		@Override public void failed(Throwable throwable) {
+			if (REMAINING.getAndSet(this, -1) > 0) {
+				super.failed(throwable);
+			}
+		}
+
+		@Override protected void onResult(Object ignored) throws Exception {
+			result(fn.apply(first.value(), second.value()));
+		}
 	}
 
 }
@@ -16,32 +16,84 @@
 
 package org.springframework.async;
 
-import org.springframework.async.web.client.grizzly.GrizzlyFuturePromise;
-import org.springframework.util.ClassUtils;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
 public class PromiseFactory {
 
-	private static final boolean grizzlyPresent = ClassUtils.isPresent("org.springframework.async.web.client.grizzly.GrizzlyFuturePromise", PromiseFactory.class.getClassLoader());
-
+	/**
+	 * Create a promise that fails with a {@link TimeoutException} if it has not been completed within the given number
+	 * of milliseconds.
+	 */
 	public static <T> Promise<T> createPromise(long timeout) {
-		if (grizzlyPresent) {
-			GrizzlyFuturePromise<T> promise = new GrizzlyFuturePromise<T>();
-			promise.setTimeout(timeout);
-			return promise;
+		return expireAfter(new Promise<T>(), timeout, TimeUnit.MILLISECONDS);
+	}
+
+	public static <T> Promise<T> createPromise() {
+		return new Promise<T>();
+	}
+
+	/**
+	 * Fail the given promise with a {@link TimeoutException} if it has not been completed within the given time. The
+	 * deadline is tracked by a single timer shared by all promises and is cancelled as soon as the promise completes.
+	 * Each deadline allocates the timer's {@link HashedWheelTimer.Timeout} and the handler that links it to the
+	 * promise.
+	 *
+	 * @return the given promise
+	 */
+	public static <T> Promise<T> expireAfter(Promise<T> promise, long timeout, TimeUnit unit) {
+		if (timeout > 0) {
+			Deadline<T> deadline = new Deadline<T>(promise, unit.toMillis(timeout));
+			deadline.timeout = TimerHolder.TIMER.schedule(deadline, timeout, unit);
+			promise.addCompletionHandler(deadline);
 		}
+		return promise;
+	}
 
-		throw new IllegalStateException("No Promise<T> implementation could be found.");
+	/**
+	 * Return the timer that tracks promise deadlines.
+	 */
+	public static HashedWheelTimer getTimer() {
+		return TimerHolder.TIMER;
 	}
 
-	public static <T> Promise<T> createPromise() {
-		if (grizzlyPresent) {
-			return new GrizzlyFuturePromise<T>();
+	private static class TimerHolder {
+		private static final HashedWheelTimer TIMER = new HashedWheelTimer("promise-deadline-timer");
+	}
+
+	private static class Deadline<T> implements Runnable, CompletionHandler<T> {
+		private final Promise<T> promise;
+		private final long millis;
+		private volatile HashedWheelTimer.Timeout timeout;
+
+		private Deadline(Promise<T> promise, long millis) {
+			this.promise = promise;
+			this.millis = millis;
+		}
+
+		@Override public void run() {
+			promise.failure(new TimeoutException("Promise was not completed within " + millis + "ms"));
+		}
+
+		@Override public void cancelled(boolean force) {
+			timeout.cancel();
 		}
 
-		throw new IllegalStateException("No Promise<T> implementation could be found.");
+		@Override public boolean chunk(ByteBuffer buffer) {
+			return true;
+		}
+
+		@Override public void completed(T obj) {
+			timeout.cancel();
+		}
+
+		@Override public void failed(Throwable throwable) {
+			timeout.cancel();
+		}
 	}
 
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.springframework.util.Assert;
+
+/**
+ * Combinators that aggregate many {@link Promise}s into one. Each aggregate registers itself as the only handler on
+ * its inputs and counts settled inputs down with a single atomic field, so fanning out to hundreds of requests costs
+ * one object per aggregate rather than one per input.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public abstract class Promises {
+
+	public static enum Option {
+		/**
+		 * Fail the aggregate as soon as any input fails instead of waiting for all inputs to settle.
+		 */
+		FAIL_FAST,
+		/**
+		 * Cancel inputs that are still pending once the aggregate has completed. Cancelling a promise returned by the
+		 * {@code AsyncRestTemplate} closes its response and aborts the underlying connection.
+		 */
+		CANCEL_LOSERS
+	}
+
+	/**
+	 * Create a promise for the results of all the given promises, in iteration order. It fails with the first error
+	 * once all inputs have settled, or immediately with {@link Option#FAIL_FAST}.
+	 */
+	public static <T> Promise<List<T>> allOf(Collection<? extends Promise<? extends T>> promises, Option... options) {
+		Assert.notNull(promises, "Promises cannot be null.");
+		return new AllOf<T>(promises, options).register();
+	}
+
+	/**
+	 * Create a promise for the first successful result of the given promises. It fails with the first error once all
+	 * inputs have failed, or immediately with {@link Option#FAIL_FAST}.
+	 */
+	public static <T> Promise<T> anyOf(Collection<? extends Promise<? extends T>> promises, Option... options) {
+		Assert.notEmpty(promises, "Promises cannot be empty.");
+		return new AnyOf<T>(promises, options).register();
+	}
+
+	/**
+	 * Create a promise for the first {@code n} successful results of the given promises, in the order they completed.
+	 * It fails with the first error if all inputs settle with fewer than {@code n} successes, or immediately with
+	 * {@link Option#FAIL_FAST}.
+	 */
+	public static <T> Promise<List<T>> firstN(Collection<? extends Promise<? extends T>> promises, int n, Option... options) {
+		Assert.notNull(promises, "Promises cannot be null.");
+		Assert.isTrue(n >= 0 && n <= promises.size(), "'n' must be between 0 and the number of promises.");
+		return new FirstN<T>(promises, n, options).register();
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private abstract static class Aggregate<T, R> extends Promise<R> implements CompletionHandler<Object> {
+		private static final AtomicIntegerFieldUpdater<Aggregate> SETTLED = AtomicIntegerFieldUpdater.newUpdater(Aggregate.class, "settled");
+		private static final AtomicReferenceFieldUpdater<Aggregate, Throwable> FIRST_ERROR = AtomicReferenceFieldUpdater.newUpdater(Aggregate.class, Throwable.class, "firstError");
+
+		protected final Promise<? extends T>[] inputs;
+		private final boolean failFast;
+		private final boolean cancelLosers;
+		private volatile int settled;
+		private volatile Throwable firstError;
+
+		protected Aggregate(Collection<? extends Promise<? extends T>> promises, Option... options) {
+			this.inputs = promises.toArray(new Promise[promises.size()]);
+			this.settled = inputs.length;
+			boolean failFast = false;
+			boolean cancelLosers = false;
+			for (Option option : options) {
+				failFast |= (Option.FAIL_FAST == option);
+				cancelLosers |= (Option.CANCEL_LOSERS == option);
+			}
+			this.failFast = failFast;
+			this.cancelLosers = cancelLosers;
+		}
+
+		protected Promise<R> register() {
+			if (inputs.length == 0) {
+				onSettled(null);
+				return this;
+			}
+			for (Promise<? extends T> input : inputs) {
+				Assert.notNull(input, "Promises cannot contain null.");
+				((Promise) input).addCompletionHandler(this);
+			}
+			return this;
+		}
+
+		@Override public void cancelled(boolean force) {
+			failed(new CancellationException());
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			return true;
+		}
+
+		@Override public void completed(Object obj) {
+			if (!isDone()) {
+				onSuccess((T) obj);
+			}
+			settle();
+		}
+
+		@Override public void failed(Throwable throwable) {
+			FIRST_ERROR.compareAndSet(this, null, throwable);
+			if (failFast) {
+				fail(throwable);
+			}
+			settle();
+		}
+
+		@Override public boolean cancel(boolean mayInterruptIfRunning) {
+			if (super.cancel(mayInterruptIfRunning)) {
+				cancelPending(mayInterruptIfRunning);
+				return true;
+			}
+			return false;
+		}
+
+		protected void onSuccess(T obj) {
+		}
+
+		protected abstract void onSettled(Throwable firstError);
+
+		protected void succeed(R result) {
+			if (!isDone()) {
+				result(result);
+				if (cancelLosers) {
+					cancelPending(true);
+				}
+			}
+		}
+
+		protected void fail(Throwable throwable) {
+			if (!isDone()) {
+				failure(throwable);
+				if (cancelLosers) {
+					cancelPending(true);
+				}
+			}
+		}
+
+		private void settle() {
+			if (SETTLED.decrementAndGet(this) == 0 && !isDone()) {
+				onSettled(firstError);
+			}
+		}
+
+		private void cancelPending(boolean mayInterruptIfRunning) {
+			for (Promise<? extends T> input : inputs) {
+				if (!input.isDone()) {
+					input.cancel(mayInterruptIfRunning);
+				}
+			}
+		}
+	}
+
+	private static class AllOf<T> extends Aggregate<T, List<T>> {
+		private AllOf(Collection<? extends Promise<? extends T>> promises, Option... options) {
+			super(promises, options);
+		}
+
+		@Override protected void onSettled(Throwable firstError) {
+			if (null != firstError) {
+				fail(firstError);
+				return;
+			}
+			List<T> results = new ArrayList<T>(inputs.length);
+			try {
+				for (Promise<? extends T> input : inputs) {
+					// Every input is done at this point, so this never blocks.
+					results.add(input.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail(e);
+				return;
+			} catch (ExecutionException e) {
+				fail(e.getCause());
+				return;
+			}
+			succeed(results);
+		}
+	}
+
+	private static class AnyOf<T> extends Aggregate<T, T> {
+		private AnyOf(Collection<? extends Promise<? extends T>> promises, Option... options) {
+			super(promises, options);
+		}
+
+		@Override protected void onSuccess(T obj) {
+			succeed(obj);
+		}
+
+		@Override protected void onSettled(Throwable firstError) {
+			fail(firstError);
+		}
+	}
+
+	@SuppressWarnings({"rawtypes"})
+	private static class FirstN<T> extends Aggregate<T, List<T>> {
+		private static final AtomicIntegerFieldUpdater<FirstN> CLAIMED = AtomicIntegerFieldUpdater.newUpdater(FirstN.class, "claimed");
+		private static final AtomicIntegerFieldUpdater<FirstN> FILLED = AtomicIntegerFieldUpdater.newUpdater(FirstN.class, "filled");
+
+		private final int n;
+		private final AtomicReferenceArray<T> results;
+		private volatile int claimed;
+		private volatile int filled;
+
+		private FirstN(Collection<? extends Promise<? extends T>> promises, int n, Option... options) {
+			super(promises, options);
+			this.n = n;
+			this.results = new AtomicReferenceArray<T>(n);
+		}
+
+		@Override protected Promise<List<T>> register() {
+			if (n == 0) {
+				succeed(Collections.<T>emptyList());
+				return this;
+			}
+			return super.register();
+		}
+
+		@Override protected void onSuccess(T obj) {
+			int slot = CLAIMED.getAndIncrement(this);
+			if (slot < n) {
+				results.set(slot, obj);
+				if (FILLED.incrementAndGet(this) == n) {
+					List<T> list = new ArrayList<T>(n);
+					for (int i = 0; i < n; i++) {
+						list.add(results.get(i));
+					}
+					succeed(list);
+				}
+			}
+		}
+
+		@Override protected void onSettled(Throwable firstError) {
+			fail(null != firstError ? firstError : new IllegalStateException("Fewer than " + n + " promises succeeded."));
+		}
+	}
+
+}
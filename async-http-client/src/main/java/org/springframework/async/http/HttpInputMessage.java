@@ -29,4 +29,10 @@ public interface HttpInputMessage {
 
 	<V> void setCompletionHandler(CompletionHandler<V> completionHandler);
 
+	/**
+	 * Resume delivering content to the completion handler after it paused delivery by returning false from {@link
+	 * CompletionHandler#chunk(java.nio.ByteBuffer)}.
+	 */
+	void resume();
+
 }
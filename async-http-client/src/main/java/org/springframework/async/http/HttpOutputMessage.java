@@ -16,6 +16,8 @@
 
 package org.springframework.async.http;
 
+import java.nio.ByteBuffer;
+
 import org.springframework.async.CompletionHandler;
 import org.springframework.async.Promise;
 import org.springframework.http.HttpHeaders;
@@ -29,4 +31,21 @@ public interface HttpOutputMessage {
 
 	<V> void setCompletionHandler(CompletionHandler<V> completionHandler);
 
+	/**
+	 * Take a buffer to encode the body into from the pool the message is written from. Pass it to {@link
+	 * #setBody(ByteBuffer)} once filled, so that it goes back to the pool when it has been written.
+	 *
+	 * @param capacity the number of bytes the body needs
+	 * @return a buffer positioned at 0 and limited to the given capacity
+	 */
+	ByteBuffer allocateBody(int capacity);
+
+	/**
+	 * Set the body to write after the headers. If no Content-Length has been set, it is set to the number of bytes
+	 * remaining in the buffer when the message is written.
+	 *
+	 * @param body the body, positioned at its first byte and limited to its last; must not be modified afterwards
+	 */
+	void setBody(ByteBuffer body);
+
 }
@@ -17,6 +17,7 @@
 package org.springframework.async.http.client;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.springframework.async.CompletionHandler;
 import org.springframework.http.HttpHeaders;
@@ -27,21 +28,86 @@ import org.springframework.util.Assert;
  */
 public abstract class AbstractClientHttpRequest implements ClientHttpRequest {
 
+	private static final DirectBufferPool BODY_BUFFERS = new DirectBufferPool();
+
 	protected boolean executed = false;
 
 	protected final HttpHeaders headers = new HttpHeaders();
+	private ByteBuffer body;
+	private ByteBuffer pooledBody;
 	private CompletionHandler<?> completionHandler;
+	private ClientHttpRequestListener requestListener;
+	private volatile long executedAt;
 
 	public final HttpHeaders getHeaders() {
 		return headers;
 	}
 
+	/**
+	 * Set the listener to notify as this request progresses. Must be called before the request is executed.
+	 */
+	public void setRequestListener(ClientHttpRequestListener requestListener) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * @return the listener to notify as this request progresses, or null if there is none
+	 */
+	public ClientHttpRequestListener getRequestListener() {
+		return requestListener;
+	}
+
+	/**
+	 * @return the {@link System#nanoTime()} at which this request was executed, or 0 if it has not been executed or has
+	 *         no listener, in which case the time is not taken
+	 */
+	public long getExecutedAt() {
+		return executedAt;
+	}
+
 	@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
 		this.completionHandler = completionHandler; 
 	}
 
+	@Override public ByteBuffer allocateBody(int capacity) {
+		if (null != pooledBody) {
+			BODY_BUFFERS.release(pooledBody);
+		}
+		pooledBody = BODY_BUFFERS.acquire(capacity);
+		return pooledBody;
+	}
+
+	@Override public void setBody(ByteBuffer body) {
+		this.body = body;
+	}
+
+	/**
+	 * @return the body to write after the headers, or null if there is none
+	 */
+	protected ByteBuffer getBody() {
+		return body;
+	}
+
+	/**
+	 * Give the body's buffer back to the pool once it has been written, or will not be. Must be called once the
+	 * transport is done with the body, and the body must not be touched afterwards.
+	 */
+	protected void releaseBody() {
+		body = null;
+		if (null != pooledBody) {
+			BODY_BUFFERS.release(pooledBody);
+			pooledBody = null;
+		}
+	}
+
 	public final ClientHttpResponse execute() throws IOException {
 		checkExecuted();
+		if (null != body && headers.getContentLength() == -1) {
+			headers.setContentLength(body.remaining());
+		}
+		if (null != requestListener) {
+			executedAt = System.nanoTime();
+		}
 		ClientHttpResponse result = executeInternal(this.headers);
 		this.executed = true;
 		return result;
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+
+/**
+ * Base class for responses whose content is read by a transport and handed to a {@link CompletionHandler}.
+ * <p>Content is handed to the handler as it is read. Until a handler has been set, or while the handler has paused
+ * delivery by returning false from {@link CompletionHandler#chunk(java.nio.ByteBuffer)}, content is buffered instead.
+ * Once more than the high watermark of bytes is buffered, {@link #offer(Object)} returns false to tell the transport to
+ * stop reading, and {@link #resumeReading()} is called once the buffer has drained to the low watermark again, so a
+ * slow consumer holds back the server rather than filling up memory.
+ * <p>No locks are taken. The transport's read thread is the only producer of content. Whichever thread finds there is
+ * delivery work to do becomes the only consumer until the work runs out, so the handler is never called concurrently
+ * and chunks reach it in order. When a handler is installed and nothing is buffered, the read thread hands each chunk
+ * straight to it without queueing.
+ * <p>The response also reports the progress of the whole exchange to the request's {@link ClientHttpRequestListener},
+ * if it has one. Transports report the events that happen before any content arrives; content, completion and
+ * failure are reported here. Without a listener none of this costs more than a null check.
+ *
+ * @param <C> the type of content chunk the transport produces
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public abstract class AbstractClientHttpResponse<C> implements ClientHttpResponse {
+
+	public static final int DEFAULT_LOW_WATERMARK = 64 * 1024;
+	public static final int DEFAULT_HIGH_WATERMARK = 256 * 1024;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<AbstractClientHttpResponse> WIP = AtomicIntegerFieldUpdater.newUpdater(AbstractClientHttpResponse.class, "wip");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<AbstractClientHttpResponse> READ_SUSPENDED = AtomicIntegerFieldUpdater.newUpdater(AbstractClientHttpResponse.class, "readSuspended");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<AbstractClientHttpResponse> LISTENER_NOTIFIED = AtomicIntegerFieldUpdater.newUpdater(AbstractClientHttpResponse.class, "listenerNotified");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<AbstractClientHttpResponse> BUFFERED_BYTES = AtomicLongFieldUpdater.newUpdater(AbstractClientHttpResponse.class, "bufferedBytes");
+
+	protected final Promise<HttpHeaders> headers = PromiseFactory.createPromise();
+	protected final Promise<HttpStatus> status = PromiseFactory.createPromise();
+	protected final Promise<String> statusText = PromiseFactory.createPromise();
+
+	private final ChunkQueue<C> chunks = new ChunkQueue<C>();
+	private final int lowWatermark;
+	private final int highWatermark;
+
+	private volatile CompletionHandler<?> completionHandler;
+	private volatile boolean complete = false;
+	private volatile Throwable failure;
+	private volatile boolean discarded = false;
+	private volatile boolean resumeRequested = false;
+	private volatile int wip;
+	private volatile int readSuspended;
+	private volatile long bufferedBytes;
+	private volatile int listenerNotified;
+	private HttpRequest request;
+	private ClientHttpRequestListener requestListener;
+	private volatile int statusCode;
+	// Only touched by the thread currently delivering.
+	private boolean paused = false;
+	private boolean notified = false;
+
+	/**
+	 * @param lowWatermark  number of buffered bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered bytes at or above which reading is suspended
+	 */
+	protected AbstractClientHttpResponse(int lowWatermark, int highWatermark) {
+		Assert.isTrue(lowWatermark >= 0, "'lowWatermark' cannot be negative");
+		Assert.isTrue(highWatermark > lowWatermark, "'highWatermark' must be greater than 'lowWatermark'");
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+	}
+
+	/**
+	 * Called once the last content chunk has been offered to this response. If reading was suspended while the last of
+	 * the content was being read, it is resumed straight away, as the transport may go on to read another response.
+	 */
+	public void complete() {
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener && LISTENER_NOTIFIED.compareAndSet(this, 0, 1)) {
+			listener.completed(request, statusCode, System.nanoTime());
+		}
+		complete = true;
+		if (READ_SUSPENDED.compareAndSet(this, 1, 0)) {
+			resumeReading();
+		}
+		drain();
+	}
+
+	/**
+	 * Called if the response could not be read to completion.
+	 *
+	 * @param throwable the cause of the failure
+	 */
+	public void failure(Throwable throwable) {
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener && LISTENER_NOTIFIED.compareAndSet(this, 0, 1)) {
+			listener.failed(request, throwable, System.nanoTime());
+		}
+		if (!headers.isDone()) {
+			headers.failure(throwable);
+			status.failure(throwable);
+			statusText.failure(throwable);
+		}
+		failure = throwable;
+		complete = true;
+		discard();
+	}
+
+	/**
+	 * Set the listener to notify as the exchange progresses. Must be called before the request is sent.
+	 *
+	 * @param request         the request this is the response to
+	 * @param requestListener the listener to notify, or null for none
+	 */
+	public void setRequestListener(HttpRequest request, ClientHttpRequestListener requestListener) {
+		this.request = request;
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * Called by the transport when the request starts waiting for a connection.
+	 */
+	public void queued() {
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener) {
+			listener.queued(request, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Called by the transport when the request has been given a connection.
+	 *
+	 * @param reused whether the connection has carried earlier requests
+	 */
+	public void connectionAcquired(boolean reused) {
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener) {
+			listener.connectionAcquired(request, reused, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Called by the transport once the request has been written to its connection.
+	 *
+	 * @param bytes the number of bytes written
+	 */
+	public void requestWritten(int bytes) {
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener) {
+			listener.requestWritten(request, bytes, System.nanoTime());
+		}
+	}
+
+	@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
+		this.completionHandler = completionHandler;
+		drain();
+	}
+
+	/**
+	 * Resume delivery if the handler has paused it. Calling this while delivery is not paused has no effect, except
+	 * from within the handler's {@code chunk} callback or while it is running, where it cancels the pause the
+	 * callback is about to return.
+	 */
+	@Override public void resume() {
+		resumeRequested = true;
+		drain();
+	}
+
+	@Override public Promise<HttpHeaders> getHeaders() {
+		return headers;
+	}
+
+	@Override public Promise<HttpStatus> getStatusCode() throws IOException {
+		return status;
+	}
+
+	@Override public Promise<String> getStatusText() throws IOException {
+		return statusText;
+	}
+
+	/**
+	 * @return true once the last chunk has been read or the response has failed
+	 */
+	protected boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * To be called by subclasses once the status line and headers have been read.
+	 */
+	protected final void headersReceived(int statusCode) {
+		this.statusCode = statusCode;
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener) {
+			listener.headersReceived(request, statusCode, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Add a chunk of content read by the transport. Must only be called from the transport's read thread.
+	 *
+	 * @param chunk the content
+	 * @return false if the high watermark has been reached and the transport should suspend reading
+	 */
+	protected final boolean offer(C chunk) {
+		int size = sizeOf(chunk);
+		if (size == 0) {
+			return true;
+		}
+		ClientHttpRequestListener listener = requestListener;
+		if (null != listener) {
+			listener.contentReceived(request, size, System.nanoTime());
+		}
+		if (WIP.compareAndSet(this, 0, 1)) {
+			CompletionHandler<?> handler = completionHandler;
+			if (null != handler && !paused && !discarded && null == failure && chunks.isEmpty()) {
+				// Nothing is queued ahead of this chunk and nobody else is delivering, so skip the queue.
+				resumeRequested = false;
+				paused = !deliver(handler, chunk);
+				drainLoop(1);
+				return true;
+			}
+			enqueue(retain(chunk), size);
+			drainLoop(1);
+		} else {
+			enqueue(retain(chunk), size);
+			drain();
+		}
+		return bufferedBytes < highWatermark;
+	}
+
+	/**
+	 * @return true if enough content is buffered that the transport should suspend reading
+	 */
+	protected final boolean isReadSuspendable() {
+		return !discarded && bufferedBytes > lowWatermark;
+	}
+
+	/**
+	 * Record that the transport has suspended reading, so that {@link #resumeReading()} is called once the buffer has
+	 * drained. Must only be called from the transport's read thread.
+	 *
+	 * @return false if the buffer drained while reading was being suspended, in which case {@link #resumeReading()} will
+	 *         not be called and the transport must resume reading itself
+	 */
+	protected final boolean markReadSuspended() {
+		readSuspended = 1;
+		// The consumer may have drained the buffer before it could see the flag, so check again.
+		return !(bufferedBytes <= lowWatermark && READ_SUSPENDED.compareAndSet(this, 1, 0));
+	}
+
+	/**
+	 * Drop whatever is buffered and resume a suspended read, so that the transport can run the rest of the response to
+	 * completion or notice that its connection has been closed.
+	 */
+	protected final void discard() {
+		discarded = true;
+		if (READ_SUSPENDED.compareAndSet(this, 1, 0)) {
+			resumeReading();
+		}
+		drain();
+	}
+
+	/**
+	 * Called before a chunk is queued rather than delivered straight away. Transports that reuse the buffer they read
+	 * into must return a copy.
+	 *
+	 * @return the chunk to queue
+	 */
+	protected C retain(C chunk) {
+		return chunk;
+	}
+
+	/**
+	 * @return the number of bytes in the given chunk
+	 */
+	protected abstract int sizeOf(C chunk);
+
+	/**
+	 * Hand a chunk of content to the handler.
+	 *
+	 * @return false if the handler asked for delivery to pause
+	 */
+	protected abstract boolean deliver(CompletionHandler<?> handler, C chunk);
+
+	/**
+	 * Resume reading after the transport suspended it because the high watermark was reached. Called from whichever
+	 * thread drained the buffer.
+	 */
+	protected abstract void resumeReading();
+
+	private void enqueue(C chunk, int size) {
+		BUFFERED_BYTES.addAndGet(this, size);
+		chunks.offer(chunk);
+	}
+
+	/**
+	 * Deliver buffered content, unless another thread is already doing so, in which case it goes round once more
+	 * before it stops.
+	 */
+	private void drain() {
+		if (WIP.getAndIncrement(this) == 0) {
+			drainLoop(1);
+		}
+	}
+
+	private void drainLoop(int missed) {
+		for (; ; ) {
+			CompletionHandler<?> handler = completionHandler;
+			if (discarded) {
+				C chunk;
+				while (null != (chunk = chunks.poll())) {
+					BUFFERED_BYTES.addAndGet(this, -sizeOf(chunk));
+				}
+			}
+			if (null != handler && !notified) {
+				if (paused && resumeRequested) {
+					resumeRequested = false;
+					paused = false;
+				}
+				C chunk;
+				while (!paused && null != (chunk = chunks.poll())) {
+					BUFFERED_BYTES.addAndGet(this, -sizeOf(chunk));
+					// A resume() that arrived while nothing was paused must not cancel the pause this chunk may cause.
+					// One that arrives while the handler is still handling the chunk does apply to it.
+					resumeRequested = false;
+					paused = !deliver(handler, chunk);
+				}
+				Throwable failure = this.failure;
+				if (null != failure) {
+					notified = true;
+					handler.failed(failure);
+				} else if (complete && !paused && chunks.isEmpty()) {
+					notified = true;
+					handler.completed(null);
+				}
+			}
+			if (readSuspended == 1 && bufferedBytes <= lowWatermark && READ_SUSPENDED.compareAndSet(this, 1, 0)) {
+				// Further content from the resumed read is queued and delivered on the next time round.
+				resumeReading();
+			}
+
+			missed = WIP.addAndGet(this, -missed);
+			if (missed == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Unbounded single-producer/single-consumer queue of content chunks. The transport's read thread offers and the
+	 * thread currently delivering polls; neither ever waits for the other.
+	 */
+	private static final class ChunkQueue<C> {
+
+		private Node<C> head = new Node<C>(null);
+		private Node<C> tail = head;
+
+		void offer(C chunk) {
+			Node<C> node = new Node<C>(chunk);
+			tail.next = node;
+			tail = node;
+		}
+
+		C poll() {
+			Node<C> next = head.next;
+			if (null == next) {
+				return null;
+			}
+			C chunk = next.chunk;
+			next.chunk = null;
+			head = next;
+			return chunk;
+		}
+
+		boolean isEmpty() {
+			return null == head.next;
+		}
+
+		private static final class Node<C> {
+			private C chunk;
+			private volatile Node<C> next;
+
+			private Node(C chunk) {
+				this.chunk = chunk;
+			}
+		}
+
+	}
+
+}
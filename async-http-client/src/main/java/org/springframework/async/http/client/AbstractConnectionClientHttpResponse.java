@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+/**
+ * Base class for responses read from a pooled connection. Closing the response before it has been read to completion
+ * closes the connection, as HTTP/1.1 offers no way to skip the rest of a response that is already in flight.
+ * <p>Transports that can stop selecting a connection for reads implement {@link #setReadable(Object, boolean)} and
+ * call {@link #suspendReading()} when {@link #offer(Object)} returns false. Transports that suspend reading some
+ * other way override {@link #resumeReading()} instead.
+ *
+ * @param <C> the type of content chunk the transport produces
+ * @param <K> the type of connection the response is read from
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public abstract class AbstractConnectionClientHttpResponse<C, K> extends AbstractClientHttpResponse<C> {
+
+	private volatile K connection;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param lowWatermark  number of buffered bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered bytes at or above which reading is suspended
+	 */
+	protected AbstractConnectionClientHttpResponse(int lowWatermark, int highWatermark) {
+		super(lowWatermark, highWatermark);
+	}
+
+	/**
+	 * Called once the request has been given a connection to be written to.
+	 *
+	 * @param connection the connection this response will be read from
+	 * @return false if this response has already been closed and the request should not be written
+	 */
+	public boolean setConnection(K connection) {
+		this.connection = connection;
+		return !closed;
+	}
+
+	/**
+	 * Abort this response if it has not been read to completion yet by closing its connection.
+	 */
+	@Override public void close() {
+		closed = true;
+		K connection = this.connection;
+		if (null == connection || isComplete()) {
+			return;
+		}
+		closeConnection(connection);
+		discard();
+	}
+
+	/**
+	 * @return the connection this response is read from, or null if it has not been given one yet
+	 */
+	protected K getConnection() {
+		return connection;
+	}
+
+	/**
+	 * @return true if this response has been closed
+	 */
+	protected boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Stop reading from the connection until enough buffered content has been consumed to get back down to the low
+	 * watermark. Must only be called from the connection's read thread.
+	 */
+	protected final void suspendReading() {
+		if (closed || !isReadSuspendable()) {
+			return;
+		}
+		K connection = this.connection;
+		setReadable(connection, false);
+		if (!markReadSuspended()) {
+			// Already drained while we were suspending.
+			setReadable(connection, true);
+		}
+	}
+
+	@Override protected void resumeReading() {
+		setReadable(connection, true);
+	}
+
+	/**
+	 * Start or stop selecting the connection for reads. Only called by transports that {@link #suspendReading()
+	 * suspend reading} this way.
+	 */
+	protected void setReadable(K connection, boolean readable) {
+		throw new UnsupportedOperationException("Reading is not suspended by making the connection unreadable");
+	}
+
+	protected abstract void closeConnection(K connection);
+
+}
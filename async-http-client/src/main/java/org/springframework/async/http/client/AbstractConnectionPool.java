@@ -0,0 +1,376 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.EmptyCompletionHandler;
+
+/**
+ * Pool of keep-alive connections to a single route (scheme, host and port). Idle connections are handed out
+ * most-recently-used first, new connections are opened until {@code maxConnections} is reached and any further
+ * requests are queued until a connection is released or closed.
+ * <p>If {@code pipelineDepth} is greater than 1, requests that are safe to pipeline may also be given a connection
+ * that is still waiting for up to {@code pipelineDepth - 1} earlier pipelined responses.
+ * <p>Transports only open, close and check connections; everything else is done here.
+ *
+ * @param <K> the type of connection the transport opens
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public abstract class AbstractConnectionPool<K> {
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final String route;
+	private final int maxConnections;
+	private final long idleTimeout;
+	private final int pipelineDepth;
+
+	private final AtomicInteger openConnections = new AtomicInteger();
+	// Number of responses each open connection still has to deliver.
+	private final ConcurrentMap<K, AtomicInteger> inFlight = new ConcurrentHashMap<K, AtomicInteger>();
+	private final LinkedBlockingDeque<IdleConnection<K>> idleConnections = new LinkedBlockingDeque<IdleConnection<K>>();
+	private final LinkedBlockingQueue<K> pipelinedConnections = new LinkedBlockingQueue<K>();
+	private final LinkedBlockingQueue<PendingAcquire<K>> waiters = new LinkedBlockingQueue<PendingAcquire<K>>();
+
+	/**
+	 * @param pipelineDepth maximum number of requests written to one connection before their responses have been read,
+	 *                      1 for no pipelining
+	 */
+	protected AbstractConnectionPool(String route, int maxConnections, long idleTimeout, int pipelineDepth) {
+		this.route = route;
+		this.maxConnections = maxConnections;
+		this.idleTimeout = idleTimeout;
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	/**
+	 * @return the route the given URI is on, as the scheme, lower-cased host and port, as in {@code http://localhost:80}
+	 */
+	public static String routeOf(URI uri) {
+		String scheme = (null != uri.getScheme() ? uri.getScheme().toLowerCase(Locale.ENGLISH) : "http");
+		String host = (null != uri.getHost() ? uri.getHost().toLowerCase(Locale.ENGLISH) : "");
+		int port = uri.getPort();
+		if (port < 0) {
+			port = ("https".equals(scheme) ? 443 : 80);
+		}
+		return scheme + "://" + host + ":" + port;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+
+	public int getIdleConnections() {
+		return idleConnections.size();
+	}
+
+	public int getPendingRequests() {
+		return waiters.size();
+	}
+
+	/**
+	 * Obtain a connection to this route for a request that may not be pipelined.
+	 *
+	 * @param handler the handler to pass the connection to
+	 * @see #acquire(CompletionHandler, boolean)
+	 */
+	public void acquire(CompletionHandler<K> handler) {
+		acquire(handler, false);
+	}
+
+	/**
+	 * Obtain a connection to this route. The handler is invoked immediately if an idle connection is available,
+	 * once a new connection has been established if the pool is below its limit, or otherwise as soon as another
+	 * request releases its connection. Pipelined requests are first offered to connections already carrying
+	 * pipelined requests that have not reached the pipeline depth.
+	 *
+	 * @param handler   the handler to pass the connection to
+	 * @param pipelined whether the request may be pipelined behind other requests
+	 */
+	public void acquire(CompletionHandler<K> handler, boolean pipelined) {
+		pipelined = pipelined && pipelineDepth > 1;
+		K connection = (pipelined ? pollPipelined() : null);
+		if (null != connection) {
+			handler.completed(connection);
+			return;
+		}
+		connection = pollIdle();
+		if (null != connection) {
+			lease(connection, handler, pipelined);
+			return;
+		}
+		if (reserve()) {
+			connect(handler, pipelined);
+			return;
+		}
+		waiters.add(new PendingAcquire<K>(handler, pipelined));
+		// A connection may have been released while we were queueing.
+		dispatchIdle();
+	}
+
+	/**
+	 * Called once a response has been fully read, or once a request that was given a connection will not be written
+	 * to it after all. The connection goes back to the pool once no more pipelined responses are outstanding on it.
+	 *
+	 * @param connection the connection to return
+	 * @param keepAlive  whether the server allows the connection to be reused
+	 */
+	public void release(K connection, boolean keepAlive) {
+		AtomicInteger responses = inFlight.get(connection);
+		if (null != responses && responses.decrementAndGet() > 0) {
+			if (!keepAlive) {
+				pipelinedConnections.remove(connection);
+			} else {
+				dispatchPipelined();
+			}
+			return;
+		}
+		if (pipelineDepth > 1) {
+			pipelinedConnections.remove(connection);
+		}
+		if (!keepAlive || !isOpen(connection)) {
+			// The connection may have closed before it was counted, in which case nothing else forgets it.
+			inFlight.remove(connection);
+			close(connection);
+			return;
+		}
+		idle(connection);
+	}
+
+	/**
+	 * Close connections that have been idle for longer than the configured timeout.
+	 */
+	public void evictIdleConnections() {
+		long expiry = System.currentTimeMillis() - idleTimeout;
+		Iterator<IdleConnection<K>> iter = idleConnections.iterator();
+		while (iter.hasNext()) {
+			IdleConnection<K> idle = iter.next();
+			if (idle.since < expiry && idleConnections.remove(idle)) {
+				if (log.isDebugEnabled()) {
+					log.debug("Evicting idle connection to " + route + ": " + idle.connection);
+				}
+				close(idle.connection);
+			}
+		}
+	}
+
+	/**
+	 * Close all idle connections and fail any queued requests.
+	 */
+	public void shutdown() {
+		IdleConnection<K> idle;
+		while (null != (idle = idleConnections.poll())) {
+			close(idle.connection);
+		}
+		PendingAcquire<K> waiter;
+		while (null != (waiter = waiters.poll())) {
+			waiter.handler.failed(new IOException("Connection pool for " + route + " has been shut down"));
+		}
+	}
+
+	/**
+	 * To be called by the transport once a connection opened by {@link #connect(CompletionHandler)} has been closed,
+	 * whichever side closed it.
+	 */
+	protected void closed(K connection) {
+		removeIdle(connection);
+		pipelinedConnections.remove(connection);
+		inFlight.remove(connection);
+		openConnections.decrementAndGet();
+		if (log.isDebugEnabled()) {
+			log.debug("Connection to " + route + " closed: " + connection);
+		}
+		connectWaiter();
+	}
+
+	/**
+	 * Open a new connection to this route. The transport must arrange for {@link #closed(Object)} to be called once the
+	 * connection is closed.
+	 *
+	 * @param handler the handler to pass the connection, or the reason it could not be opened, to
+	 */
+	protected abstract void connect(CompletionHandler<K> handler);
+
+	protected abstract boolean isOpen(K connection);
+
+	protected abstract void close(K connection);
+
+	private K pollPipelined() {
+		Iterator<K> iter = pipelinedConnections.iterator();
+		while (iter.hasNext()) {
+			K connection = iter.next();
+			AtomicInteger responses = inFlight.get(connection);
+			if (null == responses || !isOpen(connection)) {
+				iter.remove();
+				continue;
+			}
+			for (int n = responses.get(); n > 0 && n < pipelineDepth; n = responses.get()) {
+				if (responses.compareAndSet(n, n + 1)) {
+					return connection;
+				}
+			}
+		}
+		return null;
+	}
+
+	private K pollIdle() {
+		IdleConnection<K> idle;
+		while (null != (idle = idleConnections.pollFirst())) {
+			if (isOpen(idle.connection)) {
+				return idle.connection;
+			}
+		}
+		return null;
+	}
+
+	private void removeIdle(K connection) {
+		Iterator<IdleConnection<K>> iter = idleConnections.iterator();
+		while (iter.hasNext()) {
+			if (iter.next().connection == connection) {
+				iter.remove();
+				return;
+			}
+		}
+	}
+
+	private void dispatchIdle() {
+		while (!waiters.isEmpty()) {
+			K connection = pollIdle();
+			if (null == connection) {
+				return;
+			}
+			PendingAcquire<K> waiter = waiters.poll();
+			if (null == waiter) {
+				idle(connection);
+				return;
+			}
+			lease(connection, waiter.handler, waiter.pipelined);
+		}
+	}
+
+	private void dispatchPipelined() {
+		PendingAcquire<K> waiter;
+		while (null != (waiter = waiters.peek()) && waiter.pipelined) {
+			K connection = pollPipelined();
+			if (null == connection) {
+				return;
+			}
+			if (waiters.remove(waiter)) {
+				waiter.handler.completed(connection);
+			} else {
+				release(connection, true);
+			}
+		}
+	}
+
+	private void idle(K connection) {
+		idleConnections.addFirst(new IdleConnection<K>(connection, System.currentTimeMillis()));
+		dispatchIdle();
+	}
+
+	private void lease(K connection, CompletionHandler<K> handler, boolean pipelined) {
+		AtomicInteger responses = inFlight.get(connection);
+		if (null != responses) {
+			responses.set(1);
+		}
+		if (pipelined) {
+			pipelinedConnections.add(connection);
+		}
+		handler.completed(connection);
+		if (pipelined) {
+			dispatchPipelined();
+		}
+	}
+
+	private void connectWaiter() {
+		if (!waiters.isEmpty() && reserve()) {
+			PendingAcquire<K> waiter = waiters.poll();
+			if (null != waiter) {
+				connect(waiter.handler, waiter.pipelined);
+			} else {
+				openConnections.decrementAndGet();
+			}
+		}
+	}
+
+	private boolean reserve() {
+		for (; ; ) {
+			int open = openConnections.get();
+			if (open >= maxConnections) {
+				return false;
+			}
+			if (openConnections.compareAndSet(open, open + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private void connect(final CompletionHandler<K> handler, final boolean pipelined) {
+		connect(new EmptyCompletionHandler<K>() {
+			@Override public void completed(K connection) {
+				inFlight.put(connection, new AtomicInteger());
+				if (log.isDebugEnabled()) {
+					log.debug("Opened connection to " + route + ": " + connection);
+				}
+				lease(connection, handler, pipelined);
+			}
+
+			@Override public void failed(Throwable throwable) {
+				openConnections.decrementAndGet();
+				handler.failed(throwable);
+				connectWaiter();
+			}
+		});
+	}
+
+	private static class IdleConnection<K> {
+		private final K connection;
+		private final long since;
+
+		private IdleConnection(K connection, long since) {
+			this.connection = connection;
+			this.since = since;
+		}
+	}
+
+	private static class PendingAcquire<K> {
+		private final CompletionHandler<K> handler;
+		private final boolean pipelined;
+
+		private PendingAcquire(CompletionHandler<K> handler, boolean pipelined) {
+			this.handler = handler;
+			this.pipelined = pipelined;
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * Base class for {@link ClientHttpRequestFactory} implementations that keep a pool of keep-alive connections per
+ * route. Holds the pools and the settings they share, and closes connections that have been idle for too long;
+ * subclasses only create the pools and requests for their transport.
+ *
+ * @param <P> the type of connection pool
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public abstract class AbstractPooledClientHttpRequestFactory<P extends AbstractConnectionPool<?>> implements ClientHttpRequestFactory, DisposableBean {
+
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 16;
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+	private final ConcurrentMap<String, P> pools = new ConcurrentHashMap<String, P>();
+	private final ScheduledExecutorService idleConnectionReaper;
+
+	private volatile int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private volatile int lowWatermark = AbstractClientHttpResponse.DEFAULT_LOW_WATERMARK;
+	private volatile int highWatermark = AbstractClientHttpResponse.DEFAULT_HIGH_WATERMARK;
+	private volatile ClientHttpRequestListener requestListener;
+
+	/**
+	 * @param reaperThreadName name of the thread that closes idle connections
+	 */
+	protected AbstractPooledClientHttpRequestFactory(final String reaperThreadName) {
+		idleConnectionReaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, reaperThreadName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		idleConnectionReaper.scheduleWithFixedDelay(new Runnable() {
+			@Override public void run() {
+				for (P pool : pools.values()) {
+					pool.evictIdleConnections();
+				}
+			}
+		}, 1, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Set the maximum number of connections to open to a single route (scheme, host and port). Requests beyond this
+	 * limit are queued until a connection becomes available. Only affects routes that have not been used yet.
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		Assert.isTrue(maxConnectionsPerRoute > 0, "'maxConnectionsPerRoute' must be greater than 0");
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Set the time in milliseconds after which an idle keep-alive connection is closed. Only affects routes that have
+	 * not been used yet.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		Assert.isTrue(idleTimeout > 0, "'idleTimeout' must be greater than 0");
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Set the number of response bytes that may be buffered, waiting for a slow or paused consumer, before reading from
+	 * the connection is suspended. Reading resumes once the buffer has drained to the low watermark.
+	 */
+	public void setHighWatermark(int highWatermark) {
+		Assert.isTrue(highWatermark > lowWatermark, "'highWatermark' must be greater than 'lowWatermark'");
+		this.highWatermark = highWatermark;
+	}
+
+	public int getHighWatermark() {
+		return highWatermark;
+	}
+
+	/**
+	 * Set the number of buffered response bytes at or below which suspended reading resumes.
+	 */
+	public void setLowWatermark(int lowWatermark) {
+		Assert.isTrue(lowWatermark >= 0 && lowWatermark < highWatermark, "'lowWatermark' must be between 0 and 'highWatermark'");
+		this.lowWatermark = lowWatermark;
+	}
+
+	public int getLowWatermark() {
+		return lowWatermark;
+	}
+
+	/**
+	 * Set the listener to notify as each request made through this factory progresses, or null for none, replacing any
+	 * listeners set or added before.
+	 */
+	public void setRequestListener(ClientHttpRequestListener requestListener) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * Add a listener to notify as each request made through this factory progresses, after any listeners set or added
+	 * before. Only affects requests created from then on.
+	 */
+	public synchronized void addRequestListener(ClientHttpRequestListener requestListener) {
+		Assert.notNull(requestListener, "'requestListener' cannot be null");
+		ClientHttpRequestListener current = this.requestListener;
+		if (null == current) {
+			this.requestListener = requestListener;
+		} else if (current instanceof CompositeClientHttpRequestListener) {
+			this.requestListener = ((CompositeClientHttpRequestListener) current).with(requestListener);
+		} else {
+			this.requestListener = new CompositeClientHttpRequestListener(current, requestListener);
+		}
+	}
+
+	public ClientHttpRequestListener getRequestListener() {
+		return requestListener;
+	}
+
+	@Override public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		AbstractClientHttpRequest request = createRequest(uri, httpMethod, getConnectionPool(uri));
+		request.setRequestListener(requestListener);
+		return request;
+	}
+
+	@Override public void destroy() throws IOException {
+		idleConnectionReaper.shutdownNow();
+		for (P pool : pools.values()) {
+			pool.shutdown();
+		}
+		pools.clear();
+		shutdownTransport();
+	}
+
+	/**
+	 * Find or create the pool for the route the given URI is on. Only plain HTTP is supported, as no transport can
+	 * speak TLS yet and https would otherwise silently go out in plain text.
+	 */
+	protected P getConnectionPool(URI uri) {
+		Assert.isTrue(null == uri.getScheme() || "http".equalsIgnoreCase(uri.getScheme()), "Only plain HTTP is supported, not " + uri.getScheme());
+		Assert.hasText(uri.getHost(), "URI has no host: " + uri);
+		String route = AbstractConnectionPool.routeOf(uri);
+
+		P pool = pools.get(route);
+		if (null == pool) {
+			int port = (uri.getPort() < 0 ? 80 : uri.getPort());
+			pool = createConnectionPool(route, new InetSocketAddress(uri.getHost().toLowerCase(Locale.ENGLISH), port));
+			P existing = pools.putIfAbsent(route, pool);
+			if (null != existing) {
+				pool = existing;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Create the pool for a route that has not been used yet, with the current settings.
+	 *
+	 * @param route   the scheme, lower-cased host and port, as in {@code http://localhost:8080}
+	 * @param address the address to connect to
+	 */
+	protected abstract P createConnectionPool(String route, InetSocketAddress address);
+
+	/**
+	 * Create a request whose response will be read with the current watermarks.
+	 *
+	 * @param pool the pool for the request's route
+	 */
+	protected abstract AbstractClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, P pool) throws IOException;
+
+	/**
+	 * Close every connection and release the transport's threads, once all pools have been shut down.
+	 */
+	protected abstract void shutdownTransport() throws IOException;
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+/**
+ * Notified as each request made through a {@link ClientHttpRequestFactory} progresses, for timing where the time goes:
+ * waiting for a connection, on the wire before the first byte comes back, or reading the body.
+ * <p>Every event carries a {@link System#nanoTime()} timestamp taken when it happened. Events for a single request
+ * happen in the order they are declared here, with two exceptions: {@link #failed} may come at any point, and a
+ * transport that confirms writes asynchronously may report {@link #requestWritten} after the response has started to
+ * arrive. Listeners are called on transport threads, so they must be quick and must not block.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface ClientHttpRequestListener {
+
+	/**
+	 * The request has been executed and is waiting for a connection.
+	 */
+	void queued(HttpRequest request, long timestamp);
+
+	/**
+	 * The request has been given a connection to be written to.
+	 *
+	 * @param reused false if the connection was opened for this request, true if it had carried earlier requests
+	 */
+	void connectionAcquired(HttpRequest request, boolean reused, long timestamp);
+
+	/**
+	 * The request has been written to the connection.
+	 *
+	 * @param bytes the number of bytes written
+	 */
+	void requestWritten(HttpRequest request, int bytes, long timestamp);
+
+	/**
+	 * The status line and headers of the response have been read.
+	 */
+	void headersReceived(HttpRequest request, int statusCode, long timestamp);
+
+	/**
+	 * A chunk of the response body has been read.
+	 *
+	 * @param bytes the size of the chunk
+	 */
+	void contentReceived(HttpRequest request, int bytes, long timestamp);
+
+	/**
+	 * The response has been read to completion.
+	 *
+	 * @param statusCode the status code reported earlier to {@link #headersReceived}
+	 */
+	void completed(HttpRequest request, int statusCode, long timestamp);
+
+	/**
+	 * The request could not be written or its response could not be read to completion.
+	 */
+	void failed(HttpRequest request, Throwable throwable, long timestamp);
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestListener} that passes every event on to several others, in the order they were given.
+ * Immutable, so it can be read on transport threads without locking; {@link #with} returns a new composite.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class CompositeClientHttpRequestListener implements ClientHttpRequestListener {
+
+	private final ClientHttpRequestListener[] listeners;
+
+	public CompositeClientHttpRequestListener(ClientHttpRequestListener... listeners) {
+		Assert.noNullElements(listeners, "'listeners' cannot contain null");
+		this.listeners = listeners.clone();
+	}
+
+	/**
+	 * @return a composite of this composite's listeners followed by the given one
+	 */
+	public CompositeClientHttpRequestListener with(ClientHttpRequestListener listener) {
+		ClientHttpRequestListener[] all = new ClientHttpRequestListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, all, 0, listeners.length);
+		all[listeners.length] = listener;
+		return new CompositeClientHttpRequestListener(all);
+	}
+
+	@Override public void queued(HttpRequest request, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.queued(request, timestamp);
+		}
+	}
+
+	@Override public void connectionAcquired(HttpRequest request, boolean reused, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.connectionAcquired(request, reused, timestamp);
+		}
+	}
+
+	@Override public void requestWritten(HttpRequest request, int bytes, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.requestWritten(request, bytes, timestamp);
+		}
+	}
+
+	@Override public void headersReceived(HttpRequest request, int statusCode, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.headersReceived(request, statusCode, timestamp);
+		}
+	}
+
+	@Override public void contentReceived(HttpRequest request, int bytes, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.contentReceived(request, bytes, timestamp);
+		}
+	}
+
+	@Override public void completed(HttpRequest request, int statusCode, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.completed(request, statusCode, timestamp);
+		}
+	}
+
+	@Override public void failed(HttpRequest request, Throwable throwable, long timestamp) {
+		for (ClientHttpRequestListener listener : listeners) {
+			listener.failed(request, throwable, timestamp);
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.async.http.client;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct {@link ByteBuffer}s to encode requests into, so that a request written to a socket is not first
+ * copied into a temporary direct buffer by the JDK, and so that those buffers are not allocated and freed for every
+ * request.
+ * <p>Buffers come in power-of-two sizes from 1K to 1M and up to 64 of each size are kept.
+ * Larger requests get a buffer of their own. A buffer that is never released is simply garbage collected.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class DirectBufferPool {
+
+	private static final int MAX_POOLED_PER_SIZE = 64;
+
+	private static final int MIN_SIZE_SHIFT = 10;
+	private static final int MAX_SIZE_SHIFT = 20;
+
+	private final SizeClass[] sizeClasses;
+
+	public DirectBufferPool() {
+		sizeClasses = new SizeClass[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+		for (int i = 0; i < sizeClasses.length; i++) {
+			sizeClasses[i] = new SizeClass();
+		}
+	}
+
+	/**
+	 * @return a direct buffer positioned at 0 and limited to the given capacity, which may have more room beyond its
+	 *         limit
+	 */
+	public ByteBuffer acquire(int capacity) {
+		int size = sizeIndex(capacity);
+		ByteBuffer buffer = null;
+		if (size >= 0) {
+			SizeClass sizeClass = sizeClasses[size];
+			buffer = sizeClass.buffers.poll();
+			if (null != buffer) {
+				sizeClass.pooled.decrementAndGet();
+			} else {
+				buffer = ByteBuffer.allocateDirect(1 << (size + MIN_SIZE_SHIFT));
+			}
+		} else {
+			buffer = ByteBuffer.allocateDirect(capacity);
+		}
+		buffer.limit(capacity);
+		return buffer;
+	}
+
+	/**
+	 * Give a buffer taken from this pool back to it. It must not be used again afterwards.
+	 */
+	public void release(ByteBuffer buffer) {
+		int size = sizeIndex(buffer.capacity());
+		if (size < 0 || buffer.capacity() != 1 << (size + MIN_SIZE_SHIFT) || !buffer.isDirect()) {
+			return;
+		}
+		SizeClass sizeClass = sizeClasses[size];
+		if (sizeClass.pooled.incrementAndGet() > MAX_POOLED_PER_SIZE) {
+			sizeClass.pooled.decrementAndGet();
+			return;
+		}
+		buffer.clear();
+		sizeClass.buffers.offer(buffer);
+	}
+
+	/**
+	 * @return the index of the smallest pooled size that holds the given capacity, or -1 if it is too large to pool
+	 */
+	private static int sizeIndex(int capacity) {
+		if (capacity > 1 << MAX_SIZE_SHIFT) {
+			return -1;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+		return Math.max(shift, MIN_SIZE_SHIFT) - MIN_SIZE_SHIFT;
+	}
+
+	/**
+	 * The buffers kept of one size, and how many there are, which the queue can't tell without walking it.
+	 */
+	private static final class SizeClass {
+		private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+		private final AtomicInteger pooled = new AtomicInteger();
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client;
+
+/**
+ * {@link ClientHttpRequestListener} that ignores every event, to extend when only some are of interest.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class EmptyClientHttpRequestListener implements ClientHttpRequestListener {
+
+	@Override public void queued(HttpRequest request, long timestamp) {
+	}
+
+	@Override public void connectionAcquired(HttpRequest request, boolean reused, long timestamp) {
+	}
+
+	@Override public void requestWritten(HttpRequest request, int bytes, long timestamp) {
+	}
+
+	@Override public void headersReceived(HttpRequest request, int statusCode, long timestamp) {
+	}
+
+	@Override public void contentReceived(HttpRequest request, int bytes, long timestamp) {
+	}
+
+	@Override public void completed(HttpRequest request, int statusCode, long timestamp) {
+	}
+
+	@Override public void failed(HttpRequest request, Throwable throwable, long timestamp) {
+	}
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.async.http.client;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Headers of a received response, kept as the bytes they arrived as until they are asked for. {@link
+ * #getContentType()} goes through the {@link MediaTypeCache} and {@link #getFirst(String)} decodes just the one value,
+ * so reading the Content-Type or Content-Length creates no strings for the other headers. Anything else decodes all of
+ * them into the map {@link HttpHeaders} keeps, after which these behave like any other {@code HttpHeaders}.
+ * <p>Transports {@link #addRaw add} headers on their read thread before handing the headers out; from then on they are
+ * safe to read from any thread. {@link HttpHeaders#readOnlyHttpHeaders} and a plain {@code HttpHeaders}'s {@code
+ * equals} read the map directly, so wrap a copy rather than these, and compare with these on the left.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class LazyHttpHeaders extends HttpHeaders {
+
+	private static final String CONTENT_TYPE = "Content-Type";
+	// Names are decoded to these when they arrive spelled exactly the same, rather than to new strings.
+	private static final String[] COMMON_NAMES = {
+			"Cache-Control", "Connection", "Content-Encoding", "Content-Length", "Content-Type", "Date", "ETag",
+			"Expires", "Keep-Alive", "Last-Modified", "Location", "Server", "Set-Cookie", "Transfer-Encoding", "Vary"
+	};
+
+	private byte[] bytes = new byte[512];
+	private int length;
+	// Offset of the name, end of the name, offset of the value and end of the value of each header, in bytes.
+	private int[] bounds = new int[64];
+	private int count;
+	private volatile boolean materialized = false;
+
+	/**
+	 * Add a header without decoding it. The bytes are copied, so the arrays may be reused once this returns. Must not be
+	 * called once the headers have been handed out.
+	 *
+	 * @param name  array holding the ISO-8859-1 encoded name
+	 * @param value array holding the ISO-8859-1 encoded value, with surrounding whitespace already trimmed
+	 */
+	public void addRaw(byte[] name, int nameOffset, int nameLength, byte[] value, int valueOffset, int valueLength) {
+		int i = reserve(nameLength + valueLength);
+		bounds[i] = length;
+		System.arraycopy(name, nameOffset, bytes, length, nameLength);
+		length += nameLength;
+		bounds[i + 1] = length;
+		bounds[i + 2] = length;
+		System.arraycopy(value, valueOffset, bytes, length, valueLength);
+		length += valueLength;
+		bounds[i + 3] = length;
+	}
+
+	/**
+	 * Add a header that a transport's decoder has already turned into strings. The characters are kept as ISO-8859-1
+	 * bytes, so {@link #getContentType()} still goes through the {@link MediaTypeCache}. Must not be called once the
+	 * headers have been handed out.
+	 *
+	 * @param value the value, with surrounding whitespace already trimmed
+	 */
+	public void addRaw(String name, String value) {
+		int i = reserve(name.length() + value.length());
+		bounds[i] = length;
+		for (int j = 0; j < name.length(); j++) {
+			bytes[length++] = (byte) name.charAt(j);
+		}
+		bounds[i + 1] = length;
+		bounds[i + 2] = length;
+		for (int j = 0; j < value.length(); j++) {
+			bytes[length++] = (byte) value.charAt(j);
+		}
+		bounds[i + 3] = length;
+	}
+
+	@Override public MediaType getContentType() {
+		if (materialized) {
+			String value = super.getFirst(CONTENT_TYPE);
+			return (null != value ? MediaTypeCache.parseMediaType(value) : null);
+		}
+		int i = indexOf(CONTENT_TYPE);
+		return (i >= 0 ? MediaTypeCache.parseMediaType(bytes, bounds[i + 2], bounds[i + 3] - bounds[i + 2]) : null);
+	}
+
+	@Override public String getFirst(String headerName) {
+		if (materialized) {
+			return super.getFirst(headerName);
+		}
+		int i = indexOf(headerName);
+		return (i >= 0 ? decode(bounds[i + 2], bounds[i + 3]) : null);
+	}
+
+	@Override public void add(String headerName, String headerValue) {
+		materialize();
+		super.add(headerName, headerValue);
+	}
+
+	@Override public void set(String headerName, String headerValue) {
+		materialize();
+		super.set(headerName, headerValue);
+	}
+
+	@Override public void setAll(Map<String, String> values) {
+		materialize();
+		super.setAll(values);
+	}
+
+	@Override public Map<String, String> toSingleValueMap() {
+		materialize();
+		return super.toSingleValueMap();
+	}
+
+	@Override public int size() {
+		materialize();
+		return super.size();
+	}
+
+	@Override public boolean isEmpty() {
+		return (materialized ? super.isEmpty() : count == 0);
+	}
+
+	@Override public boolean containsKey(Object key) {
+		if (materialized || !(key instanceof String)) {
+			materialize();
+			return super.containsKey(key);
+		}
+		return indexOf((String) key) >= 0;
+	}
+
+	@Override public boolean containsValue(Object value) {
+		materialize();
+		return super.containsValue(value);
+	}
+
+	@Override public List<String> get(Object key) {
+		materialize();
+		return super.get(key);
+	}
+
+	@Override public List<String> put(String key, List<String> value) {
+		materialize();
+		return super.put(key, value);
+	}
+
+	@Override public List<String> remove(Object key) {
+		materialize();
+		return super.remove(key);
+	}
+
+	@Override public void putAll(Map<? extends String, ? extends List<String>> m) {
+		materialize();
+		super.putAll(m);
+	}
+
+	@Override public void clear() {
+		materialize();
+		super.clear();
+	}
+
+	@Override public Set<String> keySet() {
+		materialize();
+		return super.keySet();
+	}
+
+	@Override public Collection<List<String>> values() {
+		materialize();
+		return super.values();
+	}
+
+	@Override public Set<Map.Entry<String, List<String>>> entrySet() {
+		materialize();
+		return super.entrySet();
+	}
+
+	@Override public boolean equals(Object other) {
+		materialize();
+		return super.equals(other);
+	}
+
+	@Override public int hashCode() {
+		materialize();
+		return super.hashCode();
+	}
+
+	@Override public String toString() {
+		materialize();
+		return super.toString();
+	}
+
+	/**
+	 * Make room for one more header of the given number of bytes.
+	 *
+	 * @return the index into {@code bounds} of the new header
+	 */
+	private int reserve(int byteCount) {
+		if (length + byteCount > bytes.length) {
+			byte[] bigger = new byte[Math.max(bytes.length * 2, length + byteCount)];
+			System.arraycopy(bytes, 0, bigger, 0, length);
+			bytes = bigger;
+		}
+		if (count * 4 == bounds.length) {
+			int[] bigger = new int[bounds.length * 2];
+			System.arraycopy(bounds, 0, bigger, 0, bounds.length);
+			bounds = bigger;
+		}
+		return count++ * 4;
+	}
+
+	private synchronized void materialize() {
+		if (materialized) {
+			return;
+		}
+		for (int i = 0; i < count * 4; i += 4) {
+			super.add(decodeName(bounds[i], bounds[i + 1]), decode(bounds[i + 2], bounds[i + 3]));
+		}
+		materialized = true;
+	}
+
+	/**
+	 * @return the index into {@code bounds} of the first header with the given name, ignoring case, or -1
+	 */
+	private int indexOf(String name) {
+		int nameLength = name.length();
+		for (int i = 0; i < count * 4; i += 4) {
+			int start = bounds[i];
+			if (bounds[i + 1] - start != nameLength) {
+				continue;
+			}
+			int j = 0;
+			while (j < nameLength && toLowerCase(bytes[start + j] & 0xff) == toLowerCase(name.charAt(j))) {
+				j++;
+			}
+			if (j == nameLength) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private String decodeName(int start, int end) {
+		for (String name : COMMON_NAMES) {
+			if (name.length() == end - start && matches(name, start)) {
+				return name;
+			}
+		}
+		return decode(start, end);
+	}
+
+	private boolean matches(String name, int start) {
+		for (int i = 0; i < name.length(); i++) {
+			if ((bytes[start + i] & 0xff) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String decode(int start, int end) {
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++) {
+			chars[i - start] = (char) (bytes[i] & 0xff);
+		}
+		return new String(chars);
+	}
+
+	private static int toLowerCase(int c) {
+		return (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.async.http.client;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Parses Content-Type values into {@link MediaType}s, remembering the ones it has seen so that the same value sent on
+ * response after response is only parsed once.
+ * <p>Values are kept in a fixed table of 256 slots chosen by hash, and a new value replaces whatever was in
+ * its slot, so the cache never grows however many different values it sees. Looking up a value that is already
+ * cached takes no lock and allocates nothing.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public final class MediaTypeCache {
+
+	private static final int SIZE = 256;
+	// Slots are read and written without synchronization; entries are immutable, so a reader sees either a whole entry
+	// or none, and a lost update only costs a parse.
+	private static final Entry[] entries = new Entry[SIZE];
+
+	private MediaTypeCache() {
+	}
+
+	/**
+	 * Parse the given ISO-8859-1 encoded value.
+	 *
+	 * @throws IllegalArgumentException if the value cannot be parsed
+	 */
+	public static MediaType parseMediaType(byte[] bytes, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + (bytes[i] & 0xff);
+		}
+		int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+		Entry entry = entries[slot];
+		if (null != entry && entry.hash == hash && entry.matches(bytes, offset, length)) {
+			return entry.mediaType;
+		}
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (bytes[offset + i] & 0xff);
+		}
+		MediaType mediaType = MediaType.parseMediaType(new String(chars));
+		byte[] key = new byte[length];
+		System.arraycopy(bytes, offset, key, 0, length);
+		entries[slot] = new Entry(hash, key, mediaType);
+		return mediaType;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the value cannot be parsed
+	 */
+	public static MediaType parseMediaType(String value) {
+		int length = value.length();
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c > 0xff) {
+				// Not ISO-8859-1, so not something a server sent; don't let it near the cache.
+				return MediaType.parseMediaType(value);
+			}
+			hash = 31 * hash + c;
+		}
+		int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+		Entry entry = entries[slot];
+		if (null != entry && entry.hash == hash && entry.matches(value)) {
+			return entry.mediaType;
+		}
+		MediaType mediaType = MediaType.parseMediaType(value);
+		byte[] key = new byte[length];
+		for (int i = 0; i < length; i++) {
+			key[i] = (byte) value.charAt(i);
+		}
+		entries[slot] = new Entry(hash, key, mediaType);
+		return mediaType;
+	}
+
+	private static final class Entry {
+		private final int hash;
+		private final byte[] key;
+		private final MediaType mediaType;
+
+		private Entry(int hash, byte[] key, MediaType mediaType) {
+			this.hash = hash;
+			this.key = key;
+			this.mediaType = mediaType;
+		}
+
+		private boolean matches(byte[] bytes, int offset, int length) {
+			if (key.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (key[i] != bytes[offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean matches(String value) {
+			if (key.length != value.length()) {
+				return false;
+			}
+			for (int i = 0; i < key.length; i++) {
+				if ((key[i] & 0xff) != value.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.AbstractConnectionPool;
+import org.springframework.async.http.client.ClientHttpRequestListener;
+import org.springframework.async.http.client.HttpRequest;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpMethod;
+
+/**
+ * {@link ClientHttpRequestListener} that keeps {@link RequestMetrics} for each route and HTTP method, and optionally
+ * exposes each of them as an MBean:
+ * <pre class="code">
+ * ClientHttpMetrics metrics = new ClientHttpMetrics(ManagementFactory.getPlatformMBeanServer(), "orders");
+ * requestFactory.addRequestListener(metrics);
+ * </pre>
+ * <p>Routes are named like the connection pools name them, as in {@code http://localhost:8080} (see
+ * {@link AbstractConnectionPool#routeOf}), so that requests to {@code LOCALHOST} or to a default port are counted along
+ * with those to the same connections. MBeans are registered as
+ * {@code org.springframework.async:type=RequestMetrics,client=...,route=...,method=...} the first time a route is used
+ * with a method, and unregistered by {@link #destroy()}. Recording an event looks up the metrics without allocating and
+ * then only updates striped counters and histograms.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ClientHttpMetrics implements ClientHttpRequestListener, DisposableBean {
+
+	public static final String DEFAULT_DOMAIN = "org.springframework.async";
+
+	private static final HttpMethod[] METHODS = HttpMethod.values();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentMap<String, AtomicReferenceArray<RequestMetrics>> routes = new ConcurrentHashMap<String, AtomicReferenceArray<RequestMetrics>>();
+	// The same metrics by the authority as written in request URIs, so looking them up does not build the route key.
+	private final ConcurrentMap<String, AtomicReferenceArray<RequestMetrics>> authorities = new ConcurrentHashMap<String, AtomicReferenceArray<RequestMetrics>>();
+	private final ConcurrentLinkedQueue<ObjectName> registeredNames = new ConcurrentLinkedQueue<ObjectName>();
+	private final MBeanServer mbeanServer;
+	private final String clientName;
+
+	/**
+	 * Keep metrics without exposing them through JMX.
+	 */
+	public ClientHttpMetrics() {
+		this(null, null);
+	}
+
+	/**
+	 * @param mbeanServer the server to register the metrics with
+	 * @param clientName  name that tells the metrics of this client apart from those of other clients
+	 */
+	public ClientHttpMetrics(MBeanServer mbeanServer, String clientName) {
+		this.mbeanServer = mbeanServer;
+		this.clientName = clientName;
+	}
+
+	/**
+	 * @param route the scheme, lower-cased host and port, as in {@code http://localhost:8080}
+	 * @return the metrics for the given route and method, or null if no such request has been made
+	 */
+	public RequestMetrics getRequestMetrics(String route, HttpMethod method) {
+		AtomicReferenceArray<RequestMetrics> byMethod = routes.get(route);
+		return (null != byMethod ? byMethod.get(method.ordinal()) : null);
+	}
+
+	/**
+	 * @return the metrics for every route and method requests have been made with
+	 */
+	public List<RequestMetrics> getRequestMetrics() {
+		List<RequestMetrics> all = new ArrayList<RequestMetrics>();
+		for (AtomicReferenceArray<RequestMetrics> byMethod : routes.values()) {
+			for (int i = 0; i < byMethod.length(); i++) {
+				RequestMetrics metrics = byMethod.get(i);
+				if (null != metrics) {
+					all.add(metrics);
+				}
+			}
+		}
+		return all;
+	}
+
+	@Override public void queued(HttpRequest request, long timestamp) {
+		metricsFor(request).started();
+	}
+
+	@Override public void connectionAcquired(HttpRequest request, boolean reused, long timestamp) {
+	}
+
+	@Override public void requestWritten(HttpRequest request, int bytes, long timestamp) {
+		metricsFor(request).sent(bytes);
+	}
+
+	@Override public void headersReceived(HttpRequest request, int statusCode, long timestamp) {
+		metricsFor(request).headersReceived(elapsed(request, timestamp));
+	}
+
+	@Override public void contentReceived(HttpRequest request, int bytes, long timestamp) {
+		metricsFor(request).received(bytes);
+	}
+
+	@Override public void completed(HttpRequest request, int statusCode, long timestamp) {
+		metricsFor(request).completed(statusCode, elapsed(request, timestamp));
+	}
+
+	@Override public void failed(HttpRequest request, Throwable throwable, long timestamp) {
+		metricsFor(request).failed();
+	}
+
+	@Override public void destroy() {
+		ObjectName name;
+		while (null != (name = registeredNames.poll())) {
+			try {
+				mbeanServer.unregisterMBean(name);
+			} catch (JMException e) {
+				log.warn("Could not unregister " + name + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private RequestMetrics metricsFor(HttpRequest request) {
+		URI uri = request.getURI();
+		String authority = uri.getRawAuthority();
+		// Only plain HTTP is looked up by authority alone, as that is all the request factories send.
+		boolean byAuthority = (null != authority && "http".equalsIgnoreCase(uri.getScheme()));
+		AtomicReferenceArray<RequestMetrics> byMethod = (byAuthority ? authorities.get(authority) : null);
+		if (null == byMethod) {
+			byMethod = byRoute(AbstractConnectionPool.routeOf(uri));
+			if (byAuthority) {
+				authorities.putIfAbsent(authority, byMethod);
+			}
+		}
+
+		int index = request.getMethod().ordinal();
+		RequestMetrics metrics = byMethod.get(index);
+		if (null == metrics) {
+			metrics = new RequestMetrics(AbstractConnectionPool.routeOf(uri), request.getMethod());
+			if (byMethod.compareAndSet(index, null, metrics)) {
+				register(metrics);
+			} else {
+				metrics = byMethod.get(index);
+			}
+		}
+		return metrics;
+	}
+
+	private AtomicReferenceArray<RequestMetrics> byRoute(String route) {
+		AtomicReferenceArray<RequestMetrics> byMethod = routes.get(route);
+		if (null == byMethod) {
+			byMethod = new AtomicReferenceArray<RequestMetrics>(METHODS.length);
+			AtomicReferenceArray<RequestMetrics> existing = routes.putIfAbsent(route, byMethod);
+			if (null != existing) {
+				byMethod = existing;
+			}
+		}
+		return byMethod;
+	}
+
+	private void register(RequestMetrics metrics) {
+		if (null == mbeanServer) {
+			return;
+		}
+		try {
+			String client = (null != clientName ? clientName : "default");
+			ObjectName name = new ObjectName(DEFAULT_DOMAIN + ":type=RequestMetrics,client=" + ObjectName.quote(client)
+					+ ",route=" + ObjectName.quote(metrics.getRoute()) + ",method=" + metrics.getMethod());
+			mbeanServer.registerMBean(metrics, name);
+			registeredNames.add(name);
+		} catch (JMException e) {
+			log.warn("Could not register metrics for " + metrics.getMethod() + " " + metrics.getRoute() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return nanoseconds since the request was executed, or -1 if that is not known
+	 */
+	private static long elapsed(HttpRequest request, long timestamp) {
+		if (request instanceof AbstractClientHttpRequest) {
+			long executedAt = ((AbstractClientHttpRequest) request).getExecutedAt();
+			if (executedAt != 0) {
+				return timestamp - executedAt;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * Metrics for the requests made with one HTTP method to one route. All recording is lock-free and allocation-free.
+ * <p>Latency runs from when a request is executed to when its response has been read to completion, and time to
+ * headers from when it is executed to when the status line and headers have been read, so both include any time
+ * spent waiting for a connection.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class RequestMetrics implements RequestMetricsMBean {
+
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final String route;
+	private final HttpMethod method;
+	private final StripedCounter requests = new StripedCounter();
+	private final StripedCounter inFlight = new StripedCounter();
+	// Indexed by status code / 100, with 0 for requests that failed.
+	private final StripedCounter[] outcomes = new StripedCounter[6];
+	private final StripedCounter bytesSent = new StripedCounter();
+	private final StripedCounter bytesReceived = new StripedCounter();
+	private final StripedHistogram latency = new StripedHistogram();
+	private final StripedHistogram timeToHeaders = new StripedHistogram();
+	private volatile long resetAt = System.nanoTime();
+
+	public RequestMetrics(String route, HttpMethod method) {
+		this.route = route;
+		this.method = method;
+		for (int i = 0; i < outcomes.length; i++) {
+			outcomes[i] = new StripedCounter();
+		}
+	}
+
+	@Override public String getRoute() {
+		return route;
+	}
+
+	@Override public String getMethod() {
+		return method.name();
+	}
+
+	@Override public long getRequestCount() {
+		return requests.sum();
+	}
+
+	@Override public double getRequestRate() {
+		double seconds = (System.nanoTime() - resetAt) / 1e9;
+		return (seconds > 0 ? requests.sum() / seconds : 0);
+	}
+
+	@Override public long getInFlightCount() {
+		return inFlight.sum();
+	}
+
+	@Override public long getInformationalCount() {
+		return outcomes[1].sum();
+	}
+
+	@Override public long getSuccessCount() {
+		return outcomes[2].sum();
+	}
+
+	@Override public long getRedirectionCount() {
+		return outcomes[3].sum();
+	}
+
+	@Override public long getClientErrorCount() {
+		return outcomes[4].sum();
+	}
+
+	@Override public long getServerErrorCount() {
+		return outcomes[5].sum();
+	}
+
+	@Override public long getFailureCount() {
+		return outcomes[0].sum();
+	}
+
+	@Override public double getErrorRatio() {
+		long count = requests.sum();
+		return (count > 0 ? (double) (outcomes[0].sum() + outcomes[4].sum() + outcomes[5].sum()) / count : 0);
+	}
+
+	@Override public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	@Override public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	@Override public double getLatencyMean() {
+		return latency.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override public double getLatency50thPercentile() {
+		return latency.getValueAtPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override public double getLatency99thPercentile() {
+		return latency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override public double getLatency999thPercentile() {
+		return latency.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+	}
+
+	@Override public double getLatencyMax() {
+		return latency.getMaxValue() / NANOS_PER_MILLI;
+	}
+
+	@Override public double getTimeToHeaders50thPercentile() {
+		return timeToHeaders.getValueAtPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override public double getTimeToHeaders99thPercentile() {
+		return timeToHeaders.getValueAtPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Set all counts and histograms back to 0, apart from the number of requests in flight.
+	 */
+	@Override public void reset() {
+		requests.reset();
+		for (StripedCounter outcome : outcomes) {
+			outcome.reset();
+		}
+		bytesSent.reset();
+		bytesReceived.reset();
+		latency.reset();
+		timeToHeaders.reset();
+		resetAt = System.nanoTime();
+	}
+
+	void started() {
+		requests.increment();
+		inFlight.increment();
+	}
+
+	void sent(int bytes) {
+		bytesSent.add(bytes);
+	}
+
+	/**
+	 * @param elapsed nanoseconds since the request was executed, or a negative number if not known
+	 */
+	void headersReceived(long elapsed) {
+		if (elapsed >= 0) {
+			timeToHeaders.record(elapsed);
+		}
+	}
+
+	void received(int bytes) {
+		bytesReceived.add(bytes);
+	}
+
+	/**
+	 * Count a request whose response was read to completion under the class of its status code.
+	 *
+	 * @param elapsed nanoseconds since the request was executed, or a negative number if not known
+	 */
+	void completed(int statusCode, long elapsed) {
+		inFlight.decrement();
+		int statusClass = statusCode / 100;
+		// Status codes outside 1xx to 5xx are counted as failures.
+		outcomes[statusClass > 0 && statusClass < outcomes.length ? statusClass : 0].increment();
+		if (elapsed >= 0) {
+			latency.record(elapsed);
+		}
+	}
+
+	/**
+	 * Count a request that failed, whether or not its status line and headers had been read.
+	 */
+	void failed() {
+		inFlight.decrement();
+		outcomes[0].increment();
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics;
+
+/**
+ * JMX view of the {@link RequestMetrics} for one route and HTTP method. Counts and rates cover the time since the
+ * metrics were created or last {@link #reset() reset}; durations are in milliseconds.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface RequestMetricsMBean {
+
+	String getRoute();
+
+	String getMethod();
+
+	long getRequestCount();
+
+	/**
+	 * @return requests per second
+	 */
+	double getRequestRate();
+
+	long getInFlightCount();
+
+	long getInformationalCount();
+
+	long getSuccessCount();
+
+	long getRedirectionCount();
+
+	long getClientErrorCount();
+
+	long getServerErrorCount();
+
+	/**
+	 * @return requests whose response could not be read to completion, such as on connection errors
+	 */
+	long getFailureCount();
+
+	/**
+	 * @return failures and 4xx and 5xx responses as a fraction of all requests
+	 */
+	double getErrorRatio();
+
+	long getBytesSent();
+
+	long getBytesReceived();
+
+	double getLatencyMean();
+
+	double getLatency50thPercentile();
+
+	double getLatency99thPercentile();
+
+	double getLatency999thPercentile();
+
+	double getLatencyMax();
+
+	double getTimeToHeaders50thPercentile();
+
+	double getTimeToHeaders99thPercentile();
+
+	void reset();
+
+}
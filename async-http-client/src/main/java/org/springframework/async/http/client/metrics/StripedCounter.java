@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that many threads can update at once without contending. Each thread adds to one of several cells, each on
+ * its own cache line, chosen by its thread id, and reads add the cells up.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+final class StripedCounter {
+
+	static final int STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+	// Longs per 64-byte cache line, so that neighbouring cells never share a line.
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	void increment() {
+		add(1);
+	}
+
+	void decrement() {
+		add(-1);
+	}
+
+	void add(long delta) {
+		cells.addAndGet(stripe() * PADDING, delta);
+	}
+
+	long sum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * Set the count back to 0. Additions made while the reset is in progress may or may not be kept.
+	 */
+	void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+
+	static int stripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES - 1);
+	}
+
+	/**
+	 * @return the smallest power of two at least the number of processors, up to 16
+	 */
+	static int stripesFor(int processors) {
+		int stripes = 1;
+		while (stripes < processors && stripes < 16) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+}
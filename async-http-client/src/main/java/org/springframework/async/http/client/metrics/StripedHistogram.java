@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * Histogram of durations in nanoseconds that many threads can record into at once without contending or allocating.
+ * <p>Buckets are log-linear: every power of two is split into 2<sup>{@code subBucketBits}</sup> buckets, 32 by
+ * default, so a value is never reported more than about 3% higher than it was recorded, and values up to about 18
+ * minutes are told apart. Each thread records into one of several copies of the buckets, chosen by its thread id, and
+ * reads add the copies up.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class StripedHistogram {
+
+	public static final int DEFAULT_SUB_BUCKET_BITS = 5;
+
+	private static final int MAX_BITS = 40;
+	private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+	// Fewer copies than counters have cells, as each copy is a few kilobytes.
+	private static final int STRIPES = Math.min(StripedCounter.STRIPES, 4);
+
+	private final int subBucketBits;
+	private final int subBucketCount;
+	private final int linearLimit;
+	private final int bucketCount;
+	private final AtomicLongArray counts;
+	private final StripedCounter totalCount = new StripedCounter();
+	private final StripedCounter totalValue = new StripedCounter();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	public StripedHistogram() {
+		this(DEFAULT_SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * @param subBucketBits log2 of the number of buckets each power of two is split into, so that a value is never
+	 *                      reported more than 1 / 2<sup>subBucketBits</sup> higher than it was recorded
+	 */
+	public StripedHistogram(int subBucketBits) {
+		Assert.isTrue(subBucketBits > 0 && subBucketBits < MAX_BITS - 1, "'subBucketBits' must be between 1 and " + (MAX_BITS - 2));
+		this.subBucketBits = subBucketBits;
+		this.subBucketCount = 1 << subBucketBits;
+		this.linearLimit = subBucketCount << 1;
+		this.bucketCount = linearLimit + (MAX_BITS - subBucketBits - 1) * subBucketCount;
+		this.counts = new AtomicLongArray(STRIPES * bucketCount);
+	}
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		counts.incrementAndGet((StripedCounter.stripe() & (STRIPES - 1)) * bucketCount + indexOf(value));
+		totalCount.increment();
+		totalValue.add(value);
+		for (; ; ) {
+			long max = maxValue.get();
+			if (value <= max || maxValue.compareAndSet(max, value)) {
+				break;
+			}
+		}
+	}
+
+	public long getTotalCount() {
+		return totalCount.sum();
+	}
+
+	public long getMaxValue() {
+		return maxValue.get();
+	}
+
+	public double getMean() {
+		long count = totalCount.sum();
+		return (count == 0 ? 0 : (double) totalValue.sum() / count);
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value that at least the given percentage of recorded values are at or below
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] merged = new long[bucketCount];
+		long count = 0;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			for (int i = 0; i < bucketCount; i++) {
+				long n = counts.get(stripe * bucketCount + i);
+				merged[i] += n;
+				count += n;
+			}
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			seen += merged[i];
+			if (seen >= target) {
+				return Math.min(highestValueIn(i), maxValue.get());
+			}
+		}
+		return maxValue.get();
+	}
+
+	/**
+	 * Forget everything recorded so far. Values recorded while the reset is in progress may or may not be kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		totalCount.reset();
+		totalValue.reset();
+		maxValue.set(0);
+	}
+
+	/**
+	 * @return the index of the bucket the given value, between 0 and 2<sup>40</sup> - 1, is counted in
+	 */
+	int indexOf(long value) {
+		if (value < linearLimit) {
+			return (int) value;
+		}
+		// Shift so the value keeps its top subBucketBits + 1 bits.
+		int shift = 63 - Long.numberOfLeadingZeros(value) - subBucketBits;
+		return linearLimit + (shift - 1) * subBucketCount + (int) (value >>> shift) - subBucketCount;
+	}
+
+	/**
+	 * @return the highest value counted in the given bucket
+	 */
+	long highestValueIn(int index) {
+		if (index < linearLimit) {
+			return index;
+		}
+		int shift = (index - linearLimit) / subBucketCount + 1;
+		long subBucket = (index - linearLimit) % subBucketCount + subBucketCount;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.io.Buffer;
+import org.springframework.async.http.io.BufferCompletionHandler;
+import org.springframework.async.http.io.CompositeBuffer;
+
+/**
+ * Collects a body into a {@link CompositeBuffer}, copying only what the transport cannot hand over. Buffers it does
+ * hand over are kept as they are. Content that is only lent for the length of a {@link #chunk(ByteBuffer)} call is
+ * copied into a heap buffer sized once from the Content-Length; only if the server sends more than it said, or says
+ * nothing, are further buffers added, each twice the size of the last, so nothing already copied is copied again.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+abstract class BufferCollector<T> extends EmptyCompletionHandler<Object> implements BufferCompletionHandler<Object> {
+
+	// Content-Length is only trusted this far when sizing the buffer a body is copied into.
+	static final int MAX_INITIAL_CAPACITY = 16 * 1024 * 1024;
+	static final int DEFAULT_INITIAL_CAPACITY = 8192;
+
+	private final Promise<T> promise;
+	private final CompositeBuffer body = new CompositeBuffer();
+	private long expected;
+	private ByteBuffer copy;
+	private int lastCapacity;
+
+	BufferCollector(long contentLength, Promise<T> promise) {
+		this.expected = contentLength;
+		this.promise = promise;
+	}
+
+	static int initialCapacity(long contentLength) {
+		return (contentLength >= 0 ? (int) Math.min(contentLength, MAX_INITIAL_CAPACITY) : DEFAULT_INITIAL_CAPACITY);
+	}
+
+	@Override public boolean buffer(Buffer buffer) {
+		addCopy();
+		expected -= buffer.remaining();
+		body.add(buffer);
+		return true;
+	}
+
+	@Override public boolean chunk(ByteBuffer buffer) {
+		while (buffer.hasRemaining()) {
+			if (null == copy || !copy.hasRemaining()) {
+				addCopy();
+				copy = ByteBuffer.allocate(nextCapacity(buffer.remaining()));
+			}
+			int length = Math.min(buffer.remaining(), copy.remaining());
+			ByteBuffer part = buffer.duplicate();
+			part.limit(part.position() + length);
+			copy.put(part);
+			buffer.position(buffer.position() + length);
+			expected -= length;
+		}
+		return true;
+	}
+
+	@Override public void completed(Object obj) {
+		addCopy();
+		T result;
+		try {
+			result = convert(body);
+		} catch (RuntimeException e) {
+			body.release();
+			promise.failure(e);
+			return;
+		}
+		promise.result(result);
+	}
+
+	@Override public void failed(Throwable throwable) {
+		addCopy();
+		body.release();
+		promise.failure(throwable);
+	}
+
+	/**
+	 * Turn the collected body into the result. If this throws, the body is released.
+	 *
+	 * @param body the whole body, which the result takes over the responsibility for releasing
+	 */
+	protected abstract T convert(CompositeBuffer body);
+
+	private int nextCapacity(int needed) {
+		int capacity;
+		if (expected > 0) {
+			capacity = (int) Math.min(expected, MAX_INITIAL_CAPACITY);
+		} else if (0 == lastCapacity) {
+			capacity = DEFAULT_INITIAL_CAPACITY;
+		} else {
+			capacity = (int) Math.min(lastCapacity * 2L, MAX_INITIAL_CAPACITY);
+		}
+		lastCapacity = Math.max(capacity, needed);
+		return lastCapacity;
+	}
+
+	private void addCopy() {
+		if (null != copy && copy.position() > 0) {
+			copy.flip();
+			body.add(copy);
+		}
+		copy = null;
+	}
+
+}
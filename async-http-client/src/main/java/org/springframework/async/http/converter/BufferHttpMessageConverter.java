@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.HttpOutputMessage;
+import org.springframework.async.http.io.Buffer;
+import org.springframework.async.http.io.CompositeBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Reads and writes {@link Buffer}s. A body is read as the buffers the transport hands over, without copying them,
+ * where it can; the caller must {@linkplain Buffer#release() release} the buffer it is given once it has finished
+ * with it, so the transport can reuse the memory.
+ * <p>By default, supports all media types, and writes with a {@code Content-Type} of {@code
+ * application/octet-stream}. Writing copies the buffer into the request, and leaves releasing it to the caller.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class BufferHttpMessageConverter extends AbstractHttpMessageConverter<Buffer> {
+
+	public BufferHttpMessageConverter() {
+		super(new MediaType("application", "octet-stream"), MediaType.ALL);
+	}
+
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return Buffer.class.equals(clazz) && canRead(mediaType);
+	}
+
+	@Override
+	public boolean supports(Class<?> clazz) {
+		return Buffer.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	protected void readInternal(Class<? extends Buffer> clazz, final HttpInputMessage inputMessage, final Promise<Buffer> promise) throws IOException, HttpMessageNotReadableException {
+		inputMessage.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
+			@Override public void completed(HttpHeaders headers) {
+				inputMessage.setCompletionHandler(new BufferCollector<Buffer>(headers.getContentLength(), promise) {
+					@Override protected Buffer convert(CompositeBuffer body) {
+						return body;
+					}
+				});
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
+		});
+	}
+
+	@Override
+	protected Long getContentLength(Buffer buffer, MediaType contentType) {
+		return (long) buffer.remaining();
+	}
+
+	@Override
+	protected void writeInternal(Buffer buffer, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		ByteBuffer body = outputMessage.allocateBody(buffer.remaining());
+		for (ByteBuffer b : buffer.toByteBuffers()) {
+			body.put(b);
+		}
+		body.flip();
+		outputMessage.setBody(body);
+	}
+
+}
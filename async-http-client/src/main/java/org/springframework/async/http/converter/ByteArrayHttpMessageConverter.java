@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.HttpOutputMessage;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Reads and writes byte arrays. A body is read straight into an array sized from its Content-Length, so one that is
+ * as long as it says is copied exactly once.
+ * <p>By default, supports all media types, and writes with a {@code Content-Type} of {@code
+ * application/octet-stream}.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ByteArrayHttpMessageConverter extends AbstractHttpMessageConverter<byte[]> {
+
+	public ByteArrayHttpMessageConverter() {
+		super(new MediaType("application", "octet-stream"), MediaType.ALL);
+	}
+
+	@Override
+	public boolean supports(Class<?> clazz) {
+		return byte[].class.equals(clazz);
+	}
+
+	@Override
+	protected void readInternal(Class<? extends byte[]> clazz, final HttpInputMessage inputMessage, final Promise<byte[]> promise) throws IOException, HttpMessageNotReadableException {
+		inputMessage.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
+			@Override public void completed(HttpHeaders headers) {
+				inputMessage.setCompletionHandler(new ByteArrayReader(headers.getContentLength(), promise));
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
+		});
+	}
+
+	@Override
+	protected Long getContentLength(byte[] bytes, MediaType contentType) {
+		return (long) bytes.length;
+	}
+
+	@Override
+	protected void writeInternal(byte[] bytes, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		ByteBuffer body = outputMessage.allocateBody(bytes.length);
+		body.put(bytes);
+		body.flip();
+		outputMessage.setBody(body);
+	}
+
+	private static class ByteArrayReader extends EmptyCompletionHandler<Object> {
+		private final Promise<byte[]> promise;
+		private byte[] bytes;
+		private int length;
+
+		private ByteArrayReader(long contentLength, Promise<byte[]> promise) {
+			this.promise = promise;
+			this.bytes = new byte[BufferCollector.initialCapacity(contentLength)];
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			int remaining = buffer.remaining();
+			if (length + remaining > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + remaining));
+			}
+			buffer.get(bytes, length, remaining);
+			length += remaining;
+			return true;
+		}
+
+		@Override public void completed(Object obj) {
+			promise.result(length == bytes.length ? bytes : Arrays.copyOf(bytes, length));
+		}
+
+		@Override public void failed(Throwable throwable) {
+			promise.failure(throwable);
+		}
+	}
+
+}
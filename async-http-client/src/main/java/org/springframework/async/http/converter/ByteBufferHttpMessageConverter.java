@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.HttpOutputMessage;
+import org.springframework.async.http.io.CompositeBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Reads and writes {@link ByteBuffer}s. A body copied out of the transport into a single buffer is returned as it is.
+ * One the transport handed over is copied into a heap buffer and given back, as a {@link ByteBuffer} has no way of
+ * saying when it is no longer needed; read {@link org.springframework.async.http.io.Buffer}s to avoid the copy.
+ * <p>By default, supports all media types, and writes with a {@code Content-Type} of {@code
+ * application/octet-stream}.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ByteBufferHttpMessageConverter extends AbstractHttpMessageConverter<ByteBuffer> {
+
+	public ByteBufferHttpMessageConverter() {
+		super(new MediaType("application", "octet-stream"), MediaType.ALL);
+	}
+
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		// Only a plain ByteBuffer can be promised, not any particular kind of one.
+		return ByteBuffer.class.equals(clazz) && canRead(mediaType);
+	}
+
+	@Override
+	public boolean supports(Class<?> clazz) {
+		return ByteBuffer.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	protected void readInternal(Class<? extends ByteBuffer> clazz, final HttpInputMessage inputMessage, final Promise<ByteBuffer> promise) throws IOException, HttpMessageNotReadableException {
+		inputMessage.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
+			@Override public void completed(HttpHeaders headers) {
+				inputMessage.setCompletionHandler(new BufferCollector<ByteBuffer>(headers.getContentLength(), promise) {
+					@Override protected ByteBuffer convert(CompositeBuffer body) {
+						ByteBuffer[] buffers = body.toByteBuffers();
+						if (buffers.length == 1 && !body.needsRelease()) {
+							return buffers[0];
+						}
+						ByteBuffer buffer = ByteBuffer.allocate(body.remaining());
+						for (ByteBuffer b : buffers) {
+							buffer.put(b);
+						}
+						buffer.flip();
+						body.release();
+						return buffer;
+					}
+				});
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
+		});
+	}
+
+	@Override
+	protected Long getContentLength(ByteBuffer buffer, MediaType contentType) {
+		return (long) buffer.remaining();
+	}
+
+	@Override
+	protected void writeInternal(ByteBuffer buffer, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		ByteBuffer body = outputMessage.allocateBody(buffer.remaining());
+		body.put(buffer.duplicate());
+		body.flip();
+		outputMessage.setBody(body);
+	}
+
+}
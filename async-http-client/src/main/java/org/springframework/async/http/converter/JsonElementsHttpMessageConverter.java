@@ -0,0 +1,320 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.HttpOutputMessage;
+import org.springframework.async.json.JsonElementHandler;
+import org.springframework.async.json.JsonElements;
+import org.springframework.async.json.JsonHandler;
+import org.springframework.async.json.JsonSyntaxException;
+import org.springframework.async.json.JsonTokenizer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.Assert;
+
+/**
+ * Reads a JSON array as {@link JsonElements}, which hand each element of the array over as soon as it has been read
+ * rather than once the whole body has arrived. Each chunk of the body is fed through a {@link JsonTokenizer} as it is
+ * delivered, and only the element being read is built up in memory, so a response takes the same memory however many
+ * elements it has, and that memory is bounded by a limit on the bytes each element may take up. The promise completes
+ * as soon as the headers are in.
+ * <p>By default, supports {@code application/json} and {@code application/*+json}, which must be encoded in UTF-8.
+ * Elements can only be read, not written.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class JsonElementsHttpMessageConverter extends AbstractHttpMessageConverter<JsonElements> {
+
+	public static final long DEFAULT_MAX_ELEMENT_LENGTH = 16 * 1024 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private int maxDepth = JsonTokenizer.DEFAULT_MAX_DEPTH;
+	private int maxTokenLength = JsonTokenizer.DEFAULT_MAX_TOKEN_LENGTH;
+	private long maxElementLength = DEFAULT_MAX_ELEMENT_LENGTH;
+
+	public JsonElementsHttpMessageConverter() {
+		super(new MediaType("application", "json"), new MediaType("application", "*+json"));
+	}
+
+	/**
+	 * Set how deeply objects and arrays may be nested in the body. Default is {@value
+	 * JsonTokenizer#DEFAULT_MAX_DEPTH}.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		Assert.isTrue(maxDepth > 0, "'maxDepth' must be positive");
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Set the most characters a single string or number in the body may have. Default is {@value
+	 * JsonTokenizer#DEFAULT_MAX_TOKEN_LENGTH}.
+	 */
+	public void setMaxTokenLength(int maxTokenLength) {
+		Assert.isTrue(maxTokenLength > 0, "'maxTokenLength' must be positive");
+		this.maxTokenLength = maxTokenLength;
+	}
+
+	/**
+	 * Set the most bytes of the body a single element of the array may take up, from its first byte to its last. An
+	 * element that is longer fails the read as soon as the tokenizer gets past its limit. An element that is a string
+	 * or number is limited by {@link #setMaxTokenLength(int)} instead. Default is {@value #DEFAULT_MAX_ELEMENT_LENGTH}.
+	 */
+	public void setMaxElementLength(long maxElementLength) {
+		Assert.isTrue(maxElementLength > 0, "'maxElementLength' must be positive");
+		this.maxElementLength = maxElementLength;
+	}
+
+	@Override
+	public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	public boolean supports(Class<?> clazz) {
+		return JsonElements.class.equals(clazz);
+	}
+
+	@Override
+	protected void readInternal(Class<? extends JsonElements> clazz, final HttpInputMessage inputMessage, final Promise<JsonElements> promise) throws IOException, HttpMessageNotReadableException {
+		inputMessage.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
+			@Override public void completed(HttpHeaders headers) {
+				MediaType contentType = headers.getContentType();
+				if (null != contentType && null != contentType.getCharSet() && !UTF_8.equals(contentType.getCharSet())) {
+					promise.failure(new HttpMessageNotReadableException("Cannot read JSON in " + contentType.getCharSet()
+							+ ", only in UTF-8"));
+					return;
+				}
+				promise.result(new ElementReader(inputMessage, maxDepth, maxTokenLength, maxElementLength));
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
+		});
+	}
+
+	@Override
+	protected void writeInternal(JsonElements elements, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		throw new HttpMessageNotWritableException("Cannot write JsonElements");
+	}
+
+	/**
+	 * Builds each element out of the tokens of the body, and hands it over once its last token has been read.
+	 */
+	private static class ElementReader extends EmptyCompletionHandler<Object> implements JsonElements, JsonHandler {
+		private final HttpInputMessage inputMessage;
+		private final JsonTokenizer tokenizer;
+		private final long maxElementLength;
+		private final AtomicBoolean started = new AtomicBoolean();
+		// The objects and arrays the current element is nested in, and the name of the member being read of each object.
+		private final List<Object> containers = new ArrayList<Object>();
+		private final List<String> names = new ArrayList<String>();
+		private JsonElementHandler handler;
+		// Offset of the first byte of the object or array element being read.
+		private long elementOffset;
+		private boolean more;
+		private boolean failed;
+
+		private ElementReader(HttpInputMessage inputMessage, int maxDepth, int maxTokenLength, long maxElementLength) {
+			this.inputMessage = inputMessage;
+			this.tokenizer = new JsonTokenizer(this, maxDepth, maxTokenLength);
+			this.maxElementLength = maxElementLength;
+		}
+
+		@Override public void setElementHandler(JsonElementHandler handler) {
+			Assert.notNull(handler, "'handler' must not be null");
+			if (!started.compareAndSet(false, true)) {
+				throw new IllegalStateException("An element handler has already been set");
+			}
+			this.handler = handler;
+			inputMessage.setCompletionHandler(this);
+		}
+
+		@Override public void resume() {
+			inputMessage.resume();
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			if (failed) {
+				// Whatever is left of the body is dropped.
+				return true;
+			}
+			more = true;
+			try {
+				tokenizer.feed(buffer);
+			} catch (RuntimeException e) {
+				fail(e);
+				return true;
+			}
+			return more;
+		}
+
+		@Override public void completed(Object obj) {
+			if (failed) {
+				return;
+			}
+			try {
+				tokenizer.end();
+			} catch (RuntimeException e) {
+				fail(e);
+				return;
+			}
+			handler.completed();
+		}
+
+		@Override public void failed(Throwable throwable) {
+			if (!failed) {
+				failed = true;
+				handler.failed(throwable);
+			}
+		}
+
+		private void fail(RuntimeException e) {
+			failed = true;
+			containers.clear();
+			names.clear();
+			if (e instanceof JsonSyntaxException) {
+				handler.failed(new HttpMessageNotReadableException("Could not read JSON: " + e.getMessage(), e));
+			} else {
+				handler.failed(e);
+			}
+		}
+
+		@Override public void startObject() {
+			startContainer();
+			containers.add(new LinkedHashMap<String, Object>());
+			names.add(null);
+		}
+
+		@Override public void endObject() {
+			endContainer();
+		}
+
+		@Override public void startArray() {
+			if (1 == tokenizer.getDepth()) {
+				// The array whose elements are being handed over, which is never built.
+				return;
+			}
+			startContainer();
+			containers.add(new ArrayList<Object>());
+			names.add(null);
+		}
+
+		@Override public void endArray() {
+			if (0 == tokenizer.getDepth() && containers.isEmpty()) {
+				return;
+			}
+			endContainer();
+		}
+
+		@Override public void name(String name) {
+			checkElementLength();
+			names.set(names.size() - 1, name);
+		}
+
+		@Override public void string(String value) {
+			value(value);
+		}
+
+		@Override public void number(String text) {
+			value(parseNumber(text));
+		}
+
+		@Override public void bool(boolean value) {
+			value(value);
+		}
+
+		@Override public void nullValue() {
+			value(null);
+		}
+
+		private void startContainer() {
+			if (containers.isEmpty()) {
+				elementOffset = tokenizer.getPosition();
+			} else {
+				checkElementLength();
+			}
+		}
+
+		/**
+		 * Fail the read if the element being read has gone past its limit. Checked as each of its tokens is read, so an
+		 * element can only overshoot by the length of one token, which the tokenizer limits.
+		 */
+		private void checkElementLength() {
+			if (tokenizer.getPosition() - elementOffset >= maxElementLength) {
+				throw new JsonSyntaxException("Element longer than " + maxElementLength + " bytes", elementOffset);
+			}
+		}
+
+		private void endContainer() {
+			checkElementLength();
+			int last = containers.size() - 1;
+			names.remove(last);
+			value(containers.remove(last));
+		}
+
+		@SuppressWarnings({"unchecked"})
+		private void value(Object value) {
+			if (containers.isEmpty()) {
+				more &= handler.element(value);
+				return;
+			}
+			checkElementLength();
+			int last = containers.size() - 1;
+			Object container = containers.get(last);
+			if (container instanceof Map) {
+				((Map<String, Object>) container).put(names.get(last), value);
+			} else {
+				((List<Object>) container).add(value);
+			}
+		}
+
+		private static Object parseNumber(String text) {
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if ('.' == c || 'e' == c || 'E' == c) {
+					return Double.valueOf(text);
+				}
+			}
+			if (text.length() < 19) {
+				return Long.valueOf(text);
+			}
+			BigInteger value = new BigInteger(text);
+			if (value.bitLength() < 64) {
+				return value.longValue();
+			}
+			return value;
+		}
+	}
+
+}
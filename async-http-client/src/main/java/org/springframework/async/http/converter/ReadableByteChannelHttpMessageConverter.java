@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.HttpOutputMessage;
+import org.springframework.async.http.io.CompositeBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ * Reads a body as a {@link ReadableByteChannel}. The body is collected as the buffers the transport hands over where
+ * it can, and each {@link ReadableByteChannel#read(ByteBuffer)} copies straight out of them into the caller's buffer.
+ * Closing the channel gives the memory back to the transport, so it should be closed once it has been read.
+ * <p>By default, supports all media types. Channels can only be read, not written.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ReadableByteChannelHttpMessageConverter extends AbstractHttpMessageConverter<ReadableByteChannel> {
+
+	public ReadableByteChannelHttpMessageConverter() {
+		super(MediaType.ALL);
+	}
+
+	@Override
+	public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	public boolean supports(Class<?> clazz) {
+		return ReadableByteChannel.class.equals(clazz);
+	}
+
+	@Override
+	protected void readInternal(Class<? extends ReadableByteChannel> clazz, final HttpInputMessage inputMessage, final Promise<ReadableByteChannel> promise) throws IOException, HttpMessageNotReadableException {
+		inputMessage.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
+			@Override public void completed(HttpHeaders headers) {
+				inputMessage.setCompletionHandler(new BufferCollector<ReadableByteChannel>(headers.getContentLength(), promise) {
+					@Override protected ReadableByteChannel convert(CompositeBuffer body) {
+						return new BufferChannel(body);
+					}
+				});
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
+		});
+	}
+
+	@Override
+	protected void writeInternal(ReadableByteChannel channel, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		throw new HttpMessageNotWritableException("Cannot write a ReadableByteChannel");
+	}
+
+	private static class BufferChannel implements ReadableByteChannel {
+		private final CompositeBuffer body;
+		private final ByteBuffer[] buffers;
+		private int current;
+		private volatile boolean open = true;
+
+		private BufferChannel(CompositeBuffer body) {
+			this.body = body;
+			this.buffers = body.toByteBuffers();
+		}
+
+		@Override public synchronized int read(ByteBuffer dst) throws IOException {
+			if (!open) {
+				throw new ClosedChannelException();
+			}
+			while (current < buffers.length && !buffers[current].hasRemaining()) {
+				current++;
+			}
+			if (current == buffers.length) {
+				return -1;
+			}
+			int read = 0;
+			while (dst.hasRemaining() && current < buffers.length) {
+				ByteBuffer buffer = buffers[current];
+				int length = Math.min(buffer.remaining(), dst.remaining());
+				ByteBuffer part = buffer.duplicate();
+				part.limit(part.position() + length);
+				dst.put(part);
+				buffer.position(buffer.position() + length);
+				read += length;
+				if (!buffer.hasRemaining()) {
+					current++;
+				}
+			}
+			return read;
+		}
+
+		@Override public boolean isOpen() {
+			return open;
+		}
+
+		@Override public synchronized void close() {
+			if (open) {
+				open = false;
+				body.release();
+			}
+		}
+	}
+
+}
@@ -18,11 +18,16 @@ package org.springframework.async.http.converter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
-import org.springframework.async.AbstractCompletionHandler;
+import org.springframework.async.EmptyCompletionHandler;
 import org.springframework.async.Promise;
 import org.springframework.async.http.HttpInputMessage;
 import org.springframework.async.http.HttpOutputMessage;
@@ -38,10 +43,18 @@ public class StringHttpMessageConverter extends AbstractHttpMessageConverter<Str
 
 	public static final Charset DEFAULT_CHARSET = Charset.forName("ISO-8859-1");
 
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	// Content-Length is only trusted this far when sizing the buffer a body is read into.
+	private static final int MAX_INITIAL_CAPACITY = 1024 * 1024;
+	private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
 	private final List<Charset> availableCharsets;
 
 	private boolean writeAcceptCharset = true;
 
+	private volatile String acceptCharsetHeader;
+
 	public StringHttpMessageConverter() {
 		super(new MediaType("text", "plain", DEFAULT_CHARSET), MediaType.ALL);
 		this.availableCharsets = new ArrayList<Charset>(Charset.availableCharsets().values());
@@ -62,36 +75,55 @@ public class StringHttpMessageConverter extends AbstractHttpMessageConverter<Str
 
 	@Override
 	protected void readInternal(Class<? extends String> clazz, final HttpInputMessage outputMessage, final Promise<String> promise) throws IOException, HttpMessageNotReadableException {
-		outputMessage.getHeaders().addCompletionHandler(new AbstractCompletionHandler<HttpHeaders>() {
+		outputMessage.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
 			@Override public void completed(HttpHeaders headers) {
-				final Charset charset = getContentTypeCharset(headers.getContentType());
-				outputMessage.setCompletionHandler(new AbstractCompletionHandler<Object>() {
-					private StringBuffer sb = new StringBuffer();
-
-					@Override public boolean chunk(ByteBuffer buffer) {
-						sb.append(charset.decode(buffer).array());
-						return true;
-					}
-
-					@Override public void completed(Object obj) {
-						promise.result(sb.toString());
-					}
-
-					@Override public void failed(Throwable throwable) {
-						promise.failure(throwable);
-					}
-				});
+				Charset charset = getContentTypeCharset(headers.getContentType());
+				long contentLength = headers.getContentLength();
+				if (US_ASCII.equals(charset) || DEFAULT_CHARSET.equals(charset)) {
+					outputMessage.setCompletionHandler(new SingleByteReader(charset, contentLength, promise));
+				} else {
+					outputMessage.setCompletionHandler(new DecodingReader(charset, contentLength, promise));
+				}
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
 			}
 		});
 	}
 
+	@Override
+	protected Long getContentLength(String s, MediaType contentType) {
+		Charset charset = getContentTypeCharset(contentType);
+		if (US_ASCII.equals(charset) || DEFAULT_CHARSET.equals(charset)) {
+			// Characters that can't be encoded are replaced by a single '?', and a surrogate pair is one character.
+			return (long) s.codePointCount(0, s.length());
+		}
+		if (UTF_8.equals(charset)) {
+			return utf8Length(s);
+		}
+		return null;
+	}
+
 	@Override
 	protected void writeInternal(String s, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		HttpHeaders headers = outputMessage.getHeaders();
 		if (writeAcceptCharset) {
-			outputMessage.getHeaders().setAcceptCharset(getAcceptedCharsets());
+			headers.set("Accept-Charset", getAcceptCharsetHeader());
 		}
-		Charset charset = getContentTypeCharset(outputMessage.getHeaders().getContentType());
-
+		Charset charset = getContentTypeCharset(headers.getContentType());
+		CharsetEncoder encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		long contentLength = headers.getContentLength();
+		int capacity = (contentLength >= 0 ? (int) contentLength : (int) Math.ceil(s.length() * encoder.maxBytesPerChar()));
+		ByteBuffer body = outputMessage.allocateBody(capacity);
+		if (!encoder.encode(CharBuffer.wrap(s), body, true).isUnderflow() || !encoder.flush(body).isUnderflow()) {
+			throw new HttpMessageNotWritableException("Content-Length of " + contentLength + " is too short for the "
+					+ charset.name() + " encoded body");
+		}
+		body.flip();
+		outputMessage.setBody(body);
 	}
 
 	/**
@@ -105,6 +137,47 @@ public class StringHttpMessageConverter extends AbstractHttpMessageConverter<Str
 		return this.availableCharsets;
 	}
 
+	/**
+	 * @return the value of the {@code Accept-Charset} header, worked out from {@link #getAcceptedCharsets()} the first
+	 *         time it is needed and reused for every request after that
+	 */
+	private String getAcceptCharsetHeader() {
+		String acceptCharsetHeader = this.acceptCharsetHeader;
+		if (null == acceptCharsetHeader) {
+			StringBuilder builder = new StringBuilder();
+			for (Charset charset : getAcceptedCharsets()) {
+				if (builder.length() > 0) {
+					builder.append(", ");
+				}
+				builder.append(charset.name().toLowerCase(Locale.ENGLISH));
+			}
+			acceptCharsetHeader = builder.toString();
+			this.acceptCharsetHeader = acceptCharsetHeader;
+		}
+		return acceptCharsetHeader;
+	}
+
+	private static long utf8Length(String s) {
+		long length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				// A lone surrogate is replaced by a single '?'.
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
 	private Charset getContentTypeCharset(MediaType contentType) {
 		if (contentType != null && contentType.getCharSet() != null) {
 			return contentType.getCharSet();
@@ -114,4 +187,131 @@ public class StringHttpMessageConverter extends AbstractHttpMessageConverter<Str
 
 	}
 
+	private static int initialCapacity(long contentLength) {
+		return (contentLength >= 0 ? (int) Math.min(contentLength, MAX_INITIAL_CAPACITY) : DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Reads a body in a charset with one byte per character. The bytes are collected as they are and decoded in one
+	 * go once the whole body has arrived, which needs no decoder state between chunks.
+	 */
+	private static class SingleByteReader extends EmptyCompletionHandler<Object> {
+		private final Charset charset;
+		private final Promise<String> promise;
+		private byte[] bytes;
+		private int length;
+
+		private SingleByteReader(Charset charset, long contentLength, Promise<String> promise) {
+			this.charset = charset;
+			this.promise = promise;
+			this.bytes = new byte[initialCapacity(contentLength)];
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			int remaining = buffer.remaining();
+			if (length + remaining > bytes.length) {
+				byte[] bigger = new byte[Math.max(bytes.length * 2, length + remaining)];
+				System.arraycopy(bytes, 0, bigger, 0, length);
+				bytes = bigger;
+			}
+			buffer.get(bytes, length, remaining);
+			length += remaining;
+			return true;
+		}
+
+		@Override public void completed(Object obj) {
+			promise.result(new String(bytes, 0, length, charset));
+		}
+
+		@Override public void failed(Throwable throwable) {
+			promise.failure(throwable);
+		}
+	}
+
+	/**
+	 * Reads a body in any charset with a {@link CharsetDecoder} that lives as long as the response, so a character
+	 * whose bytes are split between two chunks is put back together rather than decoded as two malformed halves.
+	 * Malformed and unmappable input is replaced, as {@link Charset#decode(ByteBuffer)} would.
+	 */
+	private static class DecodingReader extends EmptyCompletionHandler<Object> {
+		// Longer than the bytes of any one character in any charset.
+		private static final int MAX_CARRIED_BYTES = 16;
+
+		private final CharsetDecoder decoder;
+		private final Promise<String> promise;
+		private final ByteBuffer carried = ByteBuffer.allocate(MAX_CARRIED_BYTES);
+		private CharBuffer chars;
+
+		private DecodingReader(Charset charset, long contentLength, Promise<String> promise) {
+			this.decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.promise = promise;
+			this.chars = CharBuffer.allocate(Math.max(1, (int) (initialCapacity(contentLength) * decoder.averageCharsPerByte())));
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			if (carried.position() > 0 && !completeCarried(buffer)) {
+				return true;
+			}
+			decode(buffer, false);
+			if (buffer.hasRemaining()) {
+				// The start of a character whose remaining bytes are in the next chunk.
+				carried.put(buffer);
+			}
+			return true;
+		}
+
+		@Override public void completed(Object obj) {
+			carried.flip();
+			decode(carried, true);
+			while (decoder.flush(chars).isOverflow()) {
+				grow();
+			}
+			promise.result(new String(chars.array(), 0, chars.position()));
+		}
+
+		@Override public void failed(Throwable throwable) {
+			promise.failure(throwable);
+		}
+
+		/**
+		 * Decode the character carried over from the last chunk, taking as many bytes from the start of this one as it
+		 * needs.
+		 *
+		 * @return false if this chunk ended before the character did
+		 */
+		private boolean completeCarried(ByteBuffer buffer) {
+			int carriedBytes = carried.position();
+			int borrowed = Math.min(buffer.remaining(), carried.remaining());
+			ByteBuffer head = buffer.duplicate();
+			head.limit(head.position() + borrowed);
+			carried.put(head);
+			carried.flip();
+			decode(carried, false);
+			int consumed = carried.position() - carriedBytes;
+			if (consumed < 0) {
+				buffer.position(buffer.position() + borrowed);
+				carried.compact();
+				return false;
+			}
+			buffer.position(buffer.position() + consumed);
+			carried.clear();
+			return true;
+		}
+
+		private void decode(ByteBuffer buffer, boolean endOfInput) {
+			while (decoder.decode(buffer, chars, endOfInput).isOverflow()) {
+				grow();
+			}
+		}
+
+		private void grow() {
+			CharBuffer bigger = CharBuffer.allocate(chars.capacity() * 2);
+			chars.flip();
+			bigger.put(chars);
+			chars = bigger;
+		}
+	}
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Content that has been handed over by the transport that read it rather than copied out of it. The memory behind it
+ * may belong to a pool the transport reuses, so it must be {@linkplain #release() released} once it has been
+ * consumed, and must not be touched after that.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface Buffer {
+
+	/**
+	 * @return the number of bytes of content
+	 */
+	int remaining();
+
+	/**
+	 * @return the content as one or more buffers, in order, sharing memory with this buffer. Each call returns new
+	 *         buffers, so reading from them does not affect what later calls return.
+	 */
+	ByteBuffer[] toByteBuffers();
+
+	/**
+	 * Give the memory behind this buffer back to the transport. Calling this more than once has no further effect.
+	 */
+	void release();
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.io;
+
+import org.springframework.async.CompletionHandler;
+
+/**
+ * A {@link CompletionHandler} that can take ownership of content, so that a transport whose buffers outlive the read
+ * that filled them can hand them over instead of lending them for the length of a {@link #chunk(java.nio.ByteBuffer)}
+ * call. Transports that cannot do this call {@link #chunk(java.nio.ByteBuffer)} as for any other handler.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface BufferCompletionHandler<V> extends CompletionHandler<V> {
+
+	/**
+	 * Process a chunk of content the handler now owns and is responsible for {@linkplain Buffer#release()
+	 * releasing}.
+	 *
+	 * @param buffer the content
+	 * @return true if ready for the next chunk, false to pause delivery until the source is resumed
+	 */
+	boolean buffer(Buffer buffer);
+
+}
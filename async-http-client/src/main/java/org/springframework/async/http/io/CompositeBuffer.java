@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Buffer} made up of other buffers, and of plain {@link ByteBuffer}s that need no releasing, in the order they
+ * were added. Releasing it releases every buffer it was given.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class CompositeBuffer implements Buffer {
+
+	private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>(4);
+	private final List<Buffer> components = new ArrayList<Buffer>(4);
+	private int remaining;
+
+	/**
+	 * Append the content of a buffer, taking over the responsibility for releasing it.
+	 */
+	public CompositeBuffer add(Buffer buffer) {
+		for (ByteBuffer segment : buffer.toByteBuffers()) {
+			if (segment.hasRemaining()) {
+				segments.add(segment);
+				remaining += segment.remaining();
+			}
+		}
+		components.add(buffer);
+		return this;
+	}
+
+	/**
+	 * Append the remaining content of a buffer that is not shared with anything else.
+	 */
+	public CompositeBuffer add(ByteBuffer buffer) {
+		if (buffer.hasRemaining()) {
+			segments.add(buffer);
+			remaining += buffer.remaining();
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if any of the content belongs to a buffer that was {@linkplain #add(Buffer) handed over} and has yet
+	 *         to be released, false if it is all in plain {@link ByteBuffer}s
+	 */
+	public boolean needsRelease() {
+		return !components.isEmpty();
+	}
+
+	@Override public int remaining() {
+		return remaining;
+	}
+
+	@Override public ByteBuffer[] toByteBuffers() {
+		ByteBuffer[] buffers = new ByteBuffer[segments.size()];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = segments.get(i).duplicate();
+		}
+		return buffers;
+	}
+
+	@Override public void release() {
+		for (Buffer component : components) {
+			component.release();
+		}
+		components.clear();
+		segments.clear();
+		remaining = 0;
+	}
+
+}
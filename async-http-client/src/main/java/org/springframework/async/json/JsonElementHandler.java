@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.json;
+
+/**
+ * Receives the elements of a JSON array one at a time, as each one is read.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface JsonElementHandler {
+
+	/**
+	 * Process an element. Objects are passed as {@link java.util.Map}s that keep their members in document order,
+	 * arrays as {@link java.util.List}s, strings as {@link String}s, numbers as {@link Long}s, {@link
+	 * java.math.BigInteger}s if too big for a {@code long}, or {@link Double}s if they have a fraction or exponent,
+	 * booleans as {@link Boolean}s and {@code null} as {@code null}.
+	 *
+	 * @param element the element
+	 * @return true if ready for the next element, false to pause delivery once the elements already read have been
+	 *         delivered, until {@link JsonElements#resume()} is called
+	 */
+	boolean element(Object element);
+
+	/**
+	 * Called once the last element has been delivered.
+	 */
+	void completed();
+
+	/**
+	 * Called instead of {@link #completed()} if the body could not be read or was not valid JSON, or {@link
+	 * #element(Object)} threw an exception. No more elements are delivered after this.
+	 *
+	 * @param throwable the cause
+	 */
+	void failed(Throwable throwable);
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.json;
+
+/**
+ * The elements of a JSON array that is still being read. Nothing is read beyond what the transport buffers until a
+ * handler has been set, and each element is handed over as soon as it is complete, so that only one element need be
+ * held in memory at a time however long the array is. A body that is not an array is handed over as a single element.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface JsonElements {
+
+	/**
+	 * Start delivering elements to the given handler. May only be called once.
+	 */
+	void setElementHandler(JsonElementHandler handler);
+
+	/**
+	 * Resume delivering elements after the handler paused delivery by returning false from {@link
+	 * JsonElementHandler#element(Object)}.
+	 */
+	void resume();
+
+}
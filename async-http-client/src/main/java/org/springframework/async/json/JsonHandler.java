@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.json;
+
+/**
+ * Receives the tokens of a JSON document from a {@link JsonTokenizer} as they are read. Names and values are reported
+ * in document order, with each container's contents between its start and end.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface JsonHandler {
+
+	void startObject();
+
+	void endObject();
+
+	void startArray();
+
+	void endArray();
+
+	/**
+	 * @param name the name of the object member whose value comes next
+	 */
+	void name(String name);
+
+	void string(String value);
+
+	/**
+	 * @param text the number as it appears in the document, which is known to be valid JSON
+	 */
+	void number(String text);
+
+	void bool(boolean value);
+
+	void nullValue();
+
+}
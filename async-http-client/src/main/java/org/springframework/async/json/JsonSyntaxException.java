@@ -14,31 +14,29 @@
  * limitations under the License.
  */
 
-package org.springframework.async.web.client.grizzly;
-
-import java.util.concurrent.Future;
-
-import org.glassfish.grizzly.impl.FutureImpl;
-import org.glassfish.grizzly.impl.SafeFutureImpl;
-import org.springframework.async.Promise;
+package org.springframework.async.json;
 
 /**
+ * Thrown by a {@link JsonTokenizer} when its input is not valid JSON, or goes beyond the limits it was created with.
+ *
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
-public class GrizzlyFuturePromise<V> extends Promise<V> {
+public class JsonSyntaxException extends RuntimeException {
 
-	private FutureImpl<V> future = SafeFutureImpl.create();
+	private static final long serialVersionUID = 1L;
 
-	@Override protected Future<V> getFuture() {
-		return future;
-	}
+	private final long offset;
 
-	@Override protected void handleResult(V obj) {
-		future.result(obj);
+	public JsonSyntaxException(String message, long offset) {
+		super(message + " at byte " + offset);
+		this.offset = offset;
 	}
 
-	@Override protected void handleFailure(Throwable throwable) {
-		future.failure(throwable);
+	/**
+	 * @return the offset in the input of the byte the problem was found at
+	 */
+	public long getOffset() {
+		return offset;
 	}
 
 }
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.json;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.util.Assert;
+
+/**
+ * Push-style JSON tokenizer for UTF-8 input that arrives a chunk at a time. Each chunk is {@linkplain #feed(ByteBuffer)
+ * fed} in as it arrives and every token completed by it is reported to a {@link JsonHandler} straight away; a token
+ * split between chunks is carried over in the tokenizer's state, so the input never has to be held in memory.
+ * <p>The memory used is bounded when the tokenizer is created: a stack as deep as the deepest nesting allowed, a
+ * buffer as long as the longest string or number allowed, a small buffer for copying out of direct {@link
+ * ByteBuffer}s and a small cache of recently seen member names.
+ * Input that needs more than that is rejected with a {@link JsonSyntaxException}, as is input that is not valid JSON.
+ * Malformed UTF-8 inside strings, overlong encodings and encoded surrogates included, is replaced with U+FFFD rather
+ * than rejected, so no character can be smuggled past a check on the bytes.
+ * <p>Not thread-safe; feed each tokenizer from one thread at a time.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class JsonTokenizer {
+
+	public static final int DEFAULT_MAX_DEPTH = 256;
+	public static final int DEFAULT_MAX_TOKEN_LENGTH = 1024 * 1024;
+
+	private static final int INITIAL_TOKEN_CAPACITY = 64;
+	private static final int SCRATCH_SIZE = 8192;
+	private static final int NAME_CACHE_SIZE = 64;
+	private static final int MAX_CACHED_NAME_LENGTH = 32;
+	private static final char REPLACEMENT = '\uFFFD';
+
+	private static final byte OBJECT = 1;
+	private static final byte ARRAY = 2;
+
+	// What the next byte outside of a string, number or literal is expected to be.
+	private static final int VALUE = 0;
+	private static final int VALUE_OR_END_ARRAY = 1;
+	private static final int NAME_OR_END_OBJECT = 2;
+	private static final int NAME = 3;
+	private static final int COLON = 4;
+	private static final int AFTER_VALUE = 5;
+	private static final int DONE = 6;
+	// In the middle of a token.
+	private static final int STRING = 7;
+	private static final int NUMBER = 8;
+	private static final int LITERAL = 9;
+
+	// Where a number has got to, following the JSON grammar.
+	private static final int NUMBER_MINUS = 0;
+	private static final int NUMBER_ZERO = 1;
+	private static final int NUMBER_INT = 2;
+	private static final int NUMBER_POINT = 3;
+	private static final int NUMBER_FRACTION = 4;
+	private static final int NUMBER_E = 5;
+	private static final int NUMBER_EXPONENT_SIGN = 6;
+	private static final int NUMBER_EXPONENT = 7;
+
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+	private final JsonHandler handler;
+	private final byte[] stack;
+	private final int maxTokenLength;
+	private final String[] names = new String[NAME_CACHE_SIZE];
+	private byte[] scratch;
+	private int depth;
+	private int state = VALUE;
+	private long offset;
+	// Offset of the start of the array being fed in, and the index into it of the byte being looked at.
+	private long base;
+	private int position;
+
+	// The string or number being read.
+	private char[] token;
+	private int tokenLength;
+	private long tokenOffset;
+	private boolean tokenIsName;
+	private int numberState;
+	// Escape sequence within a string: 0 for none, -1 just after the backslash, otherwise 1 + the \\u digits read.
+	private int escape;
+	private int escapedChar;
+	// UTF-8 sequence within a string: the continuation bytes still to come, the code point so far, and the least code
+	// point that needs as many bytes, below which the sequence is overlong.
+	private int continuationBytes;
+	private int codePoint;
+	private int minCodePoint;
+	private byte[] literal;
+	private int literalIndex;
+
+	public JsonTokenizer(JsonHandler handler) {
+		this(handler, DEFAULT_MAX_DEPTH, DEFAULT_MAX_TOKEN_LENGTH);
+	}
+
+	/**
+	 * @param handler        the handler to report tokens to
+	 * @param maxDepth       how deeply objects and arrays may be nested
+	 * @param maxTokenLength the most characters a single string or number may have
+	 */
+	public JsonTokenizer(JsonHandler handler, int maxDepth, int maxTokenLength) {
+		Assert.notNull(handler, "'handler' must not be null");
+		Assert.isTrue(maxDepth > 0, "'maxDepth' must be positive");
+		Assert.isTrue(maxTokenLength > 0, "'maxTokenLength' must be positive");
+		this.handler = handler;
+		this.stack = new byte[maxDepth];
+		this.maxTokenLength = maxTokenLength;
+		this.token = new char[Math.min(INITIAL_TOKEN_CAPACITY, maxTokenLength)];
+	}
+
+	/**
+	 * @return the number of bytes fed in so far
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the offset in the input of the byte being tokenized. Within a {@link JsonHandler} callback, this is the
+	 *         byte that completed the token being reported: the bracket or brace of a container, the closing quote of a
+	 *         string, the last byte of a literal, or the byte after a number.
+	 */
+	public long getPosition() {
+		return base + position;
+	}
+
+	/**
+	 * @return how deeply nested the tokenizer currently is: 0 outside of the top-level value, 1 directly inside it and
+	 *         so on
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Tokenize the next chunk of input, consuming all of it.
+	 *
+	 * @throws JsonSyntaxException if the input is not valid JSON
+	 */
+	public void feed(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			int start = buffer.arrayOffset() + buffer.position();
+			feed(buffer.array(), start, start + buffer.remaining());
+			buffer.position(buffer.limit());
+			return;
+		}
+		if (null == scratch) {
+			scratch = new byte[SCRATCH_SIZE];
+		}
+		while (buffer.hasRemaining()) {
+			int length = Math.min(buffer.remaining(), scratch.length);
+			buffer.get(scratch, 0, length);
+			feed(scratch, 0, length);
+		}
+	}
+
+	/**
+	 * Tokenize the given bytes.
+	 *
+	 * @throws JsonSyntaxException if the input is not valid JSON
+	 */
+	public void feed(byte[] bytes, int start, int end) {
+		base = offset - start;
+		int i = start;
+		try {
+			while (i < end) {
+				position = i;
+				switch (state) {
+					case STRING:
+						i = string(bytes, i, end);
+						break;
+					case NUMBER:
+						i = number(bytes, i, end);
+						break;
+					case LITERAL:
+						literal(bytes[i]);
+						i++;
+						break;
+					default:
+						structural(bytes[i]);
+						i++;
+				}
+			}
+		} finally {
+			offset = base + i;
+		}
+	}
+
+	/**
+	 * Signal the end of the input, which completes a top-level number.
+	 *
+	 * @throws JsonSyntaxException if the input ended before the top-level value did
+	 */
+	public void end() {
+		base = offset;
+		position = 0;
+		if (NUMBER == state) {
+			endNumber();
+		}
+		if (DONE != state) {
+			throw error("Unexpected end of input");
+		}
+	}
+
+	/**
+	 * Forget all input so far, to start on a new document.
+	 */
+	public void reset() {
+		depth = 0;
+		state = VALUE;
+		offset = 0;
+		tokenLength = 0;
+		escape = 0;
+		continuationBytes = 0;
+	}
+
+	private void structural(byte b) {
+		if (' ' == b || '\n' == b || '\r' == b || '\t' == b) {
+			return;
+		}
+		switch (state) {
+			case VALUE:
+			case VALUE_OR_END_ARRAY:
+				if (']' == b && VALUE_OR_END_ARRAY == state) {
+					endContainer(ARRAY);
+				} else {
+					startValue(b);
+				}
+				break;
+			case NAME_OR_END_OBJECT:
+			case NAME:
+				if ('"' == b) {
+					startString(true);
+				} else if ('}' == b && NAME_OR_END_OBJECT == state) {
+					endContainer(OBJECT);
+				} else {
+					throw error("Expected a member name" + (NAME == state ? "" : " or '}'"));
+				}
+				break;
+			case COLON:
+				if (':' != b) {
+					throw error("Expected ':'");
+				}
+				state = VALUE;
+				break;
+			case AFTER_VALUE:
+				byte container = stack[depth - 1];
+				if (',' == b) {
+					state = (ARRAY == container ? VALUE : NAME);
+				} else if (']' == b && ARRAY == container) {
+					endContainer(ARRAY);
+				} else if ('}' == b && OBJECT == container) {
+					endContainer(OBJECT);
+				} else {
+					throw error(ARRAY == container ? "Expected ',' or ']'" : "Expected ',' or '}'");
+				}
+				break;
+			default:
+				throw error("Unexpected content after the end of the document");
+		}
+	}
+
+	private void startValue(byte b) {
+		switch (b) {
+			case '{':
+				push(OBJECT);
+				handler.startObject();
+				state = NAME_OR_END_OBJECT;
+				break;
+			case '[':
+				push(ARRAY);
+				handler.startArray();
+				state = VALUE_OR_END_ARRAY;
+				break;
+			case '"':
+				startString(false);
+				break;
+			case 't':
+				startLiteral(TRUE);
+				break;
+			case 'f':
+				startLiteral(FALSE);
+				break;
+			case 'n':
+				startLiteral(NULL);
+				break;
+			default:
+				if ('-' == b || (b >= '0' && b <= '9')) {
+					tokenLength = 0;
+					tokenOffset = base + position;
+					numberState = ('-' == b ? NUMBER_MINUS : '0' == b ? NUMBER_ZERO : NUMBER_INT);
+					append((char) b);
+					state = NUMBER;
+				} else {
+					throw error("Expected a value");
+				}
+		}
+	}
+
+	private void push(byte container) {
+		if (depth == stack.length) {
+			throw error("Nested more than " + stack.length + " deep");
+		}
+		stack[depth++] = container;
+	}
+
+	private void endContainer(byte container) {
+		depth--;
+		if (ARRAY == container) {
+			handler.endArray();
+		} else {
+			handler.endObject();
+		}
+		endValue();
+	}
+
+	private void endValue() {
+		state = (0 == depth ? DONE : AFTER_VALUE);
+	}
+
+	private void startString(boolean name) {
+		tokenLength = 0;
+		tokenOffset = base + position;
+		tokenIsName = name;
+		state = STRING;
+	}
+
+	/**
+	 * @return the index of the first byte not consumed
+	 */
+	private int string(byte[] bytes, int i, int end) {
+		while (i < end) {
+			if (0 == escape && 0 == continuationBytes) {
+				// Copy a run of plain ASCII, the bulk of most documents, in one go.
+				int run = i;
+				while (run < end && bytes[run] >= 0x20 && bytes[run] != '"' && bytes[run] != '\\') {
+					run++;
+				}
+				if (run > i) {
+					ensureCapacity(run - i);
+					for (; i < run; i++) {
+						token[tokenLength++] = (char) bytes[i];
+					}
+					if (i == end) {
+						break;
+					}
+				}
+			}
+			int b = bytes[i];
+			i++;
+			if (continuationBytes > 0) {
+				if ((b & 0xC0) != 0x80) {
+					// The sequence was cut short; look at this byte afresh.
+					continuationBytes = 0;
+					append(REPLACEMENT);
+					i--;
+					continue;
+				}
+				codePoint = (codePoint << 6) | (b & 0x3F);
+				if (--continuationBytes == 0) {
+					appendCodePoint(codePoint);
+				}
+			} else if (0 != escape) {
+				position = i - 1;
+				escape(b);
+			} else if ('"' == b) {
+				position = i - 1;
+				endString();
+				return i;
+			} else if ('\\' == b) {
+				escape = -1;
+			} else if (b >= 0) {
+				position = i - 1;
+				throw error("Unescaped control character in string");
+			} else if ((b & 0xE0) == 0xC0) {
+				codePoint = b & 0x1F;
+				minCodePoint = 0x80;
+				continuationBytes = 1;
+			} else if ((b & 0xF0) == 0xE0) {
+				codePoint = b & 0x0F;
+				minCodePoint = 0x800;
+				continuationBytes = 2;
+			} else if ((b & 0xF8) == 0xF0) {
+				codePoint = b & 0x07;
+				minCodePoint = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+				continuationBytes = 3;
+			} else {
+				append(REPLACEMENT);
+			}
+		}
+		return i;
+	}
+
+	private void escape(int b) {
+		if (escape < 0) {
+			escape = 0;
+			switch (b) {
+				case '"':
+				case '\\':
+				case '/':
+					append((char) b);
+					break;
+				case 'b':
+					append('\b');
+					break;
+				case 'f':
+					append('\f');
+					break;
+				case 'n':
+					append('\n');
+					break;
+				case 'r':
+					append('\r');
+					break;
+				case 't':
+					append('\t');
+					break;
+				case 'u':
+					escape = 1;
+					escapedChar = 0;
+					break;
+				default:
+					throw error("Invalid escape sequence");
+			}
+			return;
+		}
+		int digit = Character.digit(b, 16);
+		if (digit < 0) {
+			throw error("Invalid \\u escape sequence");
+		}
+		escapedChar = (escapedChar << 4) | digit;
+		if (++escape == 5) {
+			escape = 0;
+			// Surrogate pairs need no special treatment, as each half is a char of its own.
+			append((char) escapedChar);
+		}
+	}
+
+	private void endString() {
+		if (tokenIsName) {
+			handler.name(name());
+			state = COLON;
+		} else {
+			handler.string(new String(token, 0, tokenLength));
+			endValue();
+		}
+	}
+
+	/**
+	 * @return the member name just read, reusing the string made for it last time if it was seen recently, as the
+	 *         elements of an array tend to repeat the same few names over and over
+	 */
+	private String name() {
+		if (tokenLength > MAX_CACHED_NAME_LENGTH) {
+			return new String(token, 0, tokenLength);
+		}
+		int hash = 0;
+		for (int i = 0; i < tokenLength; i++) {
+			hash = 31 * hash + token[i];
+		}
+		int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+		String name = names[slot];
+		if (null != name && name.length() == tokenLength && name.hashCode() == hash) {
+			for (int i = 0; i < tokenLength; i++) {
+				if (name.charAt(i) != token[i]) {
+					name = null;
+					break;
+				}
+			}
+			if (null != name) {
+				return name;
+			}
+		}
+		name = new String(token, 0, tokenLength);
+		names[slot] = name;
+		return name;
+	}
+
+	/**
+	 * @return the index of the first byte not consumed, which is the byte after the number if it ended
+	 */
+	private int number(byte[] bytes, int i, int end) {
+		while (i < end) {
+			byte b = bytes[i];
+			int next = nextNumberState(b);
+			if (next < 0) {
+				position = i;
+				endNumber();
+				return i;
+			}
+			numberState = next;
+			append((char) b);
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the state the number is in with the given byte added, or -1 if the byte is not part of it
+	 */
+	private int nextNumberState(byte b) {
+		boolean digit = (b >= '0' && b <= '9');
+		switch (numberState) {
+			case NUMBER_MINUS:
+				return (!digit ? -1 : '0' == b ? NUMBER_ZERO : NUMBER_INT);
+			case NUMBER_ZERO:
+			case NUMBER_INT:
+				if (digit) {
+					return (NUMBER_INT == numberState ? NUMBER_INT : -1);
+				}
+				return ('.' == b ? NUMBER_POINT : ('e' == b || 'E' == b) ? NUMBER_E : -1);
+			case NUMBER_POINT:
+				return (digit ? NUMBER_FRACTION : -1);
+			case NUMBER_FRACTION:
+				return (digit ? NUMBER_FRACTION : ('e' == b || 'E' == b) ? NUMBER_E : -1);
+			case NUMBER_E:
+				return (digit ? NUMBER_EXPONENT : ('+' == b || '-' == b) ? NUMBER_EXPONENT_SIGN : -1);
+			default:
+				return (digit ? NUMBER_EXPONENT : -1);
+		}
+	}
+
+	private void endNumber() {
+		if (NUMBER_ZERO != numberState && NUMBER_INT != numberState && NUMBER_FRACTION != numberState
+				&& NUMBER_EXPONENT != numberState) {
+			throw error("Incomplete number");
+		}
+		handler.number(new String(token, 0, tokenLength));
+		endValue();
+	}
+
+	private void startLiteral(byte[] literal) {
+		this.literal = literal;
+		literalIndex = 1;
+		state = LITERAL;
+	}
+
+	private void literal(byte b) {
+		if (literal[literalIndex] != b) {
+			throw error("Expected a value");
+		}
+		if (++literalIndex < literal.length) {
+			return;
+		}
+		if (TRUE == literal) {
+			handler.bool(true);
+		} else if (FALSE == literal) {
+			handler.bool(false);
+		} else {
+			handler.nullValue();
+		}
+		endValue();
+	}
+
+	private void appendCodePoint(int codePoint) {
+		if (codePoint < minCodePoint || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+				|| codePoint > Character.MAX_CODE_POINT) {
+			// Overlong, a surrogate or out of range.
+			append(REPLACEMENT);
+		} else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			append((char) codePoint);
+		} else {
+			int supplementary = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+			append((char) (Character.MIN_HIGH_SURROGATE + (supplementary >>> 10)));
+			append((char) (Character.MIN_LOW_SURROGATE + (supplementary & 0x3FF)));
+		}
+	}
+
+	private void append(char c) {
+		if (tokenLength == token.length) {
+			ensureCapacity(1);
+		}
+		token[tokenLength++] = c;
+	}
+
+	private void ensureCapacity(int length) {
+		int needed = tokenLength + length;
+		if (needed <= token.length) {
+			return;
+		}
+		if (needed > maxTokenLength) {
+			throw new JsonSyntaxException("Token longer than " + maxTokenLength + " characters", tokenOffset);
+		}
+		char[] bigger = new char[(int) Math.min(Math.max(token.length * 2L, needed), maxTokenLength)];
+		System.arraycopy(token, 0, bigger, 0, tokenLength);
+		token = bigger;
+	}
+
+	private JsonSyntaxException error(String message) {
+		return new JsonSyntaxException(message, base + position);
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.async.web.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
@@ -24,17 +25,26 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
 import org.springframework.async.http.client.ClientHttpRequest;
 import org.springframework.async.http.client.ClientHttpRequestFactory;
 import org.springframework.async.http.client.ClientHttpResponse;
 import org.springframework.async.http.client.support.HttpAccessor;
+import org.springframework.async.http.converter.BufferHttpMessageConverter;
+import org.springframework.async.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.async.http.converter.ByteBufferHttpMessageConverter;
 import org.springframework.async.http.converter.HttpMessageConverter;
+import org.springframework.async.http.converter.JsonElementsHttpMessageConverter;
+import org.springframework.async.http.converter.ReadableByteChannelHttpMessageConverter;
 import org.springframework.async.http.converter.StringHttpMessageConverter;
 import org.springframework.async.web.client.grizzly.GrizzlyClientHttpRequestFactory;
+import org.springframework.async.web.client.netty.NettyClientHttpRequestFactory;
+import org.springframework.async.web.client.nio.NioClientHttpRequestFactory;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -56,17 +66,29 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 			&& ClassUtils.isPresent("org.codehaus.jackson.JsonGenerator", AsyncRestTemplate.class.getClassLoader());
 	private static final boolean romePresent = ClassUtils.isPresent("com.sun.syndication.feed.WireFeed", AsyncRestTemplate.class.getClassLoader());
 	private static final boolean grizzlyPresent = ClassUtils.isPresent("org.glassfish.grizzly.Grizzly", AsyncRestTemplate.class.getClassLoader());
+	private static final boolean nettyPresent = ClassUtils.isPresent("org.jboss.netty.channel.Channel", AsyncRestTemplate.class.getClassLoader());
 
 	private final ResponseExtractor<HttpHeaders> headersExtractor = new HeadersExtractor();
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	private List<HttpMessageConverter<?>> messageConverters = new ArrayList<HttpMessageConverter<?>>();
+	private volatile MessageConverterResolver messageConverterResolver = new MessageConverterResolver(messageConverters);
 
 	private ResponseErrorHandler errorHandler = new DefaultResponseErrorHandler();
 
+	private long requestTimeout = 0;
+
 	public AsyncRestTemplate() {
-//		this.messageConverters.add(new ByteArrayHttpMessageConverter());
+		this(createDefaultRequestFactory());
+	}
+
+	public AsyncRestTemplate(ClientHttpRequestFactory requestFactory) {
+		this.messageConverters.add(new ByteArrayHttpMessageConverter());
 		this.messageConverters.add(new StringHttpMessageConverter());
+		this.messageConverters.add(new ByteBufferHttpMessageConverter());
+		this.messageConverters.add(new BufferHttpMessageConverter());
+		this.messageConverters.add(new ReadableByteChannelHttpMessageConverter());
+		this.messageConverters.add(new JsonElementsHttpMessageConverter());
 //		this.messageConverters.add(new ResourceHttpMessageConverter());
 //		this.messageConverters.add(new SourceHttpMessageConverter());
 //		this.messageConverters.add(new XmlAwareFormHttpMessageConverter());
@@ -80,25 +102,37 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 //			this.messageConverters.add(new AtomFeedHttpMessageConverter());
 //			this.messageConverters.add(new RssChannelHttpMessageConverter());
 		}
+		setRequestFactory(requestFactory);
+	}
+
+	private static ClientHttpRequestFactory createDefaultRequestFactory() {
 		if (grizzlyPresent) {
-			setRequestFactory(new GrizzlyClientHttpRequestFactory());
+			try {
+				return new GrizzlyClientHttpRequestFactory();
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not start Grizzly transport: " + e.getMessage(), e);
+			}
+		} else if (nettyPresent) {
+			return new NettyClientHttpRequestFactory();
 		} else {
-			// TODO: simple version
+			try {
+				return new NioClientHttpRequestFactory();
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not open NIO selector: " + e.getMessage(), e);
+			}
 		}
 	}
 
-	public AsyncRestTemplate(ClientHttpRequestFactory requestFactory) {
-		this();
-		setRequestFactory(requestFactory);
-	}
-
 	/**
 	 * Set the message body converters to use. These converters are used to convert from and to HTTP requests and
 	 * responses.
+	 * <p>The converter chosen to read each response type and content type, and the {@code Accept} header sent for each
+	 * response type, are remembered until this is called again; call it again after changing the list in place.
 	 */
 	public AsyncRestTemplate setMessageConverters(List<HttpMessageConverter<?>> messageConverters) {
 		Assert.notEmpty(messageConverters, "'messageConverters' must not be empty");
 		this.messageConverters = messageConverters;
+		this.messageConverterResolver = new MessageConverterResolver(messageConverters);
 		return this;
 	}
 
@@ -125,13 +159,44 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 		return this.errorHandler;
 	}
 
+	/**
+	 * Set the time in milliseconds after which a promise returned by any method of this template fails with a {@link
+	 * java.util.concurrent.TimeoutException} and its connection is aborted. The deadline is armed in {@code execute},
+	 * so it also covers custom {@link ResponseExtractor}s. The default of 0 means requests never time out.
+	 */
+	public AsyncRestTemplate setRequestTimeout(long requestTimeout) {
+		Assert.isTrue(requestTimeout >= 0, "'requestTimeout' must not be negative");
+		this.requestTimeout = requestTimeout;
+		return this;
+	}
+
+	/**
+	 * Return the request timeout in milliseconds.
+	 */
+	public long getRequestTimeout() {
+		return this.requestTimeout;
+	}
+
 	@Override
 	public <T> Promise<T> getForObject(String url, Class<T> responseType, Object... uriVariables) throws RestClientException {
 		AcceptHeaderRequestCallback requestCallback = new AcceptHeaderRequestCallback(responseType);
-		HttpMessageConverterExtractor<T> extractor = new HttpMessageConverterExtractor<T>(responseType, messageConverters);
+		HttpMessageConverterExtractor<T> extractor = new HttpMessageConverterExtractor<T>(responseType, messageConverterResolver);
 		return execute(url, HttpMethod.GET, requestCallback, extractor, uriVariables);
 	}
 
+	/**
+	 * Retrieve a representation by doing a GET on the URL and stream its body into the given file, without holding more
+	 * than one chunk of it in memory.
+	 *
+	 * @param url          the URL
+	 * @param file         the file to write the body to
+	 * @param uriVariables the variables to expand the template
+	 * @return a promise of the file, completed once the whole body has been written
+	 */
+	public Promise<File> getForFile(String url, File file, Object... uriVariables) throws RestClientException {
+		return execute(url, HttpMethod.GET, null, new FileResponseExtractor(file), uriVariables);
+	}
+
 	@Override
 	public <T> Promise<T> getForObject(String url, Class<T> responseType, Map<String, ?> uriVariables) throws RestClientException {
 		return null;
@@ -185,7 +250,9 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 
 	@Override
 	public <T> Promise<T> postForObject(String url, Object request, Class<T> responseType, Object... uriVariables) throws RestClientException {
-		return null;
+		HttpEntityRequestCallback requestCallback = new HttpEntityRequestCallback(request, responseType);
+		HttpMessageConverterExtractor<T> extractor = new HttpMessageConverterExtractor<T>(responseType, messageConverterResolver);
+		return execute(url, HttpMethod.POST, requestCallback, extractor, uriVariables);
 	}
 
 	@Override
@@ -214,8 +281,8 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 	}
 
 	@Override public Promise<Void> put(String url, Object request, Object... uriVariables) throws RestClientException {
-//		HttpEntityRequestCallback requestCallback = new HttpEntityRequestCallback(request);
-		execute(url, HttpMethod.PUT, null, null, uriVariables);
+		HttpEntityRequestCallback requestCallback = new HttpEntityRequestCallback(request);
+		execute(url, HttpMethod.PUT, requestCallback, null, uriVariables);
 		return null;
 	}
 
@@ -322,7 +389,11 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 				handleResponseError(method, url, response);
 			}
 			if (responseExtractor != null) {
-				return responseExtractor.extractData(response);
+				Promise<T> promise = responseExtractor.extractData(response);
+				if (requestTimeout > 0 && null != promise) {
+					abortAfterTimeout(promise, response);
+				}
+				return promise;
 			} else {
 				return null;
 			}
@@ -331,6 +402,15 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 		}
 	}
 
+	/**
+	 * Fail the given promise once the request timeout has elapsed, and abort the response if the promise fails or is
+	 * cancelled before the response has been read.
+	 */
+	private <T> void abortAfterTimeout(Promise<T> promise, ClientHttpResponse response) {
+		PromiseFactory.expireAfter(promise, requestTimeout, TimeUnit.MILLISECONDS);
+		promise.addCompletionHandler(new ResponseClosingCompletionHandler<T>(response));
+	}
+
 	private void logResponseStatus(HttpMethod method, URI url, ClientHttpResponse response) {
 		if (log.isDebugEnabled()) {
 			try {
@@ -367,28 +447,14 @@ public class AsyncRestTemplate extends HttpAccessor implements AsyncRestOperatio
 			this.responseType = responseType;
 		}
 
-		@SuppressWarnings("unchecked")
 		public void doWithRequest(ClientHttpRequest request) throws IOException {
 			if (responseType != null) {
-				final List<MediaType> allSupportedMediaTypes = new ArrayList<MediaType>();
-				for (HttpMessageConverter<?> messageConverter : getMessageConverters()) {
-					if (messageConverter.canRead(responseType, null)) {
-						List<MediaType> supportedMediaTypes = messageConverter.getSupportedMediaTypes();
-						for (MediaType supportedMediaType : supportedMediaTypes) {
-							if (supportedMediaType.getCharSet() != null) {
-								supportedMediaType =
-										new MediaType(supportedMediaType.getType(), supportedMediaType.getSubtype());
-							}
-							allSupportedMediaTypes.add(supportedMediaType);
-						}
-					}
-				}
-				if (!allSupportedMediaTypes.isEmpty()) {
-					MediaType.sortBySpecificity(allSupportedMediaTypes);
+				String acceptHeader = messageConverterResolver.getAcceptHeader(responseType);
+				if (null != acceptHeader) {
 					if (log.isDebugEnabled()) {
-						log.debug("Setting request Accept header to " + allSupportedMediaTypes);
+						log.debug("Setting request Accept header to " + acceptHeader);
 					}
-					request.getHeaders().setAccept(allSupportedMediaTypes);
+					request.getHeaders().set("Accept", acceptHeader);
 				}
 			}
 		}
@@ -21,7 +21,7 @@ import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.async.AbstractCompletionHandler;
+import org.springframework.async.EmptyCompletionHandler;
 import org.springframework.async.http.client.ClientHttpResponse;
 import org.springframework.http.HttpHeaders;
 
@@ -33,7 +33,7 @@ public class DefaultResponseErrorHandler implements ResponseErrorHandler {
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
 	@Override public boolean hasError(ClientHttpResponse response) throws IOException {
-//		response.getHeaders().addCompletionHandler(new AbstractCompletionHandler<HttpHeaders>(){
+//		response.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>(){
 //			@Override public void completed(HttpHeaders headers) {
 //
 //			}
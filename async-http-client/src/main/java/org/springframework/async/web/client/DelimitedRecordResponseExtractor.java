@@ -0,0 +1,234 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * {@link ResponseExtractor} that splits a streamed response body into records at a delimiter, newline by default, and
+ * hands each one to a {@link RecordHandler} as soon as its delimiter arrives. This suits newline-delimited JSON, log
+ * lines and the like sent over a long-lived chunked response.
+ * <p>A record that lies within one chunk is handed over as a view of that chunk, without copying it. Only a record
+ * split between chunks is copied, into a buffer that grows as needed up to the maximum record length; a longer record
+ * fails the promise and aborts the response. Empty records, such as the bare newlines some servers send to keep a
+ * connection alive, are skipped, and with a newline delimiter a carriage return before it is dropped. Whatever follows
+ * the last delimiter is handed over as a record of its own once the body ends.
+ * <p>When the handler returns false the rest of the chunk being split is still handled, and reading then pauses until
+ * {@link #resume()} is called. As reading resumes per response, each response needs an extractor of its own.
+ * <p>The promise completes with the number of records handled once the whole body has been read. If the response
+ * fails, the handler throws, or the promise is cancelled or failed, the response is aborted.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class DelimitedRecordResponseExtractor implements ResponseExtractor<Long> {
+
+	public static final int DEFAULT_MAX_RECORD_LENGTH = 1024 * 1024;
+
+	private static final int INITIAL_CARRY_CAPACITY = 256;
+	private static final long LOW_BITS = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	private final RecordHandler handler;
+	private final byte delimiter;
+	private final int maxRecordLength;
+	private volatile ClientHttpResponse response;
+
+	public DelimitedRecordResponseExtractor(RecordHandler handler) {
+		this(handler, (byte) '\n', DEFAULT_MAX_RECORD_LENGTH);
+	}
+
+	/**
+	 * @param handler         the handler to hand records to
+	 * @param delimiter       the byte that ends each record
+	 * @param maxRecordLength the most bytes a record may have, not counting its delimiter
+	 */
+	public DelimitedRecordResponseExtractor(RecordHandler handler, byte delimiter, int maxRecordLength) {
+		Assert.notNull(handler, "'handler' must not be null");
+		Assert.isTrue(maxRecordLength > 0, "'maxRecordLength' must be positive");
+		this.handler = handler;
+		this.delimiter = delimiter;
+		this.maxRecordLength = maxRecordLength;
+	}
+
+	/**
+	 * Resume reading after the handler paused it by returning false from {@link RecordHandler#record(ByteBuffer)}.
+	 */
+	public void resume() {
+		ClientHttpResponse response = this.response;
+		Assert.state(null != response, "No response is being read");
+		response.resume();
+	}
+
+	@Override public Promise<Long> extractData(final ClientHttpResponse response) throws IOException {
+		this.response = response;
+		final Promise<Long> promise = PromiseFactory.createPromise();
+		promise.addCompletionHandler(new ResponseClosingCompletionHandler<Long>(response));
+		response.setCompletionHandler(new RecordSplitter(promise));
+		return promise;
+	}
+
+	/**
+	 * @return the index of the first occurrence of the delimiter in the given range of the buffer, or -1 if there is
+	 *         none
+	 */
+	private int indexOf(ByteBuffer buffer, int from, int to) {
+		// Look at eight bytes at a time: XORing with the delimiter in every byte turns each match into a zero byte,
+		// and subtracting one from every byte sets the high bit of the lowest zero byte.
+		long pattern = (delimiter & 0xFFL) * LOW_BITS;
+		int i = from;
+		for (; i + 8 <= to; i += 8) {
+			long word = buffer.getLong(i) ^ pattern;
+			long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+			if (0 != found) {
+				// The buffer is little-endian, so the lowest byte comes first.
+				return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+		for (; i < to; i++) {
+			if (buffer.get(i) == delimiter) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private class RecordSplitter extends EmptyCompletionHandler<Object> {
+		private final Promise<Long> promise;
+		// The start of a record whose end has yet to arrive.
+		private ByteBuffer carry;
+		private long records;
+		private boolean failed;
+
+		private RecordSplitter(Promise<Long> promise) {
+			this.promise = promise;
+		}
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			if (failed || promise.isDone()) {
+				// Aborted; whatever is still in flight is dropped.
+				return true;
+			}
+			ByteBuffer chunk = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer record = buffer.duplicate();
+			int start = chunk.position();
+			int limit = chunk.limit();
+			boolean more = true;
+			try {
+				for (int end; (end = indexOf(chunk, start, limit)) >= 0; start = end + 1) {
+					if (null != carry && carry.position() > 0) {
+						carry(chunk, start, end);
+						carry.flip();
+						more &= handle(carry);
+						carry.clear();
+					} else {
+						record.limit(end).position(start);
+						more &= handle(record);
+					}
+				}
+				if (start < limit) {
+					carry(chunk, start, limit);
+				}
+			} catch (RuntimeException e) {
+				fail(e);
+				return true;
+			}
+			buffer.position(limit);
+			return more;
+		}
+
+		@Override public void completed(Object obj) {
+			if (failed || promise.isDone()) {
+				return;
+			}
+			try {
+				if (null != carry && carry.position() > 0) {
+					carry.flip();
+					handle(carry);
+				}
+			} catch (RuntimeException e) {
+				fail(e);
+				return;
+			}
+			promise.result(records);
+		}
+
+		@Override public void failed(Throwable throwable) {
+			fail(throwable);
+		}
+
+		private boolean handle(ByteBuffer record) {
+			int length = record.remaining();
+			if (length > 0 && '\n' == delimiter && '\r' == record.get(record.limit() - 1)) {
+				record.limit(record.limit() - 1);
+				length--;
+			}
+			if (0 == length) {
+				return true;
+			}
+			if (length > maxRecordLength) {
+				throw new RestClientException("Record longer than " + maxRecordLength + " bytes");
+			}
+			records++;
+			return handler.record(record);
+		}
+
+		/**
+		 * Copy part of a record to be put together with the rest of it from a later chunk.
+		 */
+		private void carry(ByteBuffer chunk, int from, int to) {
+			int length = to - from;
+			long needed = (null == carry ? 0 : carry.position()) + (long) length;
+			// One byte of slack for a carriage return before the delimiter, as far as a buffer can hold.
+			long maxCarried = Math.min(maxRecordLength + 1L, Integer.MAX_VALUE);
+			if (needed > maxCarried) {
+				throw new RestClientException("Record longer than " + maxRecordLength + " bytes");
+			}
+			if (null == carry || carry.remaining() < length) {
+				// Doubled in a long, which can't overflow before it passes the most that can be carried.
+				long capacity = Math.max(INITIAL_CARRY_CAPACITY, null == carry ? 0 : carry.capacity());
+				while (capacity < needed) {
+					capacity *= 2;
+				}
+				ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(capacity, maxCarried));
+				if (null != carry) {
+					carry.flip();
+					bigger.put(carry);
+				}
+				carry = bigger;
+			}
+			ByteBuffer part = chunk.duplicate();
+			part.limit(to).position(from);
+			carry.put(part);
+		}
+
+		private void fail(Throwable throwable) {
+			failed = true;
+			carry = null;
+			promise.failure(throwable);
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ResponseExtractor} that streams the response body into a file as it arrives. Each chunk is written to a
+ * {@link FileChannel} at its offset before the next one is read, so at most one chunk of the body is held in memory
+ * regardless of its size.
+ * <p>The promise completes with the file once the whole body has been written. If the response fails or the promise
+ * is cancelled or failed, the response is aborted and the partially written file is deleted.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class FileResponseExtractor implements ResponseExtractor<File> {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final File file;
+
+	/**
+	 * @param file the file to write the body to, which is truncated first if it exists
+	 */
+	public FileResponseExtractor(File file) {
+		Assert.notNull(file, "'file' must not be null");
+		this.file = file;
+	}
+
+	@Override public Promise<File> extractData(final ClientHttpResponse response) throws IOException {
+		final Promise<File> promise = PromiseFactory.createPromise();
+		final FileChannel channel = new FileOutputStream(file).getChannel();
+		promise.addCompletionHandler(new ResponseClosingCompletionHandler<File>(response) {
+			@Override protected void aborted() {
+				super.aborted();
+				discard(channel);
+			}
+		});
+		response.setCompletionHandler(new EmptyCompletionHandler<Object>() {
+			private long position = 0;
+
+			@Override public boolean chunk(ByteBuffer buffer) {
+				if (promise.isDone()) {
+					// Aborted; whatever is still in flight is dropped.
+					return true;
+				}
+				try {
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+				} catch (IOException e) {
+					promise.failure(e);
+				}
+				return true;
+			}
+
+			@Override public void completed(Object obj) {
+				try {
+					channel.close();
+					promise.result(file);
+				} catch (IOException e) {
+					promise.failure(e);
+				}
+			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
+		});
+
+		return promise;
+	}
+
+	private void discard(FileChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+		if (!file.delete() && log.isWarnEnabled()) {
+			log.warn("Could not delete partially written file " + file);
+		}
+	}
+
+}
@@ -21,7 +21,7 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.async.AbstractCompletionHandler;
+import org.springframework.async.EmptyCompletionHandler;
 import org.springframework.async.Promise;
 import org.springframework.async.PromiseFactory;
 import org.springframework.async.http.client.ClientHttpResponse;
@@ -38,38 +38,57 @@ public class HttpMessageConverterExtractor<T> implements ResponseExtractor<T> {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 	private final Class<T> responseType;
-	private final List<HttpMessageConverter<?>> messageConverters;
+	private final MessageConverterResolver messageConverterResolver;
 
 	public HttpMessageConverterExtractor(Class<T> responseType, List<HttpMessageConverter<?>> messageConverters) {
+		this(responseType, new MessageConverterResolver(messageConverters));
+	}
+
+	HttpMessageConverterExtractor(Class<T> responseType, MessageConverterResolver messageConverterResolver) {
 		this.responseType = responseType;
-		this.messageConverters = messageConverters;
+		this.messageConverterResolver = messageConverterResolver;
 	}
 
 	@Override public Promise<T> extractData(final ClientHttpResponse response) throws IOException {
 		final Promise<T> promise = PromiseFactory.createPromise();
-		response.getHeaders().addCompletionHandler(new AbstractCompletionHandler<HttpHeaders>() {
+		promise.addCompletionHandler(new ResponseClosingCompletionHandler<T>(response));
+		response.getHeaders().addCompletionHandler(new EmptyCompletionHandler<HttpHeaders>() {
 			@Override public void completed(HttpHeaders headers) {
-				MediaType contentType = headers.getContentType();
-				if (contentType == null) {
-					throw new RestClientException("Cannot extract response: no Content-Type found");
-				}
-				for (HttpMessageConverter messageConverter : messageConverters) {
-					if (messageConverter.canRead(responseType, contentType)) {
-						if (log.isDebugEnabled()) {
-							log.debug("Reading [" + responseType.getName() + "] as \"" + contentType
-									+ "\" using [" + messageConverter + "]");
-						}
-						try {
-							messageConverter.read(responseType, response, promise);
-						} catch (IOException e) {
-							promise.failure(e);
-						}
-					}
+				// Anything thrown here would only be logged by the headers promise, so fail ours with it instead.
+				try {
+					read(headers, response, promise);
+				} catch (IOException e) {
+					promise.failure(e);
+				} catch (RuntimeException e) {
+					promise.failure(e);
 				}
 			}
+
+			@Override public void failed(Throwable throwable) {
+				promise.failure(throwable);
+			}
 		});
 
 		return promise;
 	}
 
+	private void read(HttpHeaders headers, ClientHttpResponse response, Promise<T> promise) throws IOException {
+		MediaType contentType = headers.getContentType();
+		if (null == contentType) {
+			// As RestTemplate does, read a body without a Content-Type as opaque bytes.
+			contentType = MediaType.APPLICATION_OCTET_STREAM;
+		}
+		HttpMessageConverter messageConverter = messageConverterResolver.getReader(responseType, contentType);
+		if (null == messageConverter) {
+			promise.failure(new RestClientException("Could not extract response: no suitable HttpMessageConverter found "
+					+ "for response type [" + responseType.getName() + "] and content type [" + contentType + "]"));
+			return;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Reading [" + responseType.getName() + "] as \"" + contentType
+					+ "\" using [" + messageConverter + "]");
+		}
+		messageConverter.read(responseType, response, promise);
+	}
+
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.async.web.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.async.http.converter.HttpMessageConverter;
+import org.springframework.http.MediaType;
+
+/**
+ * Picks the {@link HttpMessageConverter} to read each response with, and the {@code Accept} header to send for each
+ * response type, and remembers both so the converters are only consulted the first time a response type and content
+ * type are seen.
+ * <p>A resolver works from the list of converters it was created with; a template creates a new one whenever its
+ * converters are replaced.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+class MessageConverterResolver {
+
+	// Content types carry parameters such as a boundary that can differ on every response, so stop remembering new
+	// ones for a response type past this many rather than grow without bound.
+	private static final int MAX_CONTENT_TYPES = 64;
+	private static final Object NO_CONVERTER = new Object();
+
+	private final List<HttpMessageConverter<?>> messageConverters;
+	private final ConcurrentMap<Class<?>, ConcurrentMap<MediaType, Object>> readers = new ConcurrentHashMap<Class<?>, ConcurrentMap<MediaType, Object>>();
+	private final ConcurrentMap<Class<?>, String> acceptHeaders = new ConcurrentHashMap<Class<?>, String>();
+
+	MessageConverterResolver(List<HttpMessageConverter<?>> messageConverters) {
+		this.messageConverters = messageConverters;
+	}
+
+	List<HttpMessageConverter<?>> getMessageConverters() {
+		return messageConverters;
+	}
+
+	/**
+	 * @return the first converter that can read the given type from the given content type, or {@code null} if there is
+	 *         none
+	 */
+	HttpMessageConverter<?> getReader(Class<?> responseType, MediaType contentType) {
+		ConcurrentMap<MediaType, Object> byContentType = readers.get(responseType);
+		if (null == byContentType) {
+			byContentType = new ConcurrentHashMap<MediaType, Object>();
+			ConcurrentMap<MediaType, Object> existing = readers.putIfAbsent(responseType, byContentType);
+			if (null != existing) {
+				byContentType = existing;
+			}
+		}
+		Object reader = byContentType.get(contentType);
+		if (null == reader) {
+			reader = NO_CONVERTER;
+			for (HttpMessageConverter<?> messageConverter : messageConverters) {
+				if (messageConverter.canRead(responseType, contentType)) {
+					reader = messageConverter;
+					break;
+				}
+			}
+			if (byContentType.size() < MAX_CONTENT_TYPES) {
+				byContentType.putIfAbsent(contentType, reader);
+			}
+		}
+		return (reader != NO_CONVERTER ? (HttpMessageConverter<?>) reader : null);
+	}
+
+	/**
+	 * @return the value of the {@code Accept} header for a request whose response is read as the given type: every
+	 *         media type a converter can read it from, without charsets and most specific first, or {@code null} if no
+	 *         converter can read it
+	 */
+	String getAcceptHeader(Class<?> responseType) {
+		String acceptHeader = acceptHeaders.get(responseType);
+		if (null == acceptHeader) {
+			List<MediaType> allSupportedMediaTypes = new ArrayList<MediaType>();
+			for (HttpMessageConverter<?> messageConverter : messageConverters) {
+				if (messageConverter.canRead(responseType, null)) {
+					for (MediaType supportedMediaType : messageConverter.getSupportedMediaTypes()) {
+						if (supportedMediaType.getCharSet() != null) {
+							supportedMediaType = new MediaType(supportedMediaType.getType(), supportedMediaType.getSubtype());
+						}
+						allSupportedMediaTypes.add(supportedMediaType);
+					}
+				}
+			}
+			MediaType.sortBySpecificity(allSupportedMediaTypes);
+			acceptHeader = MediaType.toString(allSupportedMediaTypes);
+			acceptHeaders.putIfAbsent(responseType, acceptHeader);
+		}
+		return (acceptHeader.length() > 0 ? acceptHeader : null);
+	}
+
+}
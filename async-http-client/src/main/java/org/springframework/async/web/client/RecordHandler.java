@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the records of a {@link DelimitedRecordResponseExtractor}'s response one at a time, as each one is read.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public interface RecordHandler {
+
+	/**
+	 * Process a record. The buffer holds the record between its position and limit, without the delimiter, and is
+	 * only valid until this method returns: it may be a view of the transport's own buffer, so a record that is needed
+	 * afterwards must be copied out of it.
+	 *
+	 * @param record the record
+	 * @return true if ready for the next record, false to pause reading once the records already read have been
+	 *         handled, until {@link DelimitedRecordResponseExtractor#resume()} is called
+	 */
+	boolean record(ByteBuffer record);
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.ClientHttpResponse;
+
+/**
+ * Handler for the promise a response is extracted into that closes the response if the promise is cancelled or
+ * failed, for instance because its deadline expired, so that the connection does not go on reading a body nobody
+ * wants. Extractors that hold other resources override {@link #aborted()} to release them too.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ResponseClosingCompletionHandler<T> extends EmptyCompletionHandler<T> {
+
+	private final ClientHttpResponse response;
+
+	public ResponseClosingCompletionHandler(ClientHttpResponse response) {
+		this.response = response;
+	}
+
+	@Override public void cancelled(boolean force) {
+		aborted();
+	}
+
+	@Override public void failed(Throwable throwable) {
+		aborted();
+	}
+
+	/**
+	 * Called once if the promise is cancelled or failed.
+	 */
+	protected void aborted() {
+		response.close();
+	}
+
+}
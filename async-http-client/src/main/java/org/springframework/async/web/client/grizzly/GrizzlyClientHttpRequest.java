@@ -17,33 +17,32 @@
 package org.springframework.async.web.client.grizzly;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.URI;
-import java.nio.channels.WritableByteChannel;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.attributes.Attribute;
-import org.glassfish.grizzly.attributes.DefaultAttributeBuilder;
+import org.glassfish.grizzly.attributes.NullaryFunction;
 import org.glassfish.grizzly.filterchain.BaseFilter;
-import org.glassfish.grizzly.filterchain.FilterChain;
-import org.glassfish.grizzly.filterchain.FilterChainBuilder;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
-import org.glassfish.grizzly.filterchain.TransportFilter;
-import org.glassfish.grizzly.http.HttpClientFilter;
 import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpHeader;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.Protocol;
-import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
-import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.async.CompletionHandler;
 import org.springframework.async.http.client.AbstractClientHttpRequest;
 import org.springframework.async.http.client.ClientHttpResponse;
 import org.springframework.http.HttpHeaders;
@@ -54,62 +53,78 @@ import org.springframework.http.HttpMethod;
  */
 public class GrizzlyClientHttpRequest extends AbstractClientHttpRequest {
 
-	private final static Attribute<GrizzlyClientHttpResponse> RESPONSE = DefaultAttributeBuilder.DEFAULT_ATTRIBUTE_BUILDER.createAttribute("pending-response");
+	private final static Attribute<AtomicInteger> REQUESTS_SENT = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute("requests-sent", new NullaryFunction<AtomicInteger>() {
+		@Override public AtomicInteger evaluate() {
+			return new AtomicInteger();
+		}
+	});
+	private final static Attribute<LinkedBlockingQueue<GrizzlyClientHttpResponse>> RESPONSES = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute("pending-responses", new NullaryFunction<LinkedBlockingQueue<GrizzlyClientHttpResponse>>() {
+		@Override public LinkedBlockingQueue<GrizzlyClientHttpResponse> evaluate() {
+			return new LinkedBlockingQueue<GrizzlyClientHttpResponse>();
+		}
+	});
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
-	private FilterChain chain;
-	private TCPNIOTransport transport;
-	private Connection connection;
+	private final GrizzlyConnectionPool connectionPool;
 	private HttpMethod method;
 	private URI uri;
-	private GrizzlyClientHttpResponse response = new GrizzlyClientHttpResponse();
-	private LinkedBlockingQueue<GrizzlyClientHttpRequest> requests = new LinkedBlockingQueue<GrizzlyClientHttpRequest>();
+	private GrizzlyClientHttpResponse response;
+
+	public GrizzlyClientHttpRequest(URI uri, HttpMethod method, GrizzlyConnectionPool connectionPool) {
+		this(uri, method, connectionPool, GrizzlyClientHttpResponse.DEFAULT_LOW_WATERMARK, GrizzlyClientHttpResponse.DEFAULT_HIGH_WATERMARK);
+	}
 
-	public GrizzlyClientHttpRequest(URI uri, HttpMethod method) throws IOException {
+	/**
+	 * @param lowWatermark  number of buffered response bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered response bytes at or above which reading is suspended
+	 */
+	public GrizzlyClientHttpRequest(URI uri, HttpMethod method, GrizzlyConnectionPool connectionPool, int lowWatermark, int highWatermark) {
 		this.uri = uri;
 		this.method = method;
+		this.connectionPool = connectionPool;
+		this.response = new GrizzlyClientHttpResponse(lowWatermark, highWatermark);
+	}
 
-		FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
-		filterChainBuilder.add(new TransportFilter());
-		filterChainBuilder.add(new HttpClientFilter());
-		filterChainBuilder.add(new RequestResponseFilter());
-		chain = filterChainBuilder.build();
-
-		TCPNIOTransportBuilder transportBuilder = TCPNIOTransportBuilder.newInstance();
-		transportBuilder.setKeepAlive(true);
-		transportBuilder.setTcpNoDelay(true);
-		transportBuilder.setProcessor(chain);
-
-		transport = transportBuilder.build();
-		transport.start();
-
-		transport.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), new EmptyCompletionHandler<Connection>() {
+	@Override protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+		response.setRequestListener(this, getRequestListener());
+		response.queued();
+		connectionPool.acquire(new org.springframework.async.EmptyCompletionHandler<Connection>() {
 			@SuppressWarnings({"unchecked"})
-			@Override public void completed(Connection result) {
-				connection = result;
-				List<GrizzlyClientHttpRequest> pendingRequests = new ArrayList<GrizzlyClientHttpRequest>();
-				requests.drainTo(pendingRequests);
-				for (GrizzlyClientHttpRequest request : pendingRequests) {
-					try {
-						connection.write(request);
-					} catch (IOException e) {
-						log.error(e.getMessage(), e);
+			@Override public void completed(Connection connection) {
+				if (!response.setConnection(connection)) {
+					// Cancelled while waiting for a connection.
+					releaseBody();
+					connectionPool.release(connection, true);
+					return;
+				}
+				response.connectionAcquired(REQUESTS_SENT.get(connection).getAndIncrement() > 0);
+				LinkedBlockingQueue<GrizzlyClientHttpResponse> responses = RESPONSES.get(connection);
+				try {
+					// Responses arrive in the order requests hit the wire, so queue and write atomically.
+					synchronized (responses) {
+						responses.add(response);
+						connection.write(GrizzlyClientHttpRequest.this);
 					}
+				} catch (IOException e) {
+					log.error(e.getMessage(), e);
+					releaseBody();
+					responses.remove(response);
+					response.failure(e);
+					connectionPool.release(connection, false);
 				}
 			}
-		});
 
+			@Override public void failed(Throwable throwable) {
+				releaseBody();
+				response.failure(throwable);
+			}
+		}, isPipelinable());
+		return response;
 	}
 
-	@SuppressWarnings({"unchecked"})
-	@Override protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
-		if (null == connection) {
-			requests.add(this);
-		} else {
-			connection.write(this);
-		}
-		return response;
+	private boolean isPipelinable() {
+		return HttpMethod.GET == method || HttpMethod.HEAD == method;
 	}
 
 	@Override public HttpMethod getMethod() {
@@ -120,23 +135,55 @@ public class GrizzlyClientHttpRequest extends AbstractClientHttpRequest {
 		return uri;
 	}
 
-	private class RequestResponseFilter extends BaseFilter {
+	/**
+	 * Stateless filter shared by all connections of a {@link GrizzlyClientHttpRequestFactory}. Writes the request
+	 * line for each {@link GrizzlyClientHttpRequest} and routes response content to the oldest response pending on
+	 * the connection, releasing the connection back to its pool once the response is complete.
+	 */
+	static class RequestResponseFilter extends BaseFilter {
+
+		private final Logger log = LoggerFactory.getLogger(getClass());
+
 		@Override public NextAction handleRead(FilterChainContext ctx) throws IOException {
+			Connection connection = ctx.getConnection();
 			HttpContent httpContent = ctx.getMessage();
-			response.addContent(httpContent);
+			LinkedBlockingQueue<GrizzlyClientHttpResponse> responses = RESPONSES.get(connection);
+			GrizzlyClientHttpResponse response = responses.peek();
+			if (null != response) {
+				boolean keepReading = response.addContent(httpContent);
+				if (httpContent.isLast()) {
+					responses.poll();
+					// Release first, so a request issued from the completion handlers can reuse the connection.
+					GrizzlyConnectionPool pool = GrizzlyConnectionPool.POOL.get(connection);
+					if (null != pool) {
+						pool.release(connection, isKeepAlive(httpContent.getHttpHeader()));
+					}
+					response.complete();
+				} else if (!keepReading && response.suspendReading(ctx)) {
+					// No more reads from this connection until the consumer catches up and the response resumes us.
+					return ctx.getSuspendAction();
+				}
+			}
 
-			log.debug("handleRead(): " + ctx);
+			if (log.isDebugEnabled()) {
+				log.debug("handleRead(): " + ctx);
+			}
 			return super.handleRead(ctx);
 		}
 
 		@Override public NextAction handleWrite(FilterChainContext ctx) throws IOException {
+			final GrizzlyClientHttpRequest request = ctx.getMessage();
+			URI uri = request.getURI();
 			HttpRequestPacket.Builder requestBuilder = HttpRequestPacket.builder()
 					.protocol(Protocol.HTTP_1_1)
-					.uri(uri.toASCIIString());
-			switch (method) {
+					.uri(requestTarget(uri));
+			switch (request.getMethod()) {
 				case GET:
 					requestBuilder.method(Method.GET);
 					break;
+				case HEAD:
+					requestBuilder.method(Method.HEAD);
+					break;
 				case PUT:
 					requestBuilder.method(Method.PUT);
 					break;
@@ -147,11 +194,92 @@ public class GrizzlyClientHttpRequest extends AbstractClientHttpRequest {
 					requestBuilder.method(Method.DELETE);
 					break;
 			}
-			
-			ctx.write(requestBuilder.build());
+			HttpHeaders headers = request.getHeaders();
+			if (!headers.containsKey("Host")) {
+				requestBuilder.header("Host", (uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort()));
+			}
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				String name = header.getKey();
+				for (String value : header.getValue()) {
+					// The codec writes these from its own fields, and would write them twice if they were headers too.
+					if ("Content-Length".equalsIgnoreCase(name)) {
+						requestBuilder.contentLength(Long.parseLong(value));
+					} else if ("Content-Type".equalsIgnoreCase(name)) {
+						requestBuilder.contentType(value);
+					} else {
+						requestBuilder.header(name, value);
+					}
+				}
+			}
 
-			log.debug("handleWrite(): " + ctx);
+			// Headers and body are handed to the codec as one message, to be encoded and written together.
+			Object message = requestBuilder.build();
+			ByteBuffer body = request.getBody();
+			if (null != body) {
+				MemoryManager memoryManager = ctx.getConnection().getTransport().getMemoryManager();
+				message = HttpContent.builder((HttpRequestPacket) message)
+						.content(Buffers.wrap(memoryManager, body))
+						.last(true)
+						.build();
+			}
+			final GrizzlyClientHttpResponse response = request.response;
+			if (null != body || null != request.getRequestListener()) {
+				ctx.write(message, new EmptyCompletionHandler<WriteResult>() {
+					@Override public void completed(WriteResult result) {
+						request.releaseBody();
+						response.requestWritten(result.getWrittenSize());
+					}
+
+					@Override public void failed(Throwable throwable) {
+						request.releaseBody();
+						response.failure(throwable);
+					}
+				});
+			} else {
+				ctx.write(message);
+			}
+
+			if (log.isDebugEnabled()) {
+				log.debug("handleWrite(): " + ctx);
+			}
 			return ctx.getStopAction();
 		}
+
+		@Override public NextAction handleClose(FilterChainContext ctx) throws IOException {
+			LinkedBlockingQueue<GrizzlyClientHttpResponse> responses = RESPONSES.get(ctx.getConnection());
+			List<GrizzlyClientHttpResponse> pending = new ArrayList<GrizzlyClientHttpResponse>();
+			responses.drainTo(pending);
+			for (GrizzlyClientHttpResponse response : pending) {
+				if (response.isCloseDelimited()) {
+					// Only the response being read can have had its headers, and for it the close is the end.
+					response.complete();
+				} else {
+					response.failure(new IOException("Connection closed before response was complete"));
+				}
+			}
+			return ctx.getInvokeAction();
+		}
+
+		private boolean isKeepAlive(HttpHeader header) {
+			String connection = header.getHeader("Connection");
+			if (Protocol.HTTP_1_1 == header.getProtocol()) {
+				return !"close".equalsIgnoreCase(connection);
+			}
+			return "keep-alive".equalsIgnoreCase(connection);
+		}
+
+		/**
+		 * @return the origin-form target for the request line: the raw path, or "/" if there is none, and the raw query.
+		 *         Servers need not accept the absolute form from a client that is not talking to a proxy, and a fragment
+		 *         must never be sent.
+		 */
+		private static String requestTarget(URI uri) {
+			String path = uri.getRawPath();
+			if (null == path || path.length() == 0) {
+				path = "/";
+			}
+			String query = uri.getRawQuery();
+			return (null != query ? path + "?" + query : path);
+		}
 	}
 }
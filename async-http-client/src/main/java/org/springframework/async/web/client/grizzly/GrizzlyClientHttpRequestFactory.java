@@ -17,19 +17,72 @@
 package org.springframework.async.web.client.grizzly;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URI;
 
-import org.springframework.async.http.client.ClientHttpRequest;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.http.HttpClientFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.AbstractPooledClientHttpRequestFactory;
 import org.springframework.async.http.client.ClientHttpRequestFactory;
 import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
 
 /**
+ * {@link ClientHttpRequestFactory} that shares a single Grizzly {@link TCPNIOTransport} between all requests and keeps
+ * a pool of keep-alive connections per route.
+ *
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
-public class GrizzlyClientHttpRequestFactory implements ClientHttpRequestFactory {
+public class GrizzlyClientHttpRequestFactory extends AbstractPooledClientHttpRequestFactory<GrizzlyConnectionPool> {
+
+	private final TCPNIOTransport transport;
+
+	private volatile int pipelineDepth = 1;
+
+	public GrizzlyClientHttpRequestFactory() throws IOException {
+		super("grizzly-idle-connection-reaper");
+		FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+		filterChainBuilder.add(new TransportFilter());
+		filterChainBuilder.add(new HttpClientFilter());
+		filterChainBuilder.add(new GrizzlyClientHttpRequest.RequestResponseFilter());
+
+		TCPNIOTransportBuilder transportBuilder = TCPNIOTransportBuilder.newInstance();
+		transportBuilder.setKeepAlive(true);
+		transportBuilder.setTcpNoDelay(true);
+		transportBuilder.setProcessor(filterChainBuilder.build());
+
+		transport = transportBuilder.build();
+		transport.start();
+	}
+
+	/**
+	 * Set the maximum number of GET and HEAD requests to write back-to-back on a single keep-alive connection before their
+	 * responses have been read. Responses are matched to requests in the order they were written. The default of 1
+	 * disables pipelining. Only affects routes that have not been used yet.
+	 */
+	public void setPipelineDepth(int pipelineDepth) {
+		Assert.isTrue(pipelineDepth > 0, "'pipelineDepth' must be greater than 0");
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
+	@Override protected GrizzlyConnectionPool createConnectionPool(String route, InetSocketAddress address) {
+		return new GrizzlyConnectionPool(route, address, transport, getMaxConnectionsPerRoute(), getIdleTimeout(), pipelineDepth);
+	}
+
+	@Override protected AbstractClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, GrizzlyConnectionPool pool) throws IOException {
+		return new GrizzlyClientHttpRequest(uri, httpMethod, pool, getLowWatermark(), getHighWatermark());
+	}
 
-	@Override public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
-		return new GrizzlyClientHttpRequest(uri, httpMethod);
+	@Override protected void shutdownTransport() throws IOException {
+		transport.stop();
 	}
 
 }
@@ -18,145 +18,254 @@ package org.springframework.async.web.client.grizzly;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.http.HttpHeader;
 import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.util.BufferChunk;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.MimeHeaders;
+import org.glassfish.grizzly.memory.ByteBufferArray;
 import org.glassfish.grizzly.memory.HeapMemoryManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.async.AbstractCompletionHandler;
 import org.springframework.async.CompletionHandler;
-import org.springframework.async.Promise;
-import org.springframework.async.http.client.ClientHttpResponse;
-import org.springframework.http.HttpHeaders;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.AbstractConnectionClientHttpResponse;
+import org.springframework.async.http.client.LazyHttpHeaders;
+import org.springframework.async.http.io.BufferCompletionHandler;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 
 /**
+ * Response read from a Grizzly connection. Reading is suspended by suspending the {@link FilterChainContext} of the
+ * read that pushed the buffer over the high watermark.
+ *
  * @author Jon Brisbin <jon@jbrisbin.com>
  */
 @SuppressWarnings({"unchecked"})
-public class GrizzlyClientHttpResponse implements ClientHttpResponse {
+public class GrizzlyClientHttpResponse extends AbstractConnectionClientHttpResponse<Buffer, Connection> {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 	private final HeapMemoryManager heap = new HeapMemoryManager();
-	private final String readMutex = "read";
 
-	private Promise<HttpHeaders> headers = new GrizzlyFuturePromise<HttpHeaders>();
 	private HttpHeader responseHeader;
-	private Promise<HttpStatus> status = new GrizzlyFuturePromise<HttpStatus>();
-	private Promise<String> statusText = new GrizzlyFuturePromise<String>();
-	private LinkedBlockingDeque<Buffer> buffers = new LinkedBlockingDeque<Buffer>();
-	private CompletionHandler<?> completionHandler;
-	private ReadableByteChannel readChannel = new ReadableByteChannel() {
-		@Override public int read(ByteBuffer buffer) throws IOException {
-			Buffer b = buffers.peek();
-			if (null == b) {
-				return 0;
-			} else {
-				synchronized (readMutex) {
-					int start = buffer.position();
-					b = buffers.pop();
-					b.get(buffer);
-					return buffer.position() - start;
-				}
-			}
-		}
-
-		@Override public boolean isOpen() {
-			return true;
-		}
+	private volatile boolean closeDelimited;
+	private volatile FilterChainContext suspendedRead;
 
-		@Override public void close() throws IOException {
+	public GrizzlyClientHttpResponse() {
+		this(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+	}
 
-		}
-	};
+	/**
+	 * @param lowWatermark  number of buffered bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered bytes at or above which reading is suspended
+	 */
+	public GrizzlyClientHttpResponse(int lowWatermark, int highWatermark) {
+		super(lowWatermark, highWatermark);
+	}
 
-	public void addContent(HttpContent httpContent) {
+	/**
+	 * Add a chunk of content read from the connection. Must only be called from the connection's read thread.
+	 *
+	 * @param httpContent the content
+	 * @return false if the high watermark has been reached and reading should be {@link #suspendReading(FilterChainContext) suspended}
+	 */
+	public boolean addContent(HttpContent httpContent) {
 		if (!headers.isDone()) {
 			responseHeader = httpContent.getHttpHeader();
 			org.glassfish.grizzly.http.util.HttpStatus responseStatus = ((HttpResponsePacket) responseHeader).getHttpStatus();
 			status.result(HttpStatus.valueOf(responseStatus.getStatusCode()));
 			statusText.result(new String(responseStatus.getReasonPhraseBytes()));
 
-			HttpHeaders httpHeaders = new HttpHeaders();
-			MimeHeaders hdrs = httpContent.getHttpHeader().getHeaders();
-			for (String name : hdrs.names()) {
-				List<String> values = new ArrayList<String>();
-				DataChunk chunk = hdrs.getValue(name);
-				String val = null;
-				switch (chunk.getType()) {
-					case String:
-						val = chunk.toString(Charset.defaultCharset());
-						break;
-					case Buffer:
-						val = chunk.getBufferChunk().toString(Charset.defaultCharset());
-						break;
-					default:
-						log.info("type=" + chunk.getType());
-						log.info("chunk=" + chunk);
-				}
-				if (null != val) {
-					values.add(val);
-				}
-
-				if ("Content-Type".equalsIgnoreCase(name)) {
-					httpHeaders.setContentType(MediaType.parseMediaType(val));
-				} else {
-					httpHeaders.put(name, values);
-				}
+			LazyHttpHeaders httpHeaders = new LazyHttpHeaders();
+			MimeHeaders mimeHeaders = responseHeader.getHeaders();
+			byte[] name = new byte[64];
+			byte[] value = new byte[256];
+			for (int i = 0; i < mimeHeaders.size(); i++) {
+				DataChunk nameChunk = mimeHeaders.getName(i);
+				DataChunk valueChunk = mimeHeaders.getValue(i);
+				name = copy(nameChunk, name);
+				value = copy(valueChunk, value);
+				httpHeaders.addRaw(name, 0, nameChunk.getLength(), value, 0, valueChunk.getLength());
 			}
+			int code = responseStatus.getStatusCode();
+			closeDelimited = code >= 200 && code != 204 && code != 304
+					&& !responseHeader.isChunked()
+					&& responseHeader.getContentLength() < 0;
 			headers.result(httpHeaders);
+			headersReceived(code);
 		}
 
 		Buffer contentBuffer = httpContent.getContent();
-		if (null != contentBuffer && contentBuffer.remaining() > 0) {
-			synchronized (readMutex) {
-				if (null != completionHandler) {
-					completionHandler.chunk(contentBuffer.toByteBuffer());
-				} else {
-					buffers.push(contentBuffer);
-				}
+		return (null == contentBuffer || offer(contentBuffer));
+	}
+
+	/**
+	 * @return true if the headers have been read and the end of the content is marked by the server closing the
+	 *         connection
+	 */
+	boolean isCloseDelimited() {
+		return closeDelimited;
+	}
+
+	/**
+	 * Copy the bytes of a header name or value, as parsed out of the connection's buffer, into the given array or, if it
+	 * is too small, a new one.
+	 *
+	 * @return the array the bytes were copied into
+	 */
+	private static byte[] copy(DataChunk chunk, byte[] into) {
+		int length = chunk.getLength();
+		if (into.length < length) {
+			into = new byte[length];
+		}
+		if (DataChunk.Type.Buffer == chunk.getType()) {
+			BufferChunk bufferChunk = chunk.getBufferChunk();
+			Buffer buffer = bufferChunk.getBuffer();
+			int start = bufferChunk.getStart();
+			int position = buffer.position();
+			buffer.position(start);
+			buffer.get(into, 0, length);
+			buffer.position(position);
+		} else {
+			String string = chunk.toString();
+			for (int i = 0; i < length; i++) {
+				into[i] = (byte) string.charAt(i);
 			}
 		}
+		return into;
 	}
 
-	@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
-		this.completionHandler = completionHandler;
-		if (!buffers.isEmpty()) {
-			List<Buffer> bufferList = new ArrayList<Buffer>();
-			buffers.drainTo(bufferList);
-			for (Buffer b : bufferList) {
-				completionHandler.chunk(b.toByteBuffer());
-			}
+	/**
+	 * Suspend reading from the connection until enough buffered content has been consumed to get back down to the low
+	 * watermark. Must only be called from the connection's read thread.
+	 *
+	 * @param ctx the context of the read that delivered the content
+	 * @return true if the read has been suspended and the filter should return {@link
+	 *         FilterChainContext#getSuspendAction()}, false if the buffer has already drained
+	 */
+	boolean suspendReading(final FilterChainContext ctx) {
+		if (isClosed() || !isReadSuspendable()) {
+			return false;
+		}
+		ctx.suspend();
+		// Resuming picks up at the current filter, which would hand us the same content again.
+		ctx.nextFilterIdx();
+		suspendedRead = ctx;
+		if (!markReadSuspended()) {
+			// Already drained, but the read can't be resumed from inside the filter that is suspending it.
+			suspendedRead = null;
+			ctx.getConnection().getTransport().getWorkerThreadPool().execute(new Runnable() {
+				@Override public void run() {
+					ctx.resume();
+				}
+			});
 		}
+		return true;
 	}
 
-	@Override public Promise<HttpStatus> getStatusCode() throws IOException {
-		return status;
+	@Override protected void closeConnection(Connection connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
 	}
 
-	@Override public Promise<String> getStatusText() throws IOException {
-		return statusText;
+	/**
+	 * Keep a chunk that is queued rather than delivered from being disposed of, and its memory reused, once the filter
+	 * that read it returns. A {@link BufferCompletionHandler} disposes of it when it releases it; otherwise it is left
+	 * to the garbage collector.
+	 */
+	@Override protected Buffer retain(Buffer chunk) {
+		chunk.allowBufferDispose(false);
+		return chunk;
 	}
 
-	@Override public void close() {
+	@Override protected int sizeOf(Buffer chunk) {
+		return chunk.remaining();
 	}
 
-	@Override public Promise<HttpHeaders> getHeaders() {
-		return headers;
+	/**
+	 * Hand a chunk of content to the handler. A {@link BufferCompletionHandler} is given the buffer itself, which
+	 * Grizzly does not reuse until it is disposed of. Otherwise a composite buffer is passed on one component at a time
+	 * rather than being copied into a single {@link ByteBuffer}.
+	 */
+	@Override protected boolean deliver(CompletionHandler<?> handler, Buffer content) {
+		if (handler instanceof BufferCompletionHandler) {
+			return ((BufferCompletionHandler<?>) handler).buffer(new RetainedBuffer(content));
+		}
+		if (!content.isComposite()) {
+			return handler.chunk(content.toByteBuffer());
+		}
+		ByteBufferArray array = content.toByteBufferArray();
+		try {
+			boolean more = true;
+			ByteBuffer[] components = array.getArray();
+			for (int i = 0; i < array.size(); i++) {
+				more &= handler.chunk(components[i]);
+			}
+			return more;
+		} finally {
+			array.restore();
+			array.recycle();
+		}
+	}
+
+	@Override protected void resumeReading() {
+		FilterChainContext ctx = suspendedRead;
+		suspendedRead = null;
+		ctx.resume();
+	}
+
+	/**
+	 * Content buffer handed over to a {@link BufferCompletionHandler}. It is kept from being disposed of until it is
+	 * released, when it is given back to the memory manager.
+	 */
+	private static class RetainedBuffer implements org.springframework.async.http.io.Buffer {
+		private final Buffer buffer;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private RetainedBuffer(Buffer buffer) {
+			this.buffer = buffer;
+			buffer.allowBufferDispose(false);
+		}
+
+		@Override public int remaining() {
+			return buffer.remaining();
+		}
+
+		@Override public ByteBuffer[] toByteBuffers() {
+			if (!buffer.isComposite()) {
+				return new ByteBuffer[]{buffer.toByteBuffer().duplicate()};
+			}
+			ByteBufferArray array = buffer.toByteBufferArray();
+			try {
+				ByteBuffer[] components = array.getArray();
+				ByteBuffer[] buffers = new ByteBuffer[array.size()];
+				for (int i = 0; i < buffers.length; i++) {
+					buffers[i] = components[i].duplicate();
+				}
+				return buffers;
+			} finally {
+				array.restore();
+				array.recycle();
+			}
+		}
+
+		@Override public void release() {
+			if (released.compareAndSet(false, true)) {
+				buffer.allowBufferDispose(true);
+				buffer.tryDispose();
+			}
+		}
 	}
 
-	private class WriteToChannelCompletionHandler extends AbstractCompletionHandler {
+	private class WriteToChannelCompletionHandler extends EmptyCompletionHandler {
 		@Override public boolean chunk(ByteBuffer buffer) {
 			return false;
 		}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.grizzly;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.http.client.AbstractConnectionPool;
+
+/**
+ * Pool of keep-alive {@link Connection}s to a single route (scheme, host and port), optionally pipelining GET and HEAD
+ * requests.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class GrizzlyConnectionPool extends AbstractConnectionPool<Connection> {
+
+	static final Attribute<GrizzlyConnectionPool> POOL = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute("connection-pool");
+
+	private final InetSocketAddress address;
+	private final TCPNIOTransport transport;
+	private final Connection.CloseListener closeListener = new Connection.CloseListener() {
+		@Override public void onClosed(Connection connection) throws IOException {
+			closed(connection);
+		}
+	};
+
+	public GrizzlyConnectionPool(String route, InetSocketAddress address, TCPNIOTransport transport, int maxConnections, long idleTimeout, int pipelineDepth) {
+		super(route, maxConnections, idleTimeout, pipelineDepth);
+		this.address = address;
+		this.transport = transport;
+	}
+
+	@Override protected void connect(final CompletionHandler<Connection> handler) {
+		try {
+			transport.connect(address, new EmptyCompletionHandler<Connection>() {
+				@Override public void completed(Connection connection) {
+					POOL.set(connection, GrizzlyConnectionPool.this);
+					connection.addCloseListener(closeListener);
+					handler.completed(connection);
+				}
+
+				@Override public void failed(Throwable throwable) {
+					handler.failed(throwable);
+				}
+			});
+		} catch (IOException e) {
+			handler.failed(e);
+		}
+	}
+
+	@Override protected boolean isOpen(Connection connection) {
+		return connection.isOpen();
+	}
+
+	@Override protected void close(Connection connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.netty;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelLocal;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.http.client.AbstractConnectionPool;
+
+/**
+ * Pool of keep-alive {@link Channel}s to a single route (scheme, host and port).
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NettyChannelPool extends AbstractConnectionPool<Channel> {
+
+	static final ChannelLocal<NettyChannelPool> POOL = new ChannelLocal<NettyChannelPool>();
+
+	private final InetSocketAddress address;
+	private final ClientBootstrap bootstrap;
+	private final ChannelGroup allChannels;
+	private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+		@Override public void operationComplete(ChannelFuture future) throws Exception {
+			closed(future.getChannel());
+		}
+	};
+
+	/**
+	 * @param allChannels group every channel opened by this pool is added to, so that the factory can close them all
+	 */
+	public NettyChannelPool(String route, InetSocketAddress address, ClientBootstrap bootstrap, ChannelGroup allChannels, int maxConnections, long idleTimeout) {
+		super(route, maxConnections, idleTimeout, 1);
+		this.address = address;
+		this.bootstrap = bootstrap;
+		this.allChannels = allChannels;
+	}
+
+	@Override protected void connect(final CompletionHandler<Channel> handler) {
+		bootstrap.connect(address).addListener(new ChannelFutureListener() {
+			@Override public void operationComplete(ChannelFuture future) throws Exception {
+				if (!future.isSuccess()) {
+					handler.failed(null != future.getCause() ? future.getCause() : new IOException("Connection to " + getRoute() + " was cancelled"));
+					return;
+				}
+				Channel channel = future.getChannel();
+				POOL.set(channel, NettyChannelPool.this);
+				allChannels.add(channel);
+				channel.getCloseFuture().addListener(closeListener);
+				handler.completed(channel);
+			}
+		});
+	}
+
+	@Override protected boolean isOpen(Channel channel) {
+		return channel.isOpen();
+	}
+
+	@Override protected void close(Channel channel) {
+		channel.close();
+	}
+
+}
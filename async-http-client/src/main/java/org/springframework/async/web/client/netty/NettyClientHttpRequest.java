@@ -0,0 +1,236 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.netty;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelLocal;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NettyClientHttpRequest extends AbstractClientHttpRequest {
+
+	private static final ChannelLocal<NettyClientHttpResponse> RESPONSE = new ChannelLocal<NettyClientHttpResponse>();
+	private static final ChannelLocal<AtomicInteger> REQUESTS_SENT = new ChannelLocal<AtomicInteger>() {
+		@Override protected AtomicInteger initialValue(Channel channel) {
+			return new AtomicInteger();
+		}
+	};
+
+	private final NettyChannelPool channelPool;
+	private HttpMethod method;
+	private URI uri;
+	private NettyClientHttpResponse response;
+
+	public NettyClientHttpRequest(URI uri, HttpMethod method, NettyChannelPool channelPool) {
+		this(uri, method, channelPool, NettyClientHttpResponse.DEFAULT_LOW_WATERMARK, NettyClientHttpResponse.DEFAULT_HIGH_WATERMARK);
+	}
+
+	/**
+	 * @param lowWatermark  number of buffered response bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered response bytes at or above which reading is suspended
+	 */
+	public NettyClientHttpRequest(URI uri, HttpMethod method, NettyChannelPool channelPool, int lowWatermark, int highWatermark) {
+		this.uri = uri;
+		this.method = method;
+		this.channelPool = channelPool;
+		this.response = new NettyClientHttpResponse(lowWatermark, highWatermark);
+	}
+
+	@Override protected ClientHttpResponse executeInternal(final HttpHeaders headers) throws IOException {
+		response.setRequestListener(this, getRequestListener());
+		response.queued();
+		channelPool.acquire(new EmptyCompletionHandler<Channel>() {
+			@Override public void completed(final Channel channel) {
+				if (!response.setConnection(channel)) {
+					// Cancelled while waiting for a channel.
+					releaseBody();
+					channelPool.release(channel, true);
+					return;
+				}
+				response.connectionAcquired(REQUESTS_SENT.get(channel).getAndIncrement() > 0);
+				RESPONSE.set(channel, response);
+				final HttpRequest httpRequest = createHttpRequest(headers);
+				channel.write(httpRequest).addListener(new ChannelFutureListener() {
+					@Override public void operationComplete(ChannelFuture future) throws Exception {
+						int written = -1;
+						if (future.isSuccess() && null != getRequestListener()) {
+							// Measured before the body goes back to the pool, as the content wraps it.
+							written = encodedLength(httpRequest) + httpRequest.getContent().readableBytes();
+						}
+						releaseBody();
+						if (future.isSuccess()) {
+							if (written >= 0) {
+								response.requestWritten(written);
+							}
+						} else if (null != RESPONSE.remove(channel)) {
+							response.failure(future.getCause());
+							channelPool.release(channel, false);
+						}
+					}
+				});
+			}
+
+			@Override public void failed(Throwable throwable) {
+				releaseBody();
+				response.failure(throwable);
+			}
+		});
+		return response;
+	}
+
+	@Override public HttpMethod getMethod() {
+		return method;
+	}
+
+	@Override public URI getURI() {
+		return uri;
+	}
+
+	private HttpRequest createHttpRequest(HttpHeaders headers) {
+		String path = uri.getRawPath();
+		if (null == path || path.length() == 0) {
+			path = "/";
+		}
+		if (null != uri.getRawQuery()) {
+			path += "?" + uri.getRawQuery();
+		}
+		HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1,
+																								 org.jboss.netty.handler.codec.http.HttpMethod.valueOf(method.name()),
+																								 path);
+		request.setHeader("Host", (uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort()));
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			request.setHeader(header.getKey(), header.getValue());
+		}
+		ByteBuffer body = getBody();
+		if (null != body) {
+			// The encoder writes the headers and a request's content as one wrapped buffer.
+			request.setContent(ChannelBuffers.wrappedBuffer(body));
+		}
+		return request;
+	}
+
+	/**
+	 * @return the number of bytes the encoder writes for the request line and headers, not counting the content
+	 */
+	private static int encodedLength(HttpRequest request) {
+		// Request line, with a space after the method and " HTTP/1.1\r\n" after the URI, and the blank line that ends
+		// the headers.
+		int length = request.getMethod().getName().length() + 1 + request.getUri().length() + 11 + 2;
+		for (Map.Entry<String, String> header : request.getHeaders()) {
+			length += header.getKey().length() + 2 + header.getValue().length() + 2;
+		}
+		return length;
+	}
+
+	/**
+	 * Stateless handler shared by all channels of a {@link NettyClientHttpRequestFactory}. Hands the response and each
+	 * of its chunks to the response waiting on the channel as they are decoded, and releases the channel back to its
+	 * pool once the response is complete.
+	 */
+	@ChannelHandler.Sharable
+	static class ResponseHandler extends SimpleChannelUpstreamHandler {
+
+		private final Logger log = LoggerFactory.getLogger(getClass());
+
+		@Override public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+			Channel channel = e.getChannel();
+			NettyClientHttpResponse response = RESPONSE.get(channel);
+			if (null == response) {
+				if (log.isDebugEnabled()) {
+					log.debug("Discarding unexpected message on " + channel + ": " + e.getMessage());
+				}
+				return;
+			}
+
+			if (e.getMessage() instanceof HttpResponse) {
+				HttpResponse httpResponse = (HttpResponse) e.getMessage();
+				response.setHttpResponse(httpResponse);
+				if (!httpResponse.isChunked()) {
+					complete(channel, response);
+				}
+			} else {
+				HttpChunk chunk = (HttpChunk) e.getMessage();
+				response.addContent(chunk.getContent(), chunk.isLast());
+				if (chunk.isLast()) {
+					complete(channel, response);
+				}
+			}
+		}
+
+		@Override public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+			NettyClientHttpResponse response = RESPONSE.remove(e.getChannel());
+			if (null != response) {
+				if (response.isCloseDelimited()) {
+					response.complete();
+				} else {
+					response.failure(new IOException("Connection closed before response was complete"));
+				}
+			}
+			super.channelClosed(ctx, e);
+		}
+
+		@Override public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+			NettyClientHttpResponse response = RESPONSE.remove(e.getChannel());
+			if (null != response) {
+				response.failure(e.getCause());
+			} else {
+				log.error(e.getCause().getMessage(), e.getCause());
+			}
+			e.getChannel().close();
+		}
+
+		private void complete(Channel channel, NettyClientHttpResponse response) {
+			RESPONSE.remove(channel);
+			// Release first, so a request issued from the completion handlers can reuse the channel.
+			NettyChannelPool pool = NettyChannelPool.POOL.get(channel);
+			if (null != pool) {
+				pool.release(channel, response.isKeepAlive());
+			}
+			response.complete();
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.netty;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.AbstractPooledClientHttpRequestFactory;
+import org.springframework.async.http.client.ClientHttpRequestFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestFactory} that shares a single set of Netty boss and worker threads between all requests and
+ * keeps a pool of keep-alive channels per route.
+ * <p>Responses are not aggregated: each {@code HttpChunk} is handed to the response's {@link
+ * org.springframework.async.CompletionHandler} as soon as it is decoded. Content is read into direct buffers unless
+ * {@link #setDirectBuffers(boolean) configured otherwise}.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NettyClientHttpRequestFactory extends AbstractPooledClientHttpRequestFactory<NettyChannelPool> {
+
+	private final ChannelGroup allChannels = new DefaultChannelGroup("netty-client-http");
+	private final ClientBootstrap bootstrap;
+
+	private volatile boolean directBuffers = true;
+
+	public NettyClientHttpRequestFactory() {
+		this(Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	/**
+	 * @param workerCount number of worker threads to share between all channels
+	 */
+	public NettyClientHttpRequestFactory(int workerCount) {
+		super("netty-idle-channel-reaper");
+		Assert.isTrue(workerCount > 0, "'workerCount' must be greater than 0");
+		bootstrap = new ClientBootstrap(new NioClientSocketChannelFactory(
+				Executors.newCachedThreadPool(new NamedDaemonThreadFactory("netty-client-boss")),
+				Executors.newCachedThreadPool(new NamedDaemonThreadFactory("netty-client-worker")),
+				workerCount));
+		bootstrap.setOption("tcpNoDelay", true);
+		bootstrap.setOption("keepAlive", true);
+		bootstrap.setOption("bufferFactory", DirectChannelBufferFactory.getInstance());
+
+		final NettyClientHttpRequest.ResponseHandler responseHandler = new NettyClientHttpRequest.ResponseHandler();
+		bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+			@Override public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("http.codec", new HttpClientCodec());
+				pipeline.addLast("http.handler", responseHandler);
+				return pipeline;
+			}
+		});
+	}
+
+	/**
+	 * Set whether response content is read into direct buffers, which the completion handler can pass on to a channel
+	 * without copying, or into heap buffers. Only affects connections that have not been opened yet.
+	 */
+	public void setDirectBuffers(boolean directBuffers) {
+		this.directBuffers = directBuffers;
+		bootstrap.setOption("bufferFactory", (directBuffers ? DirectChannelBufferFactory.getInstance() : HeapChannelBufferFactory.getInstance()));
+	}
+
+	public boolean isDirectBuffers() {
+		return directBuffers;
+	}
+
+	@Override protected NettyChannelPool createConnectionPool(String route, InetSocketAddress address) {
+		return new NettyChannelPool(route, address, bootstrap, allChannels, getMaxConnectionsPerRoute(), getIdleTimeout());
+	}
+
+	@Override protected AbstractClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, NettyChannelPool pool) throws IOException {
+		return new NettyClientHttpRequest(uri, httpMethod, pool, getLowWatermark(), getHighWatermark());
+	}
+
+	@Override protected void shutdownTransport() {
+		allChannels.close().awaitUninterruptibly();
+		bootstrap.releaseExternalResources();
+	}
+
+	private static class NamedDaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		private final String name;
+
+		private NamedDaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.netty;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.http.client.AbstractConnectionClientHttpResponse;
+import org.springframework.async.http.client.LazyHttpHeaders;
+import org.springframework.async.http.io.Buffer;
+import org.springframework.async.http.io.BufferCompletionHandler;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Response read from a Netty {@link Channel}. Reading is suspended by making the channel unreadable, which stops the
+ * worker from selecting it for reads until it is made readable again.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NettyClientHttpResponse extends AbstractConnectionClientHttpResponse<ChannelBuffer, Channel> {
+
+	// Only touched by the channel's worker thread.
+	private boolean keepAlive;
+	private boolean closeDelimited;
+
+	public NettyClientHttpResponse() {
+		this(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+	}
+
+	/**
+	 * @param lowWatermark  number of buffered bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered bytes at or above which reading is suspended
+	 */
+	public NettyClientHttpResponse(int lowWatermark, int highWatermark) {
+		super(lowWatermark, highWatermark);
+	}
+
+	/**
+	 * Called with the status line and headers of the response, along with its content unless it is delivered as a
+	 * series of chunks.
+	 */
+	void setHttpResponse(HttpResponse httpResponse) {
+		status.result(HttpStatus.valueOf(httpResponse.getStatus().getCode()));
+		statusText.result(httpResponse.getStatus().getReasonPhrase());
+
+		LazyHttpHeaders httpHeaders = new LazyHttpHeaders();
+		for (Map.Entry<String, String> header : httpResponse.getHeaders()) {
+			httpHeaders.addRaw(header.getKey(), header.getValue());
+		}
+		headers.result(httpHeaders);
+		headersReceived(httpResponse.getStatus().getCode());
+
+		keepAlive = org.jboss.netty.handler.codec.http.HttpHeaders.isKeepAlive(httpResponse);
+		int code = httpResponse.getStatus().getCode();
+		closeDelimited = code >= 200 && code != 204 && code != 304
+				&& !httpResponse.containsHeader("Content-Length")
+				&& !httpResponse.containsHeader("Transfer-Encoding");
+		if (!httpResponse.isChunked()) {
+			addContent(httpResponse.getContent(), true);
+		}
+	}
+
+	/**
+	 * Add a chunk of content read from the channel. Must only be called from the channel's worker thread.
+	 *
+	 * @param content the content
+	 * @param last    whether this is the last chunk, in which case reading is never suspended
+	 */
+	void addContent(ChannelBuffer content, boolean last) {
+		if (!offer(content) && !last) {
+			suspendReading();
+		}
+	}
+
+	/**
+	 * @return true if the channel may be reused for another request once this response is complete
+	 */
+	boolean isKeepAlive() {
+		return keepAlive && !closeDelimited;
+	}
+
+	/**
+	 * @return true if the end of the content is marked by the server closing the channel
+	 */
+	boolean isCloseDelimited() {
+		return closeDelimited;
+	}
+
+	@Override protected int sizeOf(ChannelBuffer chunk) {
+		return chunk.readableBytes();
+	}
+
+	/**
+	 * Hand the chunk's underlying NIO buffers to the handler without copying them. With the factory's default buffer
+	 * factory these are direct buffers, so a handler writing them on to a file or socket needs no further copy. Netty
+	 * never reuses the memory behind a chunk, so a {@link BufferCompletionHandler} is simply given the chunk to keep.
+	 */
+	@Override protected boolean deliver(CompletionHandler<?> handler, final ChannelBuffer chunk) {
+		if (handler instanceof BufferCompletionHandler) {
+			return ((BufferCompletionHandler<?>) handler).buffer(new Buffer() {
+				@Override public int remaining() {
+					return chunk.readableBytes();
+				}
+
+				@Override public ByteBuffer[] toByteBuffers() {
+					return chunk.toByteBuffers();
+				}
+
+				@Override public void release() {
+				}
+			});
+		}
+		boolean more = true;
+		for (ByteBuffer buffer : chunk.toByteBuffers()) {
+			more &= handler.chunk(buffer);
+		}
+		return more;
+	}
+
+	@Override protected void setReadable(Channel channel, boolean readable) {
+		channel.setReadable(readable);
+	}
+
+	@Override protected void closeConnection(Channel channel) {
+		channel.close();
+	}
+
+}
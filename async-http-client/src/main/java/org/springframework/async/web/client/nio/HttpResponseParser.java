@@ -0,0 +1,395 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental HTTP/1.1 response parser. Bytes are fed in as they are read, in pieces of any size, and the parser calls
+ * back as each part of the response is recognised. Content is handed on as a window onto the buffer that was passed
+ * in rather than being copied, so parsing the body allocates nothing; only the status line and headers are
+ * accumulated, in a line buffer that is reused for every line of every response.
+ * <p>Content-Length, chunked and close-delimited bodies are supported. Interim 1xx responses are skipped.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+class HttpResponseParser {
+
+	static final int MAX_LINE_LENGTH = 8192;
+
+	private enum State {
+		STATUS_LINE, HEADER_LINE, FIXED_BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILER, CLOSE_DELIMITED_BODY, DONE
+	}
+
+	/**
+	 * Receives the parts of a response as they are parsed.
+	 */
+	interface Handler {
+
+		void status(int code, String reasonPhrase);
+
+		/**
+		 * @param line the line the header was read into, only valid for the duration of the call
+		 * @param nameLength length of the name, which starts the line
+		 * @param valueStart offset of the value, without leading whitespace
+		 * @param valueEnd   end of the value, without trailing whitespace
+		 */
+		void header(byte[] line, int nameLength, int valueStart, int valueEnd);
+
+		void headersComplete();
+
+		/**
+		 * @param content the buffer the content was read into, positioned and limited to the content; only valid for the
+		 *                duration of the call
+		 */
+		void content(ByteBuffer content);
+
+		void complete();
+
+	}
+
+	private final Handler handler;
+	private byte[] line = new byte[256];
+	private int lineLength;
+	private State state = State.DONE;
+	private boolean head;
+	private int statusCode;
+	private boolean http11;
+	private long contentLength;
+	private boolean chunked;
+	private String connection;
+	private long remaining;
+
+	HttpResponseParser(Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Prepare to parse the response to a new request.
+	 *
+	 * @param head whether the request was a HEAD request, whose response has no body whatever its headers say
+	 */
+	void reset(boolean head) {
+		this.head = head;
+		state = State.STATUS_LINE;
+		resetMessage();
+	}
+
+	/**
+	 * @return true if a response is being parsed
+	 */
+	boolean isParsing() {
+		return State.DONE != state;
+	}
+
+	/**
+	 * @return true if the response being parsed ends when the connection is closed
+	 */
+	boolean isCloseDelimited() {
+		return State.CLOSE_DELIMITED_BODY == state;
+	}
+
+	/**
+	 * @return true if the connection may be reused once the response has been parsed
+	 */
+	boolean isKeepAlive() {
+		if (null != connection) {
+			if ("close".equalsIgnoreCase(connection)) {
+				return false;
+			}
+			if ("keep-alive".equalsIgnoreCase(connection)) {
+				return true;
+			}
+		}
+		return http11;
+	}
+
+	/**
+	 * Parse as much of the given buffer as belongs to the current response. The buffer's position is left after the
+	 * last byte consumed.
+	 *
+	 * @throws IOException if the response is malformed
+	 */
+	void parse(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining() && State.DONE != state) {
+			switch (state) {
+				case FIXED_BODY:
+				case CHUNK_DATA:
+					remaining -= content(buffer, remaining);
+					if (remaining == 0) {
+						if (State.FIXED_BODY == state) {
+							complete();
+						} else {
+							state = State.CHUNK_DATA_END;
+						}
+					}
+					break;
+				case CLOSE_DELIMITED_BODY:
+					content(buffer, buffer.remaining());
+					break;
+				default:
+					if (readLine(buffer)) {
+						parseLine();
+						lineLength = 0;
+					}
+			}
+		}
+	}
+
+	/**
+	 * End of input. A close-delimited body completes, anything else in progress is cut short.
+	 *
+	 * @return true if the response completed
+	 */
+	boolean close() {
+		if (State.CLOSE_DELIMITED_BODY == state) {
+			complete();
+			return true;
+		}
+		return State.DONE == state;
+	}
+
+	private long content(ByteBuffer buffer, long max) {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		int length = (int) Math.min(buffer.remaining(), max);
+		buffer.limit(start + length);
+		try {
+			handler.content(buffer);
+		} finally {
+			buffer.limit(limit);
+			buffer.position(start + length);
+		}
+		return length;
+	}
+
+	/**
+	 * Copy bytes up to and including the next line feed into the line buffer.
+	 *
+	 * @return true if a whole line is now in the line buffer, without its line terminator
+	 */
+	private boolean readLine(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get();
+			if (b == '\n') {
+				if (lineLength > 0 && line[lineLength - 1] == '\r') {
+					lineLength--;
+				}
+				return true;
+			}
+			if (lineLength == line.length) {
+				if (lineLength == MAX_LINE_LENGTH) {
+					throw new IOException("Response line longer than " + MAX_LINE_LENGTH + " bytes");
+				}
+				byte[] bigger = new byte[Math.min(line.length * 2, MAX_LINE_LENGTH)];
+				System.arraycopy(line, 0, bigger, 0, lineLength);
+				line = bigger;
+			}
+			line[lineLength++] = b;
+		}
+		return false;
+	}
+
+	private void parseLine() throws IOException {
+		switch (state) {
+			case STATUS_LINE:
+				if (lineLength > 0) {
+					parseStatusLine();
+				}
+				break;
+			case HEADER_LINE:
+				if (lineLength == 0) {
+					headersComplete();
+				} else {
+					parseHeader();
+				}
+				break;
+			case CHUNK_SIZE:
+				remaining = parseChunkSize();
+				state = (remaining == 0 ? State.TRAILER : State.CHUNK_DATA);
+				break;
+			case CHUNK_DATA_END:
+				if (lineLength != 0) {
+					throw new IOException("Missing CRLF after chunk data");
+				}
+				state = State.CHUNK_SIZE;
+				break;
+			case TRAILER:
+				if (lineLength == 0) {
+					complete();
+				}
+				break;
+		}
+	}
+
+	private void parseStatusLine() throws IOException {
+		// HTTP/1.x SP 3DIGIT [SP reason-phrase]
+		if (lineLength < 12 || line[0] != 'H' || line[1] != 'T' || line[2] != 'T' || line[3] != 'P' || line[4] != '/'
+				|| line[6] != '.' || line[8] != ' ') {
+			throw new IOException("Malformed status line: " + string(0, lineLength));
+		}
+		http11 = (line[5] == '1' && line[7] == '1');
+		int code = 0;
+		for (int i = 9; i < 12; i++) {
+			byte b = line[i];
+			if (b < '0' || b > '9') {
+				throw new IOException("Malformed status line: " + string(0, lineLength));
+			}
+			code = code * 10 + (b - '0');
+		}
+		statusCode = code;
+		if (code >= 100 && code < 200) {
+			// Interim response; the real one follows its headers.
+			state = State.HEADER_LINE;
+			return;
+		}
+		handler.status(code, (lineLength > 13 ? string(13, lineLength) : ""));
+		state = State.HEADER_LINE;
+	}
+
+	private void parseHeader() throws IOException {
+		int colon = 0;
+		while (colon < lineLength && line[colon] != ':') {
+			colon++;
+		}
+		if (colon == lineLength || colon == 0) {
+			throw new IOException("Malformed header: " + string(0, lineLength));
+		}
+		int start = colon + 1;
+		int end = lineLength;
+		while (start < end && (line[start] == ' ' || line[start] == '\t')) {
+			start++;
+		}
+		while (end > start && (line[end - 1] == ' ' || line[end - 1] == '\t')) {
+			end--;
+		}
+		if (isInterim()) {
+			return;
+		}
+		// Only the headers that frame the message are decoded here; the rest are passed on as they are.
+		if (nameIs("Content-Length", colon)) {
+			String value = string(start, end);
+			try {
+				contentLength = Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed Content-Length: " + value);
+			}
+		} else if (nameIs("Transfer-Encoding", colon)) {
+			chunked = !"identity".equalsIgnoreCase(string(start, end));
+		} else if (nameIs("Connection", colon)) {
+			connection = string(start, end);
+		}
+		handler.header(line, colon, start, end);
+	}
+
+	private void headersComplete() {
+		if (isInterim()) {
+			resetMessage();
+			state = State.STATUS_LINE;
+			return;
+		}
+		handler.headersComplete();
+		if (head || statusCode == 204 || statusCode == 304) {
+			complete();
+		} else if (chunked) {
+			state = State.CHUNK_SIZE;
+		} else if (contentLength >= 0) {
+			remaining = contentLength;
+			if (remaining == 0) {
+				complete();
+			} else {
+				state = State.FIXED_BODY;
+			}
+		} else {
+			state = State.CLOSE_DELIMITED_BODY;
+		}
+	}
+
+	private long parseChunkSize() throws IOException {
+		long size = 0;
+		int digits = 0;
+		for (int i = 0; i < lineLength; i++) {
+			byte b = line[i];
+			int digit;
+			if (b >= '0' && b <= '9') {
+				digit = b - '0';
+			} else if (b >= 'a' && b <= 'f') {
+				digit = b - 'a' + 10;
+			} else if (b >= 'A' && b <= 'F') {
+				digit = b - 'A' + 10;
+			} else if (b == ';' || b == ' ' || b == '\t') {
+				// Chunk extensions are ignored.
+				break;
+			} else {
+				throw new IOException("Malformed chunk size: " + string(0, lineLength));
+			}
+			if (++digits > 15) {
+				throw new IOException("Chunk size too large: " + string(0, lineLength));
+			}
+			size = (size << 4) | digit;
+		}
+		if (digits == 0) {
+			throw new IOException("Missing chunk size");
+		}
+		return size;
+	}
+
+	private void complete() {
+		state = State.DONE;
+		handler.complete();
+	}
+
+	private boolean isInterim() {
+		return statusCode >= 100 && statusCode < 200;
+	}
+
+	private void resetMessage() {
+		lineLength = 0;
+		statusCode = 0;
+		http11 = false;
+		contentLength = -1;
+		chunked = false;
+		connection = null;
+		remaining = 0;
+	}
+
+	private boolean nameIs(String name, int nameLength) {
+		if (name.length() != nameLength) {
+			return false;
+		}
+		for (int i = 0; i < nameLength; i++) {
+			int c = line[i];
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			if (c != Character.toLowerCase(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String string(int start, int end) {
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++) {
+			chars[i - start] = (char) (line[i] & 0xff);
+		}
+		return new String(chars);
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NioClientHttpRequest extends AbstractClientHttpRequest {
+
+	// Header values at least this long are only encoded once while the same string keeps being sent.
+	private static final int MIN_ENCODED_VALUE_LENGTH = 64;
+	private static final int ENCODED_VALUES = 64;
+	// Keyed by identity, so a value is only ever matched by the very string it was encoded from. Slots are read and
+	// written without synchronization; entries are immutable, so a lost update only costs encoding a value again.
+	private static final EncodedValue[] encodedValues = new EncodedValue[ENCODED_VALUES];
+
+	private final NioConnectionPool connectionPool;
+	private HttpMethod method;
+	private URI uri;
+	private NioClientHttpResponse response;
+
+	/**
+	 * @param lowWatermark  number of buffered response bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered response bytes at or above which reading is suspended
+	 */
+	public NioClientHttpRequest(URI uri, HttpMethod method, NioConnectionPool connectionPool, int lowWatermark, int highWatermark) {
+		this.uri = uri;
+		this.method = method;
+		this.connectionPool = connectionPool;
+		this.response = new NioClientHttpResponse(lowWatermark, highWatermark);
+	}
+
+	@Override protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+		ByteBuffer head = ByteBuffer.wrap(encode(headers));
+		ByteBuffer body = getBody();
+		final ByteBuffer[] request = (null != body ? new ByteBuffer[]{head, body} : new ByteBuffer[]{head});
+		response.setRequestListener(this, getRequestListener());
+		response.queued();
+		connectionPool.acquire(new EmptyCompletionHandler<NioConnection>() {
+			@Override public void completed(NioConnection connection) {
+				if (!response.setConnection(connection)) {
+					// Cancelled while waiting for a connection.
+					releaseBody();
+					connectionPool.release(connection, true);
+					return;
+				}
+				response.connectionAcquired(connection.markRequestSent());
+				connection.send(NioClientHttpRequest.this, response, request, HttpMethod.HEAD == method);
+			}
+
+			@Override public void failed(Throwable throwable) {
+				releaseBody();
+				response.failure(throwable);
+			}
+		});
+		return response;
+	}
+
+	@Override public HttpMethod getMethod() {
+		return method;
+	}
+
+	@Override public URI getURI() {
+		return uri;
+	}
+
+	/**
+	 * Called on the event loop once the request has been written, or once the connection has closed before it could
+	 * be.
+	 */
+	void writeFinished() {
+		releaseBody();
+	}
+
+	/**
+	 * @return the request line and headers, encoded as ISO-8859-1
+	 */
+	private byte[] encode(HttpHeaders headers) {
+		String path = uri.getRawPath();
+		if (null == path || path.length() == 0) {
+			path = "/";
+		}
+		String query = uri.getRawQuery();
+		String host = null;
+		if (!headers.containsKey("Host")) {
+			host = (uri.getPort() >= 0 ? uri.getHost() + ':' + uri.getPort() : uri.getHost());
+		}
+
+		// Size the request exactly first, so it is encoded straight into an array of the right length.
+		int length = method.name().length() + 1 + path.length() + (null != query ? 1 + query.length() : 0) + 11;
+		if (null != host) {
+			length += 6 + host.length() + 2;
+		}
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			for (String value : header.getValue()) {
+				length += header.getKey().length() + 2 + value.length() + 2;
+			}
+		}
+		length += 2;
+
+		byte[] request = new byte[length];
+		int i = put(method.name(), request, 0);
+		request[i++] = ' ';
+		i = put(path, request, i);
+		if (null != query) {
+			request[i++] = '?';
+			i = put(query, request, i);
+		}
+		i = put(" HTTP/1.1\r\n", request, i);
+		if (null != host) {
+			i = put("Host: ", request, i);
+			i = put(host, request, i);
+			i = put("\r\n", request, i);
+		}
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			for (String value : header.getValue()) {
+				i = put(header.getKey(), request, i);
+				request[i++] = ':';
+				request[i++] = ' ';
+				i = putValue(value, request, i);
+				request[i++] = '\r';
+				request[i++] = '\n';
+			}
+		}
+		request[i++] = '\r';
+		request[i] = '\n';
+		return request;
+	}
+
+	private static int put(String string, byte[] bytes, int offset) {
+		int length = string.length();
+		for (int i = 0; i < length; i++) {
+			bytes[offset + i] = (byte) string.charAt(i);
+		}
+		return offset + length;
+	}
+
+	/**
+	 * Like {@link #put}, but long values are encoded once and their bytes reused for as long as the same string keeps
+	 * being sent, as the Accept and Accept-Charset values worked out once per template and converter are.
+	 */
+	private static int putValue(String value, byte[] bytes, int offset) {
+		int length = value.length();
+		if (length < MIN_ENCODED_VALUE_LENGTH) {
+			return put(value, bytes, offset);
+		}
+		int slot = System.identityHashCode(value) & (ENCODED_VALUES - 1);
+		EncodedValue encoded = encodedValues[slot];
+		if (null == encoded || encoded.value != value) {
+			byte[] encodedBytes = new byte[length];
+			put(value, encodedBytes, 0);
+			encoded = new EncodedValue(value, encodedBytes);
+			encodedValues[slot] = encoded;
+		}
+		System.arraycopy(encoded.bytes, 0, bytes, offset, length);
+		return offset + length;
+	}
+
+	private static final class EncodedValue {
+		private final String value;
+		private final byte[] bytes;
+
+		private EncodedValue(String value, byte[] bytes) {
+			this.value = value;
+			this.bytes = bytes;
+		}
+	}
+
+}
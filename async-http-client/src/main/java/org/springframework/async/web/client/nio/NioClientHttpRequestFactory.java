@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.AbstractPooledClientHttpRequestFactory;
+import org.springframework.async.http.client.ClientHttpRequestFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestFactory} that needs nothing beyond the JDK. All connections are served by a single selector
+ * thread and kept in a pool of keep-alive connections per route.
+ * <p>Responses are parsed incrementally straight out of one shared direct read buffer, and content is handed to the
+ * completion handler without being copied unless it has to be queued, so a {@link java.nio.ByteBuffer} passed to
+ * {@link org.springframework.async.CompletionHandler#chunk(java.nio.ByteBuffer)} must not be kept once the call
+ * returns.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NioClientHttpRequestFactory extends AbstractPooledClientHttpRequestFactory<NioConnectionPool> {
+
+	public static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+
+	private final NioEventLoop eventLoop;
+
+	public NioClientHttpRequestFactory() throws IOException {
+		this(DEFAULT_READ_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param readBufferSize size of the buffer every read from every connection goes into
+	 */
+	public NioClientHttpRequestFactory(int readBufferSize) throws IOException {
+		super("nio-idle-connection-reaper");
+		Assert.isTrue(readBufferSize > 0, "'readBufferSize' must be greater than 0");
+		eventLoop = new NioEventLoop("nio-client-http-selector", readBufferSize);
+	}
+
+	@Override protected NioConnectionPool createConnectionPool(String route, InetSocketAddress address) {
+		return new NioConnectionPool(route, address, eventLoop, getMaxConnectionsPerRoute(), getIdleTimeout());
+	}
+
+	@Override protected AbstractClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, NioConnectionPool pool) throws IOException {
+		return new NioClientHttpRequest(uri, httpMethod, pool, getLowWatermark(), getHighWatermark());
+	}
+
+	@Override protected void shutdownTransport() {
+		eventLoop.shutdown();
+	}
+
+}
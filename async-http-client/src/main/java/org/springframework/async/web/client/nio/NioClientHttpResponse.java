@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.http.client.AbstractConnectionClientHttpResponse;
+import org.springframework.async.http.client.LazyHttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Response read from a {@link NioConnection}. Content is handed to the completion handler straight out of the event
+ * loop's read buffer, so a {@link ByteBuffer} passed to {@link CompletionHandler#chunk(ByteBuffer)} is only valid
+ * until the call returns. Content that has to be queued for a paused or not yet installed handler is copied first.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NioClientHttpResponse extends AbstractConnectionClientHttpResponse<ByteBuffer, NioConnection> {
+
+	// Only touched by the selector thread.
+	private LazyHttpHeaders httpHeaders = new LazyHttpHeaders();
+	private int statusCode;
+
+	public NioClientHttpResponse() {
+		this(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+	}
+
+	/**
+	 * @param lowWatermark  number of buffered bytes at or below which suspended reading resumes
+	 * @param highWatermark number of buffered bytes at or above which reading is suspended
+	 */
+	public NioClientHttpResponse(int lowWatermark, int highWatermark) {
+		super(lowWatermark, highWatermark);
+	}
+
+	void status(int code, String reasonPhrase) {
+		statusCode = code;
+		status.result(HttpStatus.valueOf(code));
+		statusText.result(reasonPhrase);
+	}
+
+	void header(byte[] line, int nameLength, int valueStart, int valueEnd) {
+		httpHeaders.addRaw(line, 0, nameLength, line, valueStart, valueEnd - valueStart);
+	}
+
+	void headersComplete() {
+		headers.result(httpHeaders);
+		httpHeaders = null;
+		headersReceived(statusCode);
+	}
+
+	/**
+	 * Add a chunk of content read from the connection. Must only be called from the selector thread.
+	 */
+	void addContent(ByteBuffer content) {
+		if (!offer(content)) {
+			suspendReading();
+		}
+	}
+
+	@Override protected ByteBuffer retain(ByteBuffer chunk) {
+		// The read buffer is about to be reused.
+		ByteBuffer copy = ByteBuffer.allocate(chunk.remaining());
+		copy.put(chunk.duplicate());
+		copy.flip();
+		return copy;
+	}
+
+	@Override protected int sizeOf(ByteBuffer chunk) {
+		return chunk.remaining();
+	}
+
+	@Override protected boolean deliver(CompletionHandler<?> handler, ByteBuffer chunk) {
+		return handler.chunk(chunk);
+	}
+
+	@Override protected void setReadable(NioConnection connection, boolean readable) {
+		connection.setReadable(readable);
+	}
+
+	@Override protected void closeConnection(NioConnection connection) {
+		connection.close();
+	}
+
+}
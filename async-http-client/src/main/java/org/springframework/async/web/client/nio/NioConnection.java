@@ -0,0 +1,290 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.async.CompletionHandler;
+
+/**
+ * A keep-alive connection carrying one request and response at a time. Apart from {@link #send}, {@link #close()} and
+ * {@link #setReadable(boolean)}, which may be called from any thread, everything happens on the selector thread of
+ * the connection's {@link NioEventLoop}.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+class NioConnection implements HttpResponseParser.Handler {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final NioEventLoop eventLoop;
+	private final SocketChannel channel;
+	private final HttpResponseParser parser = new HttpResponseParser(this);
+	private final AtomicInteger requestsSent = new AtomicInteger();
+	private CompletionHandler<NioConnection> connectHandler;
+	private NioConnectionPool pool;
+	private SelectionKey key;
+	private NioClientHttpResponse response;
+	// The buffer being parsed, so a completed response can tell whether anything was read after it.
+	private ByteBuffer readBuffer;
+	private NioClientHttpRequest pendingRequest;
+	private ByteBuffer[] pendingWrite;
+	private int pendingBytes;
+	private boolean readable = true;
+	private volatile boolean open = true;
+
+	NioConnection(NioEventLoop eventLoop, SocketChannel channel, CompletionHandler<NioConnection> connectHandler) {
+		this.eventLoop = eventLoop;
+		this.channel = channel;
+		this.connectHandler = connectHandler;
+	}
+
+	boolean isOpen() {
+		return open;
+	}
+
+	void setPool(NioConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Count a request about to be sent on this connection.
+	 *
+	 * @return true if earlier requests have been sent on this connection
+	 */
+	boolean markRequestSent() {
+		return requestsSent.getAndIncrement() > 0;
+	}
+
+	/**
+	 * Write the given request and read its response.
+	 *
+	 * @param request  the request, told once it has been written
+	 * @param response the response to read
+	 * @param buffers  the encoded request line and headers, followed by the body if there is one, written together
+	 * @param head     whether the request is a HEAD request
+	 */
+	void send(final NioClientHttpRequest request, final NioClientHttpResponse response, final ByteBuffer[] buffers,
+	          final boolean head) {
+		eventLoop.execute(new Runnable() {
+			@Override public void run() {
+				if (!open) {
+					request.writeFinished();
+					response.failure(new ClosedChannelException());
+					return;
+				}
+				NioConnection.this.response = response;
+				parser.reset(head);
+				pendingRequest = request;
+				pendingWrite = buffers;
+				pendingBytes = 0;
+				for (ByteBuffer buffer : buffers) {
+					pendingBytes += buffer.remaining();
+				}
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * Start or stop reading from the connection.
+	 */
+	void setReadable(final boolean readable) {
+		eventLoop.execute(new Runnable() {
+			@Override public void run() {
+				NioConnection.this.readable = readable;
+				updateInterestOps();
+			}
+		});
+	}
+
+	/**
+	 * Close the connection from this end, failing any response still being read.
+	 */
+	void close() {
+		eventLoop.execute(new Runnable() {
+			@Override public void run() {
+				close(new IOException("Connection closed"));
+			}
+		});
+	}
+
+	void register(Selector selector, boolean connected) throws IOException {
+		key = channel.register(selector, (connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT), this);
+		if (connected) {
+			connected();
+		}
+	}
+
+	void finishConnect() {
+		try {
+			channel.finishConnect();
+		} catch (IOException e) {
+			close(e);
+			return;
+		}
+		updateInterestOps();
+		connected();
+	}
+
+	void flush() {
+		try {
+			while (null != pendingWrite) {
+				if (channel.write(pendingWrite) == 0) {
+					break;
+				}
+				if (!pendingWrite[pendingWrite.length - 1].hasRemaining()) {
+					pendingWrite = null;
+					pendingRequest.writeFinished();
+					pendingRequest = null;
+					if (null != response) {
+						response.requestWritten(pendingBytes);
+					}
+				}
+			}
+		} catch (IOException e) {
+			close(e);
+			return;
+		}
+		updateInterestOps();
+	}
+
+	void read(ByteBuffer buffer) {
+		buffer.clear();
+		try {
+			int read = channel.read(buffer);
+			if (read < 0) {
+				close(null);
+				return;
+			}
+			buffer.flip();
+			if (null == response) {
+				if (buffer.hasRemaining()) {
+					throw new IOException("Unexpected data received on idle connection");
+				}
+				return;
+			}
+			readBuffer = buffer;
+			parser.parse(buffer);
+		} catch (IOException e) {
+			close(e);
+		} finally {
+			readBuffer = null;
+		}
+	}
+
+	/**
+	 * Close the connection, failing the response being read unless the end of its content is marked by the close.
+	 *
+	 * @param cause the reason the connection is being closed, or null if it was closed normally
+	 */
+	void close(Throwable cause) {
+		if (!open) {
+			return;
+		}
+		open = false;
+		if (null != key) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Closed connection " + channel + (null != cause ? ": " + cause : ""));
+		}
+
+		if (null != pendingRequest) {
+			pendingWrite = null;
+			pendingRequest.writeFinished();
+			pendingRequest = null;
+		}
+		if (null != connectHandler) {
+			CompletionHandler<NioConnection> handler = connectHandler;
+			connectHandler = null;
+			handler.failed(null != cause ? cause : new ClosedChannelException());
+			return;
+		}
+		NioClientHttpResponse response = this.response;
+		if (null != response && !(null == cause && parser.close())) {
+			this.response = null;
+			response.failure(null != cause ? cause : new IOException("Connection closed before response was complete"));
+		}
+		if (null != pool) {
+			pool.closed(this);
+		}
+	}
+
+	@Override public void status(int code, String reasonPhrase) {
+		response.status(code, reasonPhrase);
+	}
+
+	@Override public void header(byte[] line, int nameLength, int valueStart, int valueEnd) {
+		response.header(line, nameLength, valueStart, valueEnd);
+	}
+
+	@Override public void headersComplete() {
+		response.headersComplete();
+	}
+
+	@Override public void content(ByteBuffer content) {
+		response.addContent(content);
+	}
+
+	@Override public void complete() {
+		NioClientHttpResponse response = this.response;
+		this.response = null;
+		ByteBuffer buffer = readBuffer;
+		if (null != buffer && buffer.hasRemaining()) {
+			// Nothing else has been sent on this connection, so the extra bytes are a protocol error.
+			response.complete();
+			close(new IOException("Received " + buffer.remaining() + " bytes of unexpected data after the end of the response"));
+			return;
+		}
+		// Release first, so a request issued from the completion handlers can reuse the connection.
+		if (null != pool && open) {
+			pool.release(this, parser.isKeepAlive());
+		}
+		response.complete();
+	}
+
+	@Override public String toString() {
+		return "NioConnection[" + channel + "]";
+	}
+
+	private void connected() {
+		CompletionHandler<NioConnection> handler = connectHandler;
+		connectHandler = null;
+		handler.completed(this);
+	}
+
+	private void updateInterestOps() {
+		if (open && key.isValid()) {
+			key.interestOps((readable ? SelectionKey.OP_READ : 0) | (null != pendingWrite ? SelectionKey.OP_WRITE : 0));
+		}
+	}
+
+}
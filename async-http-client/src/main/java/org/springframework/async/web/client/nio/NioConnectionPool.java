@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.net.InetSocketAddress;
+
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.AbstractConnectionPool;
+
+/**
+ * Pool of keep-alive {@link NioConnection}s to a single route (scheme, host and port).
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NioConnectionPool extends AbstractConnectionPool<NioConnection> {
+
+	private final InetSocketAddress address;
+	private final NioEventLoop eventLoop;
+
+	NioConnectionPool(String route, InetSocketAddress address, NioEventLoop eventLoop, int maxConnections, long idleTimeout) {
+		super(route, maxConnections, idleTimeout, 1);
+		this.address = address;
+		this.eventLoop = eventLoop;
+	}
+
+	/**
+	 * Called by a connection of this pool once it has been closed.
+	 */
+	@Override protected void closed(NioConnection connection) {
+		super.closed(connection);
+	}
+
+	@Override protected void connect(final CompletionHandler<NioConnection> handler) {
+		eventLoop.connect(address, new EmptyCompletionHandler<NioConnection>() {
+			@Override public void completed(NioConnection connection) {
+				connection.setPool(NioConnectionPool.this);
+				handler.completed(connection);
+			}
+
+			@Override public void failed(Throwable throwable) {
+				handler.failed(throwable);
+			}
+		});
+	}
+
+	@Override protected boolean isOpen(NioConnection connection) {
+		return connection.isOpen();
+	}
+
+	@Override protected void close(NioConnection connection) {
+		connection.close();
+	}
+
+}
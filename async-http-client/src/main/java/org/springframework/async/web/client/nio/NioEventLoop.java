@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.async.CompletionHandler;
+
+/**
+ * Single selector thread that performs all I/O for the connections of a {@link NioClientHttpRequestFactory}. Other
+ * threads hand it work through {@link #execute(Runnable)}.
+ * <p>Every read goes into the same direct buffer, which is only touched by the selector thread, so reading and parsing
+ * a response allocates nothing however many connections are open.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+class NioEventLoop implements Runnable {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Selector selector;
+	private final Thread thread;
+	private final ByteBuffer readBuffer;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean wakenUp = new AtomicBoolean();
+	private volatile boolean running = true;
+
+	NioEventLoop(String name, int readBufferSize) throws IOException {
+		selector = Selector.open();
+		readBuffer = ByteBuffer.allocateDirect(readBufferSize);
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Run the given task on the selector thread, straight away if called from it.
+	 */
+	void execute(Runnable task) {
+		if (inEventLoop()) {
+			task.run();
+			return;
+		}
+		tasks.add(task);
+		if (wakenUp.compareAndSet(false, true)) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Open a connection to the given address.
+	 *
+	 * @param handler notified on the selector thread once the connection has been established or has failed
+	 */
+	void connect(final InetSocketAddress address, final CompletionHandler<NioConnection> handler) {
+		execute(new Runnable() {
+			@Override public void run() {
+				SocketChannel channel = null;
+				try {
+					channel = SocketChannel.open();
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					channel.socket().setKeepAlive(true);
+					NioConnection connection = new NioConnection(NioEventLoop.this, channel, handler);
+					boolean connected = channel.connect(address);
+					connection.register(selector, connected);
+				} catch (IOException e) {
+					if (null != channel) {
+						try {
+							channel.close();
+						} catch (IOException closeFailure) {
+							log.error(closeFailure.getMessage(), closeFailure);
+						}
+					}
+					handler.failed(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stop the selector thread, closing every connection.
+	 */
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override public void run() {
+		while (running) {
+			try {
+				selector.select();
+				wakenUp.set(false);
+				runTasks();
+				processSelectedKeys();
+			} catch (Throwable t) {
+				log.error(t.getMessage(), t);
+			}
+		}
+		runTasks();
+		List<NioConnection> connections = new ArrayList<NioConnection>();
+		for (SelectionKey key : selector.keys()) {
+			connections.add((NioConnection) key.attachment());
+		}
+		for (NioConnection connection : connections) {
+			connection.close(new IOException("Connection closed"));
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while (null != (task = tasks.poll())) {
+			try {
+				task.run();
+			} catch (Throwable t) {
+				log.error(t.getMessage(), t);
+			}
+		}
+	}
+
+	private void processSelectedKeys() {
+		Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+		while (iter.hasNext()) {
+			SelectionKey key = iter.next();
+			iter.remove();
+			NioConnection connection = (NioConnection) key.attachment();
+			if (!key.isValid()) {
+				continue;
+			}
+			int readyOps = key.readyOps();
+			if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+				connection.finishConnect();
+				continue;
+			}
+			if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+				connection.flush();
+			}
+			if ((readyOps & SelectionKey.OP_READ) != 0 && key.isValid()) {
+				connection.read(readBuffer);
+			}
+		}
+	}
+
+}
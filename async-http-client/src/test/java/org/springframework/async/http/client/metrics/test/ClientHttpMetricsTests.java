@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics.test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.async.http.client.HttpRequest;
+import org.springframework.async.http.client.metrics.ClientHttpMetrics;
+import org.springframework.async.http.client.metrics.RequestMetrics;
+import org.springframework.http.HttpMethod;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ClientHttpMetricsTests {
+
+	private MBeanServer mbeanServer;
+	private ClientHttpMetrics metrics;
+
+	@Before
+	public void setUp() {
+		mbeanServer = MBeanServerFactory.newMBeanServer();
+		metrics = new ClientHttpMetrics(mbeanServer, "test");
+	}
+
+	@After
+	public void tearDown() {
+		metrics.destroy();
+	}
+
+	@Test
+	public void testCompletedRequestIsCountedUnderItsStatusClass() {
+		HttpRequest request = new StubRequest(HttpMethod.GET, "http://localhost:8080/a");
+		metrics.queued(request, 0);
+		metrics.connectionAcquired(request, false, 0);
+		metrics.requestWritten(request, 40, 0);
+		metrics.headersReceived(request, 200, 0);
+		metrics.contentReceived(request, 100, 0);
+		metrics.contentReceived(request, 28, 0);
+
+		RequestMetrics get = metrics.getRequestMetrics("http://localhost:8080", HttpMethod.GET);
+		assertEquals(1, get.getRequestCount());
+		assertEquals(1, get.getInFlightCount());
+		assertEquals(0, get.getSuccessCount());
+
+		metrics.completed(request, 200, 0);
+		assertEquals(0, get.getInFlightCount());
+		assertEquals(1, get.getSuccessCount());
+		assertEquals(0, get.getFailureCount());
+		assertEquals(40, get.getBytesSent());
+		assertEquals(128, get.getBytesReceived());
+		assertEquals(0.0, get.getErrorRatio(), 0.0);
+	}
+
+	@Test
+	public void testFailureAfterHeadersIsCountedOnce() {
+		HttpRequest request = new StubRequest(HttpMethod.GET, "http://localhost:8080/a");
+		metrics.queued(request, 0);
+		metrics.headersReceived(request, 500, 0);
+		metrics.failed(request, new IOException("reset"), 0);
+
+		RequestMetrics get = metrics.getRequestMetrics("http://localhost:8080", HttpMethod.GET);
+		assertEquals(1, get.getFailureCount());
+		assertEquals(0, get.getServerErrorCount());
+		assertEquals(0, get.getInFlightCount());
+		assertEquals(1.0, get.getErrorRatio(), 0.0);
+	}
+
+	@Test
+	public void testOutcomesAddUpToRequests() {
+		int[] statusCodes = {100, 204, 302, 404, 503, 600};
+		for (int statusCode : statusCodes) {
+			HttpRequest request = new StubRequest(HttpMethod.POST, "http://localhost:8080/b");
+			metrics.queued(request, 0);
+			metrics.headersReceived(request, statusCode, 0);
+			metrics.completed(request, statusCode, 0);
+		}
+		HttpRequest failed = new StubRequest(HttpMethod.POST, "http://localhost:8080/b");
+		metrics.queued(failed, 0);
+		metrics.failed(failed, new IOException("refused"), 0);
+
+		RequestMetrics post = metrics.getRequestMetrics("http://localhost:8080", HttpMethod.POST);
+		assertEquals(7, post.getRequestCount());
+		assertEquals(1, post.getInformationalCount());
+		assertEquals(1, post.getSuccessCount());
+		assertEquals(1, post.getRedirectionCount());
+		assertEquals(1, post.getClientErrorCount());
+		assertEquals(1, post.getServerErrorCount());
+		// The request that failed to connect and the one with a status code outside 1xx to 5xx.
+		assertEquals(2, post.getFailureCount());
+		assertEquals(4.0 / 7, post.getErrorRatio(), 1e-9);
+
+		post.reset();
+		assertEquals(0, post.getRequestCount());
+		assertEquals(0, post.getSuccessCount());
+		assertEquals(0, post.getFailureCount());
+	}
+
+	@Test
+	public void testMetricsAreKeptPerRouteAndMethod() {
+		complete(new StubRequest(HttpMethod.GET, "http://localhost:8080/a"));
+		complete(new StubRequest(HttpMethod.GET, "http://localhost:8081/a"));
+		complete(new StubRequest(HttpMethod.PUT, "http://localhost:8080/a"));
+
+		assertEquals(3, metrics.getRequestMetrics().size());
+		assertEquals(1, metrics.getRequestMetrics("http://localhost:8080", HttpMethod.GET).getRequestCount());
+		assertEquals(1, metrics.getRequestMetrics("http://localhost:8081", HttpMethod.GET).getRequestCount());
+		assertEquals(1, metrics.getRequestMetrics("http://localhost:8080", HttpMethod.PUT).getRequestCount());
+		assertNull(metrics.getRequestMetrics("http://localhost:8080", HttpMethod.DELETE));
+	}
+
+	@Test
+	public void testRoutesAreKeyedLikeConnectionPools() {
+		complete(new StubRequest(HttpMethod.GET, "http://localhost/a"));
+		complete(new StubRequest(HttpMethod.GET, "http://LocalHost:80/b"));
+		complete(new StubRequest(HttpMethod.GET, "HTTP://LOCALHOST/c"));
+
+		assertEquals(1, metrics.getRequestMetrics().size());
+		RequestMetrics get = metrics.getRequestMetrics("http://localhost:80", HttpMethod.GET);
+		assertEquals("http://localhost:80", get.getRoute());
+		assertEquals(3, get.getRequestCount());
+	}
+
+	@Test
+	public void testMBeansAreRegisteredAndUnregistered() throws Exception {
+		complete(new StubRequest(HttpMethod.GET, "http://localhost:8080/a"));
+		complete(new StubRequest(HttpMethod.DELETE, "http://localhost:8080/a"));
+
+		ObjectName name = new ObjectName(ClientHttpMetrics.DEFAULT_DOMAIN + ":type=RequestMetrics,client="
+				+ ObjectName.quote("test") + ",route=" + ObjectName.quote("http://localhost:8080") + ",method=GET");
+		assertTrue(mbeanServer.isRegistered(name));
+		assertEquals(1L, mbeanServer.getAttribute(name, "SuccessCount"));
+		assertEquals("GET", mbeanServer.getAttribute(name, "Method"));
+
+		ObjectName all = new ObjectName(ClientHttpMetrics.DEFAULT_DOMAIN + ":type=RequestMetrics,*");
+		Set<ObjectName> names = mbeanServer.queryNames(all, null);
+		assertEquals(2, names.size());
+
+		metrics.destroy();
+		assertFalse(mbeanServer.isRegistered(name));
+		assertTrue(mbeanServer.queryNames(all, null).isEmpty());
+	}
+
+	private void complete(HttpRequest request) {
+		metrics.queued(request, 0);
+		metrics.headersReceived(request, 200, 0);
+		metrics.completed(request, 200, 0);
+	}
+
+	static class StubRequest implements HttpRequest {
+		private final HttpMethod method;
+		private final URI uri;
+
+		StubRequest(HttpMethod method, String uri) {
+			this.method = method;
+			this.uri = URI.create(uri);
+		}
+
+		@Override public HttpMethod getMethod() {
+			return method;
+		}
+
+		@Override public URI getURI() {
+			return uri;
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.metrics.test;
+
+import org.junit.Test;
+import org.springframework.async.http.client.metrics.StripedHistogram;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class StripedHistogramTests {
+
+	private static final long OUTLIER = 1L << 39;
+
+	@Test
+	public void testSmallValuesAreExact() {
+		StripedHistogram histogram = new StripedHistogram();
+		for (long value = 0; value < 64; value++) {
+			histogram.record(value);
+		}
+		assertEquals(64, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(31, histogram.getValueAtPercentile(50));
+		assertEquals(63, histogram.getValueAtPercentile(100));
+		assertEquals(31.5, histogram.getMean(), 0.0);
+	}
+
+	@Test
+	public void testBucketsStayWithinPrecision() {
+		assertBucketsWithin(new StripedHistogram(), 1.0 / 32);
+		assertBucketsWithin(new StripedHistogram(7), 1.0 / 128);
+	}
+
+	@Test
+	public void testPercentiles() {
+		StripedHistogram histogram = new StripedHistogram();
+		for (long value = 1; value <= 10000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertEquals(10000, histogram.getTotalCount());
+		assertEquals(5000500.0, histogram.getMean(), 0.0);
+		assertEquals(10000000, histogram.getMaxValue());
+		assertWithin(5000000, histogram.getValueAtPercentile(50), 1.0 / 32);
+		assertWithin(9900000, histogram.getValueAtPercentile(99), 1.0 / 32);
+		assertWithin(9990000, histogram.getValueAtPercentile(99.9), 1.0 / 32);
+		assertEquals(10000000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testOutOfRangeValuesAreClamped() {
+		StripedHistogram histogram = new StripedHistogram();
+		histogram.record(-5);
+		assertEquals(0, histogram.getValueAtPercentile(100));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals((1L << 40) - 1, histogram.getMaxValue());
+		assertEquals((1L << 40) - 1, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testRecordingFromManyThreads() throws InterruptedException {
+		final StripedHistogram histogram = new StripedHistogram();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override public void run() {
+					for (int value = 1; value <= 1000; value++) {
+						histogram.record(value);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(8000, histogram.getTotalCount());
+		assertEquals(1000, histogram.getMaxValue());
+		assertWithin(500, histogram.getValueAtPercentile(50), 1.0 / 32);
+	}
+
+	@Test
+	public void testReset() {
+		StripedHistogram histogram = new StripedHistogram();
+		histogram.record(1000);
+		histogram.reset();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMaxValue());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(0.0, histogram.getMean(), 0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSubBucketBitsMustBePositive() {
+		new StripedHistogram(0);
+	}
+
+	/**
+	 * Record each value alongside a much larger one, so the 50th percentile reports the top of the value's own bucket
+	 * rather than the maximum recorded value.
+	 */
+	private static void assertBucketsWithin(StripedHistogram histogram, double precision) {
+		for (int bits = 0; bits < 39; bits++) {
+			long powerOfTwo = 1L << bits;
+			long[] values = {powerOfTwo - 1, powerOfTwo, powerOfTwo + 1, powerOfTwo + powerOfTwo / 3};
+			for (long value : values) {
+				histogram.reset();
+				histogram.record(value);
+				histogram.record(OUTLIER);
+				assertWithin(value, histogram.getValueAtPercentile(50), precision);
+			}
+		}
+	}
+
+	private static void assertWithin(long expected, long actual, double precision) {
+		assertTrue("expected " + expected + " but was " + actual, actual >= expected);
+		assertTrue("expected " + expected + " but was " + actual, actual <= expected + (long) (expected * precision));
+	}
+
+}
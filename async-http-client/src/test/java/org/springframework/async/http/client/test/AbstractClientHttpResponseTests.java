@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.http.client.AbstractClientHttpResponse;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class AbstractClientHttpResponseTests {
+
+	@Test
+	public void testResumeWhileNotPausedIsIgnored() {
+		TestResponse response = new TestResponse();
+		PausingHandler handler = new PausingHandler();
+		response.setCompletionHandler(handler);
+
+		response.resume();
+		handler.pause = true;
+		response.feed("a");
+		response.feed("b");
+		assertEquals(1, handler.chunks.size());
+
+		response.resume();
+		assertEquals(2, handler.chunks.size());
+	}
+
+	@Test
+	public void testResumeFromChunkCallbackCancelsPause() {
+		final TestResponse response = new TestResponse();
+		PausingHandler handler = new PausingHandler() {
+			@Override public boolean chunk(ByteBuffer buffer) {
+				boolean keepGoing = super.chunk(buffer);
+				response.resume();
+				return keepGoing;
+			}
+		};
+		handler.pause = true;
+		response.setCompletionHandler(handler);
+
+		response.feed("a");
+		response.feed("b");
+		assertEquals(2, handler.chunks.size());
+	}
+
+	static class PausingHandler extends EmptyCompletionHandler<Object> {
+		final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+		boolean pause;
+
+		@Override public boolean chunk(ByteBuffer buffer) {
+			chunks.add(buffer);
+			return !pause;
+		}
+	}
+
+	static class TestResponse extends AbstractClientHttpResponse<ByteBuffer> {
+		TestResponse() {
+			super(1024, 4096);
+		}
+
+		void feed(String s) {
+			offer(ByteBuffer.wrap(s.getBytes()));
+		}
+
+		@Override public void close() {
+		}
+
+		@Override protected int sizeOf(ByteBuffer chunk) {
+			return chunk.remaining();
+		}
+
+		@Override protected boolean deliver(CompletionHandler<?> handler, ByteBuffer chunk) {
+			return handler.chunk(chunk);
+		}
+
+		@Override protected void resumeReading() {
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.test;
+
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.async.http.client.LazyHttpHeaders;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.ReflectionUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class LazyHttpHeadersTests {
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	@Test
+	public void testReadsWithoutMaterializing() {
+		LazyHttpHeaders headers = headers("Content-Type", "text/plain;charset=UTF-8", "Content-Length", "42");
+
+		assertEquals(new MediaType("text", "plain", Charset.forName("UTF-8")), headers.getContentType());
+		assertEquals("42", headers.getFirst("content-length"));
+		assertNull(headers.getFirst("Location"));
+		assertTrue(headers.containsKey("CONTENT-TYPE"));
+		assertFalse(headers.containsKey("Location"));
+		assertFalse(headers.isEmpty());
+		assertTrue("Headers were materialized", map(headers).isEmpty());
+	}
+
+	@Test
+	public void testMaterializesOnFullRead() {
+		LazyHttpHeaders headers = headers("Set-Cookie", "a=1", "Set-Cookie", "b=2", "X-Custom", "value");
+
+		assertEquals(Arrays.asList("a=1", "b=2"), headers.get("Set-Cookie"));
+		assertEquals(2, map(headers).size());
+		assertEquals(2, headers.size());
+		assertEquals("value", headers.getFirst("X-Custom"));
+		assertEquals("a=1", headers.getFirst("Set-Cookie"));
+	}
+
+	@Test
+	public void testMutationAfterParsing() {
+		LazyHttpHeaders headers = headers("Content-Type", "text/plain", "Content-Length", "5");
+		assertEquals(MediaType.TEXT_PLAIN, headers.getContentType());
+
+		headers.set("Content-Type", "application/json");
+		headers.add("X-Added", "yes");
+		headers.remove("Content-Length");
+
+		assertEquals(MediaType.APPLICATION_JSON, headers.getContentType());
+		assertEquals("yes", headers.getFirst("X-Added"));
+		assertNull(headers.getFirst("Content-Length"));
+		assertEquals(2, headers.size());
+	}
+
+	@Test
+	public void testClearAfterParsing() {
+		LazyHttpHeaders headers = headers("Content-Type", "text/plain");
+
+		headers.clear();
+
+		assertTrue(headers.isEmpty());
+		assertNull(headers.getContentType());
+		assertNull(headers.getFirst("Content-Type"));
+	}
+
+	@Test
+	public void testEmptyHeaders() {
+		LazyHttpHeaders headers = new LazyHttpHeaders();
+
+		assertTrue(headers.isEmpty());
+		assertNull(headers.getContentType());
+		assertNull(headers.getFirst("Content-Type"));
+		assertEquals(0, headers.size());
+	}
+
+	@Test
+	public void testGrowsPastInitialCapacity() {
+		LazyHttpHeaders headers = new LazyHttpHeaders();
+		char[] filler = new char[300];
+		Arrays.fill(filler, 'x');
+		String longValue = new String(filler);
+		for (int i = 0; i < 40; i++) {
+			addRaw(headers, "X-Header-" + i, longValue + i);
+		}
+
+		assertEquals(longValue + 0, headers.getFirst("X-Header-0"));
+		assertEquals(longValue + 39, headers.getFirst("X-Header-39"));
+		assertEquals(40, headers.size());
+		assertEquals(longValue + 17, headers.getFirst("x-header-17"));
+	}
+
+	@Test
+	public void testDecodedHeadersReadWithoutMaterializing() {
+		LazyHttpHeaders headers = new LazyHttpHeaders();
+		headers.addRaw("Content-Type", "text/plain");
+		headers.addRaw("Content-Length", "5");
+		for (int i = 0; i < 40; i++) {
+			headers.addRaw("X-Header-" + i, "value" + i);
+		}
+
+		assertEquals(MediaType.TEXT_PLAIN, headers.getContentType());
+		assertEquals("5", headers.getFirst("content-length"));
+		assertEquals("value39", headers.getFirst("X-Header-39"));
+		assertTrue("Headers were materialized", map(headers).isEmpty());
+		assertEquals(42, headers.size());
+	}
+
+	@Test
+	public void testEqualsPlainHeaders() {
+		LazyHttpHeaders headers = headers("Content-Type", "text/plain", "Content-Length", "5");
+		HttpHeaders expected = new HttpHeaders();
+		expected.add("Content-Type", "text/plain");
+		expected.add("Content-Length", "5");
+
+		assertTrue(headers.equals(expected));
+		assertEquals(expected.hashCode(), headers.hashCode());
+		// Only once these have been materialized can a plain HttpHeaders, which compares the maps directly, see them.
+		assertTrue(expected.equals(headers));
+	}
+
+	private static LazyHttpHeaders headers(String... namesAndValues) {
+		LazyHttpHeaders headers = new LazyHttpHeaders();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			addRaw(headers, namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return headers;
+	}
+
+	private static void addRaw(LazyHttpHeaders headers, String name, String value) {
+		// Padding either side checks the offsets are honoured.
+		byte[] nameBytes = (" " + name + " ").getBytes(ISO_8859_1);
+		byte[] valueBytes = ("  " + value + "  ").getBytes(ISO_8859_1);
+		headers.addRaw(nameBytes, 1, nameBytes.length - 2, valueBytes, 2, valueBytes.length - 4);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, ?> map(HttpHeaders headers) {
+		Field field = ReflectionUtils.findField(HttpHeaders.class, "headers");
+		ReflectionUtils.makeAccessible(field);
+		return (Map<String, ?>) ReflectionUtils.getField(field, headers);
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.client.test;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+import org.springframework.async.http.client.MediaTypeCache;
+import org.springframework.http.MediaType;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class MediaTypeCacheTests {
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	@Test
+	public void testRepeatedValueIsAHit() {
+		MediaType first = MediaTypeCache.parseMediaType("application/x-cache-hit;q=0.5");
+		MediaType second = MediaTypeCache.parseMediaType("application/x-cache-hit;q=0.5");
+
+		assertSame(first, second);
+		assertEquals(MediaType.parseMediaType("application/x-cache-hit;q=0.5"), first);
+	}
+
+	@Test
+	public void testBytesAndStringShareEntries() {
+		byte[] bytes = "..application/x-cache-bytes..".getBytes(ISO_8859_1);
+
+		MediaType fromBytes = MediaTypeCache.parseMediaType(bytes, 2, bytes.length - 4);
+		MediaType fromString = MediaTypeCache.parseMediaType("application/x-cache-bytes");
+		MediaType fromBytesAgain = MediaTypeCache.parseMediaType(bytes, 2, bytes.length - 4);
+
+		assertEquals(new MediaType("application", "x-cache-bytes"), fromBytes);
+		assertSame(fromBytes, fromString);
+		assertSame(fromBytes, fromBytesAgain);
+	}
+
+	@Test
+	public void testDifferentValuesAreMisses() {
+		MediaType lower = MediaTypeCache.parseMediaType("text/x-cache-miss");
+		MediaType upper = MediaTypeCache.parseMediaType("TEXT/X-CACHE-MISS");
+		MediaType longer = MediaTypeCache.parseMediaType("text/x-cache-miss;charset=UTF-8");
+
+		assertNotSame(lower, upper);
+		assertEquals(lower, upper);
+		assertNotSame(lower, longer);
+		assertEquals(Charset.forName("UTF-8"), longer.getCharSet());
+		assertNull(lower.getCharSet());
+	}
+
+	@Test
+	public void testReplacedEntryIsParsedAgain() {
+		// Far more distinct values than slots, so the first is certain to have been pushed out by the end.
+		MediaType first = MediaTypeCache.parseMediaType("text/x-evicted-0");
+		for (int i = 1; i < 4096; i++) {
+			MediaTypeCache.parseMediaType("text/x-evicted-" + i);
+		}
+		MediaType again = MediaTypeCache.parseMediaType("text/x-evicted-0");
+
+		assertNotSame(first, again);
+		assertEquals(first, again);
+	}
+
+	@Test
+	public void testNonLatinValueBypassesCache() {
+		String value = "text/plain;title=\"\u0100\"";
+
+		MediaType first = MediaTypeCache.parseMediaType(value);
+		MediaType second = MediaTypeCache.parseMediaType(value);
+
+		assertNotSame(first, second);
+		assertEquals(first, second);
+	}
+
+	@Test
+	public void testInvalidValueIsRejectedEveryTime() {
+		byte[] bytes = "not a media type".getBytes(ISO_8859_1);
+		for (int i = 0; i < 2; i++) {
+			try {
+				MediaTypeCache.parseMediaType(bytes, 0, bytes.length);
+				fail("Expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.converter.BufferHttpMessageConverter;
+import org.springframework.async.http.io.Buffer;
+
+import static org.junit.Assert.*;
+import static org.springframework.async.http.converter.test.ByteArrayHttpMessageConverterTests.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class BufferHttpMessageConverterTests {
+
+	private final BufferHttpMessageConverter converter = new BufferHttpMessageConverter();
+
+	@Test
+	public void testHandedOverContentIsNotCopied() throws Exception {
+		byte[] bytes = bytes(100);
+		MockHttpInputMessage message = message(bytes.length);
+		Promise<Buffer> promise = read(message);
+		MockBuffer buffer = new MockBuffer(bytes);
+
+		message.handOver(buffer);
+		message.complete();
+
+		Buffer result = promise.get();
+		assertEquals(100, result.remaining());
+		assertFalse(buffer.isReleased());
+		bytes[0] = 42;
+		assertEquals(42, result.toByteBuffers()[0].get(0));
+
+		result.release();
+		result.release();
+		assertEquals(1, buffer.getReleases());
+	}
+
+	@Test
+	public void testLentContentIsCopiedOnce() throws Exception {
+		byte[] bytes = bytes(1000);
+		MockHttpInputMessage message = message(bytes.length);
+		Promise<Buffer> promise = read(message);
+
+		message.feed(bytes, 100);
+		message.complete();
+
+		Buffer result = promise.get();
+		ByteBuffer[] buffers = result.toByteBuffers();
+		assertEquals(1, buffers.length);
+		assertEquals(ByteBuffer.wrap(bytes), buffers[0]);
+	}
+
+	@Test
+	public void testContentInOrder() throws Exception {
+		byte[] bytes = bytes(30000);
+		MockHttpInputMessage message = message(-1);
+		Promise<Buffer> promise = read(message);
+		MockBuffer handedOver = new MockBuffer(Arrays.copyOfRange(bytes, 1000, 2000));
+
+		message.chunk(bytes, 0, 1000);
+		message.handOver(handedOver);
+		message.feed(Arrays.copyOfRange(bytes, 2000, bytes.length), 3000);
+		message.complete();
+
+		Buffer result = promise.get();
+		assertEquals(bytes.length, result.remaining());
+		ByteBuffer joined = ByteBuffer.allocate(result.remaining());
+		for (ByteBuffer buffer : result.toByteBuffers()) {
+			joined.put(buffer);
+		}
+		assertArrayEquals(bytes, joined.array());
+
+		result.release();
+		assertTrue(handedOver.isReleased());
+	}
+
+	@Test
+	public void testFailureReleasesHandedOverContent() throws Exception {
+		MockHttpInputMessage message = message(-1);
+		Promise<Buffer> promise = read(message);
+		MockBuffer buffer = new MockBuffer(bytes(10));
+
+		message.handOver(buffer);
+		message.fail(new IllegalStateException("connection reset"));
+
+		assertTrue(buffer.isReleased());
+		assertTrue(promise.isDone());
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		byte[] bytes = bytes(100);
+		MockBuffer buffer = new MockBuffer(bytes);
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+		converter.write(buffer, null, message);
+
+		assertEquals(100, message.getHeaders().getContentLength());
+		assertArrayEquals(bytes, message.getBodyBytes());
+		assertFalse(buffer.isReleased());
+	}
+
+	private Promise<Buffer> read(MockHttpInputMessage message) throws Exception {
+		Promise<Buffer> promise = new Promise<Buffer>();
+		converter.read(Buffer.class, message, promise);
+		return promise;
+	}
+
+}
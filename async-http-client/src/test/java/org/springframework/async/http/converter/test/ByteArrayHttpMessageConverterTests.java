@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ByteArrayHttpMessageConverterTests {
+
+	private final ByteArrayHttpMessageConverter converter = new ByteArrayHttpMessageConverter();
+
+	@Test
+	public void testReadsBodyOfDeclaredLength() throws Exception {
+		byte[] bytes = bytes(1000);
+		MockHttpInputMessage message = message(bytes.length);
+		Promise<byte[]> promise = read(message);
+
+		message.feed(bytes, 300);
+		message.complete();
+
+		assertArrayEquals(bytes, promise.get());
+	}
+
+	@Test
+	public void testReadsBodyLongerThanDeclared() throws Exception {
+		byte[] bytes = bytes(1000);
+		MockHttpInputMessage message = message(10);
+		Promise<byte[]> promise = read(message);
+
+		message.feed(bytes, 7);
+		message.complete();
+
+		assertArrayEquals(bytes, promise.get());
+	}
+
+	@Test
+	public void testReadsBodyShorterThanDeclared() throws Exception {
+		byte[] bytes = bytes(10);
+		MockHttpInputMessage message = message(1000);
+		Promise<byte[]> promise = read(message);
+
+		message.feed(bytes, 4);
+		message.complete();
+
+		assertArrayEquals(bytes, promise.get());
+	}
+
+	@Test
+	public void testReadsBodyWithoutContentLength() throws Exception {
+		byte[] bytes = bytes(20000);
+		MockHttpInputMessage message = message(-1);
+		Promise<byte[]> promise = read(message);
+
+		message.feed(bytes, 4096);
+		message.complete();
+
+		assertArrayEquals(bytes, promise.get());
+	}
+
+	@Test
+	public void testReadsHandedOverContent() throws Exception {
+		MockHttpInputMessage message = message(6);
+		Promise<byte[]> promise = read(message);
+		MockBuffer buffer = new MockBuffer(new byte[]{1, 2, 3, 4, 5, 6});
+
+		message.handOver(buffer);
+		message.complete();
+
+		assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, promise.get());
+		assertTrue(buffer.isReleased());
+	}
+
+	@Test
+	public void testFailureFailsPromise() throws Exception {
+		MockHttpInputMessage message = message(-1);
+		Promise<byte[]> promise = read(message);
+		IllegalStateException failure = new IllegalStateException("connection reset");
+
+		message.fail(failure);
+
+		try {
+			promise.get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		byte[] bytes = bytes(100);
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+		converter.write(bytes, null, message);
+
+		assertEquals(100, message.getHeaders().getContentLength());
+		assertEquals(MediaType.APPLICATION_OCTET_STREAM, message.getHeaders().getContentType());
+		assertArrayEquals(bytes, message.getBodyBytes());
+	}
+
+	private Promise<byte[]> read(MockHttpInputMessage message) throws Exception {
+		Promise<byte[]> promise = new Promise<byte[]>();
+		converter.read(byte[].class, message, promise);
+		return promise;
+	}
+
+	static MockHttpInputMessage message(long contentLength) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+		if (contentLength >= 0) {
+			headers.setContentLength(contentLength);
+		}
+		return new MockHttpInputMessage(headers);
+	}
+
+	static byte[] bytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) i;
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.converter.ByteBufferHttpMessageConverter;
+
+import static org.junit.Assert.*;
+import static org.springframework.async.http.converter.test.ByteArrayHttpMessageConverterTests.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ByteBufferHttpMessageConverterTests {
+
+	private final ByteBufferHttpMessageConverter converter = new ByteBufferHttpMessageConverter();
+
+	@Test
+	public void testReadsLentContent() throws Exception {
+		byte[] bytes = bytes(1000);
+		MockHttpInputMessage message = message(bytes.length);
+		Promise<ByteBuffer> promise = read(message);
+
+		message.feed(bytes, 300);
+		message.complete();
+
+		assertEquals(ByteBuffer.wrap(bytes), promise.get());
+	}
+
+	@Test
+	public void testReadsLentContentLongerThanDeclared() throws Exception {
+		byte[] bytes = bytes(50000);
+		MockHttpInputMessage message = message(10);
+		Promise<ByteBuffer> promise = read(message);
+
+		message.feed(bytes, 999);
+		message.complete();
+
+		assertEquals(ByteBuffer.wrap(bytes), promise.get());
+	}
+
+	@Test
+	public void testSingleHandedOverBufferIsCopiedAndReleased() throws Exception {
+		byte[] bytes = bytes(100);
+		MockHttpInputMessage message = message(bytes.length);
+		Promise<ByteBuffer> promise = read(message);
+		MockBuffer buffer = new MockBuffer(bytes);
+
+		message.handOver(buffer);
+		message.complete();
+
+		ByteBuffer result = promise.get();
+		assertEquals(1, buffer.getReleases());
+		assertEquals(ByteBuffer.wrap(bytes(100)), result);
+		bytes[0] = 42;
+		assertEquals("The result shares memory with the released buffer", 0, result.get(0));
+	}
+
+	@Test
+	public void testHandedOverAndLentContentAreJoined() throws Exception {
+		byte[] bytes = bytes(30);
+		MockHttpInputMessage message = message(bytes.length);
+		Promise<ByteBuffer> promise = read(message);
+		MockBuffer first = new MockBuffer(Arrays.copyOfRange(bytes, 0, 10));
+		MockBuffer last = new MockBuffer(Arrays.copyOfRange(bytes, 20, 30));
+
+		message.handOver(first);
+		message.chunk(bytes, 10, 10);
+		message.handOver(last);
+		message.complete();
+
+		assertEquals(ByteBuffer.wrap(bytes), promise.get());
+		assertEquals(1, first.getReleases());
+		assertEquals(1, last.getReleases());
+	}
+
+	@Test
+	public void testFailureReleasesHandedOverContent() throws Exception {
+		MockHttpInputMessage message = message(-1);
+		Promise<ByteBuffer> promise = read(message);
+		MockBuffer buffer = new MockBuffer(bytes(10));
+		IllegalStateException failure = new IllegalStateException("connection reset");
+
+		message.handOver(buffer);
+		message.fail(failure);
+
+		assertTrue(buffer.isReleased());
+		try {
+			promise.get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testWriteLeavesBufferUntouched() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes(100));
+		buffer.position(10);
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+		converter.write(buffer, null, message);
+
+		assertEquals(90, message.getHeaders().getContentLength());
+		assertEquals(10, buffer.position());
+		assertEquals(buffer, ByteBuffer.wrap(message.getBodyBytes()));
+	}
+
+	private Promise<ByteBuffer> read(MockHttpInputMessage message) throws Exception {
+		Promise<ByteBuffer> promise = new Promise<ByteBuffer>();
+		converter.read(ByteBuffer.class, message, promise);
+		return promise;
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.converter.JsonElementsHttpMessageConverter;
+import org.springframework.async.json.JsonElementHandler;
+import org.springframework.async.json.JsonElements;
+import org.springframework.async.json.JsonSyntaxException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class JsonElementsHttpMessageConverterTests {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String BODY = "[{\"name\":\"\ud83d\ude00\",\"tags\":[\"a\",\"b\"],\"nested\":{\"n\":null}},"
+			+ "42, 1.5, 12345678901234567890, \"caf\u00e9\", true, []]";
+
+	private final JsonElementsHttpMessageConverter converter = new JsonElementsHttpMessageConverter();
+
+	@Test
+	public void testReadsElements() throws Exception {
+		byte[] bytes = BODY.getBytes(UTF_8);
+		MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+		RecordingElementHandler handler = read(message);
+
+		message.feed(bytes, bytes.length);
+		message.complete();
+
+		assertEquals(expectedElements(), handler.elements);
+		assertTrue(handler.completed);
+		assertNull(handler.failure);
+	}
+
+	@Test
+	public void testSplitAtEveryByte() throws Exception {
+		byte[] bytes = BODY.getBytes(UTF_8);
+		for (int split = 0; split <= bytes.length; split++) {
+			MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+			RecordingElementHandler handler = read(message);
+
+			message.chunk(bytes, 0, split);
+			message.chunk(bytes, split, bytes.length - split);
+			message.complete();
+
+			assertEquals("Split at byte " + split, expectedElements(), handler.elements);
+			assertTrue(handler.completed);
+		}
+	}
+
+	@Test
+	public void testSyntaxErrorFailsWithOffset() throws Exception {
+		byte[] bytes = "[1, 2,, 3]".getBytes(UTF_8);
+		MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+		RecordingElementHandler handler = read(message);
+
+		message.feed(bytes, 4);
+		message.feed(bytes, bytes.length);
+		message.complete();
+
+		assertEquals(Arrays.<Object>asList(1L, 2L), handler.elements);
+		assertFalse(handler.completed);
+		assertEquals(6, syntaxError(handler).getOffset());
+	}
+
+	@Test
+	public void testTruncatedBodyFails() throws Exception {
+		byte[] bytes = "[{\"a\":1}, {\"b\":".getBytes(UTF_8);
+		MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+		RecordingElementHandler handler = read(message);
+
+		message.feed(bytes, bytes.length);
+		message.complete();
+
+		assertEquals(1, handler.elements.size());
+		assertEquals(bytes.length, syntaxError(handler).getOffset());
+	}
+
+	@Test
+	public void testElementLengthLimit() throws Exception {
+		converter.setMaxElementLength(20);
+		// Elements of 20 and 21 bytes.
+		byte[] bytes = "[{\"a\":\"0123456789ab\"}, {\"a\":\"0123456789abc\"}, 1]".getBytes(UTF_8);
+		MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+		RecordingElementHandler handler = read(message);
+
+		message.feed(bytes, 7);
+		message.complete();
+
+		assertEquals(1, handler.elements.size());
+		JsonSyntaxException e = syntaxError(handler);
+		assertEquals(23, e.getOffset());
+		assertTrue(e.getMessage(), e.getMessage().contains("longer than 20 bytes"));
+	}
+
+	@Test
+	public void testElementLengthLimitCountsNestedContainers() throws Exception {
+		converter.setMaxElementLength(10);
+		byte[] bytes = "[[[], [], [], [], []]]".getBytes(UTF_8);
+		MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+		RecordingElementHandler handler = read(message);
+
+		message.feed(bytes, bytes.length);
+		message.complete();
+
+		assertTrue(handler.elements.isEmpty());
+		assertEquals(1, syntaxError(handler).getOffset());
+	}
+
+	@Test
+	public void testPausingElementPausesDelivery() throws Exception {
+		byte[] bytes = "[1, 2]".getBytes(UTF_8);
+		MockHttpInputMessage message = message(MediaType.APPLICATION_JSON);
+		Promise<JsonElements> promise = new Promise<JsonElements>();
+		converter.read(JsonElements.class, message, promise);
+		final JsonElements elements = promise.get();
+		RecordingElementHandler handler = new RecordingElementHandler() {
+			@Override public boolean element(Object element) {
+				super.element(element);
+				return false;
+			}
+		};
+		elements.setElementHandler(handler);
+
+		assertFalse(message.chunk(bytes, 0, 3));
+		elements.resume();
+		assertEquals(1, message.getResumes());
+		assertFalse(message.chunk(bytes, 3, 3));
+		message.complete();
+
+		assertEquals(Arrays.<Object>asList(1L, 2L), handler.elements);
+		assertTrue(handler.completed);
+	}
+
+	@Test
+	public void testOnlyUtf8IsRead() throws Exception {
+		MockHttpInputMessage message = message(new MediaType("application", "json", Charset.forName("UTF-16")));
+		Promise<JsonElements> promise = new Promise<JsonElements>();
+
+		converter.read(JsonElements.class, message, promise);
+
+		try {
+			promise.get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof HttpMessageNotReadableException);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxElementLengthMustBePositive() {
+		converter.setMaxElementLength(0);
+	}
+
+	private RecordingElementHandler read(MockHttpInputMessage message) throws Exception {
+		Promise<JsonElements> promise = new Promise<JsonElements>();
+		converter.read(JsonElements.class, message, promise);
+		RecordingElementHandler handler = new RecordingElementHandler();
+		promise.get().setElementHandler(handler);
+		return handler;
+	}
+
+	private static MockHttpInputMessage message(MediaType contentType) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(contentType);
+		return new MockHttpInputMessage(headers);
+	}
+
+	private static JsonSyntaxException syntaxError(RecordingElementHandler handler) {
+		assertTrue(String.valueOf(handler.failure), handler.failure instanceof HttpMessageNotReadableException);
+		assertTrue(handler.failure.getCause() instanceof JsonSyntaxException);
+		return (JsonSyntaxException) handler.failure.getCause();
+	}
+
+	private static List<Object> expectedElements() {
+		Map<String, Object> nested = new LinkedHashMap<String, Object>();
+		nested.put("n", null);
+		Map<String, Object> first = new LinkedHashMap<String, Object>();
+		first.put("name", "\ud83d\ude00");
+		first.put("tags", Arrays.asList("a", "b"));
+		first.put("nested", nested);
+		return Arrays.<Object>asList(first, 42L, 1.5, new BigInteger("12345678901234567890"), "caf\u00e9", true,
+				new ArrayList<Object>());
+	}
+
+	private static class RecordingElementHandler implements JsonElementHandler {
+		private final List<Object> elements = new ArrayList<Object>();
+		private boolean completed;
+		private Throwable failure;
+
+		@Override public boolean element(Object element) {
+			elements.add(element);
+			return true;
+		}
+
+		@Override public void completed() {
+			completed = true;
+		}
+
+		@Override public void failed(Throwable throwable) {
+			failure = throwable;
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.async.http.io.Buffer;
+
+/**
+ * A {@link Buffer} such as a transport would hand over, which counts how often it is released.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class MockBuffer implements Buffer {
+
+	private final ByteBuffer content;
+	private int releases;
+
+	public MockBuffer(byte[] bytes) {
+		this.content = ByteBuffer.wrap(bytes);
+	}
+
+	@Override public int remaining() {
+		return content.remaining();
+	}
+
+	@Override public ByteBuffer[] toByteBuffers() {
+		return new ByteBuffer[]{content.duplicate()};
+	}
+
+	@Override public void release() {
+		releases++;
+	}
+
+	public boolean isReleased() {
+		return releases > 0;
+	}
+
+	public int getReleases() {
+		return releases;
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.HttpInputMessage;
+import org.springframework.async.http.io.BufferCompletionHandler;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * An {@link HttpInputMessage} whose headers have already arrived and whose body is fed to the completion handler a
+ * chunk at a time by the test.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class MockHttpInputMessage implements HttpInputMessage {
+
+	private final Promise<HttpHeaders> headers = new Promise<HttpHeaders>();
+	private CompletionHandler<Object> completionHandler;
+	private int resumes;
+
+	public MockHttpInputMessage(HttpHeaders headers) {
+		this.headers.result(headers);
+	}
+
+	@Override public Promise<HttpHeaders> getHeaders() {
+		return headers;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
+		this.completionHandler = (CompletionHandler<Object>) completionHandler;
+	}
+
+	@Override public void resume() {
+		resumes++;
+	}
+
+	/**
+	 * @return what the handler returned: false if it paused delivery
+	 */
+	public boolean chunk(byte[] bytes, int offset, int length) {
+		return completionHandler.chunk(ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	public boolean chunk(ByteBuffer buffer) {
+		return completionHandler.chunk(buffer);
+	}
+
+	/**
+	 * Hand the given buffer over to the handler as a transport that can do so would, or lend its content if the handler
+	 * can't take it.
+	 *
+	 * @return what the handler returned: false if it paused delivery
+	 */
+	public boolean handOver(MockBuffer buffer) {
+		if (completionHandler instanceof BufferCompletionHandler) {
+			return ((BufferCompletionHandler<?>) completionHandler).buffer(buffer);
+		}
+		boolean more = completionHandler.chunk(buffer.toByteBuffers()[0]);
+		buffer.release();
+		return more;
+	}
+
+	/**
+	 * Feed the whole of the given bytes, split into chunks of the given size.
+	 */
+	public void feed(byte[] bytes, int chunkSize) {
+		for (int i = 0; i < bytes.length; i += chunkSize) {
+			chunk(bytes, i, Math.min(chunkSize, bytes.length - i));
+		}
+	}
+
+	public void complete() {
+		completionHandler.completed(null);
+	}
+
+	public void fail(Throwable throwable) {
+		completionHandler.failed(throwable);
+	}
+
+	public CompletionHandler<Object> getCompletionHandler() {
+		return completionHandler;
+	}
+
+	/**
+	 * @return the number of times {@link #resume()} has been called
+	 */
+	public int getResumes() {
+		return resumes;
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.async.CompletionHandler;
+import org.springframework.async.http.HttpOutputMessage;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * An {@link HttpOutputMessage} that allocates bodies on the heap and keeps the body it is given.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class MockHttpOutputMessage implements HttpOutputMessage {
+
+	private final HttpHeaders headers = new HttpHeaders();
+	private ByteBuffer body;
+
+	@Override public HttpHeaders getHeaders() {
+		return headers;
+	}
+
+	@Override public <V> void setCompletionHandler(CompletionHandler<V> completionHandler) {
+	}
+
+	@Override public ByteBuffer allocateBody(int capacity) {
+		return ByteBuffer.allocate(capacity);
+	}
+
+	@Override public void setBody(ByteBuffer body) {
+		this.body = body;
+	}
+
+	/**
+	 * @return the bytes of the body that was set, or null if none was
+	 */
+	public byte[] getBodyBytes() {
+		if (null == body) {
+			return null;
+		}
+		byte[] bytes = new byte[body.remaining()];
+		body.duplicate().get(bytes);
+		return bytes;
+	}
+
+}
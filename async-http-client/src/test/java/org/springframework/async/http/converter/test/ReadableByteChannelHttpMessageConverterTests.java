@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.converter.ReadableByteChannelHttpMessageConverter;
+import org.springframework.http.MediaType;
+
+import static org.junit.Assert.*;
+import static org.springframework.async.http.converter.test.ByteArrayHttpMessageConverterTests.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ReadableByteChannelHttpMessageConverterTests {
+
+	private final ReadableByteChannelHttpMessageConverter converter = new ReadableByteChannelHttpMessageConverter();
+
+	@Test
+	public void testReadsAcrossBuffers() throws Exception {
+		byte[] bytes = bytes(3000);
+		MockHttpInputMessage message = message(-1);
+		Promise<ReadableByteChannel> promise = read(message);
+		MockBuffer handedOver = new MockBuffer(Arrays.copyOfRange(bytes, 1000, 2000));
+
+		message.chunk(bytes, 0, 1000);
+		message.handOver(handedOver);
+		message.chunk(bytes, 2000, 1000);
+		message.complete();
+
+		ReadableByteChannel channel = promise.get();
+		ByteBuffer dst = ByteBuffer.allocate(bytes.length);
+		ByteBuffer small = ByteBuffer.allocate(700);
+		int read;
+		while ((read = channel.read(small)) >= 0) {
+			assertTrue(read > 0);
+			small.flip();
+			dst.put(small);
+			small.clear();
+		}
+		assertArrayEquals(bytes, dst.array());
+		assertEquals(-1, channel.read(small));
+		assertFalse(handedOver.isReleased());
+
+		channel.close();
+		assertFalse(channel.isOpen());
+		assertTrue(handedOver.isReleased());
+		channel.close();
+		assertEquals(1, handedOver.getReleases());
+	}
+
+	@Test
+	public void testEmptyBodyIsAtEndOfStream() throws Exception {
+		MockHttpInputMessage message = message(0);
+		Promise<ReadableByteChannel> promise = read(message);
+
+		message.complete();
+
+		assertEquals(-1, promise.get().read(ByteBuffer.allocate(10)));
+	}
+
+	@Test(expected = ClosedChannelException.class)
+	public void testReadAfterCloseFails() throws Exception {
+		MockHttpInputMessage message = message(-1);
+		Promise<ReadableByteChannel> promise = read(message);
+		message.chunk(bytes(10), 0, 10);
+		message.complete();
+		ReadableByteChannel channel = promise.get();
+
+		channel.close();
+		channel.read(ByteBuffer.allocate(10));
+	}
+
+	@Test
+	public void testCannotWrite() {
+		assertTrue(converter.canRead(ReadableByteChannel.class, MediaType.APPLICATION_OCTET_STREAM));
+		assertFalse(converter.canWrite(ReadableByteChannel.class, MediaType.APPLICATION_OCTET_STREAM));
+	}
+
+	private Promise<ReadableByteChannel> read(MockHttpInputMessage message) throws Exception {
+		Promise<ReadableByteChannel> promise = new Promise<ReadableByteChannel>();
+		converter.read(ReadableByteChannel.class, message, promise);
+		return promise;
+	}
+
+}
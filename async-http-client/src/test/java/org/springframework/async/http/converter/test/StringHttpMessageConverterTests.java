@@ -0,0 +1,204 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.http.converter.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.converter.StringHttpMessageConverter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class StringHttpMessageConverterTests {
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	// One-, two-, three- and four-byte characters in UTF-8.
+	private static final String MIXED = "a\u00e9\u20ac\ud83d\ude00b";
+
+	private final StringHttpMessageConverter converter = new StringHttpMessageConverter();
+
+	@Test
+	public void testDecodesCharactersSplitAcrossChunks() throws Exception {
+		byte[] bytes = MIXED.getBytes(UTF_8);
+		for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+			MockHttpInputMessage message = message(new MediaType("text", "plain", UTF_8), bytes.length);
+			Promise<String> promise = read(message);
+			message.feed(bytes, chunkSize);
+			message.complete();
+
+			assertEquals("Chunks of " + chunkSize + " bytes", MIXED, promise.get());
+		}
+	}
+
+	@Test
+	public void testDecodesCharacterSplitAcrossThreeChunks() throws Exception {
+		byte[] bytes = "\ud83d\ude00".getBytes(UTF_8);
+		MockHttpInputMessage message = message(new MediaType("text", "plain", UTF_8), -1);
+		Promise<String> promise = read(message);
+
+		assertTrue(message.chunk(bytes, 0, 1));
+		assertTrue(message.chunk(bytes, 1, 2));
+		assertTrue(message.chunk(new byte[0], 0, 0));
+		assertTrue(message.chunk(bytes, 3, 1));
+		message.complete();
+
+		assertEquals("\ud83d\ude00", promise.get());
+	}
+
+	@Test
+	public void testTruncatedCharacterIsReplaced() throws Exception {
+		byte[] bytes = "x\u20ac".getBytes(UTF_8);
+		MockHttpInputMessage message = message(new MediaType("text", "plain", UTF_8), -1);
+		Promise<String> promise = read(message);
+
+		message.chunk(bytes, 0, bytes.length - 1);
+		message.complete();
+
+		assertEquals("x\ufffd", promise.get());
+	}
+
+	@Test
+	public void testMalformedInputIsReplaced() throws Exception {
+		byte[] bytes = {'a', (byte) 0xff, 'b'};
+		MockHttpInputMessage message = message(new MediaType("text", "plain", UTF_8), bytes.length);
+		Promise<String> promise = read(message);
+
+		message.feed(bytes, 1);
+		message.complete();
+
+		assertEquals("a\ufffdb", promise.get());
+	}
+
+	@Test
+	public void testDecodesBodyLargerThanContentLength() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append(MIXED);
+		}
+		String body = builder.toString();
+		byte[] bytes = body.getBytes(UTF_8);
+		MockHttpInputMessage message = message(new MediaType("text", "plain", UTF_8), 1);
+		Promise<String> promise = read(message);
+
+		message.feed(bytes, 1000);
+		message.complete();
+
+		assertEquals(body, promise.get());
+	}
+
+	@Test
+	public void testSingleByteCharsetWithoutCharsetParameter() throws Exception {
+		byte[] bytes = "caf\u00e9 cr\u00e8me".getBytes(ISO_8859_1);
+		MockHttpInputMessage message = message(MediaType.TEXT_PLAIN, -1);
+		Promise<String> promise = read(message);
+
+		message.feed(bytes, 3);
+		message.complete();
+
+		assertEquals("caf\u00e9 cr\u00e8me", promise.get());
+	}
+
+	@Test
+	public void testSingleByteCharsetGrowsPastContentLength() throws Exception {
+		byte[] bytes = new byte[5000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) ('a' + i % 26);
+		}
+		MockHttpInputMessage message = message(new MediaType("text", "plain", Charset.forName("US-ASCII")), 10);
+		Promise<String> promise = read(message);
+
+		message.feed(bytes, 777);
+		message.complete();
+
+		assertEquals(new String(bytes, ISO_8859_1), promise.get());
+	}
+
+	@Test
+	public void testEmptyBody() throws Exception {
+		MockHttpInputMessage message = message(new MediaType("text", "plain", UTF_8), 0);
+		Promise<String> promise = read(message);
+
+		message.complete();
+
+		assertEquals("", promise.get());
+	}
+
+	@Test
+	public void testFailureFailsPromise() throws Exception {
+		MockHttpInputMessage message = message(MediaType.TEXT_PLAIN, -1);
+		Promise<String> promise = read(message);
+		IllegalStateException failure = new IllegalStateException("connection reset");
+
+		message.chunk(ByteBuffer.wrap(new byte[]{'a'}));
+		message.fail(failure);
+
+		try {
+			promise.get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testContentLengthOfSingleByteCharsetCountsCodePoints() throws Exception {
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		converter.setWriteAcceptCharset(false);
+
+		converter.write("a\ud83d\ude00b", new MediaType("text", "plain", ISO_8859_1), message);
+
+		assertEquals(3, message.getHeaders().getContentLength());
+		assertArrayEquals("a?b".getBytes(ISO_8859_1), message.getBodyBytes());
+	}
+
+	@Test
+	public void testContentLengthOfUtf8() throws Exception {
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		converter.setWriteAcceptCharset(false);
+
+		converter.write(MIXED, new MediaType("text", "plain", UTF_8), message);
+
+		assertEquals(MIXED.getBytes(UTF_8).length, message.getHeaders().getContentLength());
+		assertArrayEquals(MIXED.getBytes(UTF_8), message.getBodyBytes());
+	}
+
+	private Promise<String> read(MockHttpInputMessage message) throws Exception {
+		Promise<String> promise = new Promise<String>();
+		converter.read(String.class, message, promise);
+		return promise;
+	}
+
+	private static MockHttpInputMessage message(MediaType contentType, long contentLength) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(contentType);
+		if (contentLength >= 0) {
+			headers.setContentLength(contentLength);
+		}
+		return new MockHttpInputMessage(headers);
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.json.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.async.json.JsonHandler;
+import org.springframework.async.json.JsonSyntaxException;
+import org.springframework.async.json.JsonTokenizer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class JsonTokenizerTests {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// Every kind of token, escapes, and characters of one to four bytes in UTF-8.
+	private static final String DOCUMENT = "{\"name\":\"caf\u00e9 \u20ac \ud83d\ude00\",\"list\":[1,-0.5,2e10,-3E-2,"
+			+ "true,false,null,\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u0041\\ud83d\\ude00\"],\"empty\":{},\"none\":[]," +
+			"\"\ud83d\ude00\":12345678901234567890}";
+	private static final String TOKENS = "{ name:name string:caf\u00e9 \u20ac \ud83d\ude00 name:list [ number:1 "
+			+ "number:-0.5 number:2e10 number:-3E-2 true false null string:\"\\/\b\f\n\r\tA\ud83d\ude00 ] name:empty { } "
+			+ "name:none [ ] name:\ud83d\ude00 number:12345678901234567890 }";
+
+	@Test
+	public void testWholeDocument() {
+		assertEquals(TOKENS, tokenize(DOCUMENT.getBytes(UTF_8)));
+	}
+
+	@Test
+	public void testSplitAtEveryByte() {
+		byte[] bytes = DOCUMENT.getBytes(UTF_8);
+		for (int split = 0; split <= bytes.length; split++) {
+			RecordingHandler handler = new RecordingHandler();
+			JsonTokenizer tokenizer = new JsonTokenizer(handler);
+			tokenizer.feed(bytes, 0, split);
+			tokenizer.feed(bytes, split, bytes.length);
+			tokenizer.end();
+
+			assertEquals("Split at byte " + split, TOKENS, handler.toString());
+		}
+	}
+
+	@Test
+	public void testOneByteAtATime() {
+		byte[] bytes = DOCUMENT.getBytes(UTF_8);
+		RecordingHandler handler = new RecordingHandler();
+		JsonTokenizer tokenizer = new JsonTokenizer(handler);
+		for (int i = 0; i < bytes.length; i++) {
+			tokenizer.feed(ByteBuffer.wrap(bytes, i, 1));
+		}
+		tokenizer.end();
+
+		assertEquals(TOKENS, handler.toString());
+		assertEquals(bytes.length, tokenizer.getOffset());
+	}
+
+	@Test
+	public void testDirectBuffer() {
+		byte[] bytes = DOCUMENT.getBytes(UTF_8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.flip();
+		RecordingHandler handler = new RecordingHandler();
+		JsonTokenizer tokenizer = new JsonTokenizer(handler);
+
+		tokenizer.feed(direct);
+		tokenizer.end();
+
+		assertEquals(TOKENS, handler.toString());
+		assertFalse(direct.hasRemaining());
+	}
+
+	@Test
+	public void testFourByteCharacterSplitAtEveryByte() {
+		byte[] bytes = "[\"\ud83d\ude00\"]".getBytes(UTF_8);
+		for (int split = 2; split <= 6; split++) {
+			RecordingHandler handler = new RecordingHandler();
+			JsonTokenizer tokenizer = new JsonTokenizer(handler);
+			tokenizer.feed(bytes, 0, split);
+			tokenizer.feed(bytes, split, bytes.length);
+			tokenizer.end();
+
+			assertEquals("[ string:\ud83d\ude00 ]", handler.toString());
+		}
+	}
+
+	@Test
+	public void testTopLevelNumberEndsWithInput() {
+		assertEquals("number:-12.5e3", tokenize("-12.5e3".getBytes(UTF_8)));
+	}
+
+	@Test
+	public void testOverlongEncodingsAreReplaced() {
+		// '/' as two, three and four bytes, U+07FF as three and U+FFFF as four.
+		byte[] bytes = {'"', (byte) 0xC0, (byte) 0xAF, (byte) 0xE0, (byte) 0x80, (byte) 0xAF,
+				(byte) 0xF0, (byte) 0x80, (byte) 0x80, (byte) 0xAF, (byte) 0xE0, (byte) 0x9F, (byte) 0xBF,
+				(byte) 0xF0, (byte) 0x8F, (byte) 0xBF, (byte) 0xBF, '"'};
+
+		assertEquals("string:\ufffd\ufffd\ufffd\ufffd\ufffd", tokenize(bytes));
+	}
+
+	@Test
+	public void testShortestEncodingsAreKept() {
+		// U+0080, U+0800 and U+10000, the least code points needing two, three and four bytes.
+		byte[] bytes = {'"', (byte) 0xC2, (byte) 0x80, (byte) 0xE0, (byte) 0xA0, (byte) 0x80,
+				(byte) 0xF0, (byte) 0x90, (byte) 0x80, (byte) 0x80, '"'};
+
+		assertEquals("string:\u0080\u0800\ud800\udc00", tokenize(bytes));
+	}
+
+	@Test
+	public void testMalformedUtf8IsReplaced() {
+		// An encoded surrogate, a sequence cut short by a quote, a stray continuation byte and a code point too large.
+		byte[] bytes = {'"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, (byte) 0xE2, (byte) 0x82, 'x', (byte) 0x80,
+				(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80, '"'};
+
+		assertEquals("string:\ufffd\ufffdx\ufffd\ufffd", tokenize(bytes));
+	}
+
+	@Test
+	public void testErrorOffsets() {
+		assertErrorAt("[1,,2]", 3);
+		assertErrorAt("{\"a\" 1}", 5);
+		assertErrorAt("{\"a\":1,}", 7);
+		assertErrorAt("[1 2]", 3);
+		assertErrorAt("[tru]", 4);
+		assertErrorAt("[\"a\\x\"]", 4);
+		assertErrorAt("[\"\\u12g4\"]", 6);
+		assertErrorAt("[\"a\tb\"]", 3);
+		assertErrorAt("[1] 2", 4);
+		assertErrorAt("[01]", 2);
+		assertErrorAt("[1.]", 3);
+		assertErrorAt("[-]", 2);
+	}
+
+	@Test
+	public void testErrorOffsetsAcrossChunks() {
+		byte[] bytes = "[\"\u20ac\", \"\u20ac\",, 1]".getBytes(UTF_8);
+		for (int split = 0; split <= bytes.length; split++) {
+			JsonTokenizer tokenizer = new JsonTokenizer(new RecordingHandler());
+			try {
+				tokenizer.feed(bytes, 0, split);
+				tokenizer.feed(bytes, split, bytes.length);
+				fail("Expected JsonSyntaxException");
+			}
+			catch (JsonSyntaxException e) {
+				assertEquals("Split at byte " + split, 14, e.getOffset());
+			}
+		}
+	}
+
+	@Test
+	public void testUnexpectedEndOfInput() {
+		JsonTokenizer tokenizer = new JsonTokenizer(new RecordingHandler());
+		tokenizer.feed("[1, {\"a\":".getBytes(UTF_8), 0, 9);
+		try {
+			tokenizer.end();
+			fail("Expected JsonSyntaxException");
+		}
+		catch (JsonSyntaxException e) {
+			assertEquals(9, e.getOffset());
+		}
+	}
+
+	@Test
+	public void testMaxDepth() {
+		JsonTokenizer tokenizer = new JsonTokenizer(new RecordingHandler(), 3, 100);
+		tokenizer.feed("[[[]]]".getBytes(UTF_8), 0, 6);
+		tokenizer.end();
+
+		tokenizer.reset();
+		try {
+			tokenizer.feed("[[[[]]]]".getBytes(UTF_8), 0, 8);
+			fail("Expected JsonSyntaxException");
+		}
+		catch (JsonSyntaxException e) {
+			assertEquals(3, e.getOffset());
+		}
+	}
+
+	@Test
+	public void testMaxTokenLength() {
+		JsonTokenizer tokenizer = new JsonTokenizer(new RecordingHandler(), 10, 5);
+		tokenizer.feed("[\"abcde\", 12345, ".getBytes(UTF_8), 0, 17);
+		try {
+			tokenizer.feed("\"abcdef\"]".getBytes(UTF_8), 0, 9);
+			fail("Expected JsonSyntaxException");
+		}
+		catch (JsonSyntaxException e) {
+			// The offset of the start of the string.
+			assertEquals(17, e.getOffset());
+		}
+	}
+
+	@Test
+	public void testPositionDuringCallbacks() {
+		final List<Long> positions = new ArrayList<Long>();
+		final JsonTokenizer[] tokenizer = new JsonTokenizer[1];
+		tokenizer[0] = new JsonTokenizer(new RecordingHandler() {
+			@Override protected void record(String token) {
+				positions.add(tokenizer[0].getPosition());
+			}
+		});
+		byte[] bytes = "[ {\"a\" : \"bc\" }, 12 , true ]".getBytes(UTF_8);
+
+		tokenizer[0].feed(bytes, 0, 10);
+		tokenizer[0].feed(bytes, 10, bytes.length);
+
+		// [ { "a" "bc" } 12 true ]
+		assertEquals("[0, 2, 5, 12, 14, 19, 25, 27]", positions.toString());
+	}
+
+	private static String tokenize(byte[] bytes) {
+		RecordingHandler handler = new RecordingHandler();
+		JsonTokenizer tokenizer = new JsonTokenizer(handler);
+		tokenizer.feed(bytes, 0, bytes.length);
+		tokenizer.end();
+		return handler.toString();
+	}
+
+	private static void assertErrorAt(String json, long offset) {
+		byte[] bytes = json.getBytes(UTF_8);
+		JsonTokenizer tokenizer = new JsonTokenizer(new RecordingHandler());
+		try {
+			tokenizer.feed(bytes, 0, bytes.length);
+			tokenizer.end();
+			fail("Expected JsonSyntaxException for " + json);
+		}
+		catch (JsonSyntaxException e) {
+			assertEquals(e.getMessage() + " in " + json, offset, e.getOffset());
+		}
+	}
+
+	/**
+	 * Writes the tokens it is given out one after another, separated by spaces.
+	 */
+	private static class RecordingHandler implements JsonHandler {
+		private final StringBuilder tokens = new StringBuilder();
+
+		protected void record(String token) {
+			if (tokens.length() > 0) {
+				tokens.append(' ');
+			}
+			tokens.append(token);
+		}
+
+		@Override public void startObject() {
+			record("{");
+		}
+
+		@Override public void endObject() {
+			record("}");
+		}
+
+		@Override public void startArray() {
+			record("[");
+		}
+
+		@Override public void endArray() {
+			record("]");
+		}
+
+		@Override public void name(String name) {
+			record("name:" + name);
+		}
+
+		@Override public void string(String value) {
+			record("string:" + value);
+		}
+
+		@Override public void number(String text) {
+			record("number:" + text);
+		}
+
+		@Override public void bool(boolean value) {
+			record(String.valueOf(value));
+		}
+
+		@Override public void nullValue() {
+			record("null");
+		}
+
+		@Override public String toString() {
+			return tokens.toString();
+		}
+	}
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.async.BiFunction;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Function;
+import org.springframework.async.HashedWheelTimer;
+import org.springframework.async.Promise;
+import org.springframework.async.PromiseFactory;
+import org.springframework.async.Promises;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class PromiseTests {
+
+	static final int TIMEOUT = 5;
+
+	static final Function<String, Integer> LENGTH = new Function<String, Integer>() {
+		@Override public Integer apply(String s) {
+			return s.length();
+		}
+	};
+
+	@Test
+	public void testHandlersNotifiedInOrder() throws Exception {
+		final StringBuilder calls = new StringBuilder();
+		Promise<String> promise = PromiseFactory.createPromise();
+		for (int i = 0; i < 3; i++) {
+			final int idx = i;
+			promise.addCompletionHandler(new EmptyCompletionHandler<String>() {
+				@Override public void completed(String obj) {
+					calls.append(idx);
+				}
+			});
+		}
+		promise.result("done");
+		promise.addCompletionHandler(new EmptyCompletionHandler<String>() {
+			@Override public void completed(String obj) {
+				calls.append("late");
+			}
+		});
+
+		assertEquals("012late", calls.toString());
+		assertEquals("done", promise.get());
+	}
+
+	@Test
+	public void testFirstCompletionWins() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 200; round++) {
+				final Promise<Integer> promise = PromiseFactory.createPromise();
+				final CountDownLatch start = new CountDownLatch(1);
+				final CountDownLatch done = new CountDownLatch(4);
+				final List<Integer> seen = new ArrayList<Integer>();
+				for (int i = 0; i < 4; i++) {
+					final int value = i;
+					executor.execute(new Runnable() {
+						@Override public void run() {
+							try {
+								start.await();
+								promise.addCompletionHandler(new EmptyCompletionHandler<Integer>() {
+									@Override public void completed(Integer obj) {
+										synchronized (seen) {
+											seen.add(obj);
+										}
+									}
+								});
+								promise.result(value);
+							} catch (InterruptedException ignored) {
+							} finally {
+								done.countDown();
+							}
+						}
+					});
+				}
+				start.countDown();
+
+				assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+				Integer winner = promise.get();
+				assertEquals(Arrays.asList(winner, winner, winner, winner), seen);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testMapRunsInline() throws Exception {
+		Promise<String> promise = PromiseFactory.createPromise();
+		Promise<Integer> length = promise.map(LENGTH);
+		promise.result("hello");
+
+		assertTrue(length.isDone());
+		assertEquals(Integer.valueOf(5), length.get());
+	}
+
+	@Test
+	public void testMapOnExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final AtomicInteger thread = new AtomicInteger();
+			Promise<String> promise = PromiseFactory.createPromise();
+			Promise<String> name = promise.map(new Function<String, String>() {
+				@Override public String apply(String s) {
+					return s + Thread.currentThread().getName();
+				}
+			}, executor);
+			promise.result("on ");
+
+			assertFalse(name.get(TIMEOUT, TimeUnit.SECONDS).equals("on " + Thread.currentThread().getName()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFlatMap() throws Exception {
+		final Promise<Integer> inner = PromiseFactory.createPromise();
+		Promise<String> promise = PromiseFactory.createPromise();
+		Promise<Integer> flattened = promise.flatMap(new Function<String, Promise<Integer>>() {
+			@Override public Promise<Integer> apply(String s) {
+				return inner;
+			}
+		});
+		promise.result("outer");
+		assertFalse(flattened.isDone());
+
+		inner.result(42);
+		assertEquals(Integer.valueOf(42), flattened.get());
+	}
+
+	@Test
+	public void testMapFailureAndRecover() throws Exception {
+		Promise<String> promise = PromiseFactory.createPromise();
+		Promise<Integer> recovered = promise.map(LENGTH).recover(new Function<Throwable, Integer>() {
+			@Override public Integer apply(Throwable t) {
+				return -1;
+			}
+		});
+		promise.failure(new IOException("boom"));
+
+		assertEquals(Integer.valueOf(-1), recovered.get());
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void testFunctionExceptionFailsPromise() throws Exception {
+		Promise<String> promise = PromiseFactory.createPromise();
+		Promise<Integer> length = promise.map(LENGTH);
+		promise.result(null);
+
+		length.get();
+	}
+
+	@Test
+	public void testZip() throws Exception {
+		Promise<String> first = PromiseFactory.createPromise();
+		Promise<Integer> second = PromiseFactory.createPromise();
+		Promise<String> zipped = first.zip(second, new BiFunction<String, Integer, String>() {
+			@Override public String apply(String s, Integer i) {
+				return s + i;
+			}
+		});
+		second.result(1);
+		assertFalse(zipped.isDone());
+		first.result("a");
+
+		assertEquals("a1", zipped.get());
+	}
+
+	@Test
+	public void testCancelPropagatesDownstream() throws TimeoutException, InterruptedException, ExecutionException {
+		Promise<String> promise = PromiseFactory.createPromise();
+		Promise<Integer> length = promise.map(LENGTH);
+		promise.cancel(true);
+
+		assertTrue(length.isCancelled());
+	}
+
+	@Test
+	public void testAllOfKeepsInputOrder() throws Exception {
+		List<Promise<Integer>> promises = createPromises(3);
+		Promise<List<Integer>> all = Promises.allOf(promises);
+		promises.get(2).result(2);
+		promises.get(0).result(0);
+		assertFalse(all.isDone());
+		promises.get(1).result(1);
+
+		assertEquals(Arrays.asList(0, 1, 2), all.get());
+	}
+
+	@Test
+	public void testAllOfFailFast() throws Exception {
+		List<Promise<Integer>> promises = createPromises(3);
+		Promise<List<Integer>> all = Promises.allOf(promises, Promises.Option.FAIL_FAST, Promises.Option.CANCEL_LOSERS);
+		promises.get(1).failure(new IOException("boom"));
+
+		assertTrue(all.isDone());
+		assertTrue(promises.get(0).isCancelled());
+		assertTrue(promises.get(2).isCancelled());
+	}
+
+	@Test
+	public void testAnyOfSkipsFailures() throws Exception {
+		List<Promise<Integer>> promises = createPromises(3);
+		Promise<Integer> any = Promises.anyOf(promises, Promises.Option.CANCEL_LOSERS);
+		promises.get(0).failure(new IOException("boom"));
+		assertFalse(any.isDone());
+		promises.get(2).result(2);
+
+		assertEquals(Integer.valueOf(2), any.get());
+		assertTrue(promises.get(1).isCancelled());
+	}
+
+	@Test
+	public void testFirstNInCompletionOrder() throws Exception {
+		List<Promise<Integer>> promises = createPromises(4);
+		Promise<List<Integer>> first = Promises.firstN(promises, 2);
+		promises.get(3).result(3);
+		promises.get(1).failure(new IOException("boom"));
+		promises.get(0).result(0);
+
+		assertEquals(Arrays.asList(3, 0), first.get());
+	}
+
+	@Test
+	public void testCancelAggregateCancelsInputs() throws Exception {
+		List<Promise<Integer>> promises = createPromises(2);
+		Promises.allOf(promises).cancel(true);
+
+		assertTrue(promises.get(0).isCancelled());
+		assertTrue(promises.get(1).isCancelled());
+	}
+
+	@Test
+	public void testDeadlineFailsPromise() throws Exception {
+		Promise<String> promise = PromiseFactory.createPromise(50);
+		try {
+			promise.get(TIMEOUT, TimeUnit.SECONDS);
+			fail("Promise should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+
+	@Test
+	public void testCompletionCancelsDeadline() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		HashedWheelTimer.Timeout timeout = PromiseFactory.getTimer().schedule(new Runnable() {
+			@Override public void run() {
+				latch.countDown();
+			}
+		}, 50, TimeUnit.MILLISECONDS);
+		assertTrue(timeout.cancel());
+
+		assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+		assertFalse(timeout.isExpired());
+
+		Promise<String> promise = PromiseFactory.createPromise(50);
+		promise.result("done");
+		Thread.sleep(100);
+		assertEquals("done", promise.get());
+	}
+
+	@Test
+	public void testTimerParksWhenIdle() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("idle-timer-test", 1, TimeUnit.MILLISECONDS, 8);
+		try {
+			final CountDownLatch latch = new CountDownLatch(2);
+			Runnable countDown = new Runnable() {
+				@Override public void run() {
+					latch.countDown();
+				}
+			};
+			timer.schedule(countDown, 5, TimeUnit.MILLISECONDS);
+			timer.schedule(countDown, 1, TimeUnit.SECONDS).cancel();
+			Thread.sleep(100);
+
+			Thread worker = null;
+			for (Thread thread : Thread.getAllStackTraces().keySet()) {
+				if ("idle-timer-test".equals(thread.getName())) {
+					worker = thread;
+				}
+			}
+			assertNotNull(worker);
+			assertEquals(Thread.State.WAITING, worker.getState());
+
+			timer.schedule(countDown, 5, TimeUnit.MILLISECONDS);
+			assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private static List<Promise<Integer>> createPromises(int count) {
+		List<Promise<Integer>> promises = new ArrayList<Promise<Integer>>();
+		for (int i = 0; i < count; i++) {
+			promises.add(PromiseFactory.<Integer>createPromise());
+		}
+		return promises;
+	}
+
+}
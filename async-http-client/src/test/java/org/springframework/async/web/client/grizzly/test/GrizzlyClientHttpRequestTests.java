@@ -0,0 +1,196 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.grizzly.test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.async.http.client.AbstractClientHttpRequest;
+import org.springframework.async.http.client.ClientHttpRequest;
+import org.springframework.async.http.client.EmptyClientHttpRequestListener;
+import org.springframework.async.http.client.HttpRequest;
+import org.springframework.async.web.client.AsyncRestTemplate;
+import org.springframework.async.web.client.grizzly.GrizzlyClientHttpRequest;
+import org.springframework.async.web.client.grizzly.GrizzlyClientHttpRequestFactory;
+import org.springframework.async.web.client.grizzly.GrizzlyConnectionPool;
+import org.springframework.async.web.client.test.LoopbackServer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class GrizzlyClientHttpRequestTests {
+
+	static final int TIMEOUT = 5;
+	// Larger than a socket's send buffer, so a write to a reset connection cannot complete, but still pooled.
+	static final int LARGE_BODY = 900 * 1024;
+
+	LoopbackServer server;
+	BodyRecordingRequestFactory requestFactory;
+	AsyncRestTemplate restTemplate;
+	AtomicInteger requestsWritten = new AtomicInteger();
+
+	@Before
+	public void setup() throws Exception {
+		server = new LoopbackServer();
+		requestFactory = new BodyRecordingRequestFactory();
+		requestFactory.setRequestListener(new EmptyClientHttpRequestListener() {
+			@Override public void requestWritten(HttpRequest request, int bytes, long timestamp) {
+				requestsWritten.incrementAndGet();
+			}
+		});
+		restTemplate = new AsyncRestTemplate(requestFactory);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		requestFactory.destroy();
+		server.stop();
+	}
+
+	@Test
+	public void testPostBodyIsWritten() throws Exception {
+		assertEquals("hello", restTemplate.postForObject(server.getUrl("/"), "ping", String.class).get(TIMEOUT, TimeUnit.SECONDS));
+
+		String request = server.getReceived().get(0);
+		assertTrue(request, request.startsWith("POST / HTTP/1.1\r\n"));
+		assertTrue(request, request.toLowerCase().contains("\r\ncontent-length: 4\r\n"));
+		assertTrue(request, request.endsWith("\r\n\r\nping"));
+	}
+
+	@Test
+	public void testPutBodyIsWritten() throws Exception {
+		ClientHttpRequest put = requestFactory.createRequest(new URI(server.getUrl("/")), HttpMethod.PUT);
+		ByteBuffer body = put.allocateBody(4);
+		body.put("pong".getBytes("ISO-8859-1")).flip();
+		put.setBody(body);
+		assertEquals(HttpStatus.OK, put.execute().getStatusCode().get(TIMEOUT, TimeUnit.SECONDS));
+
+		String request = server.getReceived().get(0);
+		assertTrue(request, request.startsWith("PUT / HTTP/1.1\r\n"));
+		assertTrue(request, request.toLowerCase().contains("\r\ncontent-length: 4\r\n"));
+		assertTrue(request, request.endsWith("\r\n\r\npong"));
+	}
+
+	@Test
+	public void testBodyIsReturnedToPoolAfterWrite() throws Exception {
+		String body = body(LARGE_BODY);
+		assertEquals("hello", restTemplate.postForObject(server.getUrl("/"), body, String.class).get(TIMEOUT, TimeUnit.SECONDS));
+
+		assertTrue(server.getReceived().get(0).endsWith("\r\n\r\n" + body));
+		assertEquals(1, requestsWritten.get());
+		assertBodyReturnedToPool();
+	}
+
+	@Test
+	public void testBodyIsReturnedToPoolAfterFailedWrite() throws Exception {
+		final ServerSocket resetting = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptor = new Thread(new Runnable() {
+			@Override public void run() {
+				try {
+					Socket socket = resetting.accept();
+					socket.setSoLinger(true, 0);
+					socket.close();
+				} catch (IOException ignored) {
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		try {
+			restTemplate.postForObject("http://localhost:" + resetting.getLocalPort() + "/", body(LARGE_BODY), String.class).get(TIMEOUT, TimeUnit.SECONDS);
+			fail("Write to a reset connection should fail");
+		} catch (ExecutionException expected) {
+		} finally {
+			resetting.close();
+		}
+
+		assertEquals(0, requestsWritten.get());
+		assertBodyReturnedToPool();
+	}
+
+	private void assertBodyReturnedToPool() throws Exception {
+		ByteBuffer released = requestFactory.releasedBodies.poll(TIMEOUT, TimeUnit.SECONDS);
+		assertNotNull("Body was not released", released);
+		// The pool hands out the buffer it was given back before allocating another of the same size.
+		ByteBuffer next = requestFactory.createRequest(new URI(server.getUrl("/")), HttpMethod.POST).allocateBody(released.capacity());
+		assertSame(released, next);
+	}
+
+	@Test
+	public void testWriteWithoutBodyOrListenerHasNoCompletionHandler() throws Exception {
+		requestFactory.setRequestListener(null);
+		for (int i = 0; i < 2; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(0, requestFactory.releaseCalls.get());
+		assertEquals(0, requestsWritten.get());
+	}
+
+	@Test
+	public void testWriteWithListenerHasCompletionHandler() throws Exception {
+		assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(1, requestFactory.releaseCalls.get());
+		assertEquals(1, requestsWritten.get());
+	}
+
+	private static String body(int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, 'x');
+		return new String(chars);
+	}
+
+	static class BodyRecordingRequestFactory extends GrizzlyClientHttpRequestFactory {
+
+		final BlockingQueue<ByteBuffer> releasedBodies = new LinkedBlockingQueue<ByteBuffer>();
+		// Every call, including those with no body, which only the write completion handler makes.
+		final AtomicInteger releaseCalls = new AtomicInteger();
+
+		BodyRecordingRequestFactory() throws IOException {
+		}
+
+		@Override protected AbstractClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, GrizzlyConnectionPool pool) {
+			return new GrizzlyClientHttpRequest(uri, httpMethod, pool, getLowWatermark(), getHighWatermark()) {
+				@Override protected void releaseBody() {
+					releaseCalls.incrementAndGet();
+					ByteBuffer body = getBody();
+					super.releaseBody();
+					if (null != body) {
+						releasedBodies.add(body);
+					}
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.grizzly.test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.async.web.client.AsyncRestTemplate;
+import org.springframework.async.web.client.grizzly.GrizzlyClientHttpRequestFactory;
+import org.springframework.async.web.client.test.LoopbackServer;
+import org.springframework.http.HttpMethod;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class GrizzlyConnectionPoolTests {
+
+	static final int TIMEOUT = 5;
+
+	LoopbackServer server;
+	GrizzlyClientHttpRequestFactory requestFactory;
+	AsyncRestTemplate restTemplate;
+
+	@Before
+	public void setup() throws Exception {
+		server = new LoopbackServer();
+		requestFactory = new GrizzlyClientHttpRequestFactory();
+		restTemplate = new AsyncRestTemplate(requestFactory);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		requestFactory.destroy();
+		server.stop();
+	}
+
+	@Test
+	public void testIdleConnectionIsReused() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(3, server.getRequests());
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test
+	public void testHostIsCaseInsensitive() throws Exception {
+		restTemplate.getForObject("http://localhost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		restTemplate.getForObject("http://LocalHost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test
+	public void testConnectionClosedByServerIsNotReused() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\nContent-Length: 5\r\n\r\nhello");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(2, server.getConnections());
+	}
+
+	@Test
+	public void testCloseDelimitedResponseCompletes() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\nhello");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(2, server.getConnections());
+	}
+
+	@Test
+	public void testTruncatedResponseFails() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\nContent-Length: 10\r\n\r\nhello");
+		try {
+			restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS);
+			fail("Truncated response should fail");
+		} catch (ExecutionException expected) {
+		}
+	}
+
+	@Test
+	public void testRequestsQueueBeyondMaxConnections() throws Exception {
+		requestFactory.setMaxConnectionsPerRoute(1);
+		server.setResponseDelay(20);
+		List<Promise<String>> responses = new ArrayList<Promise<String>>();
+		for (int i = 0; i < 4; i++) {
+			responses.add(restTemplate.getForObject(server.getUrl("/"), String.class));
+		}
+		for (Promise<String> response : responses) {
+			assertEquals("hello", response.get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(1, server.getConnections());
+		assertEquals(1, server.getMaxOutstanding());
+	}
+
+	@Test
+	public void testPipelinedRequestsShareConnection() throws Exception {
+		requestFactory.setMaxConnectionsPerRoute(1);
+		requestFactory.setPipelineDepth(3);
+		server.setResponseDelay(100);
+		List<Promise<String>> responses = new ArrayList<Promise<String>>();
+		for (int i = 0; i < 3; i++) {
+			responses.add(restTemplate.getForObject(server.getUrl("/"), String.class));
+		}
+		for (Promise<String> response : responses) {
+			assertEquals("hello", response.get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(1, server.getConnections());
+		assertEquals(3, server.getMaxOutstanding());
+	}
+
+	@Test
+	public void testRequestTargetIsOriginForm() throws Exception {
+		ClientHttpResponse response = requestFactory.createRequest(new URI(server.getUrl("/a%20b/c?q=1%202&r#fragment")), HttpMethod.GET).execute();
+		response.getStatusCode().get(TIMEOUT, TimeUnit.SECONDS);
+		response = requestFactory.createRequest(new URI("http://localhost:" + server.getPort()), HttpMethod.GET).execute();
+		response.getStatusCode().get(TIMEOUT, TimeUnit.SECONDS);
+
+		List<String> received = server.getReceived();
+		assertTrue(received.get(0), received.get(0).startsWith("GET /a%20b/c?q=1%202&r HTTP/1.1\r\n"));
+		assertTrue(received.get(1), received.get(1).startsWith("GET / HTTP/1.1\r\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHttpsIsRejected() throws Exception {
+		requestFactory.createRequest(new URI("https://localhost/"), HttpMethod.GET);
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.netty.test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.async.EmptyCompletionHandler;
+import org.springframework.async.Promise;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.async.http.client.EmptyClientHttpRequestListener;
+import org.springframework.async.http.client.HttpRequest;
+import org.springframework.async.http.client.metrics.ClientHttpMetrics;
+import org.springframework.async.web.client.AsyncRestTemplate;
+import org.springframework.async.web.client.netty.NettyClientHttpRequestFactory;
+import org.springframework.async.web.client.test.LoopbackServer;
+import org.springframework.http.HttpMethod;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NettyClientHttpRequestFactoryTests {
+
+	static final int TIMEOUT = 5;
+
+	LoopbackServer server;
+	NettyClientHttpRequestFactory requestFactory;
+	AsyncRestTemplate restTemplate;
+
+	@Before
+	public void setup() throws Exception {
+		server = new LoopbackServer();
+		requestFactory = new NettyClientHttpRequestFactory();
+		restTemplate = new AsyncRestTemplate(requestFactory);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		requestFactory.destroy();
+		server.stop();
+	}
+
+	@Test
+	public void testIdleConnectionIsReused() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(3, server.getRequests());
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test
+	public void testHostIsCaseInsensitive() throws Exception {
+		restTemplate.getForObject("http://localhost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		restTemplate.getForObject("http://LocalHost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test
+	public void testMetricsShareTheFactoryWithOtherListeners() throws Exception {
+		ClientHttpMetrics metrics = new ClientHttpMetrics();
+		final AtomicInteger completed = new AtomicInteger();
+		requestFactory.addRequestListener(metrics);
+		requestFactory.addRequestListener(new EmptyClientHttpRequestListener() {
+			@Override public void completed(HttpRequest request, int statusCode, long timestamp) {
+				completed.incrementAndGet();
+			}
+		});
+
+		restTemplate.getForObject("http://localhost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		restTemplate.getForObject("http://LocalHost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(2, completed.get());
+		assertEquals(1, metrics.getRequestMetrics().size());
+		assertEquals(2, metrics.getRequestMetrics("http://localhost:" + server.getPort(), HttpMethod.GET).getSuccessCount());
+	}
+
+	@Test
+	public void testConnectionClosedByServerIsNotReused() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\nContent-Length: 5\r\n\r\nhello");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(2, server.getConnections());
+	}
+
+	@Test
+	public void testChunkedResponseIsStreamed() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "5\r\nhello\r\n1\r\n \r\n5\r\nworld\r\n0\r\n\r\n");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("hello world", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test
+	public void testPostBodyIsWritten() throws Exception {
+		assertEquals("hello", restTemplate.postForObject(server.getUrl("/"), "ping", String.class).get(TIMEOUT, TimeUnit.SECONDS));
+
+		String request = server.getReceived().get(0);
+		assertTrue(request, request.startsWith("POST / HTTP/1.1\r\n"));
+		assertTrue(request, request.toLowerCase().contains("\r\ncontent-length: 4\r\n"));
+		assertTrue(request, request.endsWith("\r\n\r\nping"));
+	}
+
+	@Test
+	public void testReadingIsSuspendedAtHighWatermark() throws Exception {
+		// Larger than the loopback socket buffers can hold, so the server only gets it all out if the client reads.
+		int length = 16 * 1024 * 1024;
+		char[] body = new char[length];
+		Arrays.fill(body, 'x');
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + length + "\r\n\r\n" + new String(body));
+		requestFactory.setLowWatermark(4 * 1024);
+		requestFactory.setHighWatermark(16 * 1024);
+
+		ClientHttpResponse response = requestFactory.createRequest(new URI(server.getUrl("/")), HttpMethod.GET).execute();
+		final AtomicLong received = new AtomicLong();
+		final CountDownLatch completed = new CountDownLatch(1);
+		response.setCompletionHandler(new EmptyCompletionHandler<Object>() {
+			boolean paused;
+
+			@Override public boolean chunk(ByteBuffer buffer) {
+				received.addAndGet(buffer.remaining());
+				if (!paused) {
+					paused = true;
+					return false;
+				}
+				return true;
+			}
+
+			@Override public void completed(Object obj) {
+				completed.countDown();
+			}
+		});
+
+		assertFalse(completed.await(500, TimeUnit.MILLISECONDS));
+		assertEquals(0, server.getResponsesWritten());
+		response.resume();
+		assertTrue(completed.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(length, received.get());
+	}
+
+	@Test
+	public void testRequestCancelledWhileWaitingForChannel() throws Exception {
+		requestFactory.setMaxConnectionsPerRoute(1);
+		server.setResponseDelay(100);
+		Promise<String> first = restTemplate.getForObject(server.getUrl("/"), String.class);
+		ClientHttpResponse cancelled = requestFactory.createRequest(new URI(server.getUrl("/")), HttpMethod.GET).execute();
+		cancelled.close();
+		assertEquals("hello", first.get(TIMEOUT, TimeUnit.SECONDS));
+
+		// The cancelled request hands the channel on without writing to it.
+		assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(2, server.getRequests());
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHttpsIsRejected() throws Exception {
+		requestFactory.createRequest(new URI("https://localhost/"), HttpMethod.GET);
+	}
+
+}
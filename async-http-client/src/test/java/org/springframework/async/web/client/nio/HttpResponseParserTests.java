@@ -0,0 +1,152 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lives in the parser's package, which it is private to.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class HttpResponseParserTests {
+
+	static final String CHUNKED = "HTTP/1.1 200 OK\r\n"
+			+ "Content-Type: text/plain\r\n"
+			+ "Transfer-Encoding: chunked\r\n"
+			+ "\r\n"
+			+ "5;name=value\r\nhello\r\n"
+			+ "1 ; ext\r\n \r\n"
+			+ "5\r\nworld\r\n"
+			+ "0\r\n"
+			+ "Trailer: x\r\n"
+			+ "\r\n";
+
+	@Test
+	public void testInputSplitAtEveryByte() throws IOException {
+		byte[] response = CHUNKED.getBytes("ISO-8859-1");
+		String expected = parse(response, response.length);
+		assertEquals("200 OK [Content-Type: text/plain] [Transfer-Encoding: chunked] hello world.", expected);
+
+		for (int pieceSize = 1; pieceSize < response.length; pieceSize++) {
+			assertEquals("pieces of " + pieceSize, expected, parse(response, pieceSize));
+		}
+	}
+
+	@Test
+	public void testInterimResponseIsSkipped() throws IOException {
+		String response = "HTTP/1.1 100 Continue\r\nX-Interim: yes\r\n\r\n"
+				+ "HTTP/1.1 201 Created\r\nContent-Length: 2\r\n\r\nok";
+		assertEquals("201 Created [Content-Length: 2] ok.", parse(response.getBytes("ISO-8859-1"), 7));
+	}
+
+	@Test
+	public void testCloseDelimitedBody() throws IOException {
+		Recorder recorder = new Recorder();
+		HttpResponseParser parser = new HttpResponseParser(recorder);
+		parser.reset(false);
+		parser.parse(ByteBuffer.wrap("HTTP/1.0 200 OK\r\n\r\nuntil the end".getBytes("ISO-8859-1")));
+
+		assertTrue(parser.isCloseDelimited());
+		assertFalse(parser.isKeepAlive());
+		assertTrue(parser.close());
+		assertEquals("200 OK until the end.", recorder.toString());
+	}
+
+	@Test
+	public void testTruncatedBodyIsNotComplete() throws IOException {
+		Recorder recorder = new Recorder();
+		HttpResponseParser parser = new HttpResponseParser(recorder);
+		parser.reset(false);
+		parser.parse(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nshort".getBytes("ISO-8859-1")));
+
+		assertFalse(parser.close());
+		assertTrue(parser.isKeepAlive());
+	}
+
+	@Test
+	public void testParsingStopsAtEndOfResponse() throws IOException {
+		HttpResponseParser parser = new HttpResponseParser(new Recorder());
+		parser.reset(false);
+		ByteBuffer buffer = ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nokextra".getBytes("ISO-8859-1"));
+		parser.parse(buffer);
+
+		assertFalse(parser.isParsing());
+		assertEquals(5, buffer.remaining());
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedChunkSize() throws IOException {
+		parse("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n".getBytes("ISO-8859-1"), 100);
+	}
+
+	/**
+	 * Parse the response in pieces of the given size and return what the handler was told.
+	 */
+	private static String parse(byte[] response, int pieceSize) throws IOException {
+		Recorder recorder = new Recorder();
+		HttpResponseParser parser = new HttpResponseParser(recorder);
+		parser.reset(false);
+		for (int offset = 0; offset < response.length; offset += pieceSize) {
+			ByteBuffer piece = ByteBuffer.wrap(response, offset, Math.min(pieceSize, response.length - offset)).slice();
+			parser.parse(piece);
+			assertFalse(piece.hasRemaining());
+		}
+		assertFalse(parser.isParsing());
+		return recorder.toString();
+	}
+
+	static class Recorder implements HttpResponseParser.Handler {
+		private final StringBuilder events = new StringBuilder();
+		private boolean inBody;
+
+		@Override public void status(int code, String reasonPhrase) {
+			events.append(code).append(' ').append(reasonPhrase);
+		}
+
+		@Override public void header(byte[] line, int nameLength, int valueStart, int valueEnd) {
+			events.append(" [").append(new String(line, 0, nameLength)).append(": ")
+					.append(new String(line, valueStart, valueEnd - valueStart)).append(']');
+		}
+
+		@Override public void headersComplete() {
+			events.append(' ');
+			inBody = true;
+		}
+
+		@Override public void content(ByteBuffer content) {
+			assertTrue(inBody);
+			byte[] bytes = new byte[content.remaining()];
+			content.get(bytes);
+			events.append(new String(bytes));
+		}
+
+		@Override public void complete() {
+			events.append('.');
+		}
+
+		@Override public String toString() {
+			return events.toString();
+		}
+	}
+
+}
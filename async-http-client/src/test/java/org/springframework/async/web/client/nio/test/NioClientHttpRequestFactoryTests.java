@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.nio.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.async.web.client.AsyncRestTemplate;
+import org.springframework.async.web.client.nio.NioClientHttpRequestFactory;
+import org.springframework.async.web.client.test.LoopbackServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class NioClientHttpRequestFactoryTests {
+
+	static final int TIMEOUT = 5;
+
+	LoopbackServer server;
+	NioClientHttpRequestFactory requestFactory;
+	AsyncRestTemplate restTemplate;
+
+	@Before
+	public void setup() throws Exception {
+		server = new LoopbackServer();
+		requestFactory = new NioClientHttpRequestFactory();
+		restTemplate = new AsyncRestTemplate(requestFactory);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		requestFactory.destroy();
+		server.stop();
+	}
+
+	@Test
+	public void testIdleConnectionIsReused() throws Exception {
+		restTemplate.getForObject("http://localhost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		restTemplate.getForObject("http://LocalHost:" + server.getPort() + "/", String.class).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(1, server.getConnections());
+	}
+
+	@Test
+	public void testDataAfterResponseClosesConnection() throws Exception {
+		server.setResponse(LoopbackServer.DEFAULT_RESPONSE + "HTTP/1.1 200 OK\r\n");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertEquals(2, server.getConnections());
+	}
+
+}
@@ -16,14 +16,21 @@
 
 package org.springframework.async.web.client.test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.async.Promise;
 import org.springframework.async.web.client.AsyncRestTemplate;
+import org.springframework.async.web.client.HttpMessageConverterExtractor;
+import org.springframework.http.HttpMethod;
+
+import static org.junit.Assert.*;
 
 /**
  * @author Jon Brisbin <jon@jbrisbin.com>
@@ -32,19 +39,67 @@ public class AsyncRestTemplateTests {
 
 	static final int TIMEOUT = 30;
 
+	LoopbackServer server;
 	AsyncRestTemplate restTemplate;
 
 	@Before
-	public void setup() {
+	public void setup() throws IOException {
+		server = new LoopbackServer();
 		restTemplate = new AsyncRestTemplate();
 	}
 
+	@After
+	public void cleanup() throws IOException {
+		server.stop();
+	}
+
 	@Test
 	public void testGetForObject() throws ExecutionException, TimeoutException, InterruptedException {
-		Promise<String> text = restTemplate.getForObject("http://localhost:8098/riak/status", String.class);
+		Promise<String> text = restTemplate.getForObject(server.getUrl("/status"), String.class);
 		String s = text.get(TIMEOUT, TimeUnit.SECONDS);
 
-		assert null != s;
+		assertEquals("hello", s);
+	}
+
+	@Test
+	public void testGetForFile() throws ExecutionException, TimeoutException, InterruptedException, IOException {
+		File file = File.createTempFile("status", ".txt");
+		file.deleteOnExit();
+		Promise<File> download = restTemplate.getForFile(server.getUrl("/status"), file);
+		File f = download.get(TIMEOUT, TimeUnit.SECONDS);
+
+		assertEquals(5, f.length());
+	}
+
+	@Test
+	public void testMissingContentTypeIsReadAsOctetStream() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello");
+		assertArrayEquals("hello".getBytes("US-ASCII"), restTemplate.getForObject(server.getUrl("/"), byte[].class).get(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testMalformedContentTypeFailsPromise() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: not a media type\r\nContent-Length: 5\r\n\r\nhello");
+		try {
+			restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS);
+			fail("Content-Type should not have been parsed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void testRequestTimeoutAppliesToExecute() throws Exception {
+		server.setResponseDelay(1000);
+		restTemplate.setRequestTimeout(50);
+		HttpMessageConverterExtractor<String> extractor = new HttpMessageConverterExtractor<String>(String.class, restTemplate.getMessageConverters());
+		Promise<String> text = restTemplate.execute(server.getUrl("/"), HttpMethod.GET, null, extractor);
+		try {
+			text.get(TIMEOUT, TimeUnit.SECONDS);
+			fail("Request should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
 	}
 
 }
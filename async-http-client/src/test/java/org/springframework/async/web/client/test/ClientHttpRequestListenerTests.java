@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.async.http.client.AbstractPooledClientHttpRequestFactory;
+import org.springframework.async.http.client.ClientHttpRequestListener;
+import org.springframework.async.http.client.HttpRequest;
+import org.springframework.async.web.client.AsyncRestTemplate;
+import org.springframework.async.web.client.grizzly.GrizzlyClientHttpRequestFactory;
+import org.springframework.async.web.client.netty.NettyClientHttpRequestFactory;
+import org.springframework.async.web.client.nio.NioClientHttpRequestFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every transport reports the events of an exchange in order, once each.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class ClientHttpRequestListenerTests {
+
+	static final int TIMEOUT = 5;
+
+	LoopbackServer server;
+	List<AbstractPooledClientHttpRequestFactory<?>> requestFactories;
+
+	@Before
+	public void setup() throws IOException {
+		server = new LoopbackServer();
+		requestFactories = new ArrayList<AbstractPooledClientHttpRequestFactory<?>>();
+		requestFactories.add(new NettyClientHttpRequestFactory());
+		requestFactories.add(new GrizzlyClientHttpRequestFactory());
+		requestFactories.add(new NioClientHttpRequestFactory());
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		for (AbstractPooledClientHttpRequestFactory<?> requestFactory : requestFactories) {
+			requestFactory.destroy();
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testEventsOfCompletedExchangeAreInOrder() throws Exception {
+		for (AbstractPooledClientHttpRequestFactory<?> requestFactory : requestFactories) {
+			RecordingListener listener = new RecordingListener();
+			requestFactory.setRequestListener(listener);
+			AsyncRestTemplate restTemplate = new AsyncRestTemplate(requestFactory);
+
+			assertEquals("hello", restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS));
+			assertEquals(name(requestFactory),
+					Arrays.asList("queued", "connectionAcquired false", "requestWritten", "headersReceived 200", "contentReceived", "completed 200"),
+					listener.await());
+		}
+	}
+
+	@Test
+	public void testReusedConnectionIsReported() throws Exception {
+		for (AbstractPooledClientHttpRequestFactory<?> requestFactory : requestFactories) {
+			AsyncRestTemplate restTemplate = new AsyncRestTemplate(requestFactory);
+			List<String> acquired = new ArrayList<String>();
+			for (int i = 0; i < 3; i++) {
+				RecordingListener listener = new RecordingListener();
+				requestFactory.setRequestListener(listener);
+				restTemplate.getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS);
+				acquired.add(listener.await().get(1));
+			}
+			assertEquals(name(requestFactory),
+					Arrays.asList("connectionAcquired false", "connectionAcquired true", "connectionAcquired true"),
+					acquired);
+		}
+	}
+
+	@Test
+	public void testTruncatedResponseFailsAfterWrite() throws Exception {
+		server.setResponse("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\nContent-Length: 10\r\n\r\nhello");
+		for (AbstractPooledClientHttpRequestFactory<?> requestFactory : requestFactories) {
+			RecordingListener listener = new RecordingListener();
+			requestFactory.setRequestListener(listener);
+			try {
+				new AsyncRestTemplate(requestFactory).getForObject(server.getUrl("/"), String.class).get(TIMEOUT, TimeUnit.SECONDS);
+				fail(name(requestFactory) + ": truncated response should fail");
+			} catch (ExecutionException expected) {
+			}
+			// Netty only passes on the headers of a short fixed-length response along with its whole body.
+			List<String> events = listener.await();
+			assertEquals(name(requestFactory), Arrays.asList("queued", "connectionAcquired false", "requestWritten"), events.subList(0, 3));
+			assertEquals(name(requestFactory), "failed", events.get(events.size() - 1));
+			assertFalse(name(requestFactory), events.contains("completed 200"));
+		}
+	}
+
+	@Test
+	public void testRefusedConnectionFails() throws Exception {
+		ServerSocket unused = new ServerSocket(0);
+		String url = "http://localhost:" + unused.getLocalPort() + "/";
+		unused.close();
+		for (AbstractPooledClientHttpRequestFactory<?> requestFactory : requestFactories) {
+			RecordingListener listener = new RecordingListener();
+			requestFactory.setRequestListener(listener);
+			try {
+				new AsyncRestTemplate(requestFactory).getForObject(url, String.class).get(TIMEOUT, TimeUnit.SECONDS);
+				fail(name(requestFactory) + ": refused connection should fail");
+			} catch (ExecutionException expected) {
+			}
+			assertEquals(name(requestFactory), Arrays.asList("queued", "failed"), listener.await());
+		}
+	}
+
+	private static String name(Object requestFactory) {
+		return requestFactory.getClass().getSimpleName();
+	}
+
+	/**
+	 * Records each event by name, with consecutive content chunks recorded once as their number depends on the
+	 * transport.
+	 */
+	static class RecordingListener implements ClientHttpRequestListener {
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(1);
+
+		List<String> await() throws InterruptedException {
+			assertTrue("No completed or failed event", done.await(TIMEOUT, TimeUnit.SECONDS));
+			return new ArrayList<String>(events);
+		}
+
+		@Override public void queued(HttpRequest request, long timestamp) {
+			events.add("queued");
+		}
+
+		@Override public void connectionAcquired(HttpRequest request, boolean reused, long timestamp) {
+			events.add("connectionAcquired " + reused);
+		}
+
+		@Override public void requestWritten(HttpRequest request, int bytes, long timestamp) {
+			assertTrue(bytes > 0);
+			events.add("requestWritten");
+		}
+
+		@Override public void headersReceived(HttpRequest request, int statusCode, long timestamp) {
+			events.add("headersReceived " + statusCode);
+		}
+
+		@Override public void contentReceived(HttpRequest request, int bytes, long timestamp) {
+			synchronized (events) {
+				if (events.isEmpty() || !"contentReceived".equals(events.get(events.size() - 1))) {
+					events.add("contentReceived");
+				}
+			}
+		}
+
+		@Override public void completed(HttpRequest request, int statusCode, long timestamp) {
+			events.add("completed " + statusCode);
+			done.countDown();
+		}
+
+		@Override public void failed(HttpRequest request, Throwable throwable, long timestamp) {
+			events.add("failed");
+			done.countDown();
+		}
+	}
+
+}
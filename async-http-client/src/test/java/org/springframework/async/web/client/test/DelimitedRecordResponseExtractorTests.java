@@ -0,0 +1,273 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.springframework.async.Promise;
+import org.springframework.async.web.client.DelimitedRecordResponseExtractor;
+import org.springframework.async.web.client.RecordHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class DelimitedRecordResponseExtractorTests {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final RecordingHandler handler = new RecordingHandler();
+	private final MockClientHttpResponse response = new MockClientHttpResponse(new HttpHeaders());
+
+	@Test
+	public void testRecordsWithinOneChunk() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler));
+
+		feed("one\ntwo\n\nthree\n");
+		response.complete();
+
+		assertEquals(Arrays.asList("one", "two", "three"), handler.records);
+		assertEquals(Long.valueOf(3), promise.get());
+	}
+
+	@Test
+	public void testRecordSplitAcrossChunks() throws Exception {
+		String body = "first record\nsecond, which is a little longer\nthird\n";
+		byte[] bytes = body.getBytes(UTF_8);
+		for (int split = 0; split <= bytes.length; split++) {
+			RecordingHandler handler = new RecordingHandler();
+			MockClientHttpResponse response = new MockClientHttpResponse(new HttpHeaders());
+			Promise<Long> promise = new DelimitedRecordResponseExtractor(handler).extractData(response);
+
+			response.chunk(bytes, 0, split);
+			response.chunk(bytes, split, bytes.length - split);
+			response.complete();
+
+			assertEquals("Split at byte " + split, Arrays.asList("first record", "second, which is a little longer",
+					"third"), handler.records);
+			assertEquals(Long.valueOf(3), promise.get());
+		}
+	}
+
+	@Test
+	public void testRecordSplitAcrossManyChunks() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			builder.append((char) ('a' + i % 26));
+		}
+		String record = builder.toString();
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler));
+
+		response.feed((record + "\n" + record + "\n").getBytes(UTF_8), 7);
+		response.complete();
+
+		assertEquals(Arrays.asList(record, record), handler.records);
+		assertEquals(Long.valueOf(2), promise.get());
+	}
+
+	@Test
+	public void testCrlfSplitAcrossChunks() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler));
+
+		feed("one\r");
+		feed("\ntwo\r\nthr");
+		feed("ee\r");
+		feed("\n\r\n");
+		response.complete();
+
+		assertEquals(Arrays.asList("one", "two", "three"), handler.records);
+		assertEquals(Long.valueOf(3), promise.get());
+	}
+
+	@Test
+	public void testLastRecordWithoutDelimiter() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler));
+
+		feed("one\ntw");
+		feed("o");
+		response.complete();
+
+		assertEquals(Arrays.asList("one", "two"), handler.records);
+		assertEquals(Long.valueOf(2), promise.get());
+	}
+
+	@Test
+	public void testOtherDelimiter() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler, (byte) 0x1E, 100));
+
+		feed("one\r\u001Etwo\n");
+		feed("\u001E");
+		response.complete();
+
+		assertEquals(Arrays.asList("one\r", "two\n"), handler.records);
+		assertEquals(Long.valueOf(2), promise.get());
+	}
+
+	@Test
+	public void testRecordAtLengthLimit() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler, (byte) '\n', 5));
+
+		feed("abcde\nab");
+		feed("cde\r\n");
+		response.complete();
+
+		assertEquals(Arrays.asList("abcde", "abcde"), handler.records);
+		assertEquals(Long.valueOf(2), promise.get());
+	}
+
+	@Test
+	public void testRecordWithinChunkOverLengthLimit() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler, (byte) '\n', 5));
+
+		feed("abc\nabcdef\nabc\n");
+
+		assertEquals(Arrays.asList("abc"), handler.records);
+		assertTooLong(promise);
+		assertTrue(response.isClosed());
+	}
+
+	@Test
+	public void testCarriedRecordOverLengthLimit() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler, (byte) '\n', 5));
+
+		feed("abc");
+		// Six bytes could still be five and a carriage return; seven can't.
+		feed("def");
+		assertFalse(promise.isDone());
+		feed("g");
+
+		assertTooLong(promise);
+		assertTrue(response.isClosed());
+		// Anything still in flight is dropped.
+		feed("\nabc\n");
+		response.complete();
+		assertTrue(handler.records.isEmpty());
+	}
+
+	@Test
+	public void testLargestLengthLimitCarries() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler, (byte) '\n', Integer.MAX_VALUE));
+
+		feed("a record that is split");
+		feed(" between chunks\n");
+		response.complete();
+
+		assertEquals(Arrays.asList("a record that is split between chunks"), handler.records);
+		assertEquals(Long.valueOf(1), promise.get());
+	}
+
+	@Test
+	public void testPauseAndResume() throws Exception {
+		DelimitedRecordResponseExtractor extractor = new DelimitedRecordResponseExtractor(handler);
+		Promise<Long> promise = extract(extractor);
+		handler.pause = true;
+
+		// The rest of the chunk is still handled.
+		assertFalse(response.chunk(bytes("one\ntwo\nthr")));
+		assertEquals(Arrays.asList("one", "two"), handler.records);
+
+		handler.pause = false;
+		extractor.resume();
+		assertEquals(1, response.getResumes());
+		assertTrue(response.chunk(bytes("ee\n")));
+		response.complete();
+
+		assertEquals(Arrays.asList("one", "two", "three"), handler.records);
+		assertEquals(Long.valueOf(3), promise.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testResumeBeforeExtracting() {
+		new DelimitedRecordResponseExtractor(handler).resume();
+	}
+
+	@Test
+	public void testHandlerFailureAbortsResponse() throws Exception {
+		final IllegalStateException failure = new IllegalStateException("bad record");
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(new RecordHandler() {
+			@Override public boolean record(ByteBuffer record) {
+				throw failure;
+			}
+		}));
+
+		feed("one\n");
+
+		try {
+			promise.get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertTrue(response.isClosed());
+	}
+
+	@Test
+	public void testCancelClosesResponse() throws Exception {
+		Promise<Long> promise = extract(new DelimitedRecordResponseExtractor(handler));
+
+		feed("one\ntw");
+		promise.cancel(true);
+
+		assertTrue(response.isClosed());
+	}
+
+	private Promise<Long> extract(DelimitedRecordResponseExtractor extractor) throws Exception {
+		return extractor.extractData(response);
+	}
+
+	private void feed(String s) {
+		response.chunk(bytes(s));
+	}
+
+	private static ByteBuffer bytes(String s) {
+		return ByteBuffer.wrap(s.getBytes(UTF_8));
+	}
+
+	private static void assertTooLong(Promise<Long> promise) throws Exception {
+		try {
+			promise.get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RestClientException);
+			assertEquals("Record longer than 5 bytes", e.getCause().getMessage());
+		}
+	}
+
+	private static class RecordingHandler implements RecordHandler {
+		private final List<String> records = new ArrayList<String>();
+		private boolean pause;
+
+		@Override public boolean record(ByteBuffer record) {
+			byte[] bytes = new byte[record.remaining()];
+			record.get(bytes);
+			records.add(new String(bytes, UTF_8));
+			return !pause;
+		}
+	}
+
+}
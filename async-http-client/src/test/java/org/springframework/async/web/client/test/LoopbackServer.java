@@ -0,0 +1,245 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blocking HTTP server on the loopback interface that answers every request with the same canned response, closing
+ * the connection after it if it carries {@code Connection: close}. It counts connections, requests and how many
+ * requests were waiting for a response on one connection at once, so tests can check connection reuse and
+ * pipelining without a real backend.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class LoopbackServer {
+
+	public static final String DEFAULT_RESPONSE = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 5\r\n\r\nhello";
+
+	private final ServerSocket serverSocket;
+	private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger maxOutstanding = new AtomicInteger();
+	private final AtomicInteger responsesWritten = new AtomicInteger();
+	private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+	private volatile byte[] response;
+	private volatile boolean close;
+	private volatile long responseDelay;
+
+	public LoopbackServer() throws IOException {
+		this(DEFAULT_RESPONSE);
+	}
+
+	/**
+	 * @param response the raw response, status line and headers included, to answer every request with
+	 */
+	public LoopbackServer(String response) throws IOException {
+		setResponse(response);
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptor = new Thread(new Runnable() {
+			@Override public void run() {
+				accept();
+			}
+		}, "loopback-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public void setResponse(String response) {
+		try {
+			this.response = response.getBytes("ISO-8859-1");
+			this.close = response.toLowerCase().contains("\r\nconnection: close\r\n");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param responseDelay time in milliseconds to wait before answering each request
+	 */
+	public void setResponseDelay(long responseDelay) {
+		this.responseDelay = responseDelay;
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public String getUrl(String path) {
+		return "http://localhost:" + getPort() + path;
+	}
+
+	public int getConnections() {
+		return connections.get();
+	}
+
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the largest number of requests received on a single connection before the earliest of them was answered
+	 */
+	public int getMaxOutstanding() {
+		return maxOutstanding.get();
+	}
+
+	/**
+	 * @return every request received so far, head and body, decoded as ISO-8859-1
+	 */
+	public List<String> getReceived() {
+		synchronized (received) {
+			return new ArrayList<String>(received);
+		}
+	}
+
+	/**
+	 * @return the number of responses written out in full, which lags behind while a client has stopped reading
+	 */
+	public int getResponsesWritten() {
+		return responsesWritten.get();
+	}
+
+	public void stop() throws IOException {
+		serverSocket.close();
+		synchronized (sockets) {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				return;
+			}
+			connections.incrementAndGet();
+			sockets.add(socket);
+			final BlockingQueue<Boolean> pending = new LinkedBlockingQueue<Boolean>();
+			final AtomicInteger outstanding = new AtomicInteger();
+			start(new Runnable() {
+				@Override public void run() {
+					try {
+						InputStream in = new BufferedInputStream(socket.getInputStream());
+						for (; ; ) {
+							ByteArrayOutputStream request = new ByteArrayOutputStream();
+							int contentLength = readHead(in, request);
+							if (contentLength < 0) {
+								break;
+							}
+							for (int i = 0; i < contentLength; i++) {
+								int b = in.read();
+								if (b < 0) {
+									throw new IOException("Connection closed in the middle of a request body");
+								}
+								request.write(b);
+							}
+							received.add(request.toString("ISO-8859-1"));
+							requests.incrementAndGet();
+							int n = outstanding.incrementAndGet();
+							for (; ; ) {
+								int max = maxOutstanding.get();
+								if (n <= max || maxOutstanding.compareAndSet(max, n)) {
+									break;
+								}
+							}
+							pending.add(Boolean.TRUE);
+						}
+					} catch (IOException ignored) {
+					}
+					pending.add(Boolean.FALSE);
+				}
+			});
+			start(new Runnable() {
+				@Override public void run() {
+					try {
+						OutputStream out = socket.getOutputStream();
+						while (pending.take()) {
+							if (responseDelay > 0) {
+								Thread.sleep(responseDelay);
+							}
+							outstanding.decrementAndGet();
+							out.write(response);
+							out.flush();
+							responsesWritten.incrementAndGet();
+							if (close) {
+								break;
+							}
+						}
+					} catch (Exception ignored) {
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException ignored) {
+						}
+					}
+				}
+			});
+		}
+	}
+
+	private static void start(Runnable runnable) {
+		Thread thread = new Thread(runnable, "loopback-connection");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Read a request line and headers.
+	 *
+	 * @param head the stream to copy the request line and headers to
+	 * @return the request's Content-Length, 0 if it has none, or -1 if the connection was closed
+	 */
+	private static int readHead(InputStream in, ByteArrayOutputStream head) throws IOException {
+		int matched = 0;
+		while (matched < 4) {
+			int b = in.read();
+			if (b < 0) {
+				return -1;
+			}
+			head.write(b);
+			matched = (b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : (b == '\r' ? 1 : 0));
+		}
+		int contentLength = 0;
+		for (String line : head.toString("ISO-8859-1").split("\r\n")) {
+			int colon = line.indexOf(':');
+			if (colon > 0 && "content-length".equalsIgnoreCase(line.substring(0, colon).trim())) {
+				contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+			}
+		}
+		return contentLength;
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.async.web.client.test;
+
+import org.springframework.async.Promise;
+import org.springframework.async.http.client.ClientHttpResponse;
+import org.springframework.async.http.converter.test.MockHttpInputMessage;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A {@link ClientHttpResponse} whose status and headers have already arrived and whose body is fed in by the test.
+ *
+ * @author Jon Brisbin <jon@jbrisbin.com>
+ */
+public class MockClientHttpResponse extends MockHttpInputMessage implements ClientHttpResponse {
+
+	private final Promise<HttpStatus> status = new Promise<HttpStatus>();
+	private final Promise<String> statusText = new Promise<String>();
+	private boolean closed;
+
+	public MockClientHttpResponse(HttpHeaders headers) {
+		super(headers);
+		status.result(HttpStatus.OK);
+		statusText.result("OK");
+	}
+
+	@Override public Promise<HttpStatus> getStatusCode() {
+		return status;
+	}
+
+	@Override public Promise<String> getStatusText() {
+		return statusText;
+	}
+
+	@Override public void close() {
+		closed = true;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+}